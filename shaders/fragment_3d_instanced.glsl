@@ -0,0 +1,12 @@
+
+out vec4 outputColor;
+
+uniform vec4 input_color;
+
+in vec4 fragColor;
+
+void main()
+{
+    // Tint the color of the instance by the pen color
+    outputColor = fragColor*input_color;
+}
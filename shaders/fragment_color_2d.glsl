@@ -0,0 +1,10 @@
+
+out vec4 outputColor;
+
+in vec4 fragColor;
+
+void main()
+{
+    // Output the interpolated vertex color
+    outputColor = fragColor;
+}
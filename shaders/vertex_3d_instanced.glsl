@@ -0,0 +1,31 @@
+
+// Incoming vertex position
+in vec3 position;
+
+// The model transform of this instance. Each instance is drawn relative to
+// the frame given by model_matrix.
+in mat4 instance_matrix;
+
+// The color of this instance
+in vec4 instance_color;
+
+uniform mat4 model_matrix;
+
+uniform mat4 view_matrix;
+
+uniform mat4 proj_matrix;
+
+out vec4 fragColor;
+
+void main() {
+	// The global position is in homogenous coordinates
+    vec4 globalPosition = model_matrix * instance_matrix * vec4(position, 1);
+
+    // The position in camera coordinates
+    vec4 viewPosition = view_matrix * globalPosition;
+
+    // The position in CVV coordinates
+    gl_Position = proj_matrix * viewPosition;
+
+    fragColor = instance_color;
+}
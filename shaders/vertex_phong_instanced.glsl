@@ -0,0 +1,55 @@
+// The instanced version of vertex_phong.glsl. Each instance has its own model
+// transform and color, which are applied relative to model_matrix.
+//
+// Note: This shader assumes there is no non-uniform scale in either the view
+// or the model transform, including the instance transforms.
+
+// Incoming vertex position
+in vec3 position;
+
+// Incoming normal
+in vec3 normal;
+
+// Whether the normal is stored in normal.xy in the octahedral encoding used by
+// compact vertex formats. This is set by TriangleMesh.
+uniform bool octahedral_normals;
+
+// The model transform of this instance
+in mat4 instance_matrix;
+
+// The color of this instance
+in vec4 instance_color;
+
+uniform mat4 model_matrix;
+
+uniform mat4 view_matrix;
+
+uniform mat4 proj_matrix;
+
+out vec4 viewPosition;
+out vec3 m;
+out vec4 fragColor;
+
+vec3 decodeNormal(vec3 n) {
+    if (!octahedral_normals)
+        return n;
+    vec3 d = vec3(n.xy, 1.0 - abs(n.x) - abs(n.y));
+    if (d.z < 0.0)
+        d.xy = (1.0 - abs(d.yx)) * vec2(d.x >= 0.0 ? 1.0 : -1.0, d.y >= 0.0 ? 1.0 : -1.0);
+    return d;
+}
+
+void main() {
+    mat4 modelView = view_matrix*model_matrix*instance_matrix;
+
+    // The position in camera coordinates
+    viewPosition = modelView * vec4(position, 1);
+
+    // The position in CVV coordinates
+    gl_Position = proj_matrix * viewPosition;
+
+    // Compute the normal in view coordinates
+    m = normalize(modelView * vec4(decodeNormal(normal), 0)).xyz;
+
+    fragColor = instance_color;
+}
@@ -10,6 +10,10 @@ in vec3 position;
 // Incoming normal
 in vec3 normal;
 
+// Whether the normal is stored in normal.xy in the octahedral encoding used by
+// compact vertex formats. This is set by TriangleMesh.
+uniform bool octahedral_normals;
+
 // Incoming texture coordinate
 in vec2 texCoord;
 
@@ -24,6 +28,15 @@ out vec3 m;
 
 out vec2 texCoordFrag;
 
+vec3 decodeNormal(vec3 n) {
+    if (!octahedral_normals)
+        return n;
+    vec3 d = vec3(n.xy, 1.0 - abs(n.x) - abs(n.y));
+    if (d.z < 0.0)
+        d.xy = (1.0 - abs(d.yx)) * vec2(d.x >= 0.0 ? 1.0 : -1.0, d.y >= 0.0 ? 1.0 : -1.0);
+    return d;
+}
+
 void main() {
 	// The global position is in homogenous coordinates
     vec4 globalPosition = model_matrix * vec4(position, 1);
@@ -35,7 +48,7 @@ void main() {
     gl_Position = proj_matrix * viewPosition;
 
     // Compute the normal in view coordinates
-    m = normalize(view_matrix*model_matrix * vec4(normal, 0)).xyz;
+    m = normalize(view_matrix*model_matrix * vec4(decodeNormal(normal), 0)).xyz;
 
     texCoordFrag = texCoord;
 }
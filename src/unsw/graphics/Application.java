@@ -16,6 +16,8 @@ import com.jogamp.opengl.GLCapabilities;
 import com.jogamp.opengl.GLContext;
 import com.jogamp.opengl.GLEventListener;
 import com.jogamp.opengl.GLProfile;
+import com.jogamp.opengl.util.Animator;
+import com.jogamp.opengl.util.AnimatorBase;
 import com.jogamp.opengl.util.FPSAnimator;
 
 /**
@@ -39,7 +41,11 @@ public abstract class Application implements GLEventListener {
 
     private int height;
 
-    private FPSAnimator animator;
+    private AnimatorBase animator;
+
+    private RunConfig config;
+
+    private FrameTimer timer;
 
     /**
      * Construct an Application. The window for the application will have the
@@ -58,13 +64,16 @@ public abstract class Application implements GLEventListener {
         this.width = width;
         this.height = height;
         this.background = new Color(1f, 1f, 1f);
+        this.config = RunConfig.fromSystemProperties();
     }
 
     /**
      * Start the application.
      * 
      * This displays the window and starts an animation timer that causes the
-     * window to refresh at 60 frames a second.
+     * window to refresh at the rate given by the run configuration, 60 frames
+     * a second by default. If the configuration has a number of frames, their
+     * times are printed after they are drawn and the application exits.
      * 
      */
     public void start() {
@@ -75,8 +84,10 @@ public abstract class Application implements GLEventListener {
         // using
         GLCapabilities glCapabilities = new GLCapabilities(glProfile);
         
-        glCapabilities.setNumSamples(8);
-        glCapabilities.setSampleBuffers(true);
+        if (config.getSamples() > 0) {
+            glCapabilities.setNumSamples(config.getSamples());
+            glCapabilities.setSampleBuffers(true);
+        }
 
         // Use newt to create a window with an OpenGL canvas
         window = GLWindow.create(glCapabilities);
@@ -84,8 +95,9 @@ public abstract class Application implements GLEventListener {
         window.setSize(width, height);
         window.setResizable(false);
 
-        // Turn on debug mode (REALLY USEFUL)
-        window.setContextCreationFlags(GLContext.CTX_OPTION_DEBUG);
+        // Turn on debug mode (REALLY USEFUL, but slows down every call)
+        if (config.isDebug())
+            window.setContextCreationFlags(GLContext.CTX_OPTION_DEBUG);
 
         window.setVisible(true);
 
@@ -95,8 +107,17 @@ public abstract class Application implements GLEventListener {
         window.addGLEventListener(this);
 
         // Create an animator. The animator will tell the window to redraw
-        // itself 60 times a second.
-        animator = new FPSAnimator(window, 60);
+        // itself at the target rate, or as often as it can if there is none.
+        if (config.getTargetFPS() > 0)
+            animator = new FPSAnimator(window, config.getTargetFPS());
+        else
+            animator = new Animator(window);
+
+        if (config.getFrames() > 0) {
+            timer = new FrameTimer(config.getFrames());
+            System.out.println(title + ": timing " + config.getFrames()
+                    + " frames with " + config);
+        }
 
         // THis is just to make sure everything shuts down properly when the
         // window is closed.
@@ -116,6 +137,18 @@ public abstract class Application implements GLEventListener {
     public void display(GLAutoDrawable drawable) {
         GL3 gl = drawable.getGL().getGL3();
         display(gl);
+
+        if (timer != null && !timer.isDone() && timer.frame()) {
+            timer.print(System.out);
+            // The animator can't be stopped from its own thread, so close the
+            // window from another, which stops it and exits.
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    window.destroy();
+                }
+            }).start();
+        }
     }
 
     /**
@@ -142,9 +175,15 @@ public abstract class Application implements GLEventListener {
     @Override
     public void init(GLAutoDrawable drawable) {
         GL3 gl = drawable.getGL().getGL3();
+
+        // A new or recreated context has no program of ours in use
+        Shader.forgetCurrent(gl);
         
         gl.glEnable(GL.GL_BLEND);
         gl.glBlendFunc(GL.GL_SRC_ALPHA, GL.GL_ONE_MINUS_SRC_ALPHA);
+
+        if (config.getVsync() != null)
+            gl.setSwapInterval(config.getVsync() ? 1 : 0);
         
         init(gl);
     }
@@ -207,8 +246,28 @@ public abstract class Application implements GLEventListener {
     public abstract Shader getDefaultShader();
     
 
-    public FPSAnimator getAnimator() {
+    public AnimatorBase getAnimator() {
         return animator;
     }
 
+    /**
+     * Get the run configuration. It starts out as the defaults, changed by
+     * any of the system properties in {@link RunConfig} that are set.
+     * 
+     * @return
+     */
+    public RunConfig getRunConfig() {
+        return config;
+    }
+
+    /**
+     * Set the run configuration. This must be done before the application is
+     * started.
+     * 
+     * @param config
+     */
+    public void setRunConfig(RunConfig config) {
+        this.config = config;
+    }
+
 }
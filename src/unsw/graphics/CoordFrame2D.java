@@ -19,7 +19,11 @@ import unsw.graphics.geometry.Point2D;
  *
  */
 public class CoordFrame2D {
-    private Matrix3 matrix;
+    private final Matrix3 matrix;
+    
+    // The axes drawn by draw() are attached to each OpenGL context under this name, so they 
+    // are only copied to its graphics memory once.
+    private static final String AXES = CoordFrame2D.class.getName() + ".axes";
     
     /**
      * Use the given 3X3 matrix as a coordinate frame.
@@ -46,7 +50,7 @@ public class CoordFrame2D {
      * @return
      */
     public CoordFrame2D translate(float x, float y) {
-        return new CoordFrame2D(matrix.multiply(Matrix3.translation(x, y)));
+        return new CoordFrame2D(matrix.multiplyTranslation(x, y));
     }
     
     /**
@@ -56,7 +60,7 @@ public class CoordFrame2D {
      * @return
      */
     public CoordFrame2D translate(Point2D point) {
-        return new CoordFrame2D(matrix.multiply(Matrix3.translation(point)));
+        return new CoordFrame2D(matrix.multiplyTranslation(point.getX(), point.getY()));
     }
     
     /**
@@ -65,7 +69,7 @@ public class CoordFrame2D {
      * @return
      */
     public CoordFrame2D rotate(float degrees) {
-        return new CoordFrame2D(matrix.multiply(Matrix3.rotation(degrees)));
+        return new CoordFrame2D(matrix.multiplyRotation(degrees));
     }
 
     /**
@@ -76,7 +80,7 @@ public class CoordFrame2D {
      * @return
      */
     public CoordFrame2D scale(float x, float y) {
-        return new CoordFrame2D(matrix.multiply(Matrix3.scale(x,y)));
+        return new CoordFrame2D(matrix.multiplyScale(x, y));
     }
 
     /**
@@ -115,12 +119,25 @@ public class CoordFrame2D {
      * @param gl
      */
     public void draw(GL3 gl) {
-       Line2D iAxis = new Line2D(0f,0f, 1f,0f); 
-       Line2D jAxis = new Line2D(0f,0f, 0f,1f);
+       Line2D[] axes = axes(gl);
        Shader.setPenColor(gl, Color.RED);
-       iAxis.draw(gl,this);
+       axes[0].draw(gl,this);
        Shader.setPenColor(gl, Color.GREEN);
-       jAxis.draw(gl,this);
+       axes[1].draw(gl,this);
        Shader.setPenColor(gl, Color.BLACK);
     }
+
+    /**
+     * Get the axes for the given GL's context, creating them if it doesn't have them yet.
+     */
+    private static Line2D[] axes(GL3 gl) {
+        Line2D[] axes = (Line2D[]) gl.getContext().getAttachedObject(AXES);
+        if (axes == null) {
+            axes = new Line2D[] {
+                    new Line2D(0f,0f, 1f,0f),
+                    new Line2D(0f,0f, 0f,1f) };
+            gl.getContext().attachObject(AXES, axes);
+        }
+        return axes;
+    }
 }
@@ -21,6 +21,10 @@ import unsw.graphics.geometry.Point3D;
 public class CoordFrame3D {
     private Matrix4 matrix;
     
+    // The axes drawn by draw() are attached to each OpenGL context under this name, so they 
+    // are only copied to its graphics memory once.
+    private static final String AXES = CoordFrame3D.class.getName() + ".axes";
+    
     /**
      * Use the given 4X4 matrix as a coordinate frame.
      * 
@@ -47,7 +51,7 @@ public class CoordFrame3D {
      * @return
      */
     public CoordFrame3D translate(float x, float y, float z) {
-        return new CoordFrame3D(matrix.multiply(Matrix4.translation(x, y, z)));
+        return new CoordFrame3D(matrix.multiplyTranslation(x, y, z));
     }
     
     /**
@@ -57,7 +61,7 @@ public class CoordFrame3D {
      * @return
      */
     public CoordFrame3D translate(Point3D point) {
-        return new CoordFrame3D(matrix.multiply(Matrix4.translation(point)));
+        return new CoordFrame3D(matrix.multiplyTranslation(point.getX(), point.getY(), point.getZ()));
     }
     
     /**
@@ -67,7 +71,7 @@ public class CoordFrame3D {
      * @return
      */
     public CoordFrame3D rotateX(float degrees) {
-        return new CoordFrame3D(matrix.multiply(Matrix4.rotationX(degrees)));
+        return new CoordFrame3D(matrix.multiplyRotationX(degrees));
     }
     
     /**
@@ -77,7 +81,7 @@ public class CoordFrame3D {
      * @return
      */
     public CoordFrame3D rotateY(float degrees) {
-        return new CoordFrame3D(matrix.multiply(Matrix4.rotationY(degrees)));
+        return new CoordFrame3D(matrix.multiplyRotationY(degrees));
     }
 
     /**
@@ -87,7 +91,7 @@ public class CoordFrame3D {
      * @return
      */
     public CoordFrame3D rotateZ(float degrees) {
-        return new CoordFrame3D(matrix.multiply(Matrix4.rotationZ(degrees)));
+        return new CoordFrame3D(matrix.multiplyRotationZ(degrees));
     }
 
     /**
@@ -99,7 +103,7 @@ public class CoordFrame3D {
      * @return
      */
     public CoordFrame3D scale(float x, float y, float z) {
-        return new CoordFrame3D(matrix.multiply(Matrix4.scale(x,y,z)));
+        return new CoordFrame3D(matrix.multiplyScale(x, y, z));
     }
 
     /**
@@ -118,15 +122,13 @@ public class CoordFrame3D {
      * @param gl
      */
     public void draw(GL3 gl) {
-       Line3D iAxis = new Line3D(0f,0f,0f, 1f,0f,0f); 
-       Line3D jAxis = new Line3D(0f,0f,0f, 0f,1f,0f);
-       Line3D kAxis = new Line3D(0f,0f,0f, 0f,0f,1f);
+       Line3D[] axes = axes(gl);
        Shader.setPenColor(gl, Color.RED);
-       iAxis.draw(gl,this);
+       axes[0].draw(gl,this);
        Shader.setPenColor(gl, Color.GREEN);
-       jAxis.draw(gl,this);
+       axes[1].draw(gl,this);
        Shader.setPenColor(gl, Color.BLUE);
-       kAxis.draw(gl,this);
+       axes[2].draw(gl,this);
        Shader.setPenColor(gl, Color.BLACK);
     }
 
@@ -147,4 +149,19 @@ public class CoordFrame3D {
     public Vector3 transform(Vector3 v) {
         return matrix.multiply(v.extend()).trim();
     }
+
+    /**
+     * Get the axes for the given GL's context, creating them if it doesn't have them yet.
+     */
+    private static Line3D[] axes(GL3 gl) {
+        Line3D[] axes = (Line3D[]) gl.getContext().getAttachedObject(AXES);
+        if (axes == null) {
+            axes = new Line3D[] {
+                    new Line3D(0f,0f,0f, 1f,0f,0f),
+                    new Line3D(0f,0f,0f, 0f,1f,0f),
+                    new Line3D(0f,0f,0f, 0f,0f,1f) };
+            gl.getContext().attachObject(AXES, axes);
+        }
+        return axes;
+    }
 }
@@ -0,0 +1,113 @@
+/**
+ *
+ */
+package unsw.graphics;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Times a fixed number of frames, and summarises how long they took.
+ *
+ * A frame's time is the time from the end of one frame to the end of the next, so it includes
+ * everything that happens between them, like waiting for the animator or for vsync. The first
+ * call to {@link #frame()} only starts the clock, so timing n frames takes n + 1 calls.
+ *
+ * @author Robert Clifton-Everest
+ *
+ */
+public class FrameTimer {
+
+    private final long[] myTimes;
+
+    private int myCount;
+
+    private long myLast = -1;
+
+    /**
+     * Create a timer for the given number of frames.
+     *
+     * @param frames
+     */
+    public FrameTimer(int frames) {
+        if (frames <= 0)
+            throw new IllegalArgumentException("Must time at least one frame");
+        myTimes = new long[frames];
+    }
+
+    /**
+     * Mark the end of a frame. Frames after the last one are ignored.
+     *
+     * @return true if all the frames have been timed
+     */
+    public boolean frame() {
+        long now = System.nanoTime();
+        if (myLast >= 0 && myCount < myTimes.length)
+            myTimes[myCount++] = now - myLast;
+        myLast = now;
+        return isDone();
+    }
+
+    public boolean isDone() {
+        return myCount == myTimes.length;
+    }
+
+    /**
+     * The number of frames timed so far.
+     *
+     * @return
+     */
+    public int getCount() {
+        return myCount;
+    }
+
+    /**
+     * The mean frame time, in milliseconds.
+     *
+     * @return
+     */
+    public double getMean() {
+        if (myCount == 0)
+            return 0;
+        long total = 0;
+        for (int i = 0; i < myCount; i++)
+            total += myTimes[i];
+        return total / 1e6 / myCount;
+    }
+
+    /**
+     * The frame time that the given percentage of frames take no longer than, in milliseconds.
+     *
+     * @param percent From 0 to 100
+     * @return
+     */
+    public double getPercentile(double percent) {
+        if (myCount == 0)
+            return 0;
+        long[] sorted = Arrays.copyOf(myTimes, myCount);
+        Arrays.sort(sorted);
+        int i = (int) Math.ceil(percent / 100 * myCount) - 1;
+        return sorted[Math.max(0, Math.min(myCount - 1, i))] / 1e6;
+    }
+
+    /**
+     * The longest frame time, in milliseconds.
+     *
+     * @return
+     */
+    public double getMax() {
+        return getPercentile(100);
+    }
+
+    /**
+     * Print the number of frames and their mean, median, 99th percentile and longest times.
+     *
+     * @param out
+     */
+    public void print(PrintStream out) {
+        double mean = getMean();
+        out.printf("%d frames: mean %.2f ms (%.1f fps), p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                myCount, mean, mean > 0 ? 1000 / mean : 0, getPercentile(50),
+                getPercentile(99), getMax());
+    }
+}
@@ -17,7 +17,7 @@ import unsw.graphics.geometry.Point2D;
  */
 public class Matrix3 {
     // Matrix is stored in column-major order to match OpenGL
-    private float[] values;
+    private final float[] values;
     
     /**
      * Construct a matrix from the given flat array of values.
@@ -29,6 +29,16 @@ public class Matrix3 {
         this.values = Arrays.copyOf(values, 9);
     }
     
+    /**
+     * Wrap the given array without copying it. Only for use on arrays that are never modified
+     * after construction.
+     * @param values The values for the matrix in column-major order.
+     * @param copy Ignored. Distinguishes this constructor from the public one.
+     */
+    private Matrix3(float[] values, boolean copy) {
+        this.values = values;
+    }
+    
     /**
      * Create an identity matrix.
      */
@@ -38,7 +48,7 @@ public class Matrix3 {
             0, 1, 0, // j
             0, 0, 1  // phi
         };
-        return new Matrix3(values);
+        return new Matrix3(values, false);
     }
     
     /**
@@ -53,7 +63,7 @@ public class Matrix3 {
             0, 1, 0, // j
             x, y, 1  // phi
         };
-        return new Matrix3(values);
+        return new Matrix3(values, false);
     }
     
     /**
@@ -78,7 +88,7 @@ public class Matrix3 {
             (float) -Math.sin(radians), (float) Math.cos(radians), 0, // j
             0, 0, 1  // phi
         };
-        return new Matrix3(values);
+        return new Matrix3(values, false);
     }
     
     /**
@@ -93,7 +103,7 @@ public class Matrix3 {
             0, y, 0, // j
             0, 0, 1  // phi
         };
-        return new Matrix3(values);
+        return new Matrix3(values, false);
     }
     
     /**
@@ -107,7 +117,7 @@ public class Matrix3 {
             h, 1, 0, // j
             0, 0, 1  // phi
         };
-        return new Matrix3(values);
+        return new Matrix3(values, false);
     }
     
     /**
@@ -121,7 +131,7 @@ public class Matrix3 {
             0, 1, 0, // j
             0, 0, 1  // phi
         };
-        return new Matrix3(values);
+        return new Matrix3(values, false);
     }
     
     @Override
@@ -143,41 +153,117 @@ public class Matrix3 {
      */
     public Matrix3 multiply(Matrix3 mat) {
         float[] r = new float[9];
-        for (int x = 0; x < 3; x++) {
-            for (int y = 0; y < 3; y++) {
-                r[x*3 + y] = getRow(y).dotp(mat.getColumn(x));
-            }
-        }
-        return new Matrix3(r);
+        multiply(values, 0, mat.values, 0, r, 0);
+        return new Matrix3(r, false);
     }
     
     /**
-     * Multiply this matrix by the given (column) vector.
+     * Multiply this matrix by the given matrix, writing the result into dst (in column-major 
+     * order) starting at the given offset. Unlike multiply(), this does not allocate.
      * @param mat
+     * @param dst
+     * @param offset
+     */
+    public void multiplyInto(Matrix3 mat, float[] dst, int offset) {
+        multiply(values, 0, mat.values, 0, dst, offset);
+    }
+    
+    /**
+     * Multiply the column-major 3x3 matrix a by the column-major 3x3 matrix b, storing the result 
+     * in dst. All the arguments are read before anything is written so dst may be the same array 
+     * as a or b.
+     * 
+     * @param a
+     * @param aOff The index of the first value of a
+     * @param b
+     * @param bOff The index of the first value of b
+     * @param dst
+     * @param dstOff The index to write the first value of the result to
+     */
+    public static void multiply(float[] a, int aOff, float[] b, int bOff, float[] dst, 
+            int dstOff) {
+        float a00 = a[aOff],     a10 = a[aOff + 1], a20 = a[aOff + 2];
+        float a01 = a[aOff + 3], a11 = a[aOff + 4], a21 = a[aOff + 5];
+        float a02 = a[aOff + 6], a12 = a[aOff + 7], a22 = a[aOff + 8];
+        
+        float b00 = b[bOff],     b10 = b[bOff + 1], b20 = b[bOff + 2];
+        float b01 = b[bOff + 3], b11 = b[bOff + 4], b21 = b[bOff + 5];
+        float b02 = b[bOff + 6], b12 = b[bOff + 7], b22 = b[bOff + 8];
+        
+        // i
+        dst[dstOff]     = a00*b00 + a01*b10 + a02*b20;
+        dst[dstOff + 1] = a10*b00 + a11*b10 + a12*b20;
+        dst[dstOff + 2] = a20*b00 + a21*b10 + a22*b20;
+        // j
+        dst[dstOff + 3] = a00*b01 + a01*b11 + a02*b21;
+        dst[dstOff + 4] = a10*b01 + a11*b11 + a12*b21;
+        dst[dstOff + 5] = a20*b01 + a21*b11 + a22*b21;
+        // phi
+        dst[dstOff + 6] = a00*b02 + a01*b12 + a02*b22;
+        dst[dstOff + 7] = a10*b02 + a11*b12 + a12*b22;
+        dst[dstOff + 8] = a20*b02 + a21*b12 + a22*b22;
+    }
+    
+    /**
+     * Equivalent to multiply(Matrix3.translation(x, y)), but without creating the intermediate 
+     * matrix. Only the phi column changes.
+     * @param x
+     * @param y
      * @return
      */
-    public Vector3 multiply(Vector3 v) {
-        float[] r = new float[3];
-        for (int y = 0; y < 3; y++) {
-            r[y] = getRow(y).dotp(v);
-        }
-        return new Vector3(r);
+    public Matrix3 multiplyTranslation(float x, float y) {
+        float[] r = Arrays.copyOf(values, 9);
+        r[6] = values[0]*x + values[3]*y + values[6];
+        r[7] = values[1]*x + values[4]*y + values[7];
+        r[8] = values[2]*x + values[5]*y + values[8];
+        return new Matrix3(r, false);
     }
     
-    private Vector3 getColumn(int x) {
-        float[] vec = new float[3];
+    /**
+     * Equivalent to multiply(Matrix3.rotation(degrees)), but without creating the intermediate 
+     * matrix.
+     * @param degrees
+     * @return
+     */
+    public Matrix3 multiplyRotation(float degrees) {
+        double radians = Math.toRadians(degrees);
+        float c = (float) Math.cos(radians);
+        float s = (float) Math.sin(radians);
+        float[] r = Arrays.copyOf(values, 9);
         for (int y = 0; y < 3; y++) {
-            vec[y] = values[x*3 + y];
+            float i = values[y], j = values[3 + y];
+            r[y] = c*i + s*j;
+            r[3 + y] = -s*i + c*j;
         }
-        return new Vector3(vec);
+        return new Matrix3(r, false);
     }
     
-    private Vector3 getRow(int y) {
-        float[] vec = new float[3];
-        for (int x = 0; x < 3; x++) {
-            vec[x] = values[x*3 + y];
+    /**
+     * Equivalent to multiply(Matrix3.scale(x, y)), but without creating the intermediate matrix.
+     * @param x
+     * @param y
+     * @return
+     */
+    public Matrix3 multiplyScale(float x, float y) {
+        float[] r = Arrays.copyOf(values, 9);
+        for (int row = 0; row < 3; row++) {
+            r[row] *= x;
+            r[3 + row] *= y;
         }
-        return new Vector3(vec);
+        return new Matrix3(r, false);
+    }
+    
+    /**
+     * Multiply this matrix by the given (column) vector.
+     * @param mat
+     * @return
+     */
+    public Vector3 multiply(Vector3 v) {
+        float x = v.getX(), y = v.getY(), z = v.getZ();
+        return new Vector3(
+                values[0]*x + values[3]*y + values[6]*z,
+                values[1]*x + values[4]*y + values[7]*z,
+                values[2]*x + values[5]*y + values[8]*z);
     }
 
     /**
@@ -187,5 +273,15 @@ public class Matrix3 {
     public float[] getValues() {
         return Arrays.copyOf(values, 9);
     }
+    
+    /**
+     * Copy the values stored in this matrix in column-major order into dst, starting at the 
+     * given offset. Unlike getValues(), this does not allocate.
+     * @param dst
+     * @param offset
+     */
+    public void getValues(float[] dst, int offset) {
+        System.arraycopy(values, 0, dst, offset, 9);
+    }
 
 }
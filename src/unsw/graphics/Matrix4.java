@@ -29,6 +29,16 @@ public class Matrix4 {
         this.values = Arrays.copyOf(values, 16);
     }
     
+    /**
+     * Wrap the given array without copying it. Only for use on arrays that are never modified
+     * after construction.
+     * @param values The values for the matrix in column-major order.
+     * @param copy Ignored. Distinguishes this constructor from the public one.
+     */
+    private Matrix4(float[] values, boolean copy) {
+        this.values = values;
+    }
+    
     /**
      * Create an identity matrix.
      */
@@ -39,7 +49,7 @@ public class Matrix4 {
             0, 0, 1, 0, // k
             0, 0, 0, 1  // phi
         };
-        return new Matrix4(values);
+        return new Matrix4(values, false);
     }
     
     /**
@@ -55,7 +65,7 @@ public class Matrix4 {
             0, 0, 1, 0, // k
             x, y, z, 1  // phi
         };
-        return new Matrix4(values);
+        return new Matrix4(values, false);
     }
     
     /**
@@ -81,7 +91,7 @@ public class Matrix4 {
             0, (float) -Math.sin(radians), (float) Math.cos(radians), 0, // k
             0, 0, 0, 1                                                   // phi
         };
-        return new Matrix4(values);
+        return new Matrix4(values, false);
     }
     
     
@@ -98,7 +108,7 @@ public class Matrix4 {
             (float) Math.sin(radians), 0, (float) Math.cos(radians), 0,  // k
             0, 0, 0, 1                                                   // phi
         };
-        return new Matrix4(values);
+        return new Matrix4(values, false);
     }
     
     
@@ -115,7 +125,7 @@ public class Matrix4 {
             0, 0, 1, 0,                                                  // k
             0, 0, 0, 1                                                   // phi
         };
-        return new Matrix4(values);
+        return new Matrix4(values, false);
     }
     
     /**
@@ -131,7 +141,7 @@ public class Matrix4 {
             0, 0, z, 0, // k
             0, 0, 0, 1  // phi
         };
-        return new Matrix4(values);
+        return new Matrix4(values, false);
     }
     
     /**
@@ -152,7 +162,7 @@ public class Matrix4 {
             0, 0, -2/(far-near), 0,                                                           // k
             -(right+left)/(right-left), -(top+bottom)/(top-bottom), -(far+near)/(far-near), 1 // phi
         };
-        return new Matrix4(values);
+        return new Matrix4(values, false);
     }
     
     /**
@@ -173,7 +183,7 @@ public class Matrix4 {
             (right+left)/(right-left), (top+bottom)/(top-bottom), -(far+near)/(far-near), -1, // k
             0, 0, -2*far*near/(far-near), 0                                                   // phi
         };
-        return new Matrix4(values);
+        return new Matrix4(values, false);
     }
     
     /**
@@ -210,41 +220,171 @@ public class Matrix4 {
      */
     public Matrix4 multiply(Matrix4 mat) {
         float[] r = new float[16];
-        for (int x = 0; x < 4; x++) {
-            for (int y = 0; y < 4; y++) {
-                r[x*4 + y] = getRow(y).dotp(mat.getColumn(x));
-            }
-        }
-        return new Matrix4(r);
+        multiply(values, 0, mat.values, 0, r, 0);
+        return new Matrix4(r, false);
     }
     
     /**
-     * Multiply this matrix by the given (column) vector.
+     * Multiply this matrix by the given matrix, writing the result into dst (in column-major 
+     * order) starting at the given offset. Unlike multiply(), this does not allocate.
      * @param mat
+     * @param dst
+     * @param offset
+     */
+    public void multiplyInto(Matrix4 mat, float[] dst, int offset) {
+        multiply(values, 0, mat.values, 0, dst, offset);
+    }
+    
+    /**
+     * Multiply the column-major 4x4 matrix a by the column-major 4x4 matrix b, storing the result 
+     * in dst. All the arguments are read before anything is written so dst may be the same array 
+     * as a or b.
+     * 
+     * @param a
+     * @param aOff The index of the first value of a
+     * @param b
+     * @param bOff The index of the first value of b
+     * @param dst
+     * @param dstOff The index to write the first value of the result to
+     */
+    public static void multiply(float[] a, int aOff, float[] b, int bOff, float[] dst, 
+            int dstOff) {
+        float a00 = a[aOff],      a10 = a[aOff + 1],  a20 = a[aOff + 2],  a30 = a[aOff + 3];
+        float a01 = a[aOff + 4],  a11 = a[aOff + 5],  a21 = a[aOff + 6],  a31 = a[aOff + 7];
+        float a02 = a[aOff + 8],  a12 = a[aOff + 9],  a22 = a[aOff + 10], a32 = a[aOff + 11];
+        float a03 = a[aOff + 12], a13 = a[aOff + 13], a23 = a[aOff + 14], a33 = a[aOff + 15];
+        
+        float b00 = b[bOff],      b10 = b[bOff + 1],  b20 = b[bOff + 2],  b30 = b[bOff + 3];
+        float b01 = b[bOff + 4],  b11 = b[bOff + 5],  b21 = b[bOff + 6],  b31 = b[bOff + 7];
+        float b02 = b[bOff + 8],  b12 = b[bOff + 9],  b22 = b[bOff + 10], b32 = b[bOff + 11];
+        float b03 = b[bOff + 12], b13 = b[bOff + 13], b23 = b[bOff + 14], b33 = b[bOff + 15];
+        
+        // i
+        dst[dstOff]      = a00*b00 + a01*b10 + a02*b20 + a03*b30;
+        dst[dstOff + 1]  = a10*b00 + a11*b10 + a12*b20 + a13*b30;
+        dst[dstOff + 2]  = a20*b00 + a21*b10 + a22*b20 + a23*b30;
+        dst[dstOff + 3]  = a30*b00 + a31*b10 + a32*b20 + a33*b30;
+        // j
+        dst[dstOff + 4]  = a00*b01 + a01*b11 + a02*b21 + a03*b31;
+        dst[dstOff + 5]  = a10*b01 + a11*b11 + a12*b21 + a13*b31;
+        dst[dstOff + 6]  = a20*b01 + a21*b11 + a22*b21 + a23*b31;
+        dst[dstOff + 7]  = a30*b01 + a31*b11 + a32*b21 + a33*b31;
+        // k
+        dst[dstOff + 8]  = a00*b02 + a01*b12 + a02*b22 + a03*b32;
+        dst[dstOff + 9]  = a10*b02 + a11*b12 + a12*b22 + a13*b32;
+        dst[dstOff + 10] = a20*b02 + a21*b12 + a22*b22 + a23*b32;
+        dst[dstOff + 11] = a30*b02 + a31*b12 + a32*b22 + a33*b32;
+        // phi
+        dst[dstOff + 12] = a00*b03 + a01*b13 + a02*b23 + a03*b33;
+        dst[dstOff + 13] = a10*b03 + a11*b13 + a12*b23 + a13*b33;
+        dst[dstOff + 14] = a20*b03 + a21*b13 + a22*b23 + a23*b33;
+        dst[dstOff + 15] = a30*b03 + a31*b13 + a32*b23 + a33*b33;
+    }
+    
+    /**
+     * Equivalent to multiply(Matrix4.translation(x, y, z)), but without creating the 
+     * intermediate matrix. Only the phi column changes.
+     * @param x
+     * @param y
+     * @param z
      * @return
      */
-    public Vector4 multiply(Vector4 v) {
-        float[] r = new float[4];
+    public Matrix4 multiplyTranslation(float x, float y, float z) {
+        float[] r = Arrays.copyOf(values, 16);
+        r[12] = values[0]*x + values[4]*y + values[8]*z  + values[12];
+        r[13] = values[1]*x + values[5]*y + values[9]*z  + values[13];
+        r[14] = values[2]*x + values[6]*y + values[10]*z + values[14];
+        r[15] = values[3]*x + values[7]*y + values[11]*z + values[15];
+        return new Matrix4(r, false);
+    }
+    
+    /**
+     * Equivalent to multiply(Matrix4.rotationX(degrees)), but without creating the intermediate
+     * matrix.
+     * @param degrees
+     * @return
+     */
+    public Matrix4 multiplyRotationX(float degrees) {
+        double radians = Math.toRadians(degrees);
+        float c = (float) Math.cos(radians);
+        float s = (float) Math.sin(radians);
+        float[] r = Arrays.copyOf(values, 16);
+        for (int y = 0; y < 4; y++) {
+            float j = values[4 + y], k = values[8 + y];
+            r[4 + y] = c*j + s*k;
+            r[8 + y] = -s*j + c*k;
+        }
+        return new Matrix4(r, false);
+    }
+    
+    /**
+     * Equivalent to multiply(Matrix4.rotationY(degrees)), but without creating the intermediate
+     * matrix.
+     * @param degrees
+     * @return
+     */
+    public Matrix4 multiplyRotationY(float degrees) {
+        double radians = Math.toRadians(degrees);
+        float c = (float) Math.cos(radians);
+        float s = (float) Math.sin(radians);
+        float[] r = Arrays.copyOf(values, 16);
         for (int y = 0; y < 4; y++) {
-            r[y] = getRow(y).dotp(v);
+            float i = values[y], k = values[8 + y];
+            r[y] = c*i - s*k;
+            r[8 + y] = s*i + c*k;
         }
-        return new Vector4(r);
+        return new Matrix4(r, false);
     }
     
-    private Vector4 getColumn(int x) {
-        float[] vec = new float[4];
+    /**
+     * Equivalent to multiply(Matrix4.rotationZ(degrees)), but without creating the intermediate
+     * matrix.
+     * @param degrees
+     * @return
+     */
+    public Matrix4 multiplyRotationZ(float degrees) {
+        double radians = Math.toRadians(degrees);
+        float c = (float) Math.cos(radians);
+        float s = (float) Math.sin(radians);
+        float[] r = Arrays.copyOf(values, 16);
         for (int y = 0; y < 4; y++) {
-            vec[y] = values[x*4 + y];
+            float i = values[y], j = values[4 + y];
+            r[y] = c*i + s*j;
+            r[4 + y] = -s*i + c*j;
         }
-        return new Vector4(vec);
+        return new Matrix4(r, false);
     }
     
-    private Vector4 getRow(int y) {
-        float[] vec = new float[4];
-        for (int x = 0; x < 4; x++) {
-            vec[x] = values[x*4 + y];
+    /**
+     * Equivalent to multiply(Matrix4.scale(x, y, z)), but without creating the intermediate
+     * matrix.
+     * @param x
+     * @param y
+     * @param z
+     * @return
+     */
+    public Matrix4 multiplyScale(float x, float y, float z) {
+        float[] r = Arrays.copyOf(values, 16);
+        for (int row = 0; row < 4; row++) {
+            r[row] *= x;
+            r[4 + row] *= y;
+            r[8 + row] *= z;
         }
-        return new Vector4(vec);
+        return new Matrix4(r, false);
+    }
+    
+    /**
+     * Multiply this matrix by the given (column) vector.
+     * @param mat
+     * @return
+     */
+    public Vector4 multiply(Vector4 v) {
+        float x = v.getX(), y = v.getY(), z = v.getZ(), w = v.getW();
+        return new Vector4(
+                values[0]*x + values[4]*y + values[8]*z  + values[12]*w,
+                values[1]*x + values[5]*y + values[9]*z  + values[13]*w,
+                values[2]*x + values[6]*y + values[10]*z + values[14]*w,
+                values[3]*x + values[7]*y + values[11]*z + values[15]*w);
     }
 
     /**
@@ -254,5 +394,15 @@ public class Matrix4 {
     public float[] getValues() {
         return Arrays.copyOf(values, 16);
     }
+    
+    /**
+     * Copy the values stored in this matrix in column-major order into dst, starting at the 
+     * given offset. Unlike getValues(), this does not allocate.
+     * @param dst
+     * @param offset
+     */
+    public void getValues(float[] dst, int offset) {
+        System.arraycopy(values, 0, dst, offset, 16);
+    }
 
 }
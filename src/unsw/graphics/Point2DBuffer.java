@@ -3,7 +3,6 @@
  */
 package unsw.graphics;
 
-import java.nio.Buffer;
 import java.nio.FloatBuffer;
 import java.util.List;
 
@@ -35,6 +34,18 @@ public class Point2DBuffer {
         floatBuffer = GLBuffers.newDirectFloatBuffer(capacity * 2);
     }
 
+    /**
+     * Construct a buffer backed by the given buffer of x-y pairs. The buffer is
+     * used directly, not copied, so it should be a direct buffer in native
+     * byte order if it is to be passed to OpenGL.
+     * 
+     * @param buffer
+     */
+    public Point2DBuffer(FloatBuffer buffer) {
+        this.capacity = buffer.capacity() / 2;
+        floatBuffer = buffer;
+    }
+
     public Point2DBuffer(List<Point2D> points) {
         this(points.size());
         for (int i = 0; i < capacity; i++) {
@@ -70,7 +81,7 @@ public class Point2DBuffer {
         }
     }
 
-    public Buffer getBuffer() {
+    public FloatBuffer getBuffer() {
         return floatBuffer;
     }
 
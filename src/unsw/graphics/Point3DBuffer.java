@@ -3,7 +3,6 @@
  */
 package unsw.graphics;
 
-import java.nio.Buffer;
 import java.nio.FloatBuffer;
 import java.util.List;
 
@@ -35,6 +34,18 @@ public class Point3DBuffer {
         floatBuffer = GLBuffers.newDirectFloatBuffer(capacity * 3);
     }
 
+    /**
+     * Construct a buffer backed by the given buffer of x-y-z triples. The buffer is
+     * used directly, not copied, so it should be a direct buffer in native
+     * byte order if it is to be passed to OpenGL.
+     * 
+     * @param buffer
+     */
+    public Point3DBuffer(FloatBuffer buffer) {
+        this.capacity = buffer.capacity() / 3;
+        floatBuffer = buffer;
+    }
+
     public Point3DBuffer(List<Point3D> points) {
         this(points.size());
         for (int i = 0; i < capacity; i++) {
@@ -71,7 +82,7 @@ public class Point3DBuffer {
         }
     }
 
-    public Buffer getBuffer() {
+    public FloatBuffer getBuffer() {
         return floatBuffer;
     }
 
@@ -0,0 +1,170 @@
+/**
+ *
+ */
+package unsw.graphics;
+
+/**
+ * How an Application runs: how fast it animates, whether it waits for vsync, how many samples
+ * it uses for anti-aliasing, whether its OpenGL context is a debug context, and how many frames
+ * it draws before it exits.
+ *
+ * The defaults are what every application used before this existed: 60 frames a second, the
+ * driver's own vsync setting, 8 samples and a debug context, running until the window is
+ * closed. They can be changed with setters before the application is started, or on the
+ * command line with system properties, so any application can be run as a benchmark without
+ * changing its code. For example
+ *
+ *   java -Dunsw.fps=0 -Dunsw.vsync=false -Dunsw.debug=false -Dunsw.frames=1000 ...
+ *
+ * draws 1000 frames as fast as it can without a debug context, then prints the frame times and
+ * exits. The properties are:
+ *   - unsw.fps: the target frames per second, or 0 for as fast as possible
+ *   - unsw.vsync: true or false, or unset to leave it to the driver
+ *   - unsw.samples: the number of samples per pixel, or 0 to turn off multisampling
+ *   - unsw.debug: true or false
+ *   - unsw.frames: the number of frames to time before exiting, or 0 to run until closed
+ *
+ * @author Robert Clifton-Everest
+ *
+ */
+public class RunConfig {
+
+    private int myTargetFPS = 60;
+
+    private Boolean myVsync = null;
+
+    private int mySamples = 8;
+
+    private boolean amDebug = true;
+
+    private int myFrames = 0;
+
+    /**
+     * Create a configuration with the defaults.
+     */
+    public RunConfig() {
+    }
+
+    /**
+     * Create a configuration with the defaults, changed by any of the system properties that
+     * are set.
+     *
+     * @return
+     */
+    public static RunConfig fromSystemProperties() {
+        RunConfig config = new RunConfig();
+        config.setTargetFPS(Integer.getInteger("unsw.fps", config.getTargetFPS()));
+        String vsync = System.getProperty("unsw.vsync");
+        if (vsync != null)
+            config.setVsync(Boolean.valueOf(vsync));
+        config.setSamples(Integer.getInteger("unsw.samples", config.getSamples()));
+        String debug = System.getProperty("unsw.debug");
+        if (debug != null)
+            config.setDebug(Boolean.parseBoolean(debug));
+        config.setFrames(Integer.getInteger("unsw.frames", config.getFrames()));
+        return config;
+    }
+
+    /**
+     * The number of frames a second the application tries to draw, or 0 if it draws them as
+     * fast as it can.
+     *
+     * @return
+     */
+    public int getTargetFPS() {
+        return myTargetFPS;
+    }
+
+    /**
+     * Set the number of frames a second to draw, or 0 to draw them as fast as possible. Even
+     * then, with vsync on no more frames are drawn than the display shows.
+     *
+     * @param fps
+     */
+    public void setTargetFPS(int fps) {
+        if (fps < 0)
+            throw new IllegalArgumentException("Target FPS must not be negative");
+        myTargetFPS = fps;
+    }
+
+    /**
+     * Whether the buffers are swapped in time with the display, or null to leave it to the
+     * driver.
+     *
+     * @return
+     */
+    public Boolean getVsync() {
+        return myVsync;
+    }
+
+    /**
+     * Turn vsync on or off, or leave it to the driver with null.
+     *
+     * @param vsync
+     */
+    public void setVsync(Boolean vsync) {
+        myVsync = vsync;
+    }
+
+    /**
+     * The number of samples per pixel, or 0 if multisampling is off.
+     *
+     * @return
+     */
+    public int getSamples() {
+        return mySamples;
+    }
+
+    /**
+     * Set the number of samples per pixel, or 0 to turn multisampling off.
+     *
+     * @param samples
+     */
+    public void setSamples(int samples) {
+        if (samples < 0)
+            throw new IllegalArgumentException("Samples must not be negative");
+        mySamples = samples;
+    }
+
+    /**
+     * Whether the OpenGL context is a debug context. These are REALLY USEFUL while writing an
+     * application, but can make every call slower.
+     *
+     * @return
+     */
+    public boolean isDebug() {
+        return amDebug;
+    }
+
+    public void setDebug(boolean debug) {
+        amDebug = debug;
+    }
+
+    /**
+     * The number of frames to time before exiting, or 0 to run until the window is closed.
+     *
+     * @return
+     */
+    public int getFrames() {
+        return myFrames;
+    }
+
+    /**
+     * Set the number of frames to time before printing the frame times and exiting, or 0 to
+     * run until the window is closed.
+     *
+     * @param frames
+     */
+    public void setFrames(int frames) {
+        if (frames < 0)
+            throw new IllegalArgumentException("Frames must not be negative");
+        myFrames = frames;
+    }
+
+    @Override
+    public String toString() {
+        return "fps=" + (myTargetFPS == 0 ? "uncapped" : myTargetFPS)
+                + " vsync=" + (myVsync == null ? "default" : myVsync)
+                + " samples=" + mySamples + " debug=" + amDebug;
+    }
+}
@@ -4,6 +4,8 @@
 package unsw.graphics;
 
 import java.awt.Color;
+import java.util.HashMap;
+import java.util.Map;
 
 import com.jogamp.opengl.GL3;
 import com.jogamp.opengl.util.glsl.ShaderCode;
@@ -25,6 +27,9 @@ import unsw.graphics.geometry.Point3D;
  *   - "uniform mat4 model_matrix"
  *   - "uniform mat4 view_matrix"
  *   - "uniform mat4 proj_matrix"
+ * Shaders used with TriangleMesh.drawInstanced() should additionally take
+ * the per-instance transform as "in mat4 instance_matrix" and may take a 
+ * per-instance color as "in vec4 instance_color".
  * 
  * @author Robert Clifton-Everest
  *
@@ -57,8 +62,39 @@ public class Shader {
      * The velocity attribute (NOTE: Can't be used in conjunction with POSITION)
      */
     public static final int VELOCITY = 0;
+    
+    /**
+     * The per-instance model matrix attribute used for instanced drawing. A
+     * mat4 attribute occupies four consecutive locations, one per column, so
+     * this uses locations 4 to 7.
+     */
+    public static final int INSTANCE_MATRIX = 4;
+    
+    /**
+     * The per-instance color attribute used for instanced drawing.
+     */
+    public static final int INSTANCE_COLOR = 8;
 
     private int id;
+    
+    /**
+     * The locations of all the active uniforms in this shader, keyed by name. Filled in once when 
+     * the program is linked.
+     */
+    private Map<String, Integer> uniformLocations;
+    
+    /**
+     * The name the shader most recently passed to glUseProgram() through use() is attached to
+     * its GLContext under. The static setters look up uniform locations in this shader rather 
+     * than querying OpenGL. It is kept per context, as each has its own current program.
+     */
+    private static final String CURRENT = Shader.class.getName() + ".current";
+    
+    /**
+     * Scratch space for uploading matrices without allocating. Only ever used on the OpenGL 
+     * thread.
+     */
+    private static final float[] MATRIX_SCRATCH = new float[16];
 
     /**
      * Construct a shader in the given OpenGL context.
@@ -93,9 +129,13 @@ public class Shader {
         gl.glBindAttribLocation(id, TEX_COORD, "texCoord");
         gl.glBindAttribLocation(id, COLOR, "color");
         gl.glBindAttribLocation(id, VELOCITY, "velocity");
+        gl.glBindAttribLocation(id, INSTANCE_MATRIX, "instance_matrix");
+        gl.glBindAttribLocation(id, INSTANCE_COLOR, "instance_color");
         
         shaderProgram.link(gl, System.err);
         
+        uniformLocations = findUniforms(gl, id);
+        
         if (gl.glGetAttribLocation(id, "position") != -1)
             gl.glEnableVertexAttribArray(POSITION);
         if (gl.glGetAttribLocation(id, "normal") != -1)
@@ -112,12 +152,15 @@ public class Shader {
     /**
      * "Use" this shader in the given context.
      * 
-     * This just calls glUseProgram() with this shader.
+     * This just calls glUseProgram() with this shader. Programs should only be changed through
+     * this method, or the static setters will look up uniforms in the wrong shader. Code that 
+     * calls glUseProgram() itself must call {@link #forgetCurrent(GL3)} afterwards.
      * 
      * @param gl
      */
     public void use(GL3 gl) {
         gl.glUseProgram(id);
+        gl.getContext().attachObject(CURRENT, this);
     }
 
     /**
@@ -129,6 +172,8 @@ public class Shader {
      */
     public void destroy(GL3 gl) {
         gl.glDeleteProgram(id);
+        if (getCurrent(gl) == this)
+            forgetCurrent(gl);
     }
 
     /**
@@ -140,6 +185,101 @@ public class Shader {
         return id;
     }
 
+    /**
+     * Get the location of the named uniform variable in this shader. Returns -1 if the shader 
+     * has no active uniform with that name, in which case OpenGL ignores any attempt to set it.
+     * 
+     * @param name
+     * @return
+     */
+    public int getUniformLocation(String name) {
+        Integer loc = uniformLocations.get(name);
+        return loc == null ? -1 : loc;
+    }
+    
+    /**
+     * Get a handle to the named uniform variable in this shader. The handle can be kept and 
+     * reused to set the uniform without looking it up by name each time.
+     * 
+     * @param name
+     * @return
+     */
+    public Uniform getUniform(String name) {
+        return new Uniform(this, getUniformLocation(name));
+    }
+    
+    /**
+     * Get the shader most recently made current in the given context by calling use(), or null
+     * if there isn't one.
+     * 
+     * @param gl
+     * @return
+     */
+    public static Shader getCurrent(GL3 gl) {
+        return (Shader) gl.getContext().getAttachedObject(CURRENT);
+    }
+    
+    /**
+     * Forget which shader is current in the given context, so uniform locations are looked up
+     * in whatever program OpenGL has current until use() is called again. Call this after 
+     * changing the program without use(), or when a context is (re)initialised.
+     * 
+     * @param gl
+     */
+    public static void forgetCurrent(GL3 gl) {
+        gl.getContext().attachObject(CURRENT, null);
+    }
+    
+    /**
+     * Enumerate the active uniforms of the given (linked) program.
+     * 
+     * @param gl
+     * @param program
+     * @return
+     */
+    private static Map<String, Integer> findUniforms(GL3 gl, int program) {
+        Map<String, Integer> locations = new HashMap<String, Integer>();
+        
+        int[] count = new int[1];
+        gl.glGetProgramiv(program, GL3.GL_ACTIVE_UNIFORMS, count, 0);
+        int[] maxLength = new int[1];
+        gl.glGetProgramiv(program, GL3.GL_ACTIVE_UNIFORM_MAX_LENGTH, maxLength, 0);
+        
+        byte[] nameBytes = new byte[Math.max(maxLength[0], 1)];
+        int[] length = new int[1];
+        int[] size = new int[1];
+        int[] type = new int[1];
+        for (int i = 0; i < count[0]; i++) {
+            gl.glGetActiveUniform(program, i, nameBytes.length, length, 0, size, 0, type, 0,
+                    nameBytes, 0);
+            String name = new String(nameBytes, 0, length[0]);
+            int loc = gl.glGetUniformLocation(program, name);
+            locations.put(name, loc);
+            // Arrays are reported as "name[0]", but are also accessible as just "name"
+            if (name.endsWith("[0]"))
+                locations.put(name.substring(0, name.length() - 3), loc);
+        }
+        return locations;
+    }
+    
+    /**
+     * Look up the location of the named uniform in the current shader. If the current program
+     * was not set through use(), this falls back to asking OpenGL.
+     * 
+     * @param gl
+     * @param name
+     * @return
+     */
+    private static int currentLocation(GL3 gl, String name) {
+        Shader current = getCurrent(gl);
+        if (current != null)
+            return current.getUniformLocation(name);
+        
+        int ids[] = new int[1];
+        gl.glGetIntegerv(GL3.GL_CURRENT_PROGRAM, ids, 0);
+        return gl.glGetUniformLocation(ids[0], name);
+    }
+
     /**
      * Sets the model matrix of the currently loaded shader.
      * 
@@ -147,10 +287,9 @@ public class Shader {
      * @param mat
      */
     public static void setModelMatrix(GL3 gl, Matrix3 mat) {
-        int ids[] = new int[1];
-        gl.glGetIntegerv(GL3.GL_CURRENT_PROGRAM, ids, 0);
-        int modelLoc = gl.glGetUniformLocation(ids[0], "model_matrix");
-        gl.glUniformMatrix3fv(modelLoc, 1, false, mat.getValues(), 0);
+        int modelLoc = currentLocation(gl, "model_matrix");
+        mat.getValues(MATRIX_SCRATCH, 0);
+        gl.glUniformMatrix3fv(modelLoc, 1, false, MATRIX_SCRATCH, 0);
     }
 
     /**
@@ -160,10 +299,9 @@ public class Shader {
      * @param mat
      */
     public static void setModelMatrix(GL3 gl, Matrix4 mat) {
-        int ids[] = new int[1];
-        gl.glGetIntegerv(GL3.GL_CURRENT_PROGRAM, ids, 0);
-        int modelLoc = gl.glGetUniformLocation(ids[0], "model_matrix");
-        gl.glUniformMatrix4fv(modelLoc, 1, false, mat.getValues(), 0);
+        int modelLoc = currentLocation(gl, "model_matrix");
+        mat.getValues(MATRIX_SCRATCH, 0);
+        gl.glUniformMatrix4fv(modelLoc, 1, false, MATRIX_SCRATCH, 0);
     }
 
     /**
@@ -173,10 +311,9 @@ public class Shader {
      * @param mat
      */
     public static void setViewMatrix(GL3 gl, Matrix3 mat) {
-        int ids[] = new int[1];
-        gl.glGetIntegerv(GL3.GL_CURRENT_PROGRAM, ids, 0);
-        int viewLoc = gl.glGetUniformLocation(ids[0], "view_matrix");
-        gl.glUniformMatrix3fv(viewLoc, 1, false, mat.getValues(), 0);
+        int viewLoc = currentLocation(gl, "view_matrix");
+        mat.getValues(MATRIX_SCRATCH, 0);
+        gl.glUniformMatrix3fv(viewLoc, 1, false, MATRIX_SCRATCH, 0);
     }
 
     /**
@@ -186,10 +323,9 @@ public class Shader {
      * @param mat
      */
     public static void setViewMatrix(GL3 gl, Matrix4 mat) {
-        int ids[] = new int[1];
-        gl.glGetIntegerv(GL3.GL_CURRENT_PROGRAM, ids, 0);
-        int viewLoc = gl.glGetUniformLocation(ids[0], "view_matrix");
-        gl.glUniformMatrix4fv(viewLoc, 1, false, mat.getValues(), 0);
+        int viewLoc = currentLocation(gl, "view_matrix");
+        mat.getValues(MATRIX_SCRATCH, 0);
+        gl.glUniformMatrix4fv(viewLoc, 1, false, MATRIX_SCRATCH, 0);
     }
 
     /**
@@ -199,10 +335,9 @@ public class Shader {
      * @param mat
      */
     public static void setProjMatrix(GL3 gl, Matrix4 mat) {
-        int ids[] = new int[1];
-        gl.glGetIntegerv(GL3.GL_CURRENT_PROGRAM, ids, 0);
-        int viewLoc = gl.glGetUniformLocation(ids[0], "proj_matrix");
-        gl.glUniformMatrix4fv(viewLoc, 1, false, mat.getValues(), 0);
+        int viewLoc = currentLocation(gl, "proj_matrix");
+        mat.getValues(MATRIX_SCRATCH, 0);
+        gl.glUniformMatrix4fv(viewLoc, 1, false, MATRIX_SCRATCH, 0);
     }
 
     /**
@@ -223,9 +358,7 @@ public class Shader {
      * @param point3d
      */
     public static void setPoint3D(GL3 gl, String var, Point3D point3d) {
-        int ids[] = new int[1];
-        gl.glGetIntegerv(GL3.GL_CURRENT_PROGRAM, ids, 0);
-        int loc = gl.glGetUniformLocation(ids[0], var);
+        int loc = currentLocation(gl, var);
         gl.glUniform3f(loc, point3d.getX(), point3d.getY(), point3d.getZ());
     }
     
@@ -237,9 +370,7 @@ public class Shader {
      * @param color
      */
     public static void setColor(GL3 gl, String var, Color color) {
-        int ids[] = new int[1];
-        gl.glGetIntegerv(GL3.GL_CURRENT_PROGRAM, ids, 0);
-        int loc = gl.glGetUniformLocation(ids[0], var);
+        int loc = currentLocation(gl, var);
         gl.glUniform3f(loc, color.getRed() / 255f, color.getGreen() / 255f,
                 color.getBlue() / 255f);
     }
@@ -252,9 +383,7 @@ public class Shader {
      * @param color
      */
     public static void setColorWithAlpha(GL3 gl, String var, Color color) {
-        int ids[] = new int[1];
-        gl.glGetIntegerv(GL3.GL_CURRENT_PROGRAM, ids, 0);
-        int loc = gl.glGetUniformLocation(ids[0], var);
+        int loc = currentLocation(gl, var);
         gl.glUniform4f(loc, color.getRed() / 255f, color.getGreen() / 255f,
                 color.getBlue() / 255f, color.getAlpha() / 255f);
     }
@@ -267,16 +396,12 @@ public class Shader {
      * @param f
      */
     public static void setFloat(GL3 gl, String var, float f) {
-        int ids[] = new int[1];
-        gl.glGetIntegerv(GL3.GL_CURRENT_PROGRAM, ids, 0);
-        int loc = gl.glGetUniformLocation(ids[0], var);
+        int loc = currentLocation(gl, var);
         gl.glUniform1f(loc, f);
     }
 
     public static void setInt(GL3 gl, String var, int i) {
-        int ids[] = new int[1];
-        gl.glGetIntegerv(GL3.GL_CURRENT_PROGRAM, ids, 0);
-        int loc = gl.glGetUniformLocation(ids[0], var);
+        int loc = currentLocation(gl, var);
         gl.glUniform1i(loc, i);
     }
 }
@@ -0,0 +1,333 @@
+/**
+ *
+ */
+package unsw.graphics;
+
+import java.awt.Color;
+import java.nio.FloatBuffer;
+import java.util.List;
+
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL3;
+import com.jogamp.opengl.util.GLBuffers;
+
+import unsw.graphics.geometry.Point2D;
+import unsw.graphics.geometry.Polygon2D;
+
+/**
+ * Collects 2D geometry over a frame and draws it in as few draw calls as
+ * possible.
+ *
+ * Instead of setting a model matrix and pen color and issuing a draw call for
+ * every shape, the batch transforms each vertex on the CPU by the shape's
+ * coordinate frame, tags it with a color, and appends it to a streaming
+ * vertex buffer. Filled polygons are turned into triangles and outlines into
+ * line segments so that everything can be drawn with two calls to
+ * glDrawArrays(): one for all the triangles, then one for all the lines.
+ *
+ * Because of this, outlines added to a batch are drawn over every fill in the
+ * same batch, not just the fills added before them. Call flush() to force
+ * anything added so far to be drawn first.
+ *
+ * Usage:
+ * <pre>
+ * batch.init(gl);                // once
+ * ...
+ * batch.begin(gl, viewMatrix);   // every frame
+ * batch.fill(polygon, frame, color);
+ * batch.outline(polygon, frame, color);
+ * batch.end();
+ * ...
+ * batch.destroy(gl);             // once
+ * </pre>
+ *
+ * @author Robert Clifton-Everest
+ *
+ */
+public class SpriteBatch {
+
+    /**
+     * The default number of vertices each of the triangle and line streams can
+     * hold before the batch has to be flushed.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    // Each vertex is an x-y position followed by an r-g-b-a color
+    private static final int FLOATS_PER_VERTEX = 6;
+
+    private static final int STRIDE = FLOATS_PER_VERTEX * Float.BYTES;
+
+    private final int capacity;
+
+    private final FloatBuffer triangles;
+    private int triangleVertices;
+
+    private final FloatBuffer lines;
+    private int lineVertices;
+
+    private Shader shader;
+
+    private int trianglesName;
+    private int linesName;
+    private int trianglesArrayName;
+    private int linesArrayName;
+
+    // Only valid between begin() and end()
+    private GL3 gl;
+    private Matrix3 view;
+    private int drawCalls;
+
+    // Scratch space so that adding shapes doesn't allocate
+    private final float[] matrix = new float[9];
+    private float[] transformed = new float[32];
+
+    /**
+     * Construct a batch with the default capacity.
+     */
+    public SpriteBatch() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Construct a batch that can hold the given number of triangle vertices
+     * (and, separately, line vertices) between flushes.
+     *
+     * @param capacity
+     */
+    public SpriteBatch(int capacity) {
+        this.capacity = capacity;
+        triangles = GLBuffers.newDirectFloatBuffer(capacity * FLOATS_PER_VERTEX);
+        lines = GLBuffers.newDirectFloatBuffer(capacity * FLOATS_PER_VERTEX);
+    }
+
+    /**
+     * Create the shader and buffers used by this batch. Must be called before
+     * the batch is used.
+     *
+     * @param gl
+     */
+    public void init(GL3 gl) {
+        // Creating a shader doesn't change which one is in use
+        shader = new Shader(gl, "shaders/vertex_color_2d.glsl",
+                "shaders/fragment_color_2d.glsl");
+
+        int[] names = new int[2];
+        gl.glGenBuffers(2, names, 0);
+        trianglesName = names[0];
+        linesName = names[1];
+
+        gl.glGenVertexArrays(2, names, 0);
+        trianglesArrayName = names[0];
+        linesArrayName = names[1];
+
+        initVertexArray(gl, trianglesArrayName, trianglesName);
+        initVertexArray(gl, linesArrayName, linesName);
+    }
+
+    private void initVertexArray(GL3 gl, int arrayName, int bufferName) {
+        gl.glBindVertexArray(arrayName);
+        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, bufferName);
+        gl.glBufferData(GL.GL_ARRAY_BUFFER, capacity * STRIDE, null, GL3.GL_STREAM_DRAW);
+        gl.glVertexAttribPointer(Shader.POSITION, 2, GL.GL_FLOAT, false, STRIDE, 0);
+        gl.glEnableVertexAttribArray(Shader.POSITION);
+        gl.glVertexAttribPointer(Shader.COLOR, 4, GL.GL_FLOAT, false, STRIDE,
+                2 * Float.BYTES);
+        gl.glEnableVertexAttribArray(Shader.COLOR);
+        gl.glBindVertexArray(gl.getContext().getDefaultVAO());
+    }
+
+    /**
+     * Start a new batch. Everything added before the matching call to end()
+     * is drawn with the given view matrix.
+     *
+     * @param gl
+     * @param view
+     */
+    public void begin(GL3 gl, Matrix3 view) {
+        this.gl = gl;
+        this.view = view;
+        triangleVertices = 0;
+        lineVertices = 0;
+        drawCalls = 0;
+    }
+
+    /**
+     * Add the given convex polygon, filled with the given color, to the batch.
+     *
+     * @param polygon
+     * @param frame The coordinate frame to draw the polygon in
+     * @param color
+     */
+    public void fill(Polygon2D polygon, CoordFrame2D frame, Color color) {
+        List<Point2D> points = polygon.getPoints();
+        int n = points.size();
+        if (n < 3)
+            return;
+
+        int needed = 3 * (n - 2);
+        reserveTriangles(needed);
+        transform(points, frame);
+
+        float r = color.getRed() / 255f, g = color.getGreen() / 255f;
+        float b = color.getBlue() / 255f, a = color.getAlpha() / 255f;
+
+        // Turn the fan into individual triangles around the first vertex
+        for (int i = 1; i < n - 1; i++) {
+            putVertex(triangles, triangleVertices++, 0, r, g, b, a);
+            putVertex(triangles, triangleVertices++, i, r, g, b, a);
+            putVertex(triangles, triangleVertices++, i + 1, r, g, b, a);
+        }
+    }
+
+    /**
+     * Add the outline of the given polygon, in the given color, to the batch.
+     *
+     * @param polygon
+     * @param frame The coordinate frame to draw the polygon in
+     * @param color
+     */
+    public void outline(Polygon2D polygon, CoordFrame2D frame, Color color) {
+        List<Point2D> points = polygon.getPoints();
+        int n = points.size();
+        if (n < 2)
+            return;
+
+        reserveLines(2 * n);
+        transform(points, frame);
+
+        float r = color.getRed() / 255f, g = color.getGreen() / 255f;
+        float b = color.getBlue() / 255f, a = color.getAlpha() / 255f;
+
+        // A line loop becomes one segment per edge
+        for (int i = 0; i < n; i++) {
+            putVertex(lines, lineVertices++, i, r, g, b, a);
+            putVertex(lines, lineVertices++, (i + 1) % n, r, g, b, a);
+        }
+    }
+
+    /**
+     * Draw everything added to the batch so far and empty it.
+     *
+     * The batch's shader is only used for the duration of the flush. The
+     * shader that was in use beforehand is restored afterwards, so ordinary
+     * drawing can be mixed with batched drawing.
+     */
+    public void flush() {
+        if (triangleVertices == 0 && lineVertices == 0)
+            return;
+
+        Shader previous = Shader.getCurrent(gl);
+        shader.use(gl);
+        Shader.setViewMatrix(gl, view);
+        Shader.setModelMatrix(gl, Matrix3.identity());
+
+        if (triangleVertices > 0) {
+            drawStream(trianglesArrayName, trianglesName, triangles, triangleVertices,
+                    GL.GL_TRIANGLES);
+            triangleVertices = 0;
+        }
+        if (lineVertices > 0) {
+            drawStream(linesArrayName, linesName, lines, lineVertices, GL.GL_LINES);
+            lineVertices = 0;
+        }
+        gl.glBindVertexArray(gl.getContext().getDefaultVAO());
+
+        if (previous != null)
+            previous.use(gl);
+    }
+
+    /**
+     * Finish the batch, drawing anything that remains in it.
+     */
+    public void end() {
+        flush();
+        gl = null;
+        view = null;
+    }
+
+    /**
+     * The OpenGL context given to begin(). Only valid until end() is called.
+     *
+     * @return
+     */
+    public GL3 getGL() {
+        return gl;
+    }
+
+    /**
+     * The number of draw calls issued since begin() was called.
+     *
+     * @return
+     */
+    public int getDrawCalls() {
+        return drawCalls;
+    }
+
+    /**
+     * Destroy the shader and buffers used by this batch.
+     *
+     * @param gl
+     */
+    public void destroy(GL3 gl) {
+        shader.destroy(gl);
+        gl.glDeleteVertexArrays(2, new int[] { trianglesArrayName, linesArrayName }, 0);
+        gl.glDeleteBuffers(2, new int[] { trianglesName, linesName }, 0);
+    }
+
+    private void drawStream(int arrayName, int bufferName, FloatBuffer data, int count,
+            int mode) {
+        gl.glBindVertexArray(arrayName);
+        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, bufferName);
+        // Orphan the previous contents so the driver doesn't have to wait for
+        // the last draw from this buffer to finish before we overwrite it
+        gl.glBufferData(GL.GL_ARRAY_BUFFER, capacity * STRIDE, null, GL3.GL_STREAM_DRAW);
+        gl.glBufferSubData(GL.GL_ARRAY_BUFFER, 0, count * STRIDE, data);
+        gl.glDrawArrays(mode, 0, count);
+        drawCalls++;
+    }
+
+    private void reserveTriangles(int vertices) {
+        if (vertices > capacity)
+            throw new IllegalArgumentException("Shape needs " + vertices
+                    + " vertices but the batch capacity is " + capacity);
+        if (triangleVertices + vertices > capacity)
+            flush();
+    }
+
+    private void reserveLines(int vertices) {
+        if (vertices > capacity)
+            throw new IllegalArgumentException("Shape needs " + vertices
+                    + " vertices but the batch capacity is " + capacity);
+        if (lineVertices + vertices > capacity)
+            flush();
+    }
+
+    /**
+     * Transform the given points by the given frame, storing the results in
+     * the transformed array as x-y pairs.
+     */
+    private void transform(List<Point2D> points, CoordFrame2D frame) {
+        int n = points.size();
+        if (transformed.length < 2 * n)
+            transformed = new float[4 * n];
+
+        frame.getMatrix().getValues(matrix, 0);
+        for (int i = 0; i < n; i++) {
+            Point2D p = points.get(i);
+            float x = p.getX(), y = p.getY();
+            transformed[2*i] = matrix[0]*x + matrix[3]*y + matrix[6];
+            transformed[2*i + 1] = matrix[1]*x + matrix[4]*y + matrix[7];
+        }
+    }
+
+    private void putVertex(FloatBuffer buffer, int index, int point, float r, float g,
+            float b, float a) {
+        int offset = index * FLOATS_PER_VERTEX;
+        buffer.put(offset, transformed[2*point]);
+        buffer.put(offset + 1, transformed[2*point + 1]);
+        buffer.put(offset + 2, r);
+        buffer.put(offset + 3, g);
+        buffer.put(offset + 4, b);
+        buffer.put(offset + 5, a);
+    }
+}
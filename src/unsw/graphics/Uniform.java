@@ -0,0 +1,123 @@
+/**
+ *
+ */
+package unsw.graphics;
+
+import java.awt.Color;
+
+import com.jogamp.opengl.GL3;
+
+import unsw.graphics.geometry.Point3D;
+
+/**
+ * A handle to a uniform variable in a particular shader.
+ *
+ * Handles are obtained with {@link Shader#getUniform(String)}. Holding on to a handle avoids
+ * looking up the uniform by name every time it is set. As with all uniforms in OpenGL, the shader
+ * the handle came from must be the one currently in use when the value is set.
+ *
+ * This class is immutable.
+ *
+ * @author Robert Clifton-Everest
+ *
+ */
+public class Uniform {
+    private Shader shader;
+
+    private int location;
+
+    /**
+     * Scratch space for uploading matrices without allocating. Only ever used on the OpenGL
+     * thread.
+     */
+    private static final float[] MATRIX_SCRATCH = new float[16];
+
+    Uniform(Shader shader, int location) {
+        this.shader = shader;
+        this.location = location;
+    }
+
+    /**
+     * The shader this uniform belongs to.
+     * @return
+     */
+    public Shader getShader() {
+        return shader;
+    }
+
+    /**
+     * The location of this uniform in its shader, or -1 if the shader does not have an active
+     * uniform with the requested name.
+     * @return
+     */
+    public int getLocation() {
+        return location;
+    }
+
+    /**
+     * Set a uniform of type 'mat3'.
+     * @param gl
+     * @param mat
+     */
+    public void set(GL3 gl, Matrix3 mat) {
+        mat.getValues(MATRIX_SCRATCH, 0);
+        gl.glUniformMatrix3fv(location, 1, false, MATRIX_SCRATCH, 0);
+    }
+
+    /**
+     * Set a uniform of type 'mat4'.
+     * @param gl
+     * @param mat
+     */
+    public void set(GL3 gl, Matrix4 mat) {
+        mat.getValues(MATRIX_SCRATCH, 0);
+        gl.glUniformMatrix4fv(location, 1, false, MATRIX_SCRATCH, 0);
+    }
+
+    /**
+     * Set a uniform of type 'vec3'.
+     * @param gl
+     * @param point3d
+     */
+    public void set(GL3 gl, Point3D point3d) {
+        gl.glUniform3f(location, point3d.getX(), point3d.getY(), point3d.getZ());
+    }
+
+    /**
+     * Set a uniform of type 'vec3' with the red, green and blue components of the given color.
+     * @param gl
+     * @param color
+     */
+    public void set(GL3 gl, Color color) {
+        gl.glUniform3f(location, color.getRed() / 255f, color.getGreen() / 255f,
+                color.getBlue() / 255f);
+    }
+
+    /**
+     * Set a uniform of type 'vec4' with the given color.
+     * @param gl
+     * @param color
+     */
+    public void setWithAlpha(GL3 gl, Color color) {
+        gl.glUniform4f(location, color.getRed() / 255f, color.getGreen() / 255f,
+                color.getBlue() / 255f, color.getAlpha() / 255f);
+    }
+
+    /**
+     * Set a uniform of type 'float'.
+     * @param gl
+     * @param f
+     */
+    public void set(GL3 gl, float f) {
+        gl.glUniform1f(location, f);
+    }
+
+    /**
+     * Set a uniform of type 'int' (or a sampler).
+     * @param gl
+     * @param i
+     */
+    public void set(GL3 gl, int i) {
+        gl.glUniform1i(location, i);
+    }
+}
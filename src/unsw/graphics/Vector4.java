@@ -75,6 +75,22 @@ public class Vector4 {
                 values[2] - v.values[2], values[3] - v.values[3]);
     }
 
+    public float getX() {
+        return values[0];
+    }
+    
+    public float getY() {
+        return values[1];
+    }
+    
+    public float getZ() {
+        return values[2];
+    }
+    
+    public float getW() {
+        return values[3];
+    }
+
     /**
      * Remove the 4th (w) component
      * @return
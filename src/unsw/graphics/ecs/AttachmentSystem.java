@@ -0,0 +1,38 @@
+package unsw.graphics.ecs;
+
+import unsw.graphics.scene.MathUtil;
+
+/**
+ * Computes the transform of every attached entity from the transform of its parent and its
+ * local transform. It should run after anything that moves the parents.
+ *
+ * @author Robert Clifton-Everest
+ */
+public class AttachmentSystem extends ParallelSystem {
+
+    private static final int COMPONENTS = EntityStore.TRANSFORM | EntityStore.ATTACHMENT;
+
+    @Override
+    protected void update(EntityStore store, int start, int end, float dt) {
+        int[] components = store.getComponents();
+        int[] parents = store.getParents();
+        float[] x = store.getX(), y = store.getY();
+        float[] rotation = store.getRotation(), scale = store.getScale();
+        float[] localX = store.getLocalX(), localY = store.getLocalY();
+        float[] localRotation = store.getLocalRotation(), localScale = store.getLocalScale();
+        for (int i = start; i < end; i++) {
+            if ((components[i] & COMPONENTS) != COMPONENTS)
+                continue;
+            int p = store.indexOf(parents[i]);
+            if (p < 0)
+                continue;
+
+            double angle = Math.toRadians(rotation[p]);
+            float cos = (float) Math.cos(angle), sin = (float) Math.sin(angle);
+            x[i] = x[p] + scale[p] * (cos * localX[i] - sin * localY[i]);
+            y[i] = y[p] + scale[p] * (sin * localX[i] + cos * localY[i]);
+            rotation[i] = MathUtil.normaliseAngle(rotation[p] + localRotation[i]);
+            scale[i] = scale[p] * localScale[i];
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package unsw.graphics.ecs;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.jogamp.opengl.GL3;
+
+import unsw.graphics.CoordFrame2D;
+import unsw.graphics.Shader;
+import unsw.graphics.SpriteBatch;
+import unsw.graphics.geometry.Polygon2D;
+import unsw.graphics.scene.SceneObject;
+
+/**
+ * A SceneObject that holds a store of entities and the systems that update them.
+ *
+ * This lets a scene use entities for large numbers of simple objects, while keeping ordinary
+ * SceneObjects for everything else. The transforms of the entities are in the coordinate frame
+ * of the layer.
+ *
+ * Each update runs the systems in the order they were added, then destroys the entities passed
+ * to destroyLater(). Entities with a transform and a polygon are drawn, unattached entities
+ * before attached ones, so things attached to an entity are drawn on top of it.
+ *
+ * @author Robert Clifton-Everest
+ */
+public class EntityLayer extends SceneObject {
+
+    private static final int DRAWN = EntityStore.TRANSFORM | EntityStore.POLYGON;
+
+    private final EntityStore myStore;
+    private final List<EntitySystem> mySystems;
+
+    public EntityLayer(SceneObject parent) {
+        super(parent);
+        myStore = new EntityStore();
+        mySystems = new ArrayList<EntitySystem>();
+    }
+
+    public EntityStore getStore() {
+        return myStore;
+    }
+
+    /**
+     * Add a system to run on every update, after the ones already added.
+     *
+     * @param system
+     */
+    public void addSystem(EntitySystem system) {
+        mySystems.add(system);
+    }
+
+    @Override
+    public void updateSelf(float dt) {
+        for (EntitySystem system : mySystems) {
+            system.update(myStore, dt);
+        }
+        myStore.flush();
+    }
+
+    @Override
+    public void drawSelf(GL3 gl, CoordFrame2D frame) {
+        for (int pass = 0; pass < 2; pass++) {
+            int[] components = myStore.getComponents();
+            Polygon2D[] polygons = myStore.getPolygons();
+            Color[] fillColors = myStore.getFillColors(), lineColors = myStore.getLineColors();
+            for (int i = 0; i < myStore.size(); i++) {
+                if (!isDrawn(components[i], pass))
+                    continue;
+                CoordFrame2D entityFrame = entityFrame(frame, i);
+                if (fillColors[i] != null) {
+                    Shader.setPenColor(gl, fillColors[i]);
+                    polygons[i].draw(gl, entityFrame);
+                }
+                if (lineColors[i] != null) {
+                    Shader.setPenColor(gl, lineColors[i]);
+                    polygons[i].drawOutline(gl, entityFrame);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void drawSelf(SpriteBatch batch, CoordFrame2D frame) {
+        for (int pass = 0; pass < 2; pass++) {
+            int[] components = myStore.getComponents();
+            Polygon2D[] polygons = myStore.getPolygons();
+            Color[] fillColors = myStore.getFillColors(), lineColors = myStore.getLineColors();
+            for (int i = 0; i < myStore.size(); i++) {
+                if (!isDrawn(components[i], pass))
+                    continue;
+                CoordFrame2D entityFrame = entityFrame(frame, i);
+                if (fillColors[i] != null)
+                    batch.fill(polygons[i], entityFrame, fillColors[i]);
+                if (lineColors[i] != null)
+                    batch.outline(polygons[i], entityFrame, lineColors[i]);
+            }
+        }
+    }
+
+    /**
+     * Whether an entity with the given components is drawn in the given pass: unattached
+     * entities in pass 0, attached ones in pass 1.
+     */
+    private static boolean isDrawn(int components, int pass) {
+        if ((components & DRAWN) != DRAWN)
+            return false;
+        return ((components & EntityStore.ATTACHMENT) != 0) == (pass == 1);
+    }
+
+    private CoordFrame2D entityFrame(CoordFrame2D frame, int i) {
+        float scale = myStore.getScale()[i];
+        return frame.translate(myStore.getX()[i], myStore.getY()[i])
+                .rotate(myStore.getRotation()[i]).scale(scale, scale);
+    }
+}
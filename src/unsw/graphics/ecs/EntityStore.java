@@ -0,0 +1,396 @@
+package unsw.graphics.ecs;
+
+import java.awt.Color;
+import java.util.Arrays;
+
+import unsw.graphics.geometry.Polygon2D;
+
+/**
+ * A collection of entities and their components, stored as one array per field rather than one
+ * object per entity.
+ *
+ * An entity is just an id. Its components are stored at its index in the arrays, and the bits
+ * of its component mask say which of them it has. The entities are kept densely packed in
+ * indices 0 to size() - 1, so a system can run over them with simple loops over the arrays.
+ * Destroying an entity moves the last entity into its place, so indices change but ids don't.
+ *
+ * The components are:
+ * <ul>
+ * <li>TRANSFORM: a position, rotation (in degrees) and uniform scale in the coordinates of
+ * the layer holding the store</li>
+ * <li>VELOCITY: a linear velocity and a turn rate (in degrees per second)</li>
+ * <li>LIFETIME: the time left (in seconds) before the entity is destroyed</li>
+ * <li>POLYGON: a polygon drawn in the entity's coordinate frame, with a fill color and outline
+ * color that may be null</li>
+ * <li>ATTACHMENT: a parent entity and a local transform relative to it. The AttachmentSystem
+ * computes the entity's transform from these. Destroying the parent destroys the entity.</li>
+ * </ul>
+ *
+ * The arrays returned by the getters are replaced when the store grows, so systems should get
+ * them again each time they run. Entities must not be created or destroyed while a system is
+ * running over the store, except with destroyLater().
+ *
+ * @author Robert Clifton-Everest
+ */
+public class EntityStore {
+
+    public static final int TRANSFORM = 1;
+    public static final int VELOCITY = 2;
+    public static final int LIFETIME = 4;
+    public static final int POLYGON = 8;
+    public static final int ATTACHMENT = 16;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int size;
+
+    // The id of the entity at each index, and the index of each id (-1 for dead ids)
+    private int[] ids;
+    private int[] indices;
+    private int[] freeIds;
+    private int freeCount;
+
+    // How many entities are attached to each id
+    private int[] attachments;
+
+    private int[] components;
+
+    private float[] x, y, rotation, scale;
+    private float[] velocityX, velocityY, turnRate;
+    private float[] lifetime;
+    private Polygon2D[] polygons;
+    private Color[] fillColors, lineColors;
+    private int[] parents;
+    private float[] localX, localY, localRotation, localScale;
+
+    // Ids to destroy in the next flush
+    private final Object pendingLock = new Object();
+    private int[] pending = new int[16];
+    private int pendingCount;
+
+    public EntityStore() {
+        ids = new int[INITIAL_CAPACITY];
+        indices = new int[INITIAL_CAPACITY];
+        freeIds = new int[INITIAL_CAPACITY];
+        attachments = new int[INITIAL_CAPACITY];
+        Arrays.fill(indices, -1);
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Create an entity with the given components. Each component is given a default value:
+     * the origin with scale 1, no velocity, an infinite lifetime and no polygon.
+     *
+     * @param components The bits of the components the entity has
+     * @return The id of the entity
+     */
+    public int create(int components) {
+        if (size == this.components.length)
+            allocate(size * 2);
+
+        int id;
+        if (freeCount > 0) {
+            id = freeIds[--freeCount];
+        } else {
+            id = size + freeCount;
+            if (id == indices.length) {
+                indices = Arrays.copyOf(indices, id * 2);
+                Arrays.fill(indices, id, id * 2, -1);
+                attachments = Arrays.copyOf(attachments, id * 2);
+                freeIds = Arrays.copyOf(freeIds, id * 2);
+            }
+        }
+
+        int i = size++;
+        ids[i] = id;
+        indices[id] = i;
+        this.components[i] = components;
+        x[i] = y[i] = rotation[i] = 0;
+        scale[i] = 1;
+        velocityX[i] = velocityY[i] = turnRate[i] = 0;
+        lifetime[i] = Float.POSITIVE_INFINITY;
+        polygons[i] = null;
+        fillColors[i] = lineColors[i] = null;
+        parents[i] = -1;
+        localX[i] = localY[i] = localRotation[i] = 0;
+        localScale[i] = 1;
+        return id;
+    }
+
+    /**
+     * Destroy the given entity now, along with any entities attached to it. Does nothing if it
+     * has already been destroyed.
+     *
+     * @param id
+     */
+    public void destroy(int id) {
+        int i = indexOf(id);
+        if (i < 0)
+            return;
+
+        if (attachments[id] > 0) {
+            for (int j = size - 1; j >= 0; j--) {
+                if (parents[j] == id)
+                    destroy(ids[j]);
+            }
+            // The attached entities may have moved this one
+            i = indexOf(id);
+        }
+        if (parents[i] >= 0)
+            attachments[parents[i]]--;
+
+        // Move the last entity into the gap
+        int last = --size;
+        if (i != last)
+            move(last, i);
+        polygons[last] = null;
+        fillColors[last] = lineColors[last] = null;
+
+        indices[id] = -1;
+        freeIds[freeCount++] = id;
+    }
+
+    /**
+     * Destroy the given entity in the next call to flush(). This can be called from a system,
+     * including one running on several threads.
+     *
+     * @param id
+     */
+    public void destroyLater(int id) {
+        synchronized (pendingLock) {
+            if (pendingCount == pending.length)
+                pending = Arrays.copyOf(pending, pendingCount * 2);
+            pending[pendingCount++] = id;
+        }
+    }
+
+    /**
+     * Destroy the entities passed to destroyLater().
+     */
+    public void flush() {
+        synchronized (pendingLock) {
+            for (int k = 0; k < pendingCount; k++)
+                destroy(pending[k]);
+            pendingCount = 0;
+        }
+    }
+
+    /**
+     * Whether the given id belongs to an entity that hasn't been destroyed.
+     *
+     * @param id
+     * @return
+     */
+    public boolean isAlive(int id) {
+        return indexOf(id) >= 0;
+    }
+
+    /**
+     * Get the index of the given entity in the component arrays, or -1 if it has been
+     * destroyed.
+     *
+     * @param id
+     * @return
+     */
+    public int indexOf(int id) {
+        return id >= 0 && id < indices.length ? indices[id] : -1;
+    }
+
+    /**
+     * Get the id of the entity at the given index.
+     *
+     * @param index
+     * @return
+     */
+    public int getId(int index) {
+        return ids[index];
+    }
+
+    /**
+     * The number of entities.
+     *
+     * @return
+     */
+    public int size() {
+        return size;
+    }
+
+    public void setTransform(int id, float x, float y, float rotation, float scale) {
+        int i = indices[id];
+        this.x[i] = x;
+        this.y[i] = y;
+        this.rotation[i] = rotation;
+        this.scale[i] = scale;
+    }
+
+    public void setVelocity(int id, float vx, float vy, float turnRate) {
+        int i = indices[id];
+        velocityX[i] = vx;
+        velocityY[i] = vy;
+        this.turnRate[i] = turnRate;
+    }
+
+    public void setLifetime(int id, float lifetime) {
+        this.lifetime[indices[id]] = lifetime;
+    }
+
+    public void setPolygon(int id, Polygon2D polygon, Color fillColor, Color lineColor) {
+        int i = indices[id];
+        polygons[i] = polygon;
+        fillColors[i] = fillColor;
+        lineColors[i] = lineColor;
+    }
+
+    /**
+     * Attach an entity to a parent, at the given position, rotation and scale in the parent's
+     * coordinate frame. The parent must not be attached to anything itself.
+     *
+     * @param id
+     * @param parent
+     * @param x
+     * @param y
+     * @param rotation
+     * @param scale
+     */
+    public void setAttachment(int id, int parent, float x, float y, float rotation,
+            float scale) {
+        int i = indices[id];
+        if (parents[i] >= 0)
+            attachments[parents[i]]--;
+        parents[i] = parent;
+        attachments[parent]++;
+        localX[i] = x;
+        localY[i] = y;
+        localRotation[i] = rotation;
+        localScale[i] = scale;
+    }
+
+    /**
+     * Get the component mask of each entity.
+     *
+     * @return
+     */
+    public int[] getComponents() {
+        return components;
+    }
+
+    public float[] getX() {
+        return x;
+    }
+
+    public float[] getY() {
+        return y;
+    }
+
+    public float[] getRotation() {
+        return rotation;
+    }
+
+    public float[] getScale() {
+        return scale;
+    }
+
+    public float[] getVelocityX() {
+        return velocityX;
+    }
+
+    public float[] getVelocityY() {
+        return velocityY;
+    }
+
+    public float[] getTurnRate() {
+        return turnRate;
+    }
+
+    public float[] getLifetime() {
+        return lifetime;
+    }
+
+    public Polygon2D[] getPolygons() {
+        return polygons;
+    }
+
+    public Color[] getFillColors() {
+        return fillColors;
+    }
+
+    public Color[] getLineColors() {
+        return lineColors;
+    }
+
+    /**
+     * Get the id of the parent of each attached entity.
+     *
+     * @return
+     */
+    public int[] getParents() {
+        return parents;
+    }
+
+    public float[] getLocalX() {
+        return localX;
+    }
+
+    public float[] getLocalY() {
+        return localY;
+    }
+
+    public float[] getLocalRotation() {
+        return localRotation;
+    }
+
+    public float[] getLocalScale() {
+        return localScale;
+    }
+
+    /**
+     * Copy the entity at index from to index to, overwriting what is there.
+     */
+    private void move(int from, int to) {
+        int id = ids[from];
+        ids[to] = id;
+        indices[id] = to;
+        components[to] = components[from];
+        x[to] = x[from];
+        y[to] = y[from];
+        rotation[to] = rotation[from];
+        scale[to] = scale[from];
+        velocityX[to] = velocityX[from];
+        velocityY[to] = velocityY[from];
+        turnRate[to] = turnRate[from];
+        lifetime[to] = lifetime[from];
+        polygons[to] = polygons[from];
+        fillColors[to] = fillColors[from];
+        lineColors[to] = lineColors[from];
+        parents[to] = parents[from];
+        localX[to] = localX[from];
+        localY[to] = localY[from];
+        localRotation[to] = localRotation[from];
+        localScale[to] = localScale[from];
+    }
+
+    private void allocate(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        components = components == null ? new int[capacity] : Arrays.copyOf(components, capacity);
+        x = grow(x, capacity);
+        y = grow(y, capacity);
+        rotation = grow(rotation, capacity);
+        scale = grow(scale, capacity);
+        velocityX = grow(velocityX, capacity);
+        velocityY = grow(velocityY, capacity);
+        turnRate = grow(turnRate, capacity);
+        lifetime = grow(lifetime, capacity);
+        polygons = polygons == null ? new Polygon2D[capacity] : Arrays.copyOf(polygons, capacity);
+        fillColors = fillColors == null ? new Color[capacity] : Arrays.copyOf(fillColors, capacity);
+        lineColors = lineColors == null ? new Color[capacity] : Arrays.copyOf(lineColors, capacity);
+        parents = parents == null ? new int[capacity] : Arrays.copyOf(parents, capacity);
+        localX = grow(localX, capacity);
+        localY = grow(localY, capacity);
+        localRotation = grow(localRotation, capacity);
+        localScale = grow(localScale, capacity);
+    }
+
+    private static float[] grow(float[] array, int capacity) {
+        return array == null ? new float[capacity] : Arrays.copyOf(array, capacity);
+    }
+}
@@ -0,0 +1,17 @@
+package unsw.graphics.ecs;
+
+/**
+ * A system updates the components of the entities in a store once per frame.
+ *
+ * @author Robert Clifton-Everest
+ */
+public interface EntitySystem {
+
+    /**
+     * Update the entities in the given store.
+     *
+     * @param store
+     * @param dt The amount of time since the last update (in seconds)
+     */
+    void update(EntityStore store, float dt);
+}
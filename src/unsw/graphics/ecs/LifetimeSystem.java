@@ -0,0 +1,43 @@
+package unsw.graphics.ecs;
+
+import java.util.Arrays;
+
+/**
+ * Counts down the lifetime of every entity that has one, and destroys those that run out.
+ *
+ * @author Robert Clifton-Everest
+ */
+public class LifetimeSystem extends ParallelSystem {
+
+    private int[] expired = new int[16];
+
+    @Override
+    protected void update(EntityStore store, int start, int end, float dt) {
+        int[] components = store.getComponents();
+        float[] lifetime = store.getLifetime();
+        for (int i = start; i < end; i++) {
+            if ((components[i] & EntityStore.LIFETIME) != 0)
+                lifetime[i] -= dt;
+        }
+    }
+
+    /**
+     * Destroy the expired entities. Their ids are collected first, as destroying an entity moves
+     * others around.
+     */
+    @Override
+    protected void finish(EntityStore store, float dt) {
+        int[] components = store.getComponents();
+        float[] lifetime = store.getLifetime();
+        int count = 0;
+        for (int i = 0; i < store.size(); i++) {
+            if ((components[i] & EntityStore.LIFETIME) != 0 && lifetime[i] <= 0) {
+                if (count == expired.length)
+                    expired = Arrays.copyOf(expired, count * 2);
+                expired[count++] = store.getId(i);
+            }
+        }
+        for (int k = 0; k < count; k++)
+            store.destroy(expired[k]);
+    }
+}
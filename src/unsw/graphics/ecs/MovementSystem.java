@@ -0,0 +1,29 @@
+package unsw.graphics.ecs;
+
+import unsw.graphics.scene.MathUtil;
+
+/**
+ * Moves and turns every entity with a transform and a velocity.
+ *
+ * @author Robert Clifton-Everest
+ */
+public class MovementSystem extends ParallelSystem {
+
+    private static final int COMPONENTS = EntityStore.TRANSFORM | EntityStore.VELOCITY;
+
+    @Override
+    protected void update(EntityStore store, int start, int end, float dt) {
+        int[] components = store.getComponents();
+        float[] x = store.getX(), y = store.getY(), rotation = store.getRotation();
+        float[] vx = store.getVelocityX(), vy = store.getVelocityY();
+        float[] turnRate = store.getTurnRate();
+        for (int i = start; i < end; i++) {
+            if ((components[i] & COMPONENTS) != COMPONENTS)
+                continue;
+            x[i] += vx[i] * dt;
+            y[i] += vy[i] * dt;
+            if (turnRate[i] != 0)
+                rotation[i] = MathUtil.normaliseAngle(rotation[i] + turnRate[i] * dt);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package unsw.graphics.ecs;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A system that updates each entity independently of the others, so the entities can be split
+ * into chunks and updated on several threads at once.
+ *
+ * The chunks are run in the common ForkJoinPool. Small stores are updated on the calling thread,
+ * as are all stores if the system is made sequential or there is only one processor.
+ *
+ * Subclasses implement update(EntityStore, int, int, float) for a range of indices. It must only
+ * write the components of the entities in that range. The only structural change it may make is
+ * to call destroyLater().
+ *
+ * @author Robert Clifton-Everest
+ */
+public abstract class ParallelSystem implements EntitySystem {
+
+    /**
+     * The number of entities in each chunk.
+     */
+    public static final int CHUNK_SIZE = 4096;
+
+    private boolean amParallel = true;
+
+    /**
+     * Set whether the system is updated on several threads (true, the default) or only on the
+     * calling thread (false).
+     *
+     * @param parallel
+     */
+    public void setParallel(boolean parallel) {
+        amParallel = parallel;
+    }
+
+    public boolean isParallel() {
+        return amParallel;
+    }
+
+    @Override
+    public void update(EntityStore store, float dt) {
+        int size = store.size();
+        if (!amParallel || size <= CHUNK_SIZE || ForkJoinPool.getCommonPoolParallelism() < 2)
+            update(store, 0, size, dt);
+        else
+            ForkJoinPool.commonPool().invoke(new Chunk(store, 0, size, dt));
+        finish(store, dt);
+    }
+
+    /**
+     * Update the entities with indices from start (inclusive) to end (exclusive).
+     *
+     * @param store
+     * @param start
+     * @param end
+     * @param dt
+     */
+    protected abstract void update(EntityStore store, int start, int end, float dt);
+
+    /**
+     * Called on the calling thread after every chunk has been updated. Does nothing by default.
+     *
+     * @param store
+     * @param dt
+     */
+    protected void finish(EntityStore store, float dt) {
+        // Do nothing by default
+    }
+
+    private class Chunk extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final EntityStore store;
+        private final int start, end;
+        private final float dt;
+
+        Chunk(EntityStore store, int start, int end, float dt) {
+            this.store = store;
+            this.start = start;
+            this.end = end;
+            this.dt = dt;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= CHUNK_SIZE) {
+                update(store, start, end, dt);
+            } else {
+                int middle = (start + end) >>> 1;
+                invokeAll(new Chunk(store, start, middle, dt), new Chunk(store, middle, end, dt));
+            }
+        }
+    }
+}
@@ -64,6 +64,7 @@ public class AntiAndMulti extends Application3D implements KeyListener {
         Shader.setPenColor(gl, Color.RED);
         Line3D line = new Line3D(-10, 0, 0, 10, 0, 0);
         line.draw(gl, frame);
+        line.destroy(gl);
 
          Shader.setPenColor(gl, Color.BLACK);
          // Draw a wire cube reference frame.
@@ -79,9 +80,11 @@ public class AntiAndMulti extends Application3D implements KeyListener {
          Shader.setPenColor(gl,Color.BLUE);
          Triangle3D tri1 = new Triangle3D(6,1,0, 12,1,0, 6,8,0);
          tri1.draw(gl, frame);
+         tri1.destroy(gl);
          Shader.setPenColor(gl,Color.YELLOW);
          Triangle3D tri2 = new Triangle3D(12,8,0, 6,8,0, 12,1,0);
          tri2.draw(gl, frame);
+         tri2.destroy(gl);
     }
 
     @Override
@@ -87,6 +87,7 @@ public class BezierInterpolate extends Application2D implements KeyListener {
     	}
     	
     	curve.draw(gl);
+    	curve.destroy(gl);
     }
    
 	@Override
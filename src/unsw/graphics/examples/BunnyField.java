@@ -0,0 +1,116 @@
+package unsw.graphics.examples;
+
+import java.awt.Color;
+import java.io.IOException;
+
+import com.jogamp.opengl.GL3;
+
+import unsw.graphics.Application3D;
+import unsw.graphics.CoordFrame3D;
+import unsw.graphics.Matrix4;
+import unsw.graphics.Shader;
+import unsw.graphics.geometry.LodMesh;
+import unsw.graphics.geometry.NormalWeighting;
+import unsw.graphics.geometry.Point3D;
+import unsw.graphics.geometry.TriangleMesh;
+
+/**
+ * A field of bunnies stretching into the distance.
+ *
+ * The bunny has levels of detail generated from the full resolution model.
+ * Each bunny is drawn at the level for its distance from the camera, so the
+ * distant ones cost a small fraction of the triangles of the near ones.
+ *
+ * @author Robert Clifton-Everest
+ *
+ */
+public class BunnyField extends Application3D {
+
+    private static final int ROWS = 40, COLUMNS = 20;
+
+    private static final float SPACING = 0.3f;
+
+    private LodMesh bunny;
+
+    private Shader shader;
+
+    private Matrix4[] transforms;
+
+    private Matrix4 projMatrix = Matrix4.identity();
+
+    private int height;
+
+    private float rotateY;
+
+    public BunnyField() throws IOException {
+        super("Bunny field", 800, 600);
+        bunny = new LodMesh(new TriangleMesh("res/models/bunny.ply", NormalWeighting.AREA,
+                false, true), 6);
+        for (int i = 0; i < bunny.getLevelCount(); i++)
+            System.out.println("Level " + i + ": "
+                    + bunny.getLevel(i).getTriangleCount() + " triangles");
+
+        transforms = new Matrix4[ROWS * COLUMNS];
+        for (int i = 0; i < ROWS; i++) {
+            for (int j = 0; j < COLUMNS; j++) {
+                transforms[i * COLUMNS + j] = Matrix4.translation(
+                        (j - COLUMNS / 2) * SPACING, 0, -i * SPACING);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        BunnyField example = new BunnyField();
+        example.start();
+    }
+
+    @Override
+    public void init(GL3 gl) {
+        super.init(gl);
+        bunny.init(gl);
+        shader = new Shader(gl, "shaders/vertex_phong_instanced.glsl",
+                "shaders/fragment_phong_instanced.glsl");
+        shader.use(gl);
+    }
+
+    @Override
+    public void destroy(GL3 gl) {
+        super.destroy(gl);
+        bunny.destroy(gl);
+        shader.destroy(gl);
+    }
+
+    @Override
+    public void reshape(GL3 gl, int width, int height) {
+        super.reshape(gl, width, height);
+        this.height = height;
+        projMatrix = Matrix4.perspective(60, width / (float) height, 0.1f, 100);
+        Shader.setProjMatrix(gl, projMatrix);
+    }
+
+    @Override
+    public void display(GL3 gl) {
+        super.display(gl);
+        rotateY += 0.2f;
+
+        Matrix4 view = CoordFrame3D.identity().translate(0, -0.3f, -0.5f)
+                .rotateX(15).getMatrix();
+        Shader.setViewMatrix(gl, view);
+        Shader.setPenColor(gl, Color.WHITE);
+        Shader.setPoint3D(gl, "lightPos", new Point3D(0, 5, 5));
+        Shader.setColor(gl, "lightIntensity", Color.WHITE);
+        Shader.setColor(gl, "ambientIntensity", new Color(0.2f, 0.2f, 0.2f));
+        Shader.setColor(gl, "ambientCoeff", Color.WHITE);
+        Shader.setColor(gl, "diffuseCoeff", new Color(0.5f, 0.5f, 0.5f));
+        Shader.setColor(gl, "specularCoeff", new Color(0.8f, 0.8f, 0.8f));
+        Shader.setFloat(gl, "phongExp", 16f);
+
+        // Every bunny turns on the spot
+        CoordFrame3D frame = CoordFrame3D.identity();
+        Matrix4 turn = Matrix4.rotationY(rotateY);
+        Matrix4[] turned = new Matrix4[transforms.length];
+        for (int i = 0; i < transforms.length; i++)
+            turned[i] = transforms[i].multiply(turn);
+        bunny.drawInstanced(gl, frame, turned, view, projMatrix, height);
+    }
+}
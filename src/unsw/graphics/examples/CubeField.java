@@ -1,22 +1,29 @@
 package unsw.graphics.examples;
 
 import java.awt.Color;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
 
 import com.jogamp.newt.event.MouseEvent;
 import com.jogamp.newt.event.MouseListener;
 import com.jogamp.opengl.GL3;
+import com.jogamp.opengl.util.GLBuffers;
 
 import unsw.graphics.Application3D;
 import unsw.graphics.CoordFrame3D;
 import unsw.graphics.Matrix4;
 import unsw.graphics.Shader;
-import unsw.graphics.geometry.TriangleFan3D;
+import unsw.graphics.geometry.Point3D;
+import unsw.graphics.geometry.TriangleMesh;
 
 /**
  * A simple example that draws a cube.
  * 
  * You can use this to play around with rotations and projection.
  * 
+ * Every face of every cube is an instance of the same square mesh, so the
+ * whole field is drawn with a single instanced draw call.
+ * 
  * @author Robert Clifton-Everest
  *
  */
@@ -28,8 +35,36 @@ public class CubeField extends Application3D implements MouseListener{
     
     private int mouseX, mouseY;
     
+    private static final int ROWS = 10, COLUMNS = 10;
+    
+    private static final int FACES = 6 * ROWS * COLUMNS;
+    
+    private TriangleMesh face;
+    
+    private Shader shader;
+    
+    /**
+     * The transform and color of every face in the field. These never change
+     * so they are only computed once.
+     */
+    private FloatBuffer faceTransforms;
+    private FloatBuffer faceColors;
+    
     public CubeField() {
         super("Cube", 600, 600);
+        face = new TriangleMesh(Arrays.asList(new Point3D(-1,-1,1), 
+                new Point3D(1,-1,1), new Point3D(1,1,1), new Point3D(-1,1,1)),
+                Arrays.asList(0, 1, 2, 0, 2, 3), false);
+        faceTransforms = GLBuffers.newDirectFloatBuffer(FACES * 16);
+        faceColors = GLBuffers.newDirectFloatBuffer(FACES * 4);
+        for (int i = 0 ; i < ROWS; i++) {
+            for (int j = 0; j < COLUMNS; j++) {
+                CoordFrame3D frame = CoordFrame3D.identity().translate(j*3, 0, -i*3);
+                addCube(frame);
+            }
+        }
+        faceTransforms.flip();
+        faceColors.flip();
     }
     
     
@@ -37,6 +72,17 @@ public class CubeField extends Application3D implements MouseListener{
     public void init(GL3 gl) {
         super.init(gl);
         getWindow().addMouseListener(this);
+        face.init(gl);
+        shader = new Shader(gl, "shaders/vertex_3d_instanced.glsl",
+                "shaders/fragment_3d_instanced.glsl");
+        shader.use(gl);
+    }
+    
+    @Override
+    public void destroy(GL3 gl) {
+        super.destroy(gl);
+        face.destroy(gl);
+        shader.destroy(gl);
     }
 
 
@@ -59,45 +105,42 @@ public class CubeField extends Application3D implements MouseListener{
                 .rotateY(rotateY)
                 .translate(-7.5f, -1, -3)
                 .scale(0.5f, 0.5f, 0.5f);
-        for (int i = 0 ; i < 10; i++) {
-            for (int j = 0; j < 10; j++) {
-                CoordFrame3D frame2 = frame.translate(j*3, 0, -i*3);
-                drawCube(gl, frame2);
-            }
-        }
+        // The instance colors are used as is
+        Shader.setPenColor(gl, Color.WHITE);
+        face.drawInstanced(gl, frame, faceTransforms, faceColors, FACES);
     }
 
     /**
-     * Draw a cube centered around (0,0) with bounds of length 1 in each direction.
-     * @param gl
+     * Add the faces of a cube centered around (0,0) with bounds of length 1 in
+     * each direction.
      * @param frame
      */
-    private void drawCube(GL3 gl, CoordFrame3D frame) {
-        TriangleFan3D face = new TriangleFan3D(-1,-1,1, 1,-1,1, 1,1,1, -1,1,1);
-        
+    private void addCube(CoordFrame3D frame) {
         // Front
-        Shader.setPenColor(gl, Color.RED);
-        face.draw(gl, frame);
+        addFace(frame, Color.RED);
         
         // Left
-        Shader.setPenColor(gl, Color.BLUE);
-        face.draw(gl, frame.rotateY(-90));
+        addFace(frame.rotateY(-90), Color.BLUE);
         
         // Right
-        Shader.setPenColor(gl, Color.GREEN);
-        face.draw(gl, frame.rotateY(90));
+        addFace(frame.rotateY(90), Color.GREEN);
         
         // Back
-        Shader.setPenColor(gl, Color.CYAN);
-        face.draw(gl, frame.rotateY(180));
+        addFace(frame.rotateY(180), Color.CYAN);
         
         // Bottom
-        Shader.setPenColor(gl, Color.YELLOW);
-        face.draw(gl, frame.rotateX(-90));
+        addFace(frame.rotateX(-90), Color.YELLOW);
         
         // Top
-        Shader.setPenColor(gl, Color.MAGENTA);
-        face.draw(gl, frame.rotateX(90));
+        addFace(frame.rotateX(90), Color.MAGENTA);
+    }
+    
+    private void addFace(CoordFrame3D frame, Color color) {
+        float[] values = new float[16];
+        frame.getMatrix().getValues(values, 0);
+        faceTransforms.put(values);
+        faceColors.put(color.getRed() / 255f).put(color.getGreen() / 255f)
+                .put(color.getBlue() / 255f).put(1);
     }
     
     @Override
@@ -33,6 +33,7 @@ public class FrameBufferTexture extends Application3D {
     private int verticesName;
     private int texCoordsName;
     private int indicesName;
+    private int vertexArrayName;
     
     private Texture texture;
 
@@ -79,17 +80,11 @@ public class FrameBufferTexture extends Application3D {
      * @param frame
      */
     private void drawCube(GL3 gl, CoordFrame3D frame) {
-        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, verticesName);
-        gl.glVertexAttribPointer(Shader.POSITION, 3, GL.GL_FLOAT, false, 0, 0);
-        
-        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, texCoordsName);
-        gl.glVertexAttribPointer(Shader.TEX_COORD, 2, GL.GL_FLOAT, false, 0, 0);
-        
-        gl.glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, indicesName);
-        
         Shader.setModelMatrix(gl, frame.getMatrix());
+        gl.glBindVertexArray(vertexArrayName);
         gl.glDrawElements(GL.GL_TRIANGLES, indicesBuffer.capacity(), 
                 GL.GL_UNSIGNED_INT, 0);
+        gl.glBindVertexArray(gl.getContext().getDefaultVAO());
     }
 
     @Override
@@ -151,18 +146,31 @@ public class FrameBufferTexture extends Application3D {
         texCoordsName = names[1];
         indicesName = names[2];
         
+        // Record the buffer layout in a vertex array object so drawing only
+        // needs to bind that.
+        int[] arrayNames = new int[1];
+        gl.glGenVertexArrays(1, arrayNames, 0);
+        vertexArrayName = arrayNames[0];
+        gl.glBindVertexArray(vertexArrayName);
+        
         gl.glBindBuffer(GL.GL_ARRAY_BUFFER, verticesName);
         gl.glBufferData(GL.GL_ARRAY_BUFFER, vertexBuffer.capacity() * 3 * Float.BYTES,
                 vertexBuffer.getBuffer(), GL.GL_STATIC_DRAW);
+        gl.glVertexAttribPointer(Shader.POSITION, 3, GL.GL_FLOAT, false, 0, 0);
+        gl.glEnableVertexAttribArray(Shader.POSITION);
         
         gl.glBindBuffer(GL.GL_ARRAY_BUFFER, texCoordsName);
         gl.glBufferData(GL.GL_ARRAY_BUFFER, texCoordBuffer.capacity() * 2 * Float.BYTES,
                 texCoordBuffer.getBuffer(), GL.GL_STATIC_DRAW);
+        gl.glVertexAttribPointer(Shader.TEX_COORD, 2, GL.GL_FLOAT, false, 0, 0);
+        gl.glEnableVertexAttribArray(Shader.TEX_COORD);
        
         gl.glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, indicesName);
         gl.glBufferData(GL.GL_ELEMENT_ARRAY_BUFFER, indicesBuffer.capacity() * Integer.BYTES,
                 indicesBuffer, GL.GL_STATIC_DRAW);
         
+        gl.glBindVertexArray(gl.getContext().getDefaultVAO());
+        
         Shader shader = new Shader(gl, "shaders/vertex_tex_3d.glsl", "shaders/fragment_tex_3d.glsl");
         shader.use(gl);
 
@@ -171,6 +179,7 @@ public class FrameBufferTexture extends Application3D {
     @Override
     public void destroy(GL3 gl) {
         super.destroy(gl);
+        gl.glDeleteVertexArrays(1, new int[] { vertexArrayName }, 0);
         gl.glDeleteBuffers(3, new int[] { indicesName, verticesName, texCoordsName }, 0);
     }
 }
\ No newline at end of file
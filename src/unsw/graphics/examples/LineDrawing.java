@@ -78,6 +78,7 @@ public class LineDrawing extends Application2D {
         if (!currentStrip.getPoints().isEmpty()) {
             Line2D incomplete = new Line2D(currentPoint, currentStrip.getLast());
             incomplete.draw(gl);
+            incomplete.destroy(gl);
         }
     }
 
@@ -20,10 +20,14 @@ public class Mandelbrot extends Application2D {
 
     private Point2D cameraPos;
 
+    private Polygon2D quad;
+
     public Mandelbrot() {
         super("Mandelbrot", 1024, 768);
         zoom = 0.5f;
         cameraPos = new Point2D(0, 0);
+        //Just drawing a standard 2x1 quad.
+        quad = new Polygon2D(-2,-1, 1,-1, 1,1, -2,1);
     }
 
     public static void main(String[] args) {
@@ -67,11 +71,16 @@ public class Mandelbrot extends Application2D {
 
         Shader.setViewMatrix(gl, view.getMatrix());
 
-        //Just drawing a standard 2x1 quad.
-        Polygon2D quad = new Polygon2D(-2,-1, 1,-1, 1,1, -2,1);
         quad.draw(gl);
     }
 
+    @Override
+    public void destroy(GL3 gl) {
+        super.destroy(gl);
+        quad.destroy(gl);
+        shader.destroy(gl);
+    }
+
     @Override
     public void reshape(GL3 gl, int width, int height) {
         aspectRatio = (float) width / height;
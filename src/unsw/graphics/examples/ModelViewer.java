@@ -12,9 +12,13 @@ import unsw.graphics.Matrix3;
 import unsw.graphics.Matrix4;
 import unsw.graphics.Shader;
 import unsw.graphics.Texture;
+import unsw.graphics.geometry.NormalWeighting;
 import unsw.graphics.geometry.Point3D;
 import unsw.graphics.geometry.Polygon2D;
 import unsw.graphics.geometry.TriangleMesh;
+import unsw.graphics.scene.MeshNode;
+import unsw.graphics.scene.RenderQueue;
+import unsw.graphics.scene.SceneNode;
 
 /**
  * This is a simple application for viewing models.
@@ -48,6 +52,15 @@ public class ModelViewer extends Application3D {
 
     private TriangleMesh base;
 
+    // The model and its base, in one frame
+    private SceneNode root;
+
+    private MeshNode modelNode;
+
+    private RenderQueue queue;
+
+    private Polygon2D fullScreenQuad;
+
     private Texture texture;
 
     private Shader primaryShader;
@@ -63,8 +76,9 @@ public class ModelViewer extends Application3D {
 
     public ModelViewer() throws IOException {
         super("Model viewer", 600, 600);
-        model = new TriangleMesh("res/models/bunny.ply", true, true);
+        model = new TriangleMesh("res/models/bunny.ply", NormalWeighting.AREA, true, true);
         base = new TriangleMesh("res/models/cube_normals.ply", true, true);
+        fullScreenQuad = new Polygon2D(-1,-1, 1,-1, 1,1, -1,1);
 
         if (POSTPROCESS)
             setBackground(new Color(1f,1f,1f,0)); // Transparent white
@@ -141,6 +155,38 @@ public class ModelViewer extends Application3D {
         brightShader = new Shader(gl, "shaders/vertex_tex_2d.glsl", "shaders/fragment_extract_bright.glsl");
 
         primaryShader.use(gl);
+
+        // The scene. The frame for both objects is the root.
+        root = new SceneNode();
+        root.setPosition(0, -0.5f, -2);
+
+        // This translation and scale works well for the bunny and dragon1
+        modelNode = new MeshNode(root, model, primaryShader);
+        modelNode.setPosition(0, -0.2f, 0);
+        modelNode.setScale(5);
+        // This scale works well for the apple
+//        modelNode.setScale(5);
+        // This translation and scale works well for dragon2
+//        modelNode.setPosition(0, 0.33f, 0);
+//        modelNode.setScale(0.008f);
+        // This translation and scale works well for the tree
+//        modelNode.setPosition(0, 0.5f, 0);
+//        modelNode.setScale(0.1f);
+
+        // A blue base for the model to sit on.
+        MeshNode baseNode = new MeshNode(root, base, primaryShader);
+        baseNode.setPosition(0, -0.5f, 0);
+        baseNode.setScale(0.5f);
+
+        if (USE_TEXTURE && !USE_CUBEMAP) {
+            modelNode.setTexture(texture);
+            baseNode.setTexture(texture);
+        } else if (!USE_CUBEMAP) {
+            modelNode.setColor(new Color(0.5f, 0.5f, 0.5f));
+            baseNode.setColor(Color.BLUE);
+        }
+
+        queue = new RenderQueue();
     }
 
     @Override
@@ -167,27 +213,10 @@ public class ModelViewer extends Application3D {
 
         primaryShader.use(gl);
 
-        // Set the projection matrix on each call to display as we dynamically
-        // swap shaders.
-        Shader.setProjMatrix(gl, Matrix4.perspective(60, 1, 1, 100));
-
-        //Set the texture if we're using it.
+        // The render queue binds 2D textures itself, but not cube maps.
         if (USE_CUBEMAP) {
-            Shader.setInt(gl, "tex", 0);
-
             gl.glActiveTexture(GL.GL_TEXTURE0);
             gl.glBindTexture(GL.GL_TEXTURE_CUBE_MAP, texture.getId());
-
-            Shader.setPenColor(gl, Color.WHITE);
-        } else if (USE_TEXTURE) {
-            Shader.setInt(gl, "tex", 0);
-
-            gl.glActiveTexture(GL.GL_TEXTURE0);
-            gl.glBindTexture(GL.GL_TEXTURE_2D, texture.getId());
-
-            Shader.setPenColor(gl, Color.WHITE);
-        } else {
-            Shader.setPenColor(gl, new Color(0.5f, 0.5f, 0.5f));
         }
 
         // Compute the view transform
@@ -195,7 +224,6 @@ public class ModelViewer extends Application3D {
                 // Uncomment the line below to rotate the camera
 //                 .rotateY(rotateY)
                 .translate(0, 0, 2);
-        Shader.setViewMatrix(gl, view.getMatrix());
 
         // Set the lighting properties
         if (USE_LIGHTING) {
@@ -210,32 +238,14 @@ public class ModelViewer extends Application3D {
             Shader.setFloat(gl, "phongExp", 16f);
         }
 
-        // The coordinate frame for both objects
-        CoordFrame3D frame = CoordFrame3D.identity().translate(0, -0.5f, -2);
-
-        // The coordinate frame for the model we're viewing.
-        CoordFrame3D modelFrame = frame
-                // Uncomment the line below to rotate the model
-                .rotateY(rotateY)
+        // Comment out the line below to stop the model rotating
+        modelNode.setRotation(0, rotateY, 0);
 
-                // This translation and scale works well for the bunny and
-                // dragon1
-                .translate(0, -0.2f, 0).scale(5, 5, 5);
-        // This scale works well for the apple
-//         .scale(5, 5, 5);
-        // This translation and scale works well for dragon2
-//         .translate(0,0.33f,0).scale(0.008f, 0.008f, 0.008f);
-        // This translation and scale works well for the tree
-//           .translate(0,0.5f,0).scale(0.1f,0.1f,0.1f);
-
-        model.draw(gl, modelFrame);
-
-        // A blue base for the model to sit on.
-        CoordFrame3D baseFrame =
-                frame.translate(0, -0.5f, 0).scale(0.5f, 0.5f, 0.5f);
-        if (!USE_TEXTURE && !USE_CUBEMAP)
-            Shader.setPenColor(gl, Color.BLUE);
-        base.draw(gl, baseFrame);
+        // Set the projection matrix on each call to display as we dynamically
+        // swap shaders. Only what is in the view frustum is drawn.
+        queue.begin(view.getMatrix(), Matrix4.perspective(60, 1, 1, 100));
+        root.submit(queue);
+        queue.draw(gl);
 
         rotateY += 1;
 
@@ -322,8 +332,7 @@ public class ModelViewer extends Application3D {
 
     private void drawFullScreenQuad(GL3 gl) {
         //Draw a fullscreen quad
-        Polygon2D quad = new Polygon2D(-1,-1, 1,-1, 1,1, -1,1);
-        quad.draw(gl);
+        fullScreenQuad.draw(gl);
     }
 
     private void setPostProcessShader(GL3 gl, Shader shader) {
@@ -339,6 +348,7 @@ public class ModelViewer extends Application3D {
         super.destroy(gl);
         model.destroy(gl);
         base.destroy(gl);
+        fullScreenQuad.destroy(gl);
         texture.destroy(gl);
         for (Texture tex : frameBufferTextures)
             tex.destroy(gl);
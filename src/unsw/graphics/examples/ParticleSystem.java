@@ -47,6 +47,7 @@ public class ParticleSystem extends Application3D implements KeyListener {
 
     private int velocitiesName;
     private int colorsName;
+    private int vertexArrayName;
 
     private Shader shader;
     
@@ -105,15 +106,25 @@ public class ParticleSystem extends Application3D implements KeyListener {
         velocitiesName = names[0];
         colorsName = names[1];
 
+        // Record the buffer layout in a vertex array object
+        int[] arrayNames = new int[1];
+        gl.glGenVertexArrays(1, arrayNames, 0);
+        vertexArrayName = arrayNames[0];
+        gl.glBindVertexArray(vertexArrayName);
+
         gl.glBindBuffer(GL.GL_ARRAY_BUFFER, velocitiesName);
         gl.glBufferData(GL.GL_ARRAY_BUFFER, MAX_PARTICLES * 3 * Float.BYTES,
                 velocities.getBuffer(), GL.GL_DYNAMIC_DRAW);
         gl.glVertexAttribPointer(Shader.VELOCITY, 3, GL.GL_FLOAT, false, 0, 0);
+        gl.glEnableVertexAttribArray(Shader.VELOCITY);
 
         gl.glBindBuffer(GL.GL_ARRAY_BUFFER, colorsName);
         gl.glBufferData(GL.GL_ARRAY_BUFFER, MAX_PARTICLES * 4 * Float.BYTES,
                 colors.getBuffer(), GL.GL_DYNAMIC_DRAW);
         gl.glVertexAttribPointer(Shader.COLOR, 4, GL.GL_FLOAT, false, 0, 0);
+        gl.glEnableVertexAttribArray(Shader.COLOR);
+
+        gl.glBindVertexArray(gl.getContext().getDefaultVAO());
 
         // Set the point size
         gl.glPointSize(100);
@@ -153,7 +164,9 @@ public class ParticleSystem extends Application3D implements KeyListener {
 
         CoordFrame3D frame = CoordFrame3D.identity().translate(0, 1, -40);
         Shader.setModelMatrix(gl, frame.getMatrix());
+        gl.glBindVertexArray(vertexArrayName);
         gl.glDrawArrays(GL.GL_POINTS, 0, particles.length);
+        gl.glBindVertexArray(gl.getContext().getDefaultVAO());
 
         // Update the particles
 //        for (int i = 0; i < MAX_PARTICLES; i++) {
@@ -184,6 +197,7 @@ public class ParticleSystem extends Application3D implements KeyListener {
     public void destroy(GL3 gl) {
         super.destroy(gl);
 
+        gl.glDeleteVertexArrays(1, new int[] { vertexArrayName }, 0);
         gl.glDeleteBuffers(2, new int[] { velocitiesName, colorsName }, 0);
         texture.destroy(gl);
     }
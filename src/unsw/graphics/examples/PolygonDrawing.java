@@ -81,6 +81,7 @@ public class PolygonDrawing extends Application2D {
         if (!currentStrip.getPoints().isEmpty()) {
             Line2D incomplete = new Line2D(currentPoint, currentStrip.getLast());
             incomplete.draw(gl);
+            incomplete.destroy(gl);
         }
     }
 
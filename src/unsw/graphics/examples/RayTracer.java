@@ -13,8 +13,11 @@ public class RayTracer extends Application2D {
 
     private int time;
 
+    private Polygon2D quad;
+
     public RayTracer() {
         super("Ray tracer", 800, 800);
+        quad = new Polygon2D(-1,-1, 1,-1, 1,1, -1,1);
     }
 
     public static void main(String[] args) {
@@ -42,11 +45,17 @@ public class RayTracer extends Application2D {
         super.display(gl);
 
         Shader.setInt(gl, "time", time);
-        Polygon2D quad = new Polygon2D(-1,-1, 1,-1, 1,1, -1,1);
         quad.draw(gl);
         time++;
 
         System.out.println("FPS:" + getAnimator().getLastFPS());
     }
 
+    @Override
+    public void destroy(GL3 gl) {
+        super.destroy(gl);
+        quad.destroy(gl);
+        shader.destroy(gl);
+    }
+
 }
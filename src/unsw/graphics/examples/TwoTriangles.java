@@ -25,7 +25,9 @@ public class TwoTriangles extends Application2D {
         Triangle2D tri1 = new Triangle2D(0, 0, 1, 1, -1, 1);
         Triangle2D tri2 = new Triangle2D(0, 0, -1, -1, 1, -1);
         tri1.draw(gl);
+        tri1.destroy(gl);
         tri2.draw(gl);
+        tri2.destroy(gl);
     }
 
 }
@@ -45,6 +45,7 @@ public class Arm {
         // Draw the upper arm
         Line2D upperArm = new Line2D(0,0, 0, -UPPER_ARM_LENGTH);
         upperArm.draw(gl, armFrame);
+        upperArm.destroy(gl);
             
         // Move the coordinate frame to draw the forearm
         CoordFrame2D forearmFrame = armFrame.translate(0, -UPPER_ARM_LENGTH)
@@ -52,6 +53,7 @@ public class Arm {
 
         Line2D foreArm = new Line2D(0,0, 0, -FORE_ARM_LENGTH);
         foreArm.draw(gl, forearmFrame);
+        foreArm.destroy(gl);
             
         // Move the coordinate frame to draw the hand
         CoordFrame2D handFrame = forearmFrame.translate(0, -FORE_ARM_LENGTH);
@@ -60,6 +62,7 @@ public class Arm {
         float y = (float) -Math.sqrt(3);
         Triangle2D hand = new Triangle2D(0,0, -1,y, 1,y);
         hand.draw(gl, handFrame);   
+        hand.destroy(gl);
     }
 
 }
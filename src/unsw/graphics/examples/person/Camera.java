@@ -38,6 +38,7 @@ public class Camera implements KeyListener {
         //Draw the camera
         LineStrip2D camera = new LineStrip2D(1,1, -1,1, -1,-1, 1,-1, 1,1);
         camera.draw(gl, cameraFrame);
+        camera.destroy(gl);
     }
 
     /**
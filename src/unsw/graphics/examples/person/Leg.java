@@ -47,6 +47,7 @@ public class Leg {
         // Draw the thigh
         Line2D thigh = new Line2D(0,0, 0, -THIGH_LENGTH);
         thigh.draw(gl, legFrame);
+        thigh.destroy(gl);
        
         // Move the coordinate frame to draw the shin
         CoordFrame2D shinFrame = legFrame.translate(0, -THIGH_LENGTH)
@@ -54,11 +55,13 @@ public class Leg {
 
         Line2D shin = new Line2D(0,0, 0, -SHIN_LENGTH);
         shin.draw(gl, shinFrame);
+        shin.destroy(gl);
             
         // Move the coordinate frame to draw the foot
         CoordFrame2D footFrame = shinFrame.translate(0, -SHIN_LENGTH);
         Triangle2D foot = new Triangle2D(0,0, 0,-1, 2,-1);
         foot.draw(gl, footFrame);
+        foot.destroy(gl);
     }
 
 }
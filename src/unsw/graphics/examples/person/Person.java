@@ -57,6 +57,7 @@ public class Person implements KeyListener {
         // draw torso
         Line2D torso = new Line2D(0,0, 0,TORSO_LENGTH);
         torso.draw(gl,personFrame);
+        torso.destroy(gl);
 
         // draw legs
         myLeftLeg.draw(gl, personFrame);
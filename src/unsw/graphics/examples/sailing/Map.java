@@ -8,10 +8,14 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 import org.json.JSONTokener;
 
+import unsw.graphics.ecs.EntityStore;
 import unsw.graphics.examples.sailing.objects.Island;
 import unsw.graphics.examples.sailing.objects.Merchant;
 import unsw.graphics.examples.sailing.objects.Pirate;
+import unsw.graphics.examples.sailing.objects.PirateSystem;
+import unsw.graphics.examples.sailing.objects.SailingEntities;
 import unsw.graphics.scene.Scene;
+import unsw.graphics.scene.SceneObject;
 
 
 /**
@@ -76,4 +80,40 @@ public class Map {
         return map;
     }
 
+    /**
+     * Read a map with the ships as entities in the given store rather than SceneObjects. The 
+     * islands are still SceneObjects.
+     * 
+     * @param land The parent of the islands
+     * @param ships The store for the ships
+     * @param pirates The system that steers the player's ship
+     * @param in
+     * @return The id of the player's ship
+     */
+    static public int readEntities(SceneObject land, EntityStore ships, PirateSystem pirates,
+            InputStream in) {
+
+        JSONTokener jtk = new JSONTokener(in);
+        JSONObject jsonMap = new JSONObject(jtk);
+
+        JSONArray jsonIslands = jsonMap.getJSONArray("islands");
+        for (int i = 0; i < jsonIslands.length(); i++) {
+            Island.fromJSON(land, jsonIslands.getJSONObject(i));
+        }
+
+        JSONObject jsonPlayer = jsonMap.getJSONObject("player");
+        int player = SailingEntities.createPirate(ships, pirates,
+                (float) jsonPlayer.getDouble("x"), (float) jsonPlayer.getDouble("y"),
+                (float) jsonPlayer.getDouble("angle"));
+
+        JSONArray jsonMerchants = jsonMap.getJSONArray("merchants");
+        for (int i = 0; i < jsonMerchants.length(); i++) {
+            JSONObject json = jsonMerchants.getJSONObject(i);
+            SailingEntities.createMerchant(ships, (float) json.getDouble("x"),
+                    (float) json.getDouble("y"), (float) json.getDouble("angle"));
+        }
+
+        return player;
+    }
+
 }
@@ -9,11 +9,18 @@ import java.io.InputStream;
 import com.jogamp.opengl.GL3;
 
 import unsw.graphics.Application2D;
+import unsw.graphics.SpriteBatch;
+import unsw.graphics.ecs.AttachmentSystem;
+import unsw.graphics.ecs.EntityLayer;
+import unsw.graphics.ecs.LifetimeSystem;
+import unsw.graphics.ecs.MovementSystem;
 import unsw.graphics.examples.sailing.objects.CameraHarness;
 import unsw.graphics.examples.sailing.objects.Mouse;
 import unsw.graphics.examples.sailing.objects.Pirate;
+import unsw.graphics.examples.sailing.objects.PirateSystem;
 import unsw.graphics.scene.Camera;
 import unsw.graphics.scene.Scene;
+import unsw.graphics.scene.SceneObject;
 
 /**
  * COMMENT: A Sailing 'Game' that uses UNSWgraph
@@ -26,9 +33,13 @@ public class SailingGame extends Application2D {
 
     private static final Color WATER_COLOR = new Color(0.1f, 0.3f, 1f);
     private static final String MAP_FILE = "res/sailing/map.json";
+    
+    // Run the ships as entities rather than SceneObjects
+    private static final boolean USE_ENTITIES = false;
 
     private Map myMap;
     private Scene scene;
+    private SpriteBatch batch;
     
     private SailingGame() {
         super("Sailing Game", 1024, 768);
@@ -39,16 +50,34 @@ public class SailingGame extends Application2D {
         super.init(gl);
 
         scene = new Scene();
+
+        // Start each update step with the clicks since the last one, before the ships read them
+        new Mouse.Ticker(scene.getRoot());
         
+        // Draw the whole scene in a few draw calls
+        batch = new SpriteBatch();
+        batch.init(gl);
+        scene.setBatch(batch);
+        
+        CameraHarness harness;
         try {
-            readMap(new File(MAP_FILE));
+            if (USE_ENTITIES) {
+                harness = readEntities(new File(MAP_FILE));
+            } else {
+                readMap(new File(MAP_FILE));
+                harness = null;
+            }
         } catch (IOException e) {
             e.printStackTrace();
+            return;
         }
 
         // attach the camera to the player
-        Pirate player = myMap.player();
-        Camera camera = new Camera(new CameraHarness(scene.getRoot(), player));
+        if (harness == null) {
+            Pirate player = myMap.player();
+            harness = new CameraHarness(scene.getRoot(), player);
+        }
+        Camera camera = new Camera(harness);
         camera.scale(20);
         
         scene.setCamera(camera);
@@ -63,6 +92,30 @@ public class SailingGame extends Application2D {
         in.close();
     }
     
+    /**
+     * Read the map with the ships as entities.
+     * 
+     * @param mapFile
+     * @return A harness for the camera that follows the player
+     * @throws IOException
+     */
+    private CameraHarness readEntities(File mapFile) throws IOException {
+        // The islands go under the ships
+        SceneObject land = new SceneObject(scene.getRoot());
+        EntityLayer ships = new EntityLayer(scene.getRoot());
+
+        PirateSystem pirates = new PirateSystem();
+        ships.addSystem(pirates);
+        ships.addSystem(new MovementSystem());
+        ships.addSystem(new AttachmentSystem());
+        ships.addSystem(new LifetimeSystem());
+
+        InputStream in = new FileInputStream(mapFile);
+        int player = Map.readEntities(land, ships.getStore(), pirates, in);
+        in.close();
+        return new CameraHarness(scene.getRoot(), ships.getStore(), player);
+    }
+    
     @Override
     public void reshape(GL3 gl, int width, int height) {
         scene.reshape(width, height);
@@ -71,10 +124,16 @@ public class SailingGame extends Application2D {
     @Override
     public void display(GL3 gl) {
         super.display(gl);
-        Mouse.theMouse.update(scene.getCamera(), getWindow());
+        Mouse.theMouse.update(scene, getWindow());
         scene.draw(gl);
     }
 
+    @Override
+    public void destroy(GL3 gl) {
+        super.destroy(gl);
+        batch.destroy(gl);
+    }
+
     public static void main(String[] args) throws IOException {
         SailingGame game = new SailingGame();
         game.start();
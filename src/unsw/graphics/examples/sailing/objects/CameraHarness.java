@@ -1,5 +1,6 @@
 package unsw.graphics.examples.sailing.objects;
 
+import unsw.graphics.ecs.EntityStore;
 import unsw.graphics.geometry.Point2D;
 import unsw.graphics.scene.SceneObject;
 
@@ -12,6 +13,10 @@ public class CameraHarness extends SceneObject {
 
     private SceneObject myTarget;
 
+    // or an entity, whose store is in the same coordinate frame as the parent
+    private EntityStore myStore;
+    private int myEntity;
+
     // don't connect to the target
     // instead track the target without rotation or scaling
     public CameraHarness(SceneObject parent, SceneObject target) {
@@ -20,8 +25,21 @@ public class CameraHarness extends SceneObject {
         myTarget = target;
     }
 
+    public CameraHarness(SceneObject parent, EntityStore store, int entity) {
+        super(parent);
+        
+        myStore = store;
+        myEntity = entity;
+    }
+
     @Override
     public void updateSelf(float dt) {
+        if (myTarget == null) {
+            int i = myStore.indexOf(myEntity);
+            if (i >= 0)
+                setPosition(myStore.getX()[i], myStore.getY()[i]);
+            return;
+        }
         Point2D p = myTarget.getGlobalPosition();
         setPosition(p.getX(), p.getY());
     }
@@ -43,7 +43,7 @@ public class Cannon extends PolygonalSceneObject {
         // fire the cannon
         if (Mouse.theMouse.wasPressed(myButton)) {
             // create a ball at the cannon's origin
-            CannonBall ball = new CannonBall(this, 0, 0, 0, 1);
+            CannonBall ball = CannonBall.spawn(this, 0, 0, 0, 1);
 
             // detach it from the cannon
             ball.setParent(getParent().getParent());
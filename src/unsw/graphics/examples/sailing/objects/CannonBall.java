@@ -6,6 +6,7 @@ import java.util.List;
 
 import unsw.graphics.geometry.Point2D;
 import unsw.graphics.geometry.Polygon2D;
+import unsw.graphics.scene.ObjectPool;
 import unsw.graphics.scene.PolygonalSceneObject;
 import unsw.graphics.scene.SceneObject;
 
@@ -16,19 +17,51 @@ import unsw.graphics.scene.SceneObject;
  */
 public class CannonBall extends PolygonalSceneObject {
 
-    private static final Color LINE_COLOR = Color.BLACK;
-    private static final Color FILL_COLOR = new Color(0.1f, 0.1f, 0.1f, 1.0f);
+    static final Color LINE_COLOR = Color.BLACK;
+    static final Color FILL_COLOR = new Color(0.1f, 0.1f, 0.1f, 1.0f);
     private static final int POINTS = 8;
 
-    private static final float LIFETIME = 1.0f;
-    private static final float SPEED = 10.0f;
+    static final float LIFETIME = 1.0f;
+    static final float SPEED = 10.0f;
+
+    // Every ball is the same shape, so they all share one polygon
+    static final Polygon2D POLYGON = makePolygon();
+
+    // Balls that have run out, waiting to be fired again
+    private static final ObjectPool<CannonBall> POOL = new ObjectPool<CannonBall>() {
+        @Override
+        protected CannonBall create(SceneObject parent) {
+            return new CannonBall(parent, 0, 0, 0, 1);
+        }
+    };
         
     private float myLifetime;
     private Point2D myMomentum;
     
     public CannonBall(SceneObject parent, float x, float y, float angle, float scale) {
-        super(parent, makePolygon(), FILL_COLOR, LINE_COLOR);
+        super(parent, POLYGON, FILL_COLOR, LINE_COLOR);
         
+        reset(x, y, angle, scale);
+    }
+
+    /**
+     * Get a cannonball from the pool, or a new one if there are none.
+     * 
+     * @param parent
+     * @param x
+     * @param y
+     * @param angle
+     * @param scale
+     * @return
+     */
+    public static CannonBall spawn(SceneObject parent, float x, float y, float angle, 
+            float scale) {
+        CannonBall ball = POOL.obtain(parent);
+        ball.reset(x, y, angle, scale);
+        return ball;
+    }
+
+    private void reset(float x, float y, float angle, float scale) {
         setPosition(x, y);
         setRotation(angle);
         setScale(scale);
@@ -74,7 +107,7 @@ public class CannonBall extends PolygonalSceneObject {
         myLifetime -= dt;
         
         if (myLifetime <= 0) {
-            destroy();
+            POOL.recycle(this);
         }
         else {
             float d = SPEED * dt;
@@ -27,10 +27,10 @@ public class Merchant extends PolygonalSceneObject {
     //
 
 
-    private static final Polygon2D POLYGON = new Polygon2D(1.5f, 0, 1, 0.6f, -1, 0.7f, -1,
+    static final Polygon2D POLYGON = new Polygon2D(1.5f, 0, 1, 0.6f, -1, 0.7f, -1,
             -0.7f, 1, -0.6f);
-    private static final Color LINE_COLOR = new Color(0.5f, 0.3f, 0.0f, 1.0f);
-    private static final Color FILL_COLOR = new Color(0.5f, 0.4f, 0.25f, 1.0f);
+    static final Color LINE_COLOR = new Color(0.5f, 0.3f, 0.0f, 1.0f);
+    static final Color FILL_COLOR = new Color(0.5f, 0.4f, 0.25f, 1.0f);
     
     @SuppressWarnings("unused")
     private Sail mySail;
@@ -5,7 +5,8 @@ import com.jogamp.newt.event.MouseAdapter;
 import com.jogamp.newt.event.MouseEvent;
 
 import unsw.graphics.geometry.Point2D;
-import unsw.graphics.scene.Camera;
+import unsw.graphics.scene.Scene;
+import unsw.graphics.scene.SceneObject;
 
 
 
@@ -14,7 +15,7 @@ import unsw.graphics.scene.Camera;
  * 
  * It keeps track of:
  *  1) the mouse position in world coordinates
- *  2) mouse press/release events that have happened in the past frame
+ *  2) mouse press/release events that have happened since the last update step
  *
  * Mouse is a singleton class. There is only one instance, stored in Mouse.theMouse.
  * 
@@ -23,6 +24,9 @@ import unsw.graphics.scene.Camera;
  * getWindow().addMouseListener(Mouse.theMouse);
  * getWindow().addMouseMotionListener(Mouse.theMouse);
  *
+ * and either call tick() at the start of every update step, or add a Mouse.Ticker to the scene
+ * to do it for you.
+ *
  * @author malcolmr
  */
 public class Mouse extends MouseAdapter {
@@ -61,18 +65,24 @@ public class Mouse extends MouseAdapter {
     /**
      * When the view is updated, compute and store the position of the mouse in the world coordinate
      * frame.
-     *
-     * Update any mouse presses or releases that have happened.
      * 
      * @param gl
      */
-    public void update(Camera camera, Window window) {
+    public void update(Scene scene, Window window) {
         if (lastEvent != null) {
             float x = 2f*lastEvent.getX()/window.getSurfaceWidth() - 1f;
             float y = -2f*lastEvent.getY()/window.getSurfaceHeight() + 1f;
-            myPosition = camera.fromView(x, y);
+            myPosition = scene.fromView(x, y);
         }
-        
+    }
+
+    /**
+     * Start an update step: the presses and releases since the last step become the ones
+     * wasPressed() and wasReleased() report until the next one. With a tick rate a frame can
+     * take several steps or none, so this is what makes each click fire once: it is seen by 
+     * exactly one step, and kept for the next frame if this one takes no steps.
+     */
+    public void tick() {
         for (int i = 0; i < 3; i++) {
             myWasPressed[i] = myPressed[i];
             myWasReleased[i] = myReleased[i];
@@ -131,7 +141,7 @@ public class Mouse extends MouseAdapter {
     }
 
     /**
-     * Returns true if the specified mouse button was pressed this frame.
+     * Returns true if the specified mouse button was pressed before this update step.
      * 
      * @param button should be 1, 2 or 3
      * @return
@@ -141,7 +151,7 @@ public class Mouse extends MouseAdapter {
     }
 
     /**
-     * Returns true if the specified mouse button was released this frame.
+     * Returns true if the specified mouse button was released before this update step.
      * 
      * @param button should be 1, 2 or 3
      * @return
@@ -150,4 +160,20 @@ public class Mouse extends MouseAdapter {
         return myWasReleased[button-1];
     }
 
+    /**
+     * An object that calls tick() each time it is updated. Make it the first child of the root
+     * so it is updated before anything that reads the buttons.
+     */
+    public static class Ticker extends SceneObject {
+
+        public Ticker(SceneObject parent) {
+            super(parent);
+        }
+
+        @Override
+        public void updateSelf(float dt) {
+            theMouse.tick();
+        }
+    }
+
 }
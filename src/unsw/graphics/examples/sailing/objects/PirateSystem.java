@@ -0,0 +1,111 @@
+package unsw.graphics.examples.sailing.objects;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import unsw.graphics.ecs.EntityStore;
+import unsw.graphics.ecs.EntitySystem;
+import unsw.graphics.geometry.Point2D;
+import unsw.graphics.scene.MathUtil;
+
+/**
+ * Steers pirate ships towards the mouse and fires their cannons, like Pirate and Cannon do for
+ * SceneObjects.
+ *
+ * The ships are steered by setting their velocity, so this should run before the
+ * MovementSystem. There are only ever a few pirates, so they are updated on one thread.
+ *
+ * @author Robert Clifton-Everest
+ */
+public class PirateSystem implements EntitySystem {
+
+    private static final float TURNING_SPEED = 90;
+    private static final float SPEED = 5;
+    private static final float RADIUS = 1;
+    private static final float MAX_SAIL_ANGLE = 15;
+
+    private static class Ship {
+        final int id;
+        final int[] sails;
+        final int[] cannons;
+        final int[] buttons;
+
+        Ship(int id, int[] sails, int[] cannons, int[] buttons) {
+            this.id = id;
+            this.sails = sails;
+            this.cannons = cannons;
+            this.buttons = buttons;
+        }
+    }
+
+    private final List<Ship> myShips = new ArrayList<Ship>();
+
+    /**
+     * Steer the given ship.
+     *
+     * @param ship
+     * @param sails The ids of the sails, which turn to face the mouse
+     * @param cannons The ids of the cannons
+     * @param buttons The mouse button that fires each cannon
+     */
+    void add(int ship, int[] sails, int[] cannons, int[] buttons) {
+        myShips.add(new Ship(ship, sails, cannons, buttons));
+    }
+
+    @Override
+    public void update(EntityStore store, float dt) {
+        for (Ship ship : myShips) {
+            if (store.isAlive(ship.id)) {
+                move(store, ship, dt);
+                fire(store, ship);
+            }
+        }
+    }
+
+    private void move(EntityStore store, Ship ship, float dt) {
+        int i = store.indexOf(ship.id);
+        float[] rotation = store.getRotation();
+        Point2D target = Mouse.theMouse.getPosition();
+
+        float dx = target.getX() - store.getX()[i];
+        float dy = target.getY() - store.getY()[i];
+        float dd = (float) Math.sqrt(dx * dx + dy * dy);
+
+        // only move if the mouse is outside our close vicinity (no turning on the spot)
+        if (dd <= RADIUS || dt <= 0) {
+            store.setVelocity(ship.id, 0, 0, 0);
+            return;
+        }
+
+        float angle = (float) Math.toDegrees(Math.atan2(dy, dx));
+        angle = MathUtil.normaliseAngle(angle - rotation[i]);
+
+        float sailAngle = MathUtil.clamp(angle, -MAX_SAIL_ANGLE, MAX_SAIL_ANGLE);
+        for (int sail : ship.sails)
+            store.getLocalRotation()[store.indexOf(sail)] = sailAngle;
+
+        // turn towards the mouse at a fixed rate
+        float maxTurn = dt * TURNING_SPEED;
+        angle = MathUtil.clamp(angle, -maxTurn, maxTurn);
+        rotation[i] = MathUtil.normaliseAngle(rotation[i] + angle);
+
+        float speed = MathUtil.clamp(dt * SPEED, 0, dd) / dt;
+        double theta = Math.toRadians(rotation[i]);
+        store.setVelocity(ship.id, speed * (float) Math.cos(theta),
+                speed * (float) Math.sin(theta), 0);
+    }
+
+    private void fire(EntityStore store, Ship ship) {
+        int i = store.indexOf(ship.id);
+        float vx = store.getVelocityX()[i], vy = store.getVelocityY()[i];
+        for (int k = 0; k < ship.cannons.length; k++) {
+            if (!Mouse.theMouse.wasPressed(ship.buttons[k]))
+                continue;
+
+            // a ball at the cannon's origin, with momentum to match the ship's speed
+            int c = store.indexOf(ship.cannons[k]);
+            SailingEntities.createCannonBall(store, store.getX()[c], store.getY()[c],
+                    store.getRotation()[c], store.getScale()[c], vx, vy);
+        }
+    }
+}
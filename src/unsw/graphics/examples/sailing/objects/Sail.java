@@ -14,9 +14,9 @@ import unsw.graphics.scene.SceneObject;
  */
 public class Sail extends PolygonalSceneObject {
 
-    private static final Polygon2D POLYGON = new Polygon2D(0.5f, 0, 0, 1.5f, 0, -1.5f);
-    private static final Color LINE_COLOR = new Color(1.0f, 1.0f, 1.0f);
-    private static final Color FILL_COLOR = new Color(1.0f, 1.0f, 1.0f, 0.75f);
+    static final Polygon2D POLYGON = new Polygon2D(0.5f, 0, 0, 1.5f, 0, -1.5f);
+    static final Color LINE_COLOR = new Color(1.0f, 1.0f, 1.0f);
+    static final Color FILL_COLOR = new Color(1.0f, 1.0f, 1.0f, 0.75f);
 
     private float myMaxAngle = 15;
     
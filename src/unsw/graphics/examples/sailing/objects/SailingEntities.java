@@ -0,0 +1,111 @@
+package unsw.graphics.examples.sailing.objects;
+
+import java.awt.Color;
+
+import com.jogamp.newt.event.MouseEvent;
+
+import unsw.graphics.ecs.EntityStore;
+import unsw.graphics.geometry.Polygon2D;
+
+/**
+ * Creates the entities of the sailing game, for when it runs on an EntityLayer rather than as a
+ * tree of SceneObjects. They look the same as the Pirate, Merchant and CannonBall objects.
+ *
+ * @author Robert Clifton-Everest
+ */
+public class SailingEntities {
+
+    private static final int SHIP = EntityStore.TRANSFORM | EntityStore.VELOCITY
+            | EntityStore.POLYGON;
+    private static final int PART = EntityStore.TRANSFORM | EntityStore.POLYGON
+            | EntityStore.ATTACHMENT;
+    private static final int BALL = EntityStore.TRANSFORM | EntityStore.VELOCITY
+            | EntityStore.LIFETIME | EntityStore.POLYGON;
+
+    /**
+     * Create a pirate ship, with its sails and cannons, and have the given system steer it.
+     *
+     * @param store
+     * @param pirates
+     * @param x
+     * @param y
+     * @param angle
+     * @return The id of the ship
+     */
+    public static int createPirate(EntityStore store, PirateSystem pirates, float x, float y,
+            float angle) {
+        int ship = store.create(SHIP);
+        store.setTransform(ship, x, y, angle, 1);
+        store.setPolygon(ship, Pirate.POLYGON, Pirate.FILL_COLOR, Pirate.LINE_COLOR);
+
+        int[] cannons = {
+            createPart(store, ship, Cannon.POLYGON, Cannon.FILL_COLOR, Cannon.LINE_COLOR,
+                    0.5f, 0.625f, 90, 0.2f),
+            createPart(store, ship, Cannon.POLYGON, Cannon.FILL_COLOR, Cannon.LINE_COLOR,
+                    -0.5f, 0.675f, 90, 0.2f),
+            createPart(store, ship, Cannon.POLYGON, Cannon.FILL_COLOR, Cannon.LINE_COLOR,
+                    0.5f, -0.625f, -90, 0.2f),
+            createPart(store, ship, Cannon.POLYGON, Cannon.FILL_COLOR, Cannon.LINE_COLOR,
+                    -0.5f, -0.675f, -90, 0.2f) };
+        int[] buttons = { MouseEvent.BUTTON1, MouseEvent.BUTTON1, MouseEvent.BUTTON3,
+                MouseEvent.BUTTON3 };
+        int[] sails = {
+            createPart(store, ship, Sail.POLYGON, Sail.FILL_COLOR, Sail.LINE_COLOR,
+                    0.5f, 0, 0, 0.75f),
+            createPart(store, ship, Sail.POLYGON, Sail.FILL_COLOR, Sail.LINE_COLOR,
+                    -0.5f, 0, 0, 1.0f) };
+
+        pirates.add(ship, sails, cannons, buttons);
+        return ship;
+    }
+
+    /**
+     * Create a merchant ship with its sail.
+     *
+     * @param store
+     * @param x
+     * @param y
+     * @param angle
+     * @return The id of the ship
+     */
+    public static int createMerchant(EntityStore store, float x, float y, float angle) {
+        int ship = store.create(SHIP);
+        store.setTransform(ship, x, y, angle, 1);
+        store.setPolygon(ship, Merchant.POLYGON, Merchant.FILL_COLOR, Merchant.LINE_COLOR);
+        createPart(store, ship, Sail.POLYGON, Sail.FILL_COLOR, Sail.LINE_COLOR, 0, 0, 0, 1.0f);
+        return ship;
+    }
+
+    /**
+     * Create a cannonball flying in the direction it faces, plus the given momentum.
+     *
+     * @param store
+     * @param x
+     * @param y
+     * @param angle
+     * @param scale
+     * @param vx
+     * @param vy
+     * @return The id of the ball
+     */
+    public static int createCannonBall(EntityStore store, float x, float y, float angle,
+            float scale, float vx, float vy) {
+        int ball = store.create(BALL);
+        store.setTransform(ball, x, y, angle, scale);
+        double theta = Math.toRadians(angle);
+        store.setVelocity(ball, CannonBall.SPEED * (float) Math.cos(theta) + vx,
+                CannonBall.SPEED * (float) Math.sin(theta) + vy, 0);
+        store.setLifetime(ball, CannonBall.LIFETIME);
+        store.setPolygon(ball, CannonBall.POLYGON, CannonBall.FILL_COLOR, CannonBall.LINE_COLOR);
+        return ball;
+    }
+
+    private static int createPart(EntityStore store, int ship, Polygon2D polygon,
+            Color fillColor, Color lineColor, float x, float y, float angle,
+            float scale) {
+        int part = store.create(PART);
+        store.setPolygon(part, polygon, fillColor, lineColor);
+        store.setAttachment(part, ship, x, y, angle, scale);
+        return part;
+    }
+}
@@ -0,0 +1,466 @@
+/**
+ *
+ */
+package unsw.graphics.geometry;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+import com.jogamp.opengl.util.GLBuffers;
+
+import unsw.graphics.geometry.PlyHeader.Element;
+import unsw.graphics.geometry.PlyHeader.Property;
+
+/**
+ * Reads the body of an ASCII PLY file in parallel.
+ *
+ * In an ASCII PLY file every element is on a line of its own. The body is
+ * split into chunks that each start at the beginning of a line, and each
+ * chunk is parsed on its own fork/join worker in three passes:
+ *   1. Count the lines in each chunk, so each chunk knows which elements it
+ *      holds.
+ *   2. Parse the vertices, which each have a fixed place in the vertex
+ *      buffer, and count the triangles the faces will be split into.
+ *   3. Parse the faces into the index buffer, each chunk starting after the
+ *      triangles of all the chunks before it.
+ *
+ * Numbers are parsed in place without creating strings, so nothing is
+ * allocated per vertex or face. Blank lines are ignored.
+ *
+ * @author Robert Clifton-Everest
+ *
+ */
+class AsciiPlyReader {
+
+    /**
+     * Bodies smaller than this are not worth splitting.
+     */
+    private static final int MIN_CHUNK_SIZE = 1 << 16;
+
+    /**
+     * Powers of ten that can be represented exactly as doubles.
+     */
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++)
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+
+    private final ByteBuffer data;
+
+    private final Element vertex;
+    private final Element face;
+    private final int faceList;
+
+    /**
+     * The index of the first line of the vertices and the faces, counting
+     * from the start of the body.
+     */
+    private final int firstVertexLine;
+    private final int firstFaceLine;
+
+    /**
+     * Where each chunk starts. The last entry is the end of the body.
+     */
+    private final int[] chunkStart;
+
+    /**
+     * The index of the first line in each chunk. The last entry is the total
+     * number of lines.
+     */
+    private final int[] chunkFirstLine;
+
+    /**
+     * The index of the first triangle in each chunk.
+     */
+    private final int[] chunkFirstTriangle;
+
+    private FloatBuffer vertices;
+    private IntBuffer indices;
+
+    private AsciiPlyReader(ByteBuffer data, int bodyStart, Element vertex, int firstVertexLine,
+            Element face, int faceList, int firstFaceLine) {
+        this.data = data;
+        this.vertex = vertex;
+        this.face = face;
+        this.faceList = faceList;
+        this.firstVertexLine = firstVertexLine;
+        this.firstFaceLine = firstFaceLine;
+
+        int bodyLength = data.limit() - bodyStart;
+        int chunks = Math.max(1, Math.min(4 * ForkJoinPool.getCommonPoolParallelism(),
+                bodyLength / MIN_CHUNK_SIZE));
+
+        chunkStart = new int[chunks + 1];
+        chunkStart[0] = bodyStart;
+        for (int i = 1; i < chunks; i++) {
+            // Move the boundary forward to the start of the next line
+            int pos = Math.max(bodyStart + (int) ((long) bodyLength * i / chunks),
+                    chunkStart[i - 1]);
+            while (pos < data.limit() && data.get(pos - 1) != '\n')
+                pos++;
+            chunkStart[i] = pos;
+        }
+        chunkStart[chunks] = data.limit();
+
+        chunkFirstLine = new int[chunks + 1];
+        chunkFirstTriangle = new int[chunks + 1];
+    }
+
+    /**
+     * Read the vertices and faces from the ASCII body of a PLY file, or return
+     * null if it has a layout that can't be read here.
+     *
+     * @param header
+     * @param data The whole file
+     * @param texCoords Whether to generate texture coordinates
+     * @return
+     * @throws IOException
+     */
+    static PlyLoader read(PlyHeader header, ByteBuffer data, boolean texCoords)
+            throws IOException {
+        Element vertex = header.getElement("vertex");
+        Element face = header.getElement("face");
+        if (vertex == null || face == null || !PlyLoader.isReadableVertex(vertex, texCoords))
+            return null;
+        int faceList = PlyLoader.faceIndexList(face);
+        if (faceList < 0)
+            return null;
+
+        // Work out which lines the vertices and faces are on
+        int line = 0, firstVertexLine = -1, firstFaceLine = -1;
+        for (Element element : header.getElements()) {
+            if (element == vertex)
+                firstVertexLine = line;
+            else if (element == face)
+                firstFaceLine = line;
+            line += element.count;
+        }
+
+        AsciiPlyReader reader = new AsciiPlyReader(data, header.getLength(), vertex,
+                firstVertexLine, face, faceList, firstFaceLine);
+        reader.read();
+        return new PlyLoader(reader.vertices, reader.indices,
+                texCoords ? PlyLoader.planarTexCoords(reader.vertices) : null);
+    }
+
+    private void read() throws IOException {
+        int chunks = chunkStart.length - 1;
+
+        // Pass 1
+        forEachChunk(c -> chunkFirstLine[c + 1] = countLines(c));
+        for (int c = 0; c < chunks; c++)
+            chunkFirstLine[c + 1] += chunkFirstLine[c];
+
+        int lines = chunkFirstLine[chunks];
+        if (lines < firstVertexLine + vertex.count || lines < firstFaceLine + face.count)
+            throw new IOException("Unexpected end of file");
+
+        // Pass 2
+        vertices = GLBuffers.newDirectFloatBuffer(vertex.count * 3);
+        forEachChunk(c -> chunkFirstTriangle[c + 1] = readVerticesAndCountTriangles(c));
+        for (int c = 0; c < chunks; c++)
+            chunkFirstTriangle[c + 1] += chunkFirstTriangle[c];
+
+        // Pass 3
+        indices = GLBuffers.newDirectIntBuffer(chunkFirstTriangle[chunks] * 3);
+        forEachChunk(c -> readFaces(c));
+    }
+
+    /**
+     * A pass over one chunk.
+     */
+    private interface ChunkPass {
+        void run(int chunk) throws IOException;
+    }
+
+    /**
+     * Run the given pass over every chunk, in parallel if there is more than
+     * one.
+     */
+    private void forEachChunk(ChunkPass pass) throws IOException {
+        IntConsumer body = c -> {
+            try {
+                pass.run(c);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+        try {
+            if (chunkStart.length == 2)
+                body.accept(0);
+            else
+                IntStream.range(0, chunkStart.length - 1).parallel().forEach(body);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private int countLines(int chunk) {
+        int lines = 0;
+        boolean blank = true;
+        for (int pos = chunkStart[chunk]; pos < chunkStart[chunk + 1]; pos++) {
+            byte b = data.get(pos);
+            if (b == '\n') {
+                if (!blank)
+                    lines++;
+                blank = true;
+            } else if (!isSpace(b)) {
+                blank = false;
+            }
+        }
+        // The last line of the file might not end in a newline
+        return blank ? lines : lines + 1;
+    }
+
+    private int readVerticesAndCountTriangles(int chunk) throws IOException {
+        Tokenizer in = new Tokenizer(chunkStart[chunk], chunkStart[chunk + 1]);
+        int x = vertex.indexOf("x"), y = vertex.indexOf("y"), z = vertex.indexOf("z");
+        int triangles = 0;
+
+        for (int line = chunkFirstLine[chunk]; in.startLine(); line++) {
+            int v = line - firstVertexLine;
+            int f = line - firstFaceLine;
+            if (v >= 0 && v < vertex.count) {
+                for (int i = 0; i < vertex.properties.size(); i++) {
+                    if (i == x)
+                        vertices.put(v * 3, in.nextFloat());
+                    else if (i == y)
+                        vertices.put(v * 3 + 1, in.nextFloat());
+                    else if (i == z)
+                        vertices.put(v * 3 + 2, in.nextFloat());
+                    else
+                        in.skipToken();
+                }
+            } else if (f >= 0 && f < face.count) {
+                skipToFaceList(in);
+                int n = in.nextInt();
+                if (n < 3)
+                    throw new IOException("face with less than three vertices.");
+                triangles += n - 2;
+            }
+            in.skipLine();
+        }
+        return triangles;
+    }
+
+    private void readFaces(int chunk) throws IOException {
+        int firstLine = chunkFirstLine[chunk], endLine = chunkFirstLine[chunk + 1];
+        if (endLine <= firstFaceLine || firstLine >= firstFaceLine + face.count)
+            return;
+
+        Tokenizer in = new Tokenizer(chunkStart[chunk], chunkStart[chunk + 1]);
+        int index = chunkFirstTriangle[chunk] * 3;
+
+        for (int line = firstLine; in.startLine(); line++) {
+            int f = line - firstFaceLine;
+            if (f >= 0 && f < face.count) {
+                skipToFaceList(in);
+                int n = in.nextInt();
+                // Split the face into a fan of triangles around its first vertex
+                int first = in.nextInt();
+                int previous = in.nextInt();
+                for (int k = 2; k < n; k++) {
+                    int next = in.nextInt();
+                    indices.put(index++, first);
+                    indices.put(index++, previous);
+                    indices.put(index++, next);
+                    previous = next;
+                }
+            }
+            in.skipLine();
+        }
+    }
+
+    /**
+     * Skip the properties of a face that come before its list of vertex
+     * indices.
+     */
+    private void skipToFaceList(Tokenizer in) throws IOException {
+        for (int i = 0; i < faceList; i++) {
+            Property p = face.properties.get(i);
+            if (p.isList()) {
+                for (int n = in.nextInt(); n > 0; n--)
+                    in.skipToken();
+            } else {
+                in.skipToken();
+            }
+        }
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    /**
+     * Reads whitespace separated tokens from one chunk of the body.
+     */
+    private class Tokenizer {
+        private int pos;
+        private final int end;
+
+        Tokenizer(int start, int end) {
+            this.pos = start;
+            this.end = end;
+        }
+
+        /**
+         * Move to the start of the next non-blank line. Returns false if there
+         * are no more lines in this chunk.
+         */
+        boolean startLine() {
+            while (pos < end) {
+                byte b = data.get(pos);
+                if (b == '\n')
+                    pos++;
+                else if (isSpace(b))
+                    pos++;
+                else
+                    return true;
+            }
+            return false;
+        }
+
+        /**
+         * Move past the end of the current line.
+         */
+        void skipLine() {
+            while (pos < end && data.get(pos++) != '\n')
+                ;
+        }
+
+        private void skipSpaces() throws IOException {
+            while (pos < end && isSpace(data.get(pos)))
+                pos++;
+            if (pos == end || data.get(pos) == '\n')
+                throw new IOException("Line ended before all properties were read");
+        }
+
+        private boolean atTokenEnd() {
+            return pos == end || isSpace(data.get(pos)) || data.get(pos) == '\n';
+        }
+
+        void skipToken() throws IOException {
+            skipSpaces();
+            while (!atTokenEnd())
+                pos++;
+        }
+
+        int nextInt() throws IOException {
+            skipSpaces();
+            int start = pos;
+            boolean negative = false;
+            if (data.get(pos) == '-' || data.get(pos) == '+')
+                negative = data.get(pos++) == '-';
+
+            long value = 0;
+            while (pos < end && isDigit(data.get(pos)) && value <= Integer.MAX_VALUE)
+                value = value * 10 + (data.get(pos++) - '0');
+
+            if (pos == start || !atTokenEnd() || value > Integer.MAX_VALUE)
+                throw new IOException("Invalid integer: " + token(start));
+            return (int) (negative ? -value : value);
+        }
+
+        float nextFloat() throws IOException {
+            skipSpaces();
+            int start = pos;
+            boolean negative = false;
+            if (data.get(pos) == '-' || data.get(pos) == '+')
+                negative = data.get(pos++) == '-';
+
+            // The value is mantissa * 10^exponent
+            long mantissa = 0;
+            int exponent = 0;
+            boolean exact = true;
+            boolean digits = false;
+
+            while (pos < end && isDigit(data.get(pos))) {
+                int d = data.get(pos++) - '0';
+                digits = true;
+                if (mantissa < Long.MAX_VALUE / 10 - 9) {
+                    mantissa = mantissa * 10 + d;
+                } else {
+                    exponent++;
+                    exact &= d == 0;
+                }
+            }
+            if (pos < end && data.get(pos) == '.') {
+                pos++;
+                while (pos < end && isDigit(data.get(pos))) {
+                    int d = data.get(pos++) - '0';
+                    digits = true;
+                    if (mantissa < Long.MAX_VALUE / 10 - 9) {
+                        mantissa = mantissa * 10 + d;
+                        exponent--;
+                    } else {
+                        exact &= d == 0;
+                    }
+                }
+            }
+            if (digits && pos < end && (data.get(pos) == 'e' || data.get(pos) == 'E')) {
+                pos++;
+                boolean negativeExponent = false;
+                if (pos < end && (data.get(pos) == '-' || data.get(pos) == '+'))
+                    negativeExponent = data.get(pos++) == '-';
+                int e = 0;
+                boolean exponentDigits = false;
+                while (pos < end && isDigit(data.get(pos))) {
+                    if (e < 100000)
+                        e = e * 10 + (data.get(pos) - '0');
+                    pos++;
+                    exponentDigits = true;
+                }
+                digits = exponentDigits;
+                exponent += negativeExponent ? -e : e;
+            }
+
+            if (!digits || !atTokenEnd()) {
+                // Something unusual like "nan". Leave it to the JDK.
+                while (!atTokenEnd())
+                    pos++;
+                try {
+                    return (float) Double.parseDouble(token(start));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Invalid number: " + token(start));
+                }
+            }
+
+            // If the mantissa and the power of ten are both exact doubles, a
+            // single multiplication or division is correctly rounded. This
+            // gives the same result as Double.parseDouble().
+            double value;
+            if (exact && mantissa < (1L << 53) && Math.abs(exponent) < POWERS_OF_TEN.length) {
+                value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent]
+                        : mantissa / POWERS_OF_TEN[-exponent];
+            } else {
+                value = Double.parseDouble(token(start));
+                return (float) value;
+            }
+            return (float) (negative ? -value : value);
+        }
+
+        /**
+         * The text from the given position to the current position.
+         */
+        private String token(int start) {
+            byte[] bytes = new byte[pos - start];
+            for (int i = 0; i < bytes.length; i++)
+                bytes[i] = data.get(start + i);
+            return new String(bytes, StandardCharsets.US_ASCII);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ *
+ */
+package unsw.graphics.geometry;
+
+import java.nio.FloatBuffer;
+
+import unsw.graphics.Matrix4;
+
+/**
+ * An axis-aligned bounding box in 3D.
+ *
+ * This class is immutable.
+ *
+ * @author Robert Clifton-Everest
+ *
+ */
+public class BoundingBox {
+
+    final float minX, minY, minZ;
+    final float maxX, maxY, maxZ;
+
+    /**
+     * Construct a bounding box with the given minimum and maximum corners.
+     *
+     * @param minX
+     * @param minY
+     * @param minZ
+     * @param maxX
+     * @param maxY
+     * @param maxZ
+     */
+    public BoundingBox(float minX, float minY, float minZ, float maxX, float maxY,
+            float maxZ) {
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.maxZ = maxZ;
+    }
+
+    /**
+     * Compute the bounding box of the given x-y-z coordinates. If there are
+     * none, the box is the single point at the origin.
+     *
+     * @param points
+     * @return
+     */
+    static BoundingBox of(FloatBuffer points) {
+        if (points.capacity() < 3)
+            return new BoundingBox(0, 0, 0, 0, 0, 0);
+        float[] min = { Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY,
+                Float.POSITIVE_INFINITY };
+        float[] max = { Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY,
+                Float.NEGATIVE_INFINITY };
+        for (int i = 0; i < points.capacity(); i++) {
+            min[i % 3] = Math.min(min[i % 3], points.get(i));
+            max[i % 3] = Math.max(max[i % 3], points.get(i));
+        }
+        return new BoundingBox(min[0], min[1], min[2], max[0], max[1], max[2]);
+    }
+
+    public Point3D getMin() {
+        return new Point3D(minX, minY, minZ);
+    }
+
+    public Point3D getMax() {
+        return new Point3D(maxX, maxY, maxZ);
+    }
+
+    public Point3D getCenter() {
+        return new Point3D((minX + maxX) / 2, (minY + maxY) / 2, (minZ + maxZ) / 2);
+    }
+
+    /**
+     * Compute the bounding box of this box after it has been transformed by
+     * the given matrix. The result contains the transformed box, but may be
+     * larger than it if the matrix rotates.
+     *
+     * @param matrix
+     * @return
+     */
+    public BoundingBox transform(Matrix4 matrix) {
+        float[] m = matrix.getValues();
+        float cx = (minX + maxX) / 2, cy = (minY + maxY) / 2, cz = (minZ + maxZ) / 2;
+        float ex = (maxX - minX) / 2, ey = (maxY - minY) / 2, ez = (maxZ - minZ) / 2;
+
+        // Each axis of the new box spans the transformed center plus or minus
+        // the absolute sum of the transformed half extents
+        float[] center = new float[3];
+        float[] extent = new float[3];
+        for (int r = 0; r < 3; r++) {
+            center[r] = m[r] * cx + m[4 + r] * cy + m[8 + r] * cz + m[12 + r];
+            extent[r] = Math.abs(m[r]) * ex + Math.abs(m[4 + r]) * ey
+                    + Math.abs(m[8 + r]) * ez;
+        }
+        return new BoundingBox(center[0] - extent[0], center[1] - extent[1],
+                center[2] - extent[2], center[0] + extent[0], center[1] + extent[1],
+                center[2] + extent[2]);
+    }
+
+    @Override
+    public String toString() {
+        return "BoundingBox(" + minX + ", " + minY + ", " + minZ + " -> " + maxX + ", "
+                + maxY + ", " + maxZ + ")";
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ *
+ */
+package unsw.graphics.geometry;
+
+import java.util.List;
+
+import unsw.graphics.Matrix3;
+
+/**
+ * An axis-aligned bounding rectangle in 2D.
+ *
+ * This class is immutable.
+ *
+ * @author Robert Clifton-Everest
+ *
+ */
+public class BoundingRectangle {
+
+    /**
+     * The rectangle that contains everything. Used for things whose bounds aren't known.
+     */
+    public static final BoundingRectangle EVERYTHING = new BoundingRectangle(
+            Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY,
+            Float.POSITIVE_INFINITY);
+
+    final float minX, minY;
+    final float maxX, maxY;
+
+    /**
+     * Construct a bounding rectangle with the given minimum and maximum corners.
+     *
+     * @param minX
+     * @param minY
+     * @param maxX
+     * @param maxY
+     */
+    public BoundingRectangle(float minX, float minY, float maxX, float maxY) {
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+    }
+
+    /**
+     * Compute the bounding rectangle of the given points. If there are none, the rectangle is
+     * the single point at the origin.
+     *
+     * @param points
+     * @return
+     */
+    public static BoundingRectangle of(List<Point2D> points) {
+        if (points.isEmpty())
+            return new BoundingRectangle(0, 0, 0, 0);
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+        for (Point2D p : points) {
+            minX = Math.min(minX, p.getX());
+            minY = Math.min(minY, p.getY());
+            maxX = Math.max(maxX, p.getX());
+            maxY = Math.max(maxY, p.getY());
+        }
+        return new BoundingRectangle(minX, minY, maxX, maxY);
+    }
+
+    public float getMinX() {
+        return minX;
+    }
+
+    public float getMinY() {
+        return minY;
+    }
+
+    public float getMaxX() {
+        return maxX;
+    }
+
+    public float getMaxY() {
+        return maxY;
+    }
+
+    public float getWidth() {
+        return maxX - minX;
+    }
+
+    public float getHeight() {
+        return maxY - minY;
+    }
+
+    /**
+     * Test if this rectangle overlaps the given one. Rectangles that only touch overlap.
+     *
+     * @param other
+     * @return
+     */
+    public boolean intersects(BoundingRectangle other) {
+        return minX <= other.maxX && other.minX <= maxX && minY <= other.maxY
+                && other.minY <= maxY;
+    }
+
+    /**
+     * Compute the smallest rectangle containing both this rectangle and the given one, which
+     * may be null.
+     *
+     * @param other
+     * @return
+     */
+    public BoundingRectangle union(BoundingRectangle other) {
+        if (other == null)
+            return this;
+        return new BoundingRectangle(Math.min(minX, other.minX), Math.min(minY, other.minY),
+                Math.max(maxX, other.maxX), Math.max(maxY, other.maxY));
+    }
+
+    /**
+     * Compute the bounding rectangle of this rectangle after it has been transformed by the
+     * given matrix. The result contains the transformed rectangle, but may be larger than it if
+     * the matrix rotates. EVERYTHING stays EVERYTHING.
+     *
+     * @param matrix
+     * @return
+     */
+    public BoundingRectangle transform(Matrix3 matrix) {
+        if (this == EVERYTHING)
+            return this;
+        float[] m = matrix.getValues();
+        float cx = (minX + maxX) / 2, cy = (minY + maxY) / 2;
+        float ex = (maxX - minX) / 2, ey = (maxY - minY) / 2;
+
+        // Each axis of the new rectangle spans the transformed center plus or minus the
+        // absolute sum of the transformed half extents
+        float x = m[0] * cx + m[3] * cy + m[6];
+        float y = m[1] * cx + m[4] * cy + m[7];
+        float w = Math.abs(m[0]) * ex + Math.abs(m[3]) * ey;
+        float h = Math.abs(m[1]) * ex + Math.abs(m[4]) * ey;
+        return new BoundingRectangle(x - w, y - h, x + w, y + h);
+    }
+
+    @Override
+    public String toString() {
+        return "BoundingRectangle(" + minX + ", " + minY + " -> " + maxX + ", " + maxY + ")";
+    }
+}
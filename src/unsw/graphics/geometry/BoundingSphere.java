@@ -0,0 +1,100 @@
+/**
+ *
+ */
+package unsw.graphics.geometry;
+
+import java.nio.FloatBuffer;
+
+import unsw.graphics.Matrix4;
+
+/**
+ * A bounding sphere in 3D.
+ *
+ * This class is immutable.
+ *
+ * @author Robert Clifton-Everest
+ *
+ */
+public class BoundingSphere {
+
+    final float x, y, z;
+    final float radius;
+
+    /**
+     * Construct a sphere with the given center and radius.
+     *
+     * @param center
+     * @param radius
+     */
+    public BoundingSphere(Point3D center, float radius) {
+        this(center.getX(), center.getY(), center.getZ(), radius);
+    }
+
+    BoundingSphere(float x, float y, float z, float radius) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.radius = radius;
+    }
+
+    /**
+     * Compute a sphere around the given x-y-z coordinates, centered on the
+     * center of the given bounding box of them.
+     *
+     * @param points
+     * @param box
+     * @return
+     */
+    static BoundingSphere of(FloatBuffer points, BoundingBox box) {
+        float cx = (box.minX + box.maxX) / 2, cy = (box.minY + box.maxY) / 2,
+                cz = (box.minZ + box.maxZ) / 2;
+        float radiusSquared = 0;
+        for (int i = 0; i + 2 < points.capacity(); i += 3) {
+            float dx = points.get(i) - cx, dy = points.get(i + 1) - cy,
+                    dz = points.get(i + 2) - cz;
+            radiusSquared = Math.max(radiusSquared, dx * dx + dy * dy + dz * dz);
+        }
+        return new BoundingSphere(cx, cy, cz, (float) Math.sqrt(radiusSquared));
+    }
+
+    public Point3D getCenter() {
+        return new Point3D(x, y, z);
+    }
+
+    public float getRadius() {
+        return radius;
+    }
+
+    /**
+     * Compute a sphere that contains this sphere after it has been
+     * transformed by the given matrix. If the matrix scales unevenly, the
+     * radius is scaled by the largest scale.
+     *
+     * @param matrix
+     * @return
+     */
+    public BoundingSphere transform(Matrix4 matrix) {
+        float[] m = matrix.getValues();
+        return new BoundingSphere(m[0] * x + m[4] * y + m[8] * z + m[12],
+                m[1] * x + m[5] * y + m[9] * z + m[13],
+                m[2] * x + m[6] * y + m[10] * z + m[14],
+                radius * maxScale(m, 0));
+    }
+
+    /**
+     * The largest scale applied to any axis by the matrix at the given offset.
+     */
+    static float maxScale(float[] m, int off) {
+        float scale = 0;
+        for (int c = 0; c < 3; c++) {
+            float x = m[off + c * 4], y = m[off + c * 4 + 1], z = m[off + c * 4 + 2];
+            scale = Math.max(scale, x * x + y * y + z * z);
+        }
+        return (float) Math.sqrt(scale);
+    }
+
+    @Override
+    public String toString() {
+        return "BoundingSphere(" + x + ", " + y + ", " + z + ", r=" + radius + ")";
+    }
+}
@@ -0,0 +1,223 @@
+/**
+ *
+ */
+package unsw.graphics.geometry;
+
+import unsw.graphics.Matrix4;
+
+/**
+ * The view frustum of a camera: the region of space that can appear on
+ * screen. It is bounded by six planes taken from the projection matrix
+ * multiplied by the view matrix, so it is in global coordinates. If it is
+ * constructed from the projection matrix alone, it is in view coordinates.
+ *
+ * The tests are conservative. Anything they report as outside the frustum is
+ * definitely invisible, but some things reported as intersecting it may not
+ * be, such as a sphere near a corner.
+ *
+ * For large numbers of objects, cullSpheres() and cullBoxes() test arrays of
+ * bounds at once. They are written as simple loops over the arrays, one
+ * plane at a time, which the JIT compiler can turn into SIMD instructions.
+ *
+ * The batch methods reuse internal scratch space, so a frustum should only be
+ * used from one thread at a time.
+ *
+ * @author Robert Clifton-Everest
+ *
+ */
+public class Frustum {
+
+    /**
+     * The left, right, bottom, top, near and far planes. Each is a, b, c, d
+     * where a point is on the inside if a*x + b*y + c*z + d >= 0. (a, b, c) is
+     * a unit vector, so the value is the distance from the plane.
+     */
+    private final float[] planes = new float[24];
+
+    /**
+     * The smallest distance of each object to a plane, for the batch tests.
+     */
+    private float[] distances = new float[0];
+
+    /**
+     * Extract the frustum from the given matrix, which maps global coordinates
+     * to clip coordinates. This is usually the projection matrix multiplied by
+     * the view matrix.
+     *
+     * @param projView
+     */
+    public Frustum(Matrix4 projView) {
+        // The matrix is column-major, so row r is m[r], m[4 + r], m[8 + r],
+        // m[12 + r]. Each plane is the last row plus or minus another one.
+        float[] m = projView.getValues();
+        for (int p = 0; p < 6; p++) {
+            int row = p / 2;
+            float sign = p % 2 == 0 ? 1 : -1;
+            float a = m[3] + sign * m[row];
+            float b = m[7] + sign * m[4 + row];
+            float c = m[11] + sign * m[8 + row];
+            float d = m[15] + sign * m[12 + row];
+            float length = (float) Math.sqrt(a * a + b * b + c * c);
+            if (length > 0) {
+                a /= length;
+                b /= length;
+                c /= length;
+                d /= length;
+            }
+            planes[p * 4] = a;
+            planes[p * 4 + 1] = b;
+            planes[p * 4 + 2] = c;
+            planes[p * 4 + 3] = d;
+        }
+    }
+
+    /**
+     * Whether the sphere with the given center and radius intersects the
+     * frustum.
+     *
+     * @param x
+     * @param y
+     * @param z
+     * @param radius
+     * @return
+     */
+    public boolean intersects(float x, float y, float z, float radius) {
+        for (int p = 0; p < 24; p += 4) {
+            if (planes[p] * x + planes[p + 1] * y + planes[p + 2] * z + planes[p + 3]
+                    < -radius)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Whether the given sphere intersects the frustum.
+     *
+     * @param sphere
+     * @return
+     */
+    public boolean intersects(BoundingSphere sphere) {
+        return intersects(sphere.x, sphere.y, sphere.z, sphere.radius);
+    }
+
+    /**
+     * Whether the given sphere, transformed by the given matrix, intersects
+     * the frustum. This does not allocate.
+     *
+     * @param sphere
+     * @param model
+     * @param scratch An array of at least 16 floats to use as scratch space
+     * @return
+     */
+    public boolean intersects(BoundingSphere sphere, Matrix4 model, float[] scratch) {
+        model.getValues(scratch, 0);
+        return intersects(sphere, scratch, 0);
+    }
+
+    /**
+     * Whether the given sphere, transformed by the matrix at the given offset
+     * in the given array, intersects the frustum.
+     */
+    boolean intersects(BoundingSphere sphere, float[] m, int off) {
+        float x = sphere.x, y = sphere.y, z = sphere.z;
+        return intersects(m[off] * x + m[off + 4] * y + m[off + 8] * z + m[off + 12],
+                m[off + 1] * x + m[off + 5] * y + m[off + 9] * z + m[off + 13],
+                m[off + 2] * x + m[off + 6] * y + m[off + 10] * z + m[off + 14],
+                sphere.radius * BoundingSphere.maxScale(m, off));
+    }
+
+    /**
+     * Whether the given box intersects the frustum.
+     *
+     * @param box
+     * @return
+     */
+    public boolean intersects(BoundingBox box) {
+        for (int p = 0; p < 24; p += 4) {
+            // Test the corner that is furthest along the normal of the plane
+            float a = planes[p], b = planes[p + 1], c = planes[p + 2];
+            float x = a >= 0 ? box.maxX : box.minX;
+            float y = b >= 0 ? box.maxY : box.minY;
+            float z = c >= 0 ? box.maxZ : box.minZ;
+            if (a * x + b * y + c * z + planes[p + 3] < 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Test the given spheres against the frustum. The indices of the spheres
+     * that intersect it are written to the start of the visible array, in
+     * order.
+     *
+     * @param x The x coordinate of the center of each sphere
+     * @param y
+     * @param z
+     * @param radius The radius of each sphere
+     * @param count The number of spheres
+     * @param visible Receives the indices of visible spheres. Must have room
+     *            for count indices.
+     * @return The number of visible spheres
+     */
+    public int cullSpheres(float[] x, float[] y, float[] z, float[] radius, int count,
+            int[] visible) {
+        float[] d = distances(count);
+        for (int i = 0; i < count; i++)
+            d[i] = Float.POSITIVE_INFINITY;
+        for (int p = 0; p < 24; p += 4) {
+            float a = planes[p], b = planes[p + 1], c = planes[p + 2], w = planes[p + 3];
+            for (int i = 0; i < count; i++)
+                d[i] = Math.min(d[i], a * x[i] + b * y[i] + c * z[i] + w + radius[i]);
+        }
+        return compact(d, count, visible);
+    }
+
+    /**
+     * Test the given axis-aligned boxes against the frustum. The indices of
+     * the boxes that intersect it are written to the start of the visible
+     * array, in order.
+     *
+     * @param minX The minimum x coordinate of each box
+     * @param minY
+     * @param minZ
+     * @param maxX The maximum x coordinate of each box
+     * @param maxY
+     * @param maxZ
+     * @param count The number of boxes
+     * @param visible Receives the indices of visible boxes. Must have room for
+     *            count indices.
+     * @return The number of visible boxes
+     */
+    public int cullBoxes(float[] minX, float[] minY, float[] minZ, float[] maxX,
+            float[] maxY, float[] maxZ, int count, int[] visible) {
+        float[] d = distances(count);
+        for (int i = 0; i < count; i++)
+            d[i] = Float.POSITIVE_INFINITY;
+        for (int p = 0; p < 24; p += 4) {
+            float a = planes[p], b = planes[p + 1], c = planes[p + 2], w = planes[p + 3];
+            // Which corner is furthest along the normal is the same for every
+            // box, so the inner loop has no branches
+            float[] xs = a >= 0 ? maxX : minX;
+            float[] ys = b >= 0 ? maxY : minY;
+            float[] zs = c >= 0 ? maxZ : minZ;
+            for (int i = 0; i < count; i++)
+                d[i] = Math.min(d[i], a * xs[i] + b * ys[i] + c * zs[i] + w);
+        }
+        return compact(d, count, visible);
+    }
+
+    private float[] distances(int count) {
+        if (distances.length < count)
+            distances = new float[count];
+        return distances;
+    }
+
+    private static int compact(float[] d, int count, int[] visible) {
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            if (d[i] >= 0)
+                visible[n++] = i;
+        }
+        return n;
+    }
+}
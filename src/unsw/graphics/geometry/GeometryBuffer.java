@@ -0,0 +1,252 @@
+/**
+ *
+ */
+package unsw.graphics.geometry;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.Buffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL3;
+import com.jogamp.opengl.GLContext;
+
+import unsw.graphics.Shader;
+
+/**
+ * The vertex buffer and vertex array object that hold the vertices of one of
+ * the simple geometry classes (points, lines, triangles, polygons).
+ *
+ * The buffer is created on the first draw and reused for every draw after
+ * that. It is released when the owning object is destroyed with
+ * destroy(GL3), which geometry that is only drawn once, such as a line
+ * created in display(), should do straight after drawing it. The buffers of
+ * owners that are garbage collected without being destroyed are also
+ * released, the next time any geometry buffer is uploaded in their context,
+ * but only as a safety net: that may not happen for a long time.
+ *
+ * The buffer belongs to the OpenGL context it was uploaded in. If that
+ * context is destroyed or recreated the buffer goes with it, and is
+ * uploaded again on the next draw. Drawing the same geometry in two live
+ * contexts at once isn't possible, as vertex array objects can't be shared
+ * between contexts. Each context needs its own copy.
+ *
+ * @author Robert Clifton-Everest
+ *
+ */
+class GeometryBuffer {
+
+    /**
+     * The name each context's token is attached to the context under. The
+     * context clears its attached objects when it is destroyed or
+     * recreated, so names created under an old token are no longer valid.
+     */
+    private static final String TOKEN = GeometryBuffer.class.getName() + ".token";
+
+    /**
+     * Owners that have been garbage collected without being destroyed.
+     */
+    private static final ReferenceQueue<Object> collected = new ReferenceQueue<Object>();
+
+    /**
+     * Keeps the references below reachable until they are enqueued.
+     */
+    private static final Set<Release> pending = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Collected owners whose names belong to a context that wasn't current
+     * when they were found. They are released when it is.
+     */
+    private static final List<Release> elsewhere = new ArrayList<Release>();
+
+    /**
+     * Tracks an owner so its OpenGL names can be deleted once it is collected.
+     */
+    private static class Release extends PhantomReference<Object> {
+        private int bufferName;
+        private int arrayName;
+
+        // The context the names were created in, and its token at the time
+        private GLContext context;
+        private Object token;
+
+        Release(Object owner) {
+            super(owner, collected);
+        }
+
+        /**
+         * Whether the names belong to the context of the given GL.
+         */
+        boolean isIn(GL3 gl) {
+            return token != null && token == gl.getContext().getAttachedObject(TOKEN);
+        }
+
+        /**
+         * Whether the context the names were created in still has them.
+         */
+        boolean isAlive() {
+            return token != null && token == context.getAttachedObject(TOKEN);
+        }
+
+        /**
+         * Forget names that went with their context.
+         */
+        void forget() {
+            bufferName = 0;
+            arrayName = 0;
+            context = null;
+            token = null;
+        }
+    }
+
+    private final Release release;
+
+    /**
+     * The number of vertices in the buffer
+     */
+    private int count;
+
+    /**
+     * Create a (not yet uploaded) buffer for the given owner.
+     * @param owner
+     */
+    GeometryBuffer(Object owner) {
+        release = new Release(owner);
+        pending.add(release);
+    }
+
+    /**
+     * Whether the vertices need to be uploaded before they can be drawn with
+     * the given GL: they never have been, or the context they were uploaded
+     * in has since been destroyed or recreated.
+     *
+     * @param gl
+     * @return
+     */
+    boolean needsUpload(GL3 gl) {
+        return !release.isIn(gl);
+    }
+
+    /**
+     * Copy the given vertices to graphics memory, creating the OpenGL buffer
+     * and vertex array object if this is the first upload in this context.
+     *
+     * @param gl
+     * @param data
+     * @param components The number of floats per vertex (2 or 3)
+     * @param count The number of vertices
+     */
+    void upload(GL3 gl, Buffer data, int components, int count) {
+        releaseCollected(gl);
+
+        if (!release.isIn(gl)) {
+            if (release.isAlive())
+                throw new IllegalStateException("Geometry is already in the graphics memory "
+                        + "of another OpenGL context. Use a copy in each context.");
+            int[] names = new int[1];
+            gl.glGenBuffers(1, names, 0);
+            release.bufferName = names[0];
+            gl.glGenVertexArrays(1, names, 0);
+            release.arrayName = names[0];
+            release.context = gl.getContext();
+            release.token = token(gl);
+        }
+
+        gl.glBindVertexArray(release.arrayName);
+        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, release.bufferName);
+        gl.glBufferData(GL.GL_ARRAY_BUFFER, count * components * Float.BYTES,
+                data, GL.GL_STATIC_DRAW);
+        gl.glVertexAttribPointer(Shader.POSITION, components, GL.GL_FLOAT, false, 0, 0);
+        gl.glEnableVertexAttribArray(Shader.POSITION);
+        gl.glBindVertexArray(gl.getContext().getDefaultVAO());
+
+        this.count = count;
+    }
+
+    /**
+     * The number of vertices last uploaded.
+     * @return
+     */
+    int getCount() {
+        return count;
+    }
+
+    /**
+     * Draw the uploaded vertices as the given primitive.
+     * @param gl
+     * @param mode e.g. GL_TRIANGLE_FAN
+     */
+    void draw(GL3 gl, int mode) {
+        gl.glBindVertexArray(release.arrayName);
+        gl.glDrawArrays(mode, 0, count);
+        gl.glBindVertexArray(gl.getContext().getDefaultVAO());
+    }
+
+    /**
+     * Release the OpenGL resources held by this buffer. This must be done in
+     * the context they were uploaded in, unless it no longer exists.
+     * @param gl
+     */
+    void destroy(GL3 gl) {
+        if (release.token != null && !release.isIn(gl) && release.isAlive())
+            throw new IllegalStateException("Geometry must be destroyed in the OpenGL "
+                    + "context it was drawn in");
+        pending.remove(release);
+        release.clear();
+        delete(gl, release);
+    }
+
+    /**
+     * Delete the names of the given release if they belong to the given GL's
+     * context, or forget them if their context is gone.
+     *
+     * @return false if they belong to another context that is still alive
+     */
+    private static boolean delete(GL3 gl, Release r) {
+        if (r.isIn(gl)) {
+            gl.glDeleteVertexArrays(1, new int[] { r.arrayName }, 0);
+            gl.glDeleteBuffers(1, new int[] { r.bufferName }, 0);
+        } else if (r.isAlive()) {
+            return false;
+        }
+        r.forget();
+        return true;
+    }
+
+    private static void releaseCollected(GL3 gl) {
+        synchronized (elsewhere) {
+            Iterator<Release> waiting = elsewhere.iterator();
+            while (waiting.hasNext()) {
+                if (delete(gl, waiting.next()))
+                    waiting.remove();
+            }
+
+            Reference<?> ref;
+            while ((ref = collected.poll()) != null) {
+                pending.remove(ref);
+                if (!delete(gl, (Release) ref))
+                    elsewhere.add((Release) ref);
+            }
+        }
+    }
+
+    /**
+     * Get the token for the given GL's context, attaching a new one if it
+     * doesn't have one.
+     */
+    private static Object token(GL3 gl) {
+        GLContext context = gl.getContext();
+        Object token = context.getAttachedObject(TOKEN);
+        if (token == null) {
+            token = new Object();
+            context.attachObject(TOKEN, token);
+        }
+        return token;
+    }
+}
@@ -20,6 +20,11 @@ import unsw.graphics.Shader;
 public class Line3D {
     private Point3D start, end;
 
+    /**
+     * The vertices of this line in graphics memory. Created on the first draw.
+     */
+    private GeometryBuffer buffer;
+
     /** 
      * Construct a line from 'start' to 'end'
      * @param start
@@ -56,20 +61,28 @@ public class Line3D {
      * @param gl
      */
     public void draw(GL3 gl, CoordFrame3D frame) {
-        Point3DBuffer buffer = new Point3DBuffer(3);
-        buffer.put(0, start);
-        buffer.put(1, end);
-        
-        int[] names = new int[1];
-        gl.glGenBuffers(1, names, 0);
-        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, names[0]);
-        gl.glBufferData(GL.GL_ARRAY_BUFFER, 2*3*Float.BYTES, buffer.getBuffer(), GL.GL_STATIC_DRAW);
-        
-        gl.glVertexAttribPointer(Shader.POSITION, 3, GL.GL_FLOAT, false, 0, 0);
+        if (buffer == null)
+            buffer = new GeometryBuffer(this);
+        if (buffer.needsUpload(gl)) {
+            Point3DBuffer data = new Point3DBuffer(2);
+            data.put(0, start);
+            data.put(1, end);
+            buffer.upload(gl, data.getBuffer(), 3, 2);
+        }
         Shader.setModelMatrix(gl, frame.getMatrix());
-        gl.glDrawArrays(GL.GL_LINES, 0, 2);
-        
-        gl.glDeleteBuffers(1, names, 0);
+        buffer.draw(gl, GL.GL_LINES);
+    }
+
+    /**
+     * Release the graphics memory used by this line. It will be copied to 
+     * graphics memory again if the line is drawn after this.
+     * @param gl
+     */
+    public void destroy(GL3 gl) {
+        if (buffer != null) {
+            buffer.destroy(gl);
+            buffer = null;
+        }
     }
     
     /**
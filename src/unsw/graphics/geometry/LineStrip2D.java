@@ -27,6 +27,11 @@ import unsw.graphics.Shader;
 public class LineStrip2D {
     private List<Point2D> points;
 
+    /**
+     * The vertices of this line strip in graphics memory. Created on the first draw.
+     */
+    private GeometryBuffer buffer;
+
     public LineStrip2D() {
         points = new ArrayList<Point2D>();
     }
@@ -65,19 +70,26 @@ public class LineStrip2D {
      * @param gl
      */
     public void draw(GL3 gl, CoordFrame2D frame) {
-        Point2DBuffer buffer = new Point2DBuffer(points);
-
-        int[] names = new int[1];
-        gl.glGenBuffers(1, names, 0);
-        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, names[0]);
-        gl.glBufferData(GL.GL_ARRAY_BUFFER, points.size() * 2 * Float.BYTES,
-                buffer.getBuffer(), GL.GL_STATIC_DRAW);
-
-        gl.glVertexAttribPointer(Shader.POSITION, 2, GL.GL_FLOAT, false, 0, 0);
+        if (buffer == null)
+            buffer = new GeometryBuffer(this);
+        // Points may have been added since the last upload
+        if (buffer.needsUpload(gl) || buffer.getCount() != points.size()) {
+            buffer.upload(gl, new Point2DBuffer(points).getBuffer(), 2, points.size());
+        }
         Shader.setModelMatrix(gl, frame.getMatrix());
-        gl.glDrawArrays(GL.GL_LINE_STRIP, 0, points.size());
+        buffer.draw(gl, GL.GL_LINE_STRIP);
+    }
 
-        gl.glDeleteBuffers(1, names, 0);
+    /**
+     * Release the graphics memory used by this line strip. It will be copied to 
+     * graphics memory again if the line strip is drawn after this.
+     * @param gl
+     */
+    public void destroy(GL3 gl) {
+        if (buffer != null) {
+            buffer.destroy(gl);
+            buffer = null;
+        }
     }
     
     /**
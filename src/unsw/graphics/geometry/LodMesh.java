@@ -0,0 +1,303 @@
+/**
+ *
+ */
+package unsw.graphics.geometry;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.jogamp.opengl.GL3;
+import com.jogamp.opengl.util.GLBuffers;
+
+import unsw.graphics.CoordFrame3D;
+import unsw.graphics.Matrix4;
+
+/**
+ * A mesh with several levels of detail. Level 0 is the original mesh and each
+ * level after it has about half as many triangles as the one before, as
+ * generated by MeshSimplifier.
+ *
+ * Each time the mesh is drawn, the level is chosen from how large the mesh
+ * appears on screen: the coarsest level is used whose error, projected onto
+ * the screen at the distance of the mesh, is no more than a given number of
+ * pixels. Distant meshes are drawn with far fewer triangles without any
+ * visible difference.
+ *
+ * @author Robert Clifton-Everest
+ *
+ */
+public class LodMesh {
+
+    /**
+     * The default greatest error allowed on screen, in pixels.
+     */
+    public static final float DEFAULT_PIXEL_ERROR = 1;
+
+    private final TriangleMesh[] levels;
+
+    /**
+     * The error of each level, in model coordinates.
+     */
+    private final float[] errors;
+
+    /**
+     * A sphere that contains the mesh, in model coordinates.
+     */
+    private final BoundingSphere sphere;
+
+    private float pixelError = DEFAULT_PIXEL_ERROR;
+
+    /**
+     * Scratch space for choosing levels and sorting instances by level, so
+     * drawing doesn't allocate.
+     */
+    private final float[] modelView = new float[16];
+    private final float[] viewModel = new float[16];
+    private final float[] projection = new float[16];
+    private final float[] instance = new float[16];
+    private final int[] levelCounts;
+    private int[] instanceLevels = new int[0];
+    private FloatBuffer instanceData;
+
+    /**
+     * The frustum of the last projection matrix drawn with, in view
+     * coordinates, and that projection.
+     */
+    private Frustum frustum;
+    private final float[] frustumProjection = new float[16];
+
+    /**
+     * Create a mesh with up to the given number of levels of detail, including
+     * the given mesh. Fewer levels are created if the mesh can't be simplified
+     * any further. The levels are optimised as by TriangleMesh.optimize().
+     *
+     * The given mesh becomes level 0, so it is initialised and destroyed along
+     * with this mesh.
+     *
+     * @param mesh
+     * @param levelCount
+     */
+    public LodMesh(TriangleMesh mesh, int levelCount) {
+        List<TriangleMesh> levels = new ArrayList<>();
+        List<Float> errors = new ArrayList<>();
+        levels.add(mesh);
+        errors.add(0f);
+
+        MeshSimplifier simplifier = new MeshSimplifier(mesh);
+        int triangles = mesh.getTriangleCount();
+        while (levels.size() < levelCount) {
+            triangles /= 2;
+            TriangleMesh level = simplifier.simplify(triangles);
+            // Stop if the last level couldn't be reduced much further
+            if (level.getTriangleCount()
+                    > levels.get(levels.size() - 1).getTriangleCount() * 3 / 4)
+                break;
+            level.optimize();
+            levels.add(level);
+            errors.add(simplifier.getError());
+        }
+
+        this.levels = levels.toArray(new TriangleMesh[0]);
+        this.errors = new float[errors.size()];
+        for (int i = 0; i < this.errors.length; i++)
+            this.errors[i] = errors.get(i);
+
+        sphere = mesh.getBoundingSphere();
+        levelCounts = new int[this.levels.length];
+    }
+
+    /**
+     * @return The number of levels of detail
+     */
+    public int getLevelCount() {
+        return levels.length;
+    }
+
+    /**
+     * @param level
+     * @return The mesh for the given level of detail
+     */
+    public TriangleMesh getLevel(int level) {
+        return levels[level];
+    }
+
+    /**
+     * @param level
+     * @return The approximate error of the given level, in model coordinates
+     */
+    public float getError(int level) {
+        return errors[level];
+    }
+
+    /**
+     * Set the greatest error allowed on screen, in pixels. Larger values use
+     * coarser levels.
+     *
+     * @param pixelError
+     */
+    public void setPixelError(float pixelError) {
+        this.pixelError = pixelError;
+    }
+
+    /**
+     * Copy every level to graphics memory.
+     *
+     * @param gl
+     */
+    public void init(GL3 gl) {
+        init(gl, VertexFormat.DEFAULT);
+    }
+
+    /**
+     * Copy every level to graphics memory in the given format.
+     *
+     * @param gl
+     * @param format
+     */
+    public void init(GL3 gl, VertexFormat format) {
+        for (TriangleMesh level : levels)
+            level.init(gl, format);
+    }
+
+    /**
+     * Choose the level of detail to draw the mesh with.
+     *
+     * @param modelView The model and view matrices multiplied together
+     * @param proj The projection matrix
+     * @param viewportHeight The height of the viewport in pixels
+     * @return
+     */
+    public int selectLevel(Matrix4 modelView, Matrix4 proj, int viewportHeight) {
+        modelView.getValues(this.modelView, 0);
+        proj.getValues(projection, 0);
+        return selectLevel(this.modelView, 0, viewportHeight);
+    }
+
+    /**
+     * Choose a level given the model-view matrix at the given offset and the
+     * projection matrix in the projection array.
+     */
+    private int selectLevel(float[] mv, int off, int viewportHeight) {
+        // The largest scale the model-view matrix applies along any axis
+        float scale = BoundingSphere.maxScale(mv, off);
+
+        // How many pixels a unit of view coordinates covers at the nearest
+        // point of the bounding sphere. A perspective projection divides by
+        // the distance.
+        float pixels = projection[5] * viewportHeight / 2;
+        if (projection[11] != 0) {
+            float z = mv[off + 2] * sphere.x + mv[off + 6] * sphere.y
+                    + mv[off + 10] * sphere.z + mv[off + 14];
+            float distance = -z - scale * sphere.radius;
+            if (distance <= 0)
+                return 0;
+            pixels /= distance;
+        }
+
+        int level = 0;
+        while (level + 1 < levels.length
+                && errors[level + 1] * scale * pixels <= pixelError)
+            level++;
+        return level;
+    }
+
+    /**
+     * Draw the mesh in the given coordinate frame, at the level of detail for
+     * the given view. Nothing is drawn if the mesh is outside the view
+     * frustum.
+     *
+     * @param gl
+     * @param frame
+     * @param view
+     * @param proj
+     * @param viewportHeight
+     */
+    public void draw(GL3 gl, CoordFrame3D frame, Matrix4 view, Matrix4 proj,
+            int viewportHeight) {
+        view.multiplyInto(frame.getMatrix(), modelView, 0);
+        if (!frustum(proj).intersects(sphere, modelView, 0))
+            return;
+        levels[selectLevel(modelView, 0, viewportHeight)].draw(gl, frame);
+    }
+
+    /**
+     * Draw a copy of the mesh for each of the given transforms, relative to
+     * the given frame, as in TriangleMesh.drawInstanced(). Each copy is drawn
+     * at the level of detail for its own distance from the viewer, with one
+     * draw call for each level that is used. Copies outside the view frustum
+     * are left out.
+     *
+     * The shader must take per-instance transforms. Every instance is given
+     * the color white.
+     *
+     * @param gl
+     * @param frame
+     * @param instanceTransforms
+     * @param view
+     * @param proj
+     * @param viewportHeight
+     */
+    public void drawInstanced(GL3 gl, CoordFrame3D frame, Matrix4[] instanceTransforms,
+            Matrix4 view, Matrix4 proj, int viewportHeight) {
+        int count = instanceTransforms.length;
+        if (instanceLevels.length < count) {
+            instanceLevels = new int[count];
+            instanceData = GLBuffers.newDirectFloatBuffer(count * 16);
+        }
+
+        view.multiplyInto(frame.getMatrix(), viewModel, 0);
+        Frustum frustum = frustum(proj);
+        Arrays.fill(levelCounts, 0);
+        for (int i = 0; i < count; i++) {
+            instanceTransforms[i].getValues(instance, 0);
+            Matrix4.multiply(viewModel, 0, instance, 0, modelView, 0);
+            if (!frustum.intersects(sphere, modelView, 0)) {
+                instanceLevels[i] = -1;
+                continue;
+            }
+            instanceLevels[i] = selectLevel(modelView, 0, viewportHeight);
+            levelCounts[instanceLevels[i]]++;
+        }
+
+        for (int level = 0; level < levels.length; level++) {
+            if (levelCounts[level] == 0)
+                continue;
+            int n = 0;
+            for (int i = 0; i < count; i++) {
+                if (instanceLevels[i] != level)
+                    continue;
+                instanceTransforms[i].getValues(instance, 0);
+                for (int j = 0; j < 16; j++)
+                    instanceData.put(n * 16 + j, instance[j]);
+                n++;
+            }
+            levels[level].drawInstanced(gl, frame, instanceData, null, n);
+        }
+    }
+
+    /**
+     * Copy the given projection matrix into the projection array, and get the
+     * frustum for it in view coordinates. The frustum is only recomputed when
+     * the projection changes.
+     */
+    private Frustum frustum(Matrix4 proj) {
+        proj.getValues(projection, 0);
+        if (frustum == null || !Arrays.equals(projection, frustumProjection)) {
+            frustum = new Frustum(proj);
+            System.arraycopy(projection, 0, frustumProjection, 0, 16);
+        }
+        return frustum;
+    }
+
+    /**
+     * Free the graphics memory used by every level.
+     *
+     * @param gl
+     */
+    public void destroy(GL3 gl) {
+        for (TriangleMesh level : levels)
+            level.destroy(gl);
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ *
+ */
+package unsw.graphics.geometry;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Copies the vertex data of a mesh between its buffers and arrays, for the
+ * mesh processing classes that work on arrays.
+ *
+ * Each method copies the whole buffer, from index 0 to its capacity, and
+ * leaves the buffer's position alone.
+ *
+ * @author Robert Clifton-Everest
+ *
+ */
+class MeshBuffers {
+
+    /**
+     * Copy the given buffer into a new array.
+     *
+     * @param buffer
+     * @return
+     */
+    static float[] toArray(FloatBuffer buffer) {
+        FloatBuffer in = buffer.duplicate();
+        in.rewind();
+        float[] array = new float[in.capacity()];
+        in.get(array);
+        return array;
+    }
+
+    /**
+     * Copy the given buffer into a new array.
+     *
+     * @param buffer
+     * @return
+     */
+    static int[] toArray(IntBuffer buffer) {
+        IntBuffer in = buffer.duplicate();
+        in.rewind();
+        int[] array = new int[in.capacity()];
+        in.get(array);
+        return array;
+    }
+
+    /**
+     * Copy the given array into the buffer, from its start.
+     *
+     * @param buffer
+     * @param data
+     */
+    static void put(FloatBuffer buffer, float[] data) {
+        FloatBuffer out = buffer.duplicate();
+        out.rewind();
+        out.put(data);
+    }
+
+    /**
+     * Copy the given array into the buffer, from its start.
+     *
+     * @param buffer
+     * @param data
+     */
+    static void put(IntBuffer buffer, int[] data) {
+        IntBuffer out = buffer.duplicate();
+        out.rewind();
+        out.put(data);
+    }
+}
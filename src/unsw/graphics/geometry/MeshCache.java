@@ -0,0 +1,294 @@
+/**
+ *
+ */
+package unsw.graphics.geometry;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import com.jogamp.opengl.util.GLBuffers;
+
+/**
+ * A cache of meshes that have been read from PLY files and had their normals
+ * computed, so that later runs don't have to do it again.
+ *
+ * Each mesh is stored in its own file in the cache directory. The file is in
+ * the native byte order and consists of:
+ *   - A header with the path, modification time and size of the PLY file,
+ *     which of normals and texture coordinates were generated, and whether
+ *     the mesh was optimised
+ *   - The vertex and index counts and the bounds of the vertices
+ *   - The vertex positions, then the normals and texture coordinates if there
+ *     are any, then the indices, each stored contiguously
+ * so a cached mesh can be read with a single memory-map and a bulk copy of
+ * each stream.
+ *
+ * The cache is stored in the directory given by the system property
+ * "unsw.graphics.meshCache", or in the system temporary directory if that
+ * isn't set. Setting the property to "off" disables the cache.
+ *
+ * @author Robert Clifton-Everest
+ *
+ */
+class MeshCache {
+
+    private static final int MAGIC = 0x434d4755; // "UGMC"
+
+    private static final int VERSION = 1;
+
+    /**
+     * The x-y-z coordinates of each vertex.
+     */
+    final FloatBuffer vertices;
+
+    /**
+     * The normal of each vertex, or null if there are none.
+     */
+    final FloatBuffer normals;
+
+    /**
+     * The texture coordinates of each vertex, or null if there are none.
+     */
+    final FloatBuffer texCoords;
+
+    /**
+     * Each set of 3 indices forms a triangle.
+     */
+    final IntBuffer indices;
+
+    /**
+     * The minimum x, y and z followed by the maximum x, y and z of the
+     * vertices.
+     */
+    final float[] bounds;
+
+    private MeshCache(FloatBuffer vertices, FloatBuffer normals, FloatBuffer texCoords,
+            IntBuffer indices, float[] bounds) {
+        this.vertices = vertices;
+        this.normals = normals;
+        this.texCoords = texCoords;
+        this.indices = indices;
+        this.bounds = bounds;
+    }
+
+    /**
+     * Load the mesh that was cached for the given PLY file, or return null if
+     * there is no up to date cache of it.
+     *
+     * @param plyFile
+     * @param normals How the mesh's normals were computed, or null if it has
+     *            none
+     * @param texCoords Whether the mesh needs texture coordinates
+     * @param optimized Whether the mesh was reordered by MeshOptimizer
+     * @return
+     */
+    static MeshCache load(String plyFile, NormalWeighting normals, boolean texCoords,
+            boolean optimized) {
+        Path cache = cacheFile(plyFile, normals, texCoords, optimized);
+        if (cache == null || !Files.isReadable(cache))
+            return null;
+
+        try (FileChannel channel = FileChannel.open(cache, StandardOpenOption.READ)) {
+            ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                    .order(ByteOrder.nativeOrder());
+
+            // Anything that doesn't match exactly is a miss, including caches
+            // written on a machine with a different byte order
+            byte[] key = key(plyFile, normals, texCoords, optimized);
+            if (key == null || data.getInt() != MAGIC || data.getInt() != VERSION
+                    || data.getInt() != key.length)
+                return null;
+            for (byte b : key) {
+                if (data.get() != b)
+                    return null;
+            }
+            align(data);
+
+            int vertexCount = data.getInt();
+            int indexCount = data.getInt();
+            float[] bounds = new float[6];
+            for (int i = 0; i < 6; i++)
+                bounds[i] = data.getFloat();
+
+            FloatBuffer vertices = readFloats(data, vertexCount * 3);
+            FloatBuffer normalData = normals != null ? readFloats(data, vertexCount * 3) : null;
+            FloatBuffer texCoordData = texCoords ? readFloats(data, vertexCount * 2) : null;
+
+            IntBuffer indices = GLBuffers.newDirectIntBuffer(indexCount);
+            ByteBuffer slice = data.slice().order(data.order());
+            slice.limit(indexCount * Integer.BYTES);
+            indices.put(slice.asIntBuffer());
+            indices.rewind();
+
+            return new MeshCache(vertices, normalData, texCoordData, indices, bounds);
+        } catch (IOException | RuntimeException e) {
+            // A missing, truncated or otherwise unreadable cache just means
+            // the PLY file has to be read again
+            return null;
+        }
+    }
+
+    /**
+     * Write a cache of the given mesh, which was read from the given PLY file.
+     *
+     * The cache is only an optimisation, so this fails silently if it can't
+     * be written.
+     *
+     * @param plyFile
+     * @param vertices
+     * @param weighting How the normals were computed. Null if there are none.
+     * @param normals May be null
+     * @param texCoords May be null
+     * @param indices
+     * @param optimized Whether the mesh was reordered by MeshOptimizer
+     */
+    static void store(String plyFile, FloatBuffer vertices, NormalWeighting weighting,
+            FloatBuffer normals, FloatBuffer texCoords, IntBuffer indices, boolean optimized) {
+        boolean hasNormals = normals != null, hasTexCoords = texCoords != null;
+        Path cache = cacheFile(plyFile, weighting, hasTexCoords, optimized);
+        byte[] key = key(plyFile, weighting, hasTexCoords, optimized);
+        if (cache == null || key == null)
+            return;
+
+        int vertexCount = vertices.capacity() / 3;
+        int headerSize = 3 * Integer.BYTES + key.length + 3;
+        headerSize -= headerSize % 4;
+        long size = headerSize + 2 * Integer.BYTES + 6 * Float.BYTES
+                + (long) vertexCount * (3 + (hasNormals ? 3 : 0) + (hasTexCoords ? 2 : 0))
+                        * Float.BYTES
+                + (long) indices.capacity() * Integer.BYTES;
+        if (size > Integer.MAX_VALUE)
+            return;
+
+        ByteBuffer data = ByteBuffer.allocateDirect((int) size).order(ByteOrder.nativeOrder());
+        data.putInt(MAGIC).putInt(VERSION).putInt(key.length).put(key);
+        align(data);
+
+        data.putInt(vertexCount).putInt(indices.capacity());
+        for (float f : bounds(vertices))
+            data.putFloat(f);
+
+        writeFloats(data, vertices);
+        if (hasNormals)
+            writeFloats(data, normals);
+        if (hasTexCoords)
+            writeFloats(data, texCoords);
+        IntBuffer indexData = indices.duplicate();
+        indexData.rewind();
+        data.asIntBuffer().put(indexData);
+        data.rewind();
+
+        try {
+            Files.createDirectories(cache.getParent());
+
+            // Write to a temporary file first so no other process can see a
+            // partly written cache
+            Path temp = Files.createTempFile(cache.getParent(), "mesh", ".tmp");
+            try {
+                try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                    while (data.hasRemaining())
+                        channel.write(data);
+                }
+                try {
+                    Files.move(temp, cache, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, cache, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            // Just read the PLY file again next time
+        }
+    }
+
+    /**
+     * The file the given mesh is cached in, or null if the cache is disabled.
+     */
+    private static Path cacheFile(String plyFile, NormalWeighting normals,
+            boolean texCoords, boolean optimized) {
+        String dir = System.getProperty("unsw.graphics.meshCache");
+        if ("off".equals(dir))
+            return null;
+        if (dir == null)
+            dir = new File(System.getProperty("java.io.tmpdir"), "unswgraph-mesh-cache").getPath();
+
+        String path = new File(plyFile).getAbsolutePath();
+        String name = new File(plyFile).getName() + "-" + Integer.toHexString(path.hashCode())
+                + (normals == NormalWeighting.AREA ? "-n" : "")
+                + (normals == NormalWeighting.ANGLE ? "-na" : "")
+                + (texCoords ? "-t" : "") + (optimized ? "-o" : "") + ".mesh";
+        return Paths.get(dir, name);
+    }
+
+    /**
+     * The bytes that identify the current version of the given PLY file and
+     * which flags it was read with, or null if the file can't be found.
+     */
+    private static byte[] key(String plyFile, NormalWeighting normals, boolean texCoords,
+            boolean optimized) {
+        try {
+            Path path = Paths.get(plyFile).toAbsolutePath();
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            String key = path + "\n" + attributes.lastModifiedTime().toMillis() + "\n"
+                    + attributes.size() + "\n" + normals + "\n" + texCoords + "\n"
+                    + optimized;
+            return key.getBytes(StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Compute the bounds of the given vertices.
+     */
+    private static float[] bounds(FloatBuffer vertices) {
+        float[] bounds = { Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY,
+                Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY,
+                Float.NEGATIVE_INFINITY };
+        for (int i = 0; i < vertices.capacity(); i++) {
+            float f = vertices.get(i);
+            bounds[i % 3] = Math.min(bounds[i % 3], f);
+            bounds[3 + i % 3] = Math.max(bounds[3 + i % 3], f);
+        }
+        return bounds;
+    }
+
+    /**
+     * Move the position of the given buffer up to a multiple of 4 bytes. The
+     * padding is left as whatever is already in the buffer.
+     */
+    private static void align(ByteBuffer data) {
+        data.position((data.position() + 3) & ~3);
+    }
+
+    private static FloatBuffer readFloats(ByteBuffer data, int count) {
+        FloatBuffer floats = GLBuffers.newDirectFloatBuffer(count);
+        ByteBuffer slice = data.slice().order(data.order());
+        slice.limit(count * Float.BYTES);
+        floats.put(slice.asFloatBuffer());
+        floats.rewind();
+        data.position(data.position() + count * Float.BYTES);
+        return floats;
+    }
+
+    private static void writeFloats(ByteBuffer data, FloatBuffer floats) {
+        FloatBuffer source = floats.duplicate();
+        source.rewind();
+        data.asFloatBuffer().put(source);
+        data.position(data.position() + floats.capacity() * Float.BYTES);
+    }
+}
@@ -0,0 +1,406 @@
+/**
+ *
+ */
+package unsw.graphics.geometry;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reorders the triangles and vertices of an indexed mesh so that it is faster
+ * to draw. This is done in three passes:
+ *   1. The triangles are reordered so that vertices shared between triangles
+ *      are still in the post-transform vertex cache when they are used again,
+ *      using Tom Forsyth's "Linear-Speed Vertex Cache Optimisation".
+ *   2. The result is split into clusters that each use the cache about as
+ *      well as the whole, and the clusters are sorted so that those facing
+ *      outwards from the centre of the mesh are drawn first. These are the
+ *      most likely to hide the others, so fewer pixels are shaded and then
+ *      drawn over. This is the approach of Sander, Nehab and Barczak in "Fast
+ *      Triangle Reordering for Vertex Locality and Reduced Overdraw".
+ *   3. The vertices are reordered in the order they are first used, so that
+ *      they are fetched from memory sequentially.
+ *
+ * @author Robert Clifton-Everest
+ *
+ */
+class MeshOptimizer {
+
+    /**
+     * The size of the LRU cache that the first pass models.
+     */
+    private static final int CACHE_SIZE = 32;
+
+    private static final float CACHE_DECAY_POWER = 1.5f;
+    private static final float LAST_TRIANGLE_SCORE = 0.75f;
+    private static final float VALENCE_BOOST_SCALE = 2.0f;
+    private static final float VALENCE_BOOST_POWER = 0.5f;
+
+    /**
+     * How much worse than the whole a cluster may use the vertex cache. Higher
+     * values give smaller clusters, so less overdraw but more vertices
+     * transformed.
+     */
+    private static final float OVERDRAW_THRESHOLD = 1.05f;
+
+    /**
+     * The score of a vertex for each position in the cache.
+     */
+    private static final float[] CACHE_SCORES = new float[CACHE_SIZE];
+
+    /**
+     * The score of a vertex for small numbers of remaining triangles.
+     */
+    private static final float[] VALENCE_SCORES = new float[64];
+
+    static {
+        for (int i = 0; i < CACHE_SIZE; i++) {
+            // The last triangle's vertices get a fixed score, so that the
+            // next triangle doesn't just reuse the edge that was just drawn
+            CACHE_SCORES[i] = i < 3 ? LAST_TRIANGLE_SCORE
+                    : (float) Math.pow(1 - (float) (i - 3) / (CACHE_SIZE - 3),
+                            CACHE_DECAY_POWER);
+        }
+        for (int i = 1; i < VALENCE_SCORES.length; i++)
+            VALENCE_SCORES[i] = valenceScore(i);
+    }
+
+    /**
+     * Reorder the triangles and vertices of the given mesh in place.
+     *
+     * @param vertices The x-y-z coordinates of each vertex
+     * @param normals The normal of each vertex, or null
+     * @param texCoords The texture coordinates of each vertex, or null
+     * @param indices Each set of 3 indices forms a triangle
+     */
+    static void optimize(FloatBuffer vertices, FloatBuffer normals, FloatBuffer texCoords,
+            IntBuffer indices) {
+        float[] positions = MeshBuffers.toArray(vertices);
+        int vertexCount = positions.length / 3;
+        int[] triangles = MeshBuffers.toArray(indices);
+
+        triangles = optimizeVertexCache(triangles, vertexCount);
+        triangles = optimizeOverdraw(triangles, positions);
+
+        int[] remap = vertexFetchRemap(triangles, vertexCount);
+        for (int i = 0; i < triangles.length; i++)
+            triangles[i] = remap[triangles[i]];
+        MeshBuffers.put(indices, triangles);
+        MeshBuffers.put(vertices, remap(positions, 3, remap));
+        if (normals != null)
+            MeshBuffers.put(normals, remap(MeshBuffers.toArray(normals), 3, remap));
+        if (texCoords != null)
+            MeshBuffers.put(texCoords, remap(MeshBuffers.toArray(texCoords), 2, remap));
+    }
+
+    /**
+     * Reorder the given triangles for the vertex cache. The next triangle is
+     * always the one with the highest score, where the score of a triangle is
+     * the sum of the scores of its vertices. Vertices score highly if they
+     * are near the front of the cache or have few triangles left to draw, so
+     * that they can be dropped from the cache for good.
+     *
+     * @param indices
+     * @param vertexCount
+     * @return The reordered indices
+     */
+    static int[] optimizeVertexCache(int[] indices, int vertexCount) {
+        int triangleCount = indices.length / 3;
+
+        // The triangles that use each vertex. The triangles of vertex v that
+        // are still to be drawn are adjacency[offsets[v]] to
+        // adjacency[offsets[v] + live[v] - 1].
+        int[] offsets = new int[vertexCount + 1];
+        for (int v : indices)
+            offsets[v + 1]++;
+        for (int v = 0; v < vertexCount; v++)
+            offsets[v + 1] += offsets[v];
+        int[] live = new int[vertexCount];
+        int[] adjacency = new int[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            int v = indices[i];
+            adjacency[offsets[v] + live[v]++] = i / 3;
+        }
+
+        int[] cachePosition = new int[vertexCount];
+        float[] vertexScores = new float[vertexCount];
+        for (int v = 0; v < vertexCount; v++) {
+            cachePosition[v] = -1;
+            vertexScores[v] = vertexScore(-1, live[v]);
+        }
+
+        float[] triangleScores = new float[triangleCount];
+        boolean[] emitted = new boolean[triangleCount];
+        int best = -1;
+        for (int t = 0; t < triangleCount; t++) {
+            triangleScores[t] = vertexScores[indices[t * 3]] + vertexScores[indices[t * 3 + 1]]
+                    + vertexScores[indices[t * 3 + 2]];
+            if (best < 0 || triangleScores[t] > triangleScores[best])
+                best = t;
+        }
+
+        int[] cache = new int[CACHE_SIZE + 3];
+        int[] newCache = new int[CACHE_SIZE + 3];
+        int cacheCount = 0;
+        int[] result = new int[triangleCount * 3];
+        int next = 0;
+
+        for (int out = 0; out < triangleCount; out++) {
+            // If no triangle in the cache is left, start again from the first
+            // triangle that hasn't been drawn.
+            if (best < 0) {
+                while (emitted[next])
+                    next++;
+                best = next;
+            }
+
+            int t = best;
+            emitted[t] = true;
+
+            // The vertices of the triangle move to the front of the cache
+            int newCount = 0;
+            for (int k = 0; k < 3; k++) {
+                int v = indices[t * 3 + k];
+                result[out * 3 + k] = v;
+
+                int start = offsets[v], end = start + live[v];
+                for (int j = start; j < end; j++) {
+                    if (adjacency[j] == t) {
+                        adjacency[j] = adjacency[end - 1];
+                        adjacency[end - 1] = t;
+                        break;
+                    }
+                }
+                live[v]--;
+
+                if (!contains(newCache, newCount, v))
+                    newCache[newCount++] = v;
+            }
+            for (int i = 0; i < cacheCount; i++) {
+                if (!contains(newCache, newCount, cache[i]))
+                    newCache[newCount++] = cache[i];
+            }
+
+            // Anything pushed past the end of the cache drops out
+            for (int i = 0; i < newCount; i++) {
+                int v = newCache[i];
+                cachePosition[v] = i < CACHE_SIZE ? i : -1;
+                vertexScores[v] = vertexScore(cachePosition[v], live[v]);
+            }
+
+            // Only the triangles of vertices whose scores changed need to be
+            // scored again, and the best of them is drawn next
+            best = -1;
+            for (int i = 0; i < newCount; i++) {
+                int v = newCache[i];
+                for (int j = offsets[v]; j < offsets[v] + live[v]; j++) {
+                    int u = adjacency[j];
+                    float score = vertexScores[indices[u * 3]]
+                            + vertexScores[indices[u * 3 + 1]]
+                            + vertexScores[indices[u * 3 + 2]];
+                    triangleScores[u] = score;
+                    if (best < 0 || score > triangleScores[best])
+                        best = u;
+                }
+            }
+
+            int[] swap = cache;
+            cache = newCache;
+            newCache = swap;
+            cacheCount = Math.min(newCount, CACHE_SIZE);
+        }
+        return result;
+    }
+
+    /**
+     * Split triangles that have been ordered for the vertex cache into
+     * clusters and sort the clusters to reduce overdraw.
+     *
+     * @param indices
+     * @param positions The x-y-z coordinates of each vertex
+     * @return The reordered indices
+     */
+    static int[] optimizeOverdraw(int[] indices, float[] positions) {
+        int triangleCount = indices.length / 3;
+        if (triangleCount == 0)
+            return indices;
+        int[] timestamps = new int[positions.length / 3];
+        int[] time = { VertexCacheStatistics.CACHE_SIZE + 1 };
+
+        // Where all three vertices of a triangle miss the cache, the vertex
+        // cache optimisation started again somewhere else, so the clusters
+        // either side can be drawn in either order at no cost.
+        List<Integer> hard = new ArrayList<>();
+        hard.add(0);
+        for (int t = 0; t < triangleCount; t++) {
+            if (misses(indices, t, timestamps, time) == 3 && t > 0)
+                hard.add(t);
+        }
+        hard.add(triangleCount);
+
+        // Split each of those where the triangles drawn so far use the cache
+        // almost as well as the whole.
+        List<Integer> starts = new ArrayList<>();
+        for (int c = 0; c + 1 < hard.size(); c++) {
+            int start = hard.get(c), end = hard.get(c + 1);
+
+            time[0] += VertexCacheStatistics.CACHE_SIZE + 1;
+            int clusterMisses = 0;
+            for (int t = start; t < end; t++)
+                clusterMisses += misses(indices, t, timestamps, time);
+            float threshold = OVERDRAW_THRESHOLD * clusterMisses / (end - start);
+
+            time[0] += VertexCacheStatistics.CACHE_SIZE + 1;
+            starts.add(start);
+            int runningMisses = 0, runningTriangles = 0;
+            for (int t = start; t < end; t++) {
+                runningMisses += misses(indices, t, timestamps, time);
+                runningTriangles++;
+                if (runningMisses <= threshold * runningTriangles && t + 1 < end) {
+                    starts.add(t + 1);
+                    time[0] += VertexCacheStatistics.CACHE_SIZE + 1;
+                    runningMisses = 0;
+                    runningTriangles = 0;
+                }
+            }
+        }
+        starts.add(triangleCount);
+
+        // The area weighted centroid and normal of each cluster
+        int clusterCount = starts.size() - 1;
+        float[] centroids = new float[clusterCount * 3];
+        float[] normals = new float[clusterCount * 3];
+        double[] meshCentroid = new double[3];
+        double meshArea = 0;
+        for (int c = 0; c < clusterCount; c++) {
+            double area = 0;
+            double[] centroid = new double[3];
+            for (int t = starts.get(c); t < starts.get(c + 1); t++) {
+                int a = indices[t * 3] * 3, b = indices[t * 3 + 1] * 3,
+                        d = indices[t * 3 + 2] * 3;
+                float ux = positions[b] - positions[a], uy = positions[b + 1] - positions[a + 1],
+                        uz = positions[b + 2] - positions[a + 2];
+                float vx = positions[d] - positions[a], vy = positions[d + 1] - positions[a + 1],
+                        vz = positions[d + 2] - positions[a + 2];
+                float nx = uy * vz - uz * vy;
+                float ny = uz * vx - ux * vz;
+                float nz = ux * vy - uy * vx;
+                double triangleArea = Math.sqrt(nx * nx + ny * ny + nz * nz);
+
+                for (int k = 0; k < 3; k++)
+                    centroid[k] += triangleArea
+                            * (positions[a + k] + positions[b + k] + positions[d + k]) / 3;
+                area += triangleArea;
+                normals[c * 3] += nx;
+                normals[c * 3 + 1] += ny;
+                normals[c * 3 + 2] += nz;
+            }
+            for (int k = 0; k < 3; k++) {
+                meshCentroid[k] += centroid[k];
+                centroids[c * 3 + k] = area > 0 ? (float) (centroid[k] / area) : 0;
+            }
+            meshArea += area;
+        }
+        for (int k = 0; k < 3; k++)
+            meshCentroid[k] = meshArea > 0 ? meshCentroid[k] / meshArea : 0;
+
+        // Clusters that face away from the centre of the mesh, and are further
+        // from it, are drawn first.
+        float[] keys = new float[clusterCount];
+        for (int c = 0; c < clusterCount; c++) {
+            float nx = normals[c * 3], ny = normals[c * 3 + 1], nz = normals[c * 3 + 2];
+            float length = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+            if (length > 0) {
+                keys[c] = (float) (((centroids[c * 3] - meshCentroid[0]) * nx
+                        + (centroids[c * 3 + 1] - meshCentroid[1]) * ny
+                        + (centroids[c * 3 + 2] - meshCentroid[2]) * nz) / length);
+            }
+        }
+        Integer[] order = new Integer[clusterCount];
+        for (int c = 0; c < clusterCount; c++)
+            order[c] = c;
+        Arrays.sort(order, (a, b) -> Float.compare(keys[b], keys[a]));
+
+        int[] result = new int[indices.length];
+        int out = 0;
+        for (int c : order) {
+            int from = starts.get(c) * 3, to = starts.get(c + 1) * 3;
+            System.arraycopy(indices, from, result, out, to - from);
+            out += to - from;
+        }
+        return result;
+    }
+
+    /**
+     * Compute a new index for each vertex, in the order the vertices are
+     * first used by the given triangles. Unused vertices go at the end.
+     *
+     * @param indices
+     * @param vertexCount
+     * @return The new index of each vertex
+     */
+    static int[] vertexFetchRemap(int[] indices, int vertexCount) {
+        int[] remap = new int[vertexCount];
+        Arrays.fill(remap, -1);
+        int next = 0;
+        for (int v : indices) {
+            if (remap[v] < 0)
+                remap[v] = next++;
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            if (remap[v] < 0)
+                remap[v] = next++;
+        }
+        return remap;
+    }
+
+    private static float vertexScore(int cachePosition, int liveTriangles) {
+        if (liveTriangles == 0)
+            return -1;
+        float score = cachePosition < 0 ? 0 : CACHE_SCORES[cachePosition];
+        return score + (liveTriangles < VALENCE_SCORES.length ? VALENCE_SCORES[liveTriangles]
+                : valenceScore(liveTriangles));
+    }
+
+    /**
+     * Vertices with few triangles left score highly, so they are finished
+     * off rather than left behind to cause a cache miss later.
+     */
+    private static float valenceScore(int liveTriangles) {
+        return VALENCE_BOOST_SCALE * (float) Math.pow(liveTriangles, -VALENCE_BOOST_POWER);
+    }
+
+    /**
+     * The number of vertices of the given triangle that miss a simulated FIFO
+     * cache, adding them to the cache.
+     */
+    private static int misses(int[] indices, int t, int[] timestamps, int[] time) {
+        int misses = 0;
+        for (int k = 0; k < 3; k++) {
+            int v = indices[t * 3 + k];
+            if (time[0] - timestamps[v] > VertexCacheStatistics.CACHE_SIZE) {
+                timestamps[v] = time[0]++;
+                misses++;
+            }
+        }
+        return misses;
+    }
+
+    private static boolean contains(int[] array, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (array[i] == value)
+                return true;
+        }
+        return false;
+    }
+
+    private static float[] remap(float[] data, int components, int[] remap) {
+        float[] result = new float[data.length];
+        for (int v = 0; v < remap.length; v++)
+            System.arraycopy(data, v * components, result, remap[v] * components, components);
+        return result;
+    }
+}
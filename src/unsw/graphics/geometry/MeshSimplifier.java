@@ -0,0 +1,637 @@
+/**
+ *
+ */
+package unsw.graphics.geometry;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import com.jogamp.opengl.util.GLBuffers;
+
+/**
+ * Reduces the number of triangles in a mesh by repeatedly collapsing edges,
+ * choosing the edge whose collapse changes the shape of the mesh least. This
+ * is measured with the quadric error metric of Garland and Heckbert, "Surface
+ * Simplification Using Quadric Error Metrics".
+ *
+ * Each collapse moves one vertex onto a neighbouring one, so every vertex of
+ * a simplified mesh is a vertex of the original, with the same normal and
+ * texture coordinates.
+ *
+ * Simplification is progressive. Each call to simplify() carries on from
+ * where the last one stopped, and the error is always measured against the
+ * original mesh, so repeated calls with smaller targets give a chain of
+ * levels of detail:
+ *
+ *   MeshSimplifier simplifier = new MeshSimplifier(mesh);
+ *   TriangleMesh half = simplifier.simplify(mesh.getTriangleCount() / 2);
+ *   TriangleMesh quarter = simplifier.simplify(mesh.getTriangleCount() / 4);
+ *
+ * The outline of the mesh is preserved:
+ *   - Vertices on the border of the mesh only move along the border.
+ *   - Vertices where the normal or texture coordinates are discontinuous,
+ *     i.e. that share their position with another vertex, never move and
+ *     nothing moves onto them.
+ *   - Vertices at corners of the border or where the mesh is not manifold
+ *     never move.
+ *
+ * @author Robert Clifton-Everest
+ *
+ */
+public class MeshSimplifier {
+
+    /**
+     * How much more moving a vertex away from the border costs than moving it
+     * the same distance away from the surface.
+     */
+    private static final double BORDER_WEIGHT = 10;
+
+    private final float[] positions;
+    private final float[] normals;
+    private final float[] texCoords;
+
+    /**
+     * Each set of 3 indices forms a triangle. Triangles that have collapsed
+     * are marked in removed.
+     */
+    private final int[] triangles;
+    private final boolean[] removed;
+    private int triangleCount;
+
+    /**
+     * The live triangles that use each vertex are
+     * vertexTriangles[v][0] to vertexTriangles[v][vertexTriangleCounts[v] - 1].
+     */
+    private final int[][] vertexTriangles;
+    private final int[] vertexTriangleCounts;
+
+    /**
+     * Vertices that share their position with another vertex.
+     */
+    private final boolean[] seam;
+
+    /**
+     * Vertices that may only move along the border.
+     */
+    private final boolean[] border;
+
+    /**
+     * Vertices that never move.
+     */
+    private final boolean[] locked;
+
+    /**
+     * The 10 unique coefficients of the symmetric 4x4 quadric of each vertex,
+     * and the area of the faces that contributed to it.
+     */
+    private final double[] quadrics;
+    private final double[] areas;
+
+    /**
+     * Incremented whenever the best collapse of a vertex may have changed, so
+     * that older collapses of it in the queue can be ignored.
+     */
+    private final int[] versions;
+
+    private final PriorityQueue<Collapse> queue = new PriorityQueue<>();
+
+    private float error = 0;
+
+    /**
+     * Scratch space for listing the neighbours of a vertex.
+     */
+    private int[] neighbours = new int[16];
+    private int[] seen = new int[16];
+
+    /**
+     * A possible collapse of one vertex onto another.
+     */
+    private static class Collapse implements Comparable<Collapse> {
+        final double cost;
+        final int from, to, version;
+
+        Collapse(double cost, int from, int to, int version) {
+            this.cost = cost;
+            this.from = from;
+            this.to = to;
+            this.version = version;
+        }
+
+        @Override
+        public int compareTo(Collapse other) {
+            return Double.compare(cost, other.cost);
+        }
+    }
+
+    /**
+     * Prepare to simplify the given mesh. The mesh itself is not changed.
+     *
+     * @param mesh
+     */
+    public MeshSimplifier(TriangleMesh mesh) {
+        positions = MeshBuffers.toArray(mesh.getVertexBuffer());
+        normals = mesh.getNormalBuffer() != null
+                ? MeshBuffers.toArray(mesh.getNormalBuffer()) : null;
+        texCoords = mesh.getTexCoordBuffer() != null
+                ? MeshBuffers.toArray(mesh.getTexCoordBuffer()) : null;
+        int vertexCount = positions.length / 3;
+
+        // Meshes without indices use each vertex once, in order
+        IntBuffer indices = mesh.getIndexBuffer();
+        if (indices != null) {
+            triangles = new int[indices.capacity()];
+            for (int i = 0; i < triangles.length; i++)
+                triangles[i] = indices.get(i);
+        } else {
+            triangles = new int[vertexCount];
+            for (int i = 0; i < triangles.length; i++)
+                triangles[i] = i;
+        }
+        triangleCount = triangles.length / 3;
+        removed = new boolean[triangleCount];
+
+        // Vertices that are identical in every way are the same vertex as far
+        // as simplification is concerned. Those that only share a position
+        // form a seam.
+        Map<VertexKey, Integer> identical = new HashMap<>();
+        Map<VertexKey, Integer> samePosition = new HashMap<>();
+        int[] weld = new int[vertexCount];
+        seam = new boolean[vertexCount];
+        for (int v = 0; v < vertexCount; v++) {
+            Integer w = identical.putIfAbsent(new VertexKey(v, true), v);
+            weld[v] = w != null ? w : v;
+            if (w == null) {
+                Integer s = samePosition.putIfAbsent(new VertexKey(v, false), v);
+                if (s != null) {
+                    seam[v] = true;
+                    seam[s] = true;
+                }
+            }
+        }
+        for (int i = 0; i < triangles.length; i++)
+            triangles[i] = weld[triangles[i]];
+
+        vertexTriangleCounts = new int[vertexCount];
+        for (int v : triangles)
+            vertexTriangleCounts[v]++;
+        vertexTriangles = new int[vertexCount][];
+        for (int v = 0; v < vertexCount; v++)
+            vertexTriangles[v] = new int[vertexTriangleCounts[v]];
+        Arrays.fill(vertexTriangleCounts, 0);
+        for (int t = 0; t < triangleCount; t++) {
+            for (int k = 0; k < 3; k++) {
+                int v = triangles[t * 3 + k];
+                if (!contains(vertexTriangles[v], vertexTriangleCounts[v], t))
+                    vertexTriangles[v][vertexTriangleCounts[v]++] = t;
+            }
+        }
+
+        quadrics = new double[vertexCount * 10];
+        areas = new double[vertexCount];
+        border = new boolean[vertexCount];
+        locked = new boolean[vertexCount];
+        versions = new int[vertexCount];
+        classifyEdges();
+
+        for (int t = 0; t < triangleCount; t++) {
+            int a = triangles[t * 3], b = triangles[t * 3 + 1], c = triangles[t * 3 + 2];
+            double[] n = cross(a, b, c);
+            double length = Math.sqrt(n[0] * n[0] + n[1] * n[1] + n[2] * n[2]);
+            if (length == 0)
+                continue;
+            double area = length / 2;
+            for (int k = 0; k < 3; k++)
+                n[k] /= length;
+            for (int v : new int[] { a, b, c }) {
+                addPlane(v, n, a, area);
+                areas[v] += area;
+            }
+        }
+
+        for (int v = 0; v < vertexCount; v++)
+            pushBestCollapse(v);
+    }
+
+    /**
+     * Find the border edges, which belong to only one triangle, and mark the
+     * vertices that can't move freely. Moving a vertex away from a border
+     * edge is penalised by adding a plane through the edge, perpendicular to
+     * its triangle, to the quadrics of its vertices.
+     */
+    private void classifyEdges() {
+        // Sorting the edges puts the copies of each edge next to each other
+        long[] edges = new long[triangleCount * 3];
+        for (int t = 0; t < triangleCount; t++) {
+            for (int k = 0; k < 3; k++)
+                edges[t * 3 + k] = edgeKey(t, k);
+        }
+        Arrays.sort(edges);
+
+        int[] borderEdges = new int[border.length];
+        for (int t = 0; t < triangleCount; t++) {
+            double[] n = cross(triangles[t * 3], triangles[t * 3 + 1], triangles[t * 3 + 2]);
+            for (int k = 0; k < 3; k++) {
+                int a = triangles[t * 3 + k], b = triangles[t * 3 + (k + 1) % 3];
+                int count = edgeCount(edges, edgeKey(t, k));
+                if (count > 2) {
+                    locked[a] = true;
+                    locked[b] = true;
+                } else if (count == 1) {
+                    borderEdges[a]++;
+                    borderEdges[b]++;
+
+                    double ex = positions[b * 3] - positions[a * 3];
+                    double ey = positions[b * 3 + 1] - positions[a * 3 + 1];
+                    double ez = positions[b * 3 + 2] - positions[a * 3 + 2];
+                    double[] p = { ey * n[2] - ez * n[1], ez * n[0] - ex * n[2],
+                            ex * n[1] - ey * n[0] };
+                    double length = Math.sqrt(p[0] * p[0] + p[1] * p[1] + p[2] * p[2]);
+                    if (length == 0)
+                        continue;
+                    for (int i = 0; i < 3; i++)
+                        p[i] /= length;
+                    double weight = BORDER_WEIGHT * (ex * ex + ey * ey + ez * ez);
+                    addPlane(a, p, a, weight);
+                    addPlane(b, p, a, weight);
+                }
+            }
+        }
+
+        for (int v = 0; v < border.length; v++) {
+            border[v] = borderEdges[v] > 0;
+            if (seam[v] || (border[v] && borderEdges[v] != 2))
+                locked[v] = true;
+        }
+    }
+
+    /**
+     * The number of copies of the given edge in a sorted array of edges.
+     */
+    private static int edgeCount(long[] edges, long edge) {
+        int i = Arrays.binarySearch(edges, edge);
+        int from = i, to = i;
+        while (from > 0 && edges[from - 1] == edge)
+            from--;
+        while (to + 1 < edges.length && edges[to + 1] == edge)
+            to++;
+        return to - from + 1;
+    }
+
+    private long edgeKey(int t, int k) {
+        int a = triangles[t * 3 + k], b = triangles[t * 3 + (k + 1) % 3];
+        return ((long) Math.min(a, b) << 32) | Math.max(a, b);
+    }
+
+    /**
+     * Collapse edges until the mesh has no more than the given number of
+     * triangles, or no more edges can be collapsed, and return the result.
+     *
+     * @param targetTriangles
+     * @return
+     */
+    public TriangleMesh simplify(int targetTriangles) {
+        while (triangleCount > targetTriangles && !queue.isEmpty()) {
+            Collapse c = queue.poll();
+            if (c.version != versions[c.from] || vertexTriangleCounts[c.from] == 0)
+                continue;
+
+            // The neighbourhood may have changed without this vertex being
+            // updated, so check again
+            if (!canCollapse(c.from, c.to)) {
+                pushBestCollapse(c.from);
+                continue;
+            }
+            collapse(c.from, c.to);
+        }
+        return buildMesh();
+    }
+
+    /**
+     * An estimate of the largest distance between the original mesh and the
+     * last simplified mesh. It is the root mean square distance from a moved
+     * vertex to the planes of the original faces around it, so it is
+     * approximate, but it is in the same units as the mesh.
+     *
+     * @return
+     */
+    public float getError() {
+        return error;
+    }
+
+    /**
+     * @return The number of triangles in the mesh as simplified so far
+     */
+    public int getTriangleCount() {
+        return triangleCount;
+    }
+
+    private void collapse(int from, int to) {
+        double[] q = combined(from, to);
+        double area = areas[from] + areas[to];
+        if (area > 0)
+            error = Math.max(error, (float) Math.sqrt(Math.max(0, evaluate(q, to)) / area));
+
+        for (int i = 0; i < vertexTriangleCounts[from]; i++) {
+            int t = vertexTriangles[from][i];
+            if (usesVertex(t, to)) {
+                removed[t] = true;
+                triangleCount--;
+                for (int k = 0; k < 3; k++) {
+                    int v = triangles[t * 3 + k];
+                    if (v != from)
+                        removeTriangle(v, t);
+                }
+            } else {
+                for (int k = 0; k < 3; k++) {
+                    if (triangles[t * 3 + k] == from)
+                        triangles[t * 3 + k] = to;
+                }
+                addTriangle(to, t);
+            }
+        }
+        vertexTriangleCounts[from] = 0;
+
+        System.arraycopy(q, 0, quadrics, to * 10, 10);
+        areas[to] = area;
+
+        // Every collapse involving the vertex or its neighbours has changed
+        pushBestCollapse(to);
+        for (int i = 0; i < vertexTriangleCounts[to]; i++) {
+            int t = vertexTriangles[to][i];
+            for (int k = 0; k < 3; k++) {
+                int v = triangles[t * 3 + k];
+                if (v != to)
+                    pushBestCollapse(v);
+            }
+        }
+    }
+
+    /**
+     * Queue the cheapest valid collapse of the given vertex, replacing any
+     * that is already queued.
+     */
+    private void pushBestCollapse(int from) {
+        versions[from]++;
+        if (locked[from] || vertexTriangleCounts[from] == 0)
+            return;
+
+        // Each neighbour appears in two triangles around the vertex
+        int neighbourCount = 0;
+        if (neighbours.length < vertexTriangleCounts[from] * 2)
+            neighbours = new int[vertexTriangleCounts[from] * 2];
+        for (int i = 0; i < vertexTriangleCounts[from]; i++) {
+            int t = vertexTriangles[from][i];
+            for (int k = 0; k < 3; k++) {
+                int v = triangles[t * 3 + k];
+                if (v != from && !contains(neighbours, neighbourCount, v))
+                    neighbours[neighbourCount++] = v;
+            }
+        }
+
+        int best = -1;
+        double bestCost = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < neighbourCount; i++) {
+            int to = neighbours[i];
+            double cost = evaluate(quadrics, from, to) + evaluate(quadrics, to, to);
+            if (cost < bestCost && canCollapse(from, to)) {
+                best = to;
+                bestCost = cost;
+            }
+        }
+        if (best >= 0)
+            queue.add(new Collapse(bestCost, from, best, versions[from]));
+    }
+
+    /**
+     * Whether the given vertex can be moved onto the given neighbour without
+     * changing the topology of the mesh, flipping a triangle or moving a
+     * border.
+     */
+    private boolean canCollapse(int from, int to) {
+        if (locked[from] || seam[to] || vertexTriangleCounts[to] == 0)
+            return false;
+
+        // The triangles on the edge, which will be removed
+        int shared = 0;
+        for (int i = 0; i < vertexTriangleCounts[from]; i++) {
+            if (usesVertex(vertexTriangles[from][i], to))
+                shared++;
+        }
+        if (shared == 0)
+            return false;
+
+        // Border vertices can only move along border edges
+        if (border[from] && (!border[to] || shared != 1))
+            return false;
+
+        // The only vertices adjacent to both may be the opposite corners of
+        // the triangles on the edge, or the mesh would fold onto itself
+        int common = 0;
+        if (seen.length < vertexTriangleCounts[from] * 2)
+            seen = new int[vertexTriangleCounts[from] * 2];
+        int seenCount = 0;
+        for (int i = 0; i < vertexTriangleCounts[from]; i++) {
+            int t = vertexTriangles[from][i];
+            for (int k = 0; k < 3; k++) {
+                int v = triangles[t * 3 + k];
+                if (v == from || v == to || contains(seen, seenCount, v))
+                    continue;
+                seen[seenCount++] = v;
+                if (isNeighbour(to, v))
+                    common++;
+            }
+        }
+        if (common != shared)
+            return false;
+
+        // No remaining triangle may turn over
+        for (int i = 0; i < vertexTriangleCounts[from]; i++) {
+            int t = vertexTriangles[from][i];
+            if (usesVertex(t, to))
+                continue;
+            int a = triangles[t * 3], b = triangles[t * 3 + 1], c = triangles[t * 3 + 2];
+            double[] before = cross(a, b, c);
+            double[] after = cross(a == from ? to : a, b == from ? to : b, c == from ? to : c);
+            if (before[0] * after[0] + before[1] * after[1] + before[2] * after[2] <= 0)
+                return false;
+        }
+        return true;
+    }
+
+    private boolean isNeighbour(int v, int w) {
+        for (int i = 0; i < vertexTriangleCounts[v]; i++) {
+            if (usesVertex(vertexTriangles[v][i], w))
+                return true;
+        }
+        return false;
+    }
+
+    private boolean usesVertex(int t, int v) {
+        return triangles[t * 3] == v || triangles[t * 3 + 1] == v || triangles[t * 3 + 2] == v;
+    }
+
+    private void addTriangle(int v, int t) {
+        if (vertexTriangleCounts[v] == vertexTriangles[v].length)
+            vertexTriangles[v] = Arrays.copyOf(vertexTriangles[v], vertexTriangles[v].length * 2 + 1);
+        vertexTriangles[v][vertexTriangleCounts[v]++] = t;
+    }
+
+    private void removeTriangle(int v, int t) {
+        int[] list = vertexTriangles[v];
+        for (int i = 0; i < vertexTriangleCounts[v]; i++) {
+            if (list[i] == t) {
+                list[i] = list[--vertexTriangleCounts[v]];
+                return;
+            }
+        }
+    }
+
+    /**
+     * The cross product of the edges from a to b and from a to c.
+     */
+    private double[] cross(int a, int b, int c) {
+        double ux = positions[b * 3] - positions[a * 3];
+        double uy = positions[b * 3 + 1] - positions[a * 3 + 1];
+        double uz = positions[b * 3 + 2] - positions[a * 3 + 2];
+        double vx = positions[c * 3] - positions[a * 3];
+        double vy = positions[c * 3 + 1] - positions[a * 3 + 1];
+        double vz = positions[c * 3 + 2] - positions[a * 3 + 2];
+        return new double[] { uy * vz - uz * vy, uz * vx - ux * vz, ux * vy - uy * vx };
+    }
+
+    /**
+     * Add the squared distance to the plane with the given unit normal,
+     * through the given vertex, to the quadric of v.
+     */
+    private void addPlane(int v, double[] n, int through, double weight) {
+        double d = -(n[0] * positions[through * 3] + n[1] * positions[through * 3 + 1]
+                + n[2] * positions[through * 3 + 2]);
+        double[] plane = { n[0], n[1], n[2], d };
+        int q = v * 10;
+        for (int i = 0; i < 4; i++) {
+            for (int j = i; j < 4; j++)
+                quadrics[q++] += weight * plane[i] * plane[j];
+        }
+    }
+
+    private double[] combined(int v, int w) {
+        double[] q = new double[10];
+        for (int i = 0; i < 10; i++)
+            q[i] = quadrics[v * 10 + i] + quadrics[w * 10 + i];
+        return q;
+    }
+
+    /**
+     * The value of the given quadric at the position of vertex v.
+     */
+    private double evaluate(double[] q, int v) {
+        return evaluate(q, 0, v);
+    }
+
+    /**
+     * The value of the quadric of vertex w at the position of vertex v.
+     */
+    private double evaluate(double[] q, int w, int v) {
+        double x = positions[v * 3], y = positions[v * 3 + 1], z = positions[v * 3 + 2];
+        int o = w * 10;
+        return q[o] * x * x + 2 * q[o + 1] * x * y + 2 * q[o + 2] * x * z + 2 * q[o + 3] * x
+                + q[o + 4] * y * y + 2 * q[o + 5] * y * z + 2 * q[o + 6] * y
+                + q[o + 7] * z * z + 2 * q[o + 8] * z
+                + q[o + 9];
+    }
+
+    /**
+     * Copy the live triangles and the vertices they use into a new mesh.
+     */
+    private TriangleMesh buildMesh() {
+        int[] remap = new int[positions.length / 3];
+        Arrays.fill(remap, -1);
+        IntBuffer indices = GLBuffers.newDirectIntBuffer(triangleCount * 3);
+        int vertexCount = 0, i = 0;
+        for (int t = 0; t < removed.length; t++) {
+            if (removed[t])
+                continue;
+            for (int k = 0; k < 3; k++) {
+                int v = triangles[t * 3 + k];
+                if (remap[v] < 0)
+                    remap[v] = vertexCount++;
+                indices.put(i++, remap[v]);
+            }
+        }
+
+        FloatBuffer vertexData = GLBuffers.newDirectFloatBuffer(vertexCount * 3);
+        FloatBuffer normalData = normals != null
+                ? GLBuffers.newDirectFloatBuffer(vertexCount * 3) : null;
+        FloatBuffer texCoordData = texCoords != null
+                ? GLBuffers.newDirectFloatBuffer(vertexCount * 2) : null;
+        for (int v = 0; v < remap.length; v++) {
+            int r = remap[v];
+            if (r < 0)
+                continue;
+            for (int k = 0; k < 3; k++) {
+                vertexData.put(r * 3 + k, positions[v * 3 + k]);
+                if (normalData != null)
+                    normalData.put(r * 3 + k, normals[v * 3 + k]);
+            }
+            if (texCoordData != null) {
+                texCoordData.put(r * 2, texCoords[v * 2]);
+                texCoordData.put(r * 2 + 1, texCoords[v * 2 + 1]);
+            }
+        }
+        return new TriangleMesh(vertexData, normalData, texCoordData, indices);
+    }
+
+    /**
+     * Identifies a vertex by its position and, optionally, its other
+     * attributes.
+     */
+    private class VertexKey {
+        private final int v;
+        private final boolean attributes;
+
+        VertexKey(int v, boolean attributes) {
+            this.v = v;
+            this.attributes = attributes;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 0;
+            for (int k = 0; k < 3; k++)
+                hash = hash * 31 + Float.floatToIntBits(positions[v * 3 + k]);
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof VertexKey))
+                return false;
+            VertexKey other = (VertexKey) obj;
+            return same(positions, 3, other.v)
+                    && (!attributes || (same(normals, 3, other.v) && same(texCoords, 2, other.v)));
+        }
+
+        private boolean same(float[] data, int components, int w) {
+            if (data == null)
+                return true;
+            for (int k = 0; k < components; k++) {
+                if (Float.floatToIntBits(data[v * components + k])
+                        != Float.floatToIntBits(data[w * components + k]))
+                    return false;
+            }
+            return true;
+        }
+    }
+
+    private static boolean contains(int[] array, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (array[i] == value)
+                return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,28 @@
+/**
+ *
+ */
+package unsw.graphics.geometry;
+
+/**
+ * How the normals of the faces around a vertex are combined into the normal
+ * of the vertex.
+ *
+ * In both cases the result is NOT normalised.
+ *
+ * @author Robert Clifton-Everest
+ *
+ */
+public enum NormalWeighting {
+    /**
+     * Each face contributes in proportion to its area. Large faces dominate
+     * the normal. This is cheap to compute.
+     */
+    AREA,
+
+    /**
+     * Each face contributes in proportion to the angle of its corner at the
+     * vertex. This doesn't depend on how the surface has been split into
+     * triangles, so it gives better results on irregular meshes.
+     */
+    ANGLE
+}
@@ -0,0 +1,287 @@
+/**
+ *
+ */
+package unsw.graphics.geometry;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The header of a PLY file: its format and the layout of each element.
+ *
+ * This only describes the file. Reading the body is done by PlyLoader.
+ *
+ * @author Robert Clifton-Everest
+ *
+ */
+class PlyHeader {
+
+    /**
+     * The ways the body of a PLY file can be encoded.
+     */
+    enum Format {
+        ASCII, BINARY_LITTLE_ENDIAN, BINARY_BIG_ENDIAN
+    }
+
+    /**
+     * The scalar types a property (or the count and items of a list property)
+     * can have.
+     */
+    enum Type {
+        INT8(1), UINT8(1), INT16(2), UINT16(2), INT32(4), UINT32(4), FLOAT32(4), FLOAT64(8);
+
+        /**
+         * The size of a value of this type in a binary file, in bytes.
+         */
+        final int size;
+
+        Type(int size) {
+            this.size = size;
+        }
+
+        /**
+         * The type with the given name in a PLY header, or null if there is
+         * no such type.
+         *
+         * @param name
+         * @return
+         */
+        static Type forName(String name) {
+            switch (name) {
+            case "char": case "int8": return INT8;
+            case "uchar": case "uint8": return UINT8;
+            case "short": case "int16": return INT16;
+            case "ushort": case "uint16": return UINT16;
+            case "int": case "int32": return INT32;
+            case "uint": case "uint32": return UINT32;
+            case "float": case "float32": return FLOAT32;
+            case "double": case "float64": return FLOAT64;
+            default: return null;
+            }
+        }
+    }
+
+    /**
+     * A property of an element.
+     */
+    static class Property {
+        final String name;
+
+        /**
+         * The type of the value, or of each item if this is a list.
+         */
+        final Type type;
+
+        /**
+         * The type of the item count if this is a list, otherwise null.
+         */
+        final Type countType;
+
+        Property(String name, Type type, Type countType) {
+            this.name = name;
+            this.type = type;
+            this.countType = countType;
+        }
+
+        boolean isList() {
+            return countType != null;
+        }
+    }
+
+    /**
+     * A type of element (e.g. "vertex" or "face") and how many there are.
+     */
+    static class Element {
+        final String name;
+        final int count;
+        final List<Property> properties = new ArrayList<Property>();
+
+        Element(String name, int count) {
+            this.name = name;
+            this.count = count;
+        }
+
+        /**
+         * The index of the property with the given name, or -1 if this element
+         * doesn't have one.
+         *
+         * @param name
+         * @return
+         */
+        int indexOf(String name) {
+            for (int i = 0; i < properties.size(); i++) {
+                if (properties.get(i).name.equals(name))
+                    return i;
+            }
+            return -1;
+        }
+
+        /**
+         * Whether every property of this element is a scalar, in which case
+         * every element takes up the same number of bytes in a binary file.
+         *
+         * @return
+         */
+        boolean isFixedSize() {
+            for (Property p : properties) {
+                if (p.isList())
+                    return false;
+            }
+            return true;
+        }
+
+        /**
+         * The number of bytes one element takes up in a binary file. Only
+         * meaningful if the element is fixed size.
+         *
+         * @return
+         */
+        int size() {
+            int size = 0;
+            for (Property p : properties)
+                size += p.type.size;
+            return size;
+        }
+
+        /**
+         * The offset in bytes of the given property from the start of the
+         * element in a binary file. Only meaningful if every property before it
+         * is a scalar.
+         *
+         * @param property
+         * @return
+         */
+        int offsetOf(int property) {
+            int offset = 0;
+            for (int i = 0; i < property; i++)
+                offset += properties.get(i).type.size;
+            return offset;
+        }
+    }
+
+    private final Format format;
+
+    private final List<Element> elements;
+
+    private final int length;
+
+    private PlyHeader(Format format, List<Element> elements, int length) {
+        this.format = format;
+        this.elements = Collections.unmodifiableList(elements);
+        this.length = length;
+    }
+
+    /**
+     * Parse the header at the start of the given buffer.
+     *
+     * Returns null if the buffer doesn't start with a PLY header this class
+     * understands, e.g. because a property has an unknown type.
+     *
+     * @param data
+     * @return
+     */
+    static PlyHeader parse(ByteBuffer data) {
+        Format format = null;
+        List<Element> elements = new ArrayList<Element>();
+
+        int pos = 0;
+        boolean first = true;
+        while (true) {
+            int end = pos;
+            while (end < data.limit() && data.get(end) != '\n')
+                end++;
+            if (end == data.limit())
+                return null;
+
+            byte[] bytes = new byte[end - pos];
+            for (int i = 0; i < bytes.length; i++)
+                bytes[i] = data.get(pos + i);
+            String line = new String(bytes, StandardCharsets.US_ASCII).trim();
+            pos = end + 1;
+
+            String[] words = line.split("\\s+");
+            if (first) {
+                if (!line.equals("ply"))
+                    return null;
+                first = false;
+            } else if (words[0].equals("format") && words.length == 3) {
+                if (words[1].equals("ascii"))
+                    format = Format.ASCII;
+                else if (words[1].equals("binary_little_endian"))
+                    format = Format.BINARY_LITTLE_ENDIAN;
+                else if (words[1].equals("binary_big_endian"))
+                    format = Format.BINARY_BIG_ENDIAN;
+                else
+                    return null;
+            } else if (words[0].equals("element") && words.length == 3) {
+                int count;
+                try {
+                    count = Integer.parseInt(words[2]);
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+                elements.add(new Element(words[1], count));
+            } else if (words[0].equals("property") && !elements.isEmpty()) {
+                Element element = elements.get(elements.size() - 1);
+                if (words.length == 3 && Type.forName(words[1]) != null) {
+                    element.properties.add(new Property(words[2], Type.forName(words[1]), null));
+                } else if (words.length == 5 && words[1].equals("list")
+                        && Type.forName(words[2]) != null && Type.forName(words[3]) != null) {
+                    element.properties.add(new Property(words[4], Type.forName(words[3]),
+                            Type.forName(words[2])));
+                } else {
+                    return null;
+                }
+            } else if (words[0].equals("end_header")) {
+                break;
+            } else if (!words[0].equals("comment") && !words[0].equals("obj_info")) {
+                return null;
+            }
+        }
+
+        if (format == null)
+            return null;
+        return new PlyHeader(format, elements, pos);
+    }
+
+    /**
+     * How the body of the file is encoded.
+     * @return
+     */
+    Format getFormat() {
+        return format;
+    }
+
+    /**
+     * The elements in the order they appear in the body.
+     * @return
+     */
+    List<Element> getElements() {
+        return elements;
+    }
+
+    /**
+     * The element with the given name, or null if there isn't one.
+     * @param name
+     * @return
+     */
+    Element getElement(String name) {
+        for (Element e : elements) {
+            if (e.name.equals(name))
+                return e;
+        }
+        return null;
+    }
+
+    /**
+     * The length of the header in bytes. The body starts immediately after
+     * it.
+     * @return
+     */
+    int getLength() {
+        return length;
+    }
+}
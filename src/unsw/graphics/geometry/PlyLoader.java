@@ -0,0 +1,296 @@
+/**
+ *
+ */
+package unsw.graphics.geometry;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import com.jogamp.opengl.util.GLBuffers;
+
+import unsw.graphics.geometry.PlyHeader.Element;
+import unsw.graphics.geometry.PlyHeader.Property;
+import unsw.graphics.geometry.PlyHeader.Type;
+
+/**
+ * Reads the vertices and triangles of a PLY file straight into the direct
+ * buffers TriangleMesh copies to graphics memory.
+ *
+ * The file is memory-mapped and its body read in place, without creating an
+ * object per vertex or face. Binary bodies are read here and ASCII bodies by
+ * AsciiPlyReader. Faces with more than 3 vertices are split into a fan of
+ * triangles, and texture coordinates are generated from the x and y
+ * coordinates of each vertex, the same as jply's NormalizingPlyReader does.
+ *
+ * This doesn't handle everything jply does. If load() returns null, the file
+ * should be read with jply instead.
+ *
+ * @author Robert Clifton-Everest
+ *
+ */
+class PlyLoader {
+
+    /**
+     * The x-y-z coordinates of each vertex.
+     */
+    final FloatBuffer vertices;
+
+    /**
+     * Each set of 3 indices forms a triangle.
+     */
+    final IntBuffer indices;
+
+    /**
+     * The texture coordinates of each vertex, or null if they weren't asked
+     * for.
+     */
+    final FloatBuffer texCoords;
+
+    PlyLoader(FloatBuffer vertices, IntBuffer indices, FloatBuffer texCoords) {
+        this.vertices = vertices;
+        this.indices = indices;
+        this.texCoords = texCoords;
+    }
+
+    /**
+     * Read the given PLY file, or return null if it has a layout that this
+     * class can't read.
+     *
+     * @param plyFile
+     * @param texCoords Whether to generate texture coordinates
+     * @return
+     * @throws IOException
+     */
+    static PlyLoader load(String plyFile, boolean texCoords) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(plyFile),
+                StandardOpenOption.READ)) {
+            // A single mapping can't be larger than this
+            if (channel.size() > Integer.MAX_VALUE)
+                return null;
+
+            ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            PlyHeader header = PlyHeader.parse(data);
+            if (header == null)
+                return null;
+
+            try {
+                switch (header.getFormat()) {
+                case BINARY_LITTLE_ENDIAN:
+                    return readBinary(header, data.order(ByteOrder.LITTLE_ENDIAN), texCoords);
+                case BINARY_BIG_ENDIAN:
+                    return readBinary(header, data.order(ByteOrder.BIG_ENDIAN), texCoords);
+                default:
+                    return AsciiPlyReader.read(header, data, texCoords);
+                }
+            } catch (IndexOutOfBoundsException e) {
+                throw new IOException("Unexpected end of file: " + plyFile, e);
+            }
+        }
+    }
+
+    private static PlyLoader readBinary(PlyHeader header, ByteBuffer data,
+            boolean texCoords) throws IOException {
+        FloatBuffer vertices = null;
+        IntBuffer indices = null;
+
+        int pos = header.getLength();
+        for (Element element : header.getElements()) {
+            if (element.name.equals("vertex") && vertices == null) {
+                if (!isReadableVertex(element, texCoords))
+                    return null;
+                vertices = GLBuffers.newDirectFloatBuffer(element.count * 3);
+                readBinaryVertices(data, pos, element, vertices);
+                pos += element.count * element.size();
+            } else if (element.name.equals("face") && indices == null) {
+                int list = faceIndexList(element);
+                if (list < 0)
+                    return null;
+                indices = GLBuffers.newDirectIntBuffer(
+                        3 * countBinaryTriangles(data, pos, element, list));
+                pos = readBinaryFaces(data, pos, element, list, indices);
+            } else {
+                pos = skipBinary(data, pos, element);
+            }
+        }
+
+        if (vertices == null || indices == null)
+            return null;
+        return new PlyLoader(vertices, indices, texCoords ? planarTexCoords(vertices) : null);
+    }
+
+    /**
+     * Whether the given vertex element has the x, y and z coordinates this
+     * class reads, and nothing that it would have to read like jply does.
+     */
+    static boolean isReadableVertex(Element vertex, boolean texCoords) {
+        if (!vertex.isFixedSize())
+            return false;
+        if (vertex.indexOf("x") < 0 || vertex.indexOf("y") < 0 || vertex.indexOf("z") < 0)
+            return false;
+        // Leave existing texture coordinates to jply
+        return !texCoords || (vertex.indexOf("u") < 0 && vertex.indexOf("v") < 0);
+    }
+
+    /**
+     * The index of the list of vertex indices in the given face element, or
+     * -1 if there isn't a suitable one.
+     */
+    static int faceIndexList(Element face) {
+        int list = face.indexOf("vertex_indices");
+        if (list < 0)
+            list = face.indexOf("vertex_index");
+        if (list < 0)
+            return -1;
+
+        Property p = face.properties.get(list);
+        if (!p.isList() || p.type == Type.FLOAT32 || p.type == Type.FLOAT64)
+            return -1;
+        return list;
+    }
+
+    private static void readBinaryVertices(ByteBuffer data, int pos, Element vertex,
+            FloatBuffer vertices) {
+        int x = vertex.indexOf("x"), y = vertex.indexOf("y"), z = vertex.indexOf("z");
+        int stride = vertex.size();
+
+        if (stride == 3 * Float.BYTES && x == 0 && y == 1 && z == 2
+                && vertex.properties.get(0).type == Type.FLOAT32
+                && vertex.properties.get(1).type == Type.FLOAT32
+                && vertex.properties.get(2).type == Type.FLOAT32) {
+            // The vertices are laid out exactly as OpenGL wants them
+            ByteBuffer body = data.duplicate();
+            body.position(pos);
+            body.limit(pos + vertex.count * stride);
+            vertices.put(body.slice().order(data.order()).asFloatBuffer());
+            vertices.rewind();
+            return;
+        }
+
+        Type xType = vertex.properties.get(x).type;
+        Type yType = vertex.properties.get(y).type;
+        Type zType = vertex.properties.get(z).type;
+        int xOff = vertex.offsetOf(x), yOff = vertex.offsetOf(y), zOff = vertex.offsetOf(z);
+        for (int i = 0; i < vertex.count; i++) {
+            int base = pos + i * stride;
+            vertices.put(i * 3, (float) readDouble(data, base + xOff, xType));
+            vertices.put(i * 3 + 1, (float) readDouble(data, base + yOff, yType));
+            vertices.put(i * 3 + 2, (float) readDouble(data, base + zOff, zType));
+        }
+    }
+
+    private static int countBinaryTriangles(ByteBuffer data, int pos, Element face,
+            int list) throws IOException {
+        int triangles = 0;
+        for (int i = 0; i < face.count; i++) {
+            for (int j = 0; j < face.properties.size(); j++) {
+                Property p = face.properties.get(j);
+                if (j == list) {
+                    int n = (int) readLong(data, pos, p.countType);
+                    if (n < 3)
+                        throw new IOException("face with less than three vertices.");
+                    triangles += n - 2;
+                }
+                pos += binarySize(data, pos, p);
+            }
+        }
+        return triangles;
+    }
+
+    private static int readBinaryFaces(ByteBuffer data, int pos, Element face, int list,
+            IntBuffer indices) {
+        int index = 0;
+        for (int i = 0; i < face.count; i++) {
+            for (int j = 0; j < face.properties.size(); j++) {
+                Property p = face.properties.get(j);
+                if (j == list) {
+                    int n = (int) readLong(data, pos, p.countType);
+                    int items = pos + p.countType.size;
+                    int size = p.type.size;
+                    // Split the face into a fan of triangles around its first vertex
+                    int first = (int) readLong(data, items, p.type);
+                    for (int k = 1; k < n - 1; k++) {
+                        indices.put(index++, first);
+                        indices.put(index++, (int) readLong(data, items + k * size, p.type));
+                        indices.put(index++, (int) readLong(data, items + (k + 1) * size, p.type));
+                    }
+                }
+                pos += binarySize(data, pos, p);
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * Skip over all the elements of the given type, returning the position
+     * after them.
+     */
+    private static int skipBinary(ByteBuffer data, int pos, Element element) {
+        if (element.isFixedSize())
+            return pos + element.count * element.size();
+        for (int i = 0; i < element.count; i++) {
+            for (Property p : element.properties)
+                pos += binarySize(data, pos, p);
+        }
+        return pos;
+    }
+
+    /**
+     * The number of bytes the given property takes up at the given position.
+     */
+    private static int binarySize(ByteBuffer data, int pos, Property p) {
+        if (!p.isList())
+            return p.type.size;
+        return p.countType.size + (int) readLong(data, pos, p.countType) * p.type.size;
+    }
+
+    private static long readLong(ByteBuffer data, int pos, Type type) {
+        switch (type) {
+        case INT8: return data.get(pos);
+        case UINT8: return data.get(pos) & 0xff;
+        case INT16: return data.getShort(pos);
+        case UINT16: return data.getShort(pos) & 0xffff;
+        case INT32: return data.getInt(pos);
+        case UINT32: return data.getInt(pos) & 0xffffffffL;
+        case FLOAT32: return (long) data.getFloat(pos);
+        default: return (long) data.getDouble(pos);
+        }
+    }
+
+    private static double readDouble(ByteBuffer data, int pos, Type type) {
+        switch (type) {
+        case FLOAT32: return data.getFloat(pos);
+        case FLOAT64: return data.getDouble(pos);
+        default: return readLong(data, pos, type);
+        }
+    }
+
+    /**
+     * Generate texture coordinates by mapping the bounds of the model in the
+     * x-y plane to the unit square.
+     */
+    static FloatBuffer planarTexCoords(FloatBuffer vertices) {
+        int count = vertices.capacity() / 3;
+        float minX = Float.POSITIVE_INFINITY, maxX = Float.NEGATIVE_INFINITY;
+        float minY = Float.POSITIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            float x = vertices.get(i * 3), y = vertices.get(i * 3 + 1);
+            minX = Math.min(minX, x);
+            maxX = Math.max(maxX, x);
+            minY = Math.min(minY, y);
+            maxY = Math.max(maxY, y);
+        }
+
+        FloatBuffer texCoords = GLBuffers.newDirectFloatBuffer(count * 2);
+        for (int i = 0; i < count; i++) {
+            texCoords.put(i * 2, (vertices.get(i * 3) - minX) / (maxX - minX));
+            texCoords.put(i * 2 + 1, (vertices.get(i * 3 + 1) - minY) / (maxY - minY));
+        }
+        return texCoords;
+    }
+}
@@ -19,6 +19,11 @@ import unsw.graphics.Vector3;
 public class Point2D {
     private float x, y;
 
+    /**
+     * The vertex of this point in graphics memory. Created on the first draw.
+     */
+    private GeometryBuffer buffer;
+
     /**
      * Construct a point from the given x and y coordinates.
      * 
@@ -39,21 +44,27 @@ public class Point2D {
      * @param frame
      */
     public void draw(GL3 gl, CoordFrame2D frame) {
-        Point2DBuffer buffer = new Point2DBuffer(1);
-        buffer.put(0, this);
-        int[] names = new int[1];
-        gl.glGenBuffers(1, names, 0);
-
-        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, names[0]);
-
-        gl.glBufferData(GL.GL_ARRAY_BUFFER, 2 * Float.BYTES, buffer.getBuffer(),
-                GL.GL_STATIC_DRAW);
-
-        gl.glVertexAttribPointer(Shader.POSITION, 2, GL.GL_FLOAT, false, 0, 0);
+        if (buffer == null)
+            buffer = new GeometryBuffer(this);
+        if (buffer.needsUpload(gl)) {
+            Point2DBuffer data = new Point2DBuffer(1);
+            data.put(0, this);
+            buffer.upload(gl, data.getBuffer(), 2, 1);
+        }
         Shader.setModelMatrix(gl, frame.getMatrix());
-        gl.glDrawArrays(GL.GL_POINTS, 0, 1);
+        buffer.draw(gl, GL.GL_POINTS);
+    }
 
-        gl.glDeleteBuffers(1, names, 0);
+    /**
+     * Release the graphics memory used by this point. It will be copied to 
+     * graphics memory again if the point is drawn after this.
+     * @param gl
+     */
+    public void destroy(GL3 gl) {
+        if (buffer != null) {
+            buffer.destroy(gl);
+            buffer = null;
+        }
     }
     
     /**
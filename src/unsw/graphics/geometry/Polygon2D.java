@@ -4,6 +4,7 @@
 package unsw.graphics.geometry;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import com.jogamp.opengl.GL;
@@ -25,6 +26,16 @@ import unsw.graphics.Shader;
 public class Polygon2D {
     private List<Point2D> points;
 
+    /**
+     * The vertices of this polygon in graphics memory. Created on the first draw.
+     */
+    private GeometryBuffer buffer;
+
+    /**
+     * The bounding rectangle of the vertices. Computed when first asked for.
+     */
+    private BoundingRectangle bounds;
+
     public Polygon2D(List<Point2D> points) {
         this.points = new ArrayList<Point2D>(points);
     }
@@ -55,24 +66,72 @@ public class Polygon2D {
      * @param gl
      */
     public void draw(GL3 gl, CoordFrame2D frame) {
-        Point2DBuffer buffer = new Point2DBuffer(points);
+        Shader.setModelMatrix(gl, frame.getMatrix());
+        getBuffer(gl).draw(gl, GL.GL_TRIANGLE_FAN);
+    }
 
-        int[] names = new int[1];
-        gl.glGenBuffers(1, names, 0);
-        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, names[0]);
-        gl.glBufferData(GL.GL_ARRAY_BUFFER, points.size() * 2 * Float.BYTES,
-                buffer.getBuffer(), GL.GL_STATIC_DRAW);
+    /**
+     * Get the buffer holding the vertices, copying them to graphics memory
+     * if this is the first time the polygon has been drawn.
+     */
+    private GeometryBuffer getBuffer(GL3 gl) {
+        if (buffer == null)
+            buffer = new GeometryBuffer(this);
+        if (buffer.needsUpload(gl)) {
+            buffer.upload(gl, new Point2DBuffer(points).getBuffer(), 2, points.size());
+        }
+        return buffer;
+    }
+
+    /**
+     * Release the graphics memory used by this polygon. It will be copied to 
+     * graphics memory again if the polygon is drawn after this.
+     * @param gl
+     */
+    public void destroy(GL3 gl) {
+        if (buffer != null) {
+            buffer.destroy(gl);
+            buffer = null;
+        }
+    }
 
-        gl.glVertexAttribPointer(Shader.POSITION, 2, GL.GL_FLOAT, false, 0, 0);
+    /**
+     * Draw the outline of the polygon in the given coordinate frame.
+     * @param gl
+     * @param frame
+     */
+    public void drawOutline(GL3 gl, CoordFrame2D frame) {
         Shader.setModelMatrix(gl, frame.getMatrix());
-        gl.glDrawArrays(GL.GL_TRIANGLE_FAN, 0, points.size());
+        getBuffer(gl).draw(gl, GL.GL_LINE_LOOP);
+    }
+
+    /**
+     * Get the bounding rectangle of the polygon.
+     * @return
+     */
+    public BoundingRectangle getBounds() {
+        if (bounds == null)
+            bounds = BoundingRectangle.of(points);
+        return bounds;
+    }
 
-        gl.glDeleteBuffers(1, names, 0);
+    /**
+     * Get the radius of the smallest circle centred on the origin that contains the polygon.
+     * @return
+     */
+    public float getRadius() {
+        float radius = 0;
+        for (Point2D p : points)
+            radius = Math.max(radius, p.getX() * p.getX() + p.getY() * p.getY());
+        return (float) Math.sqrt(radius);
     }
 
-    public void drawOutline(GL3 gl, CoordFrame2D frame) {
-        // TODO: You need to write this method.
-        // It should draw an outline of a polygon using GL_LINE_LOOP
+    /**
+     * Get the vertices of this polygon.
+     * @return An unmodifiable list of the vertices
+     */
+    public List<Point2D> getPoints() {
+        return Collections.unmodifiableList(points);
     }
 
     /**
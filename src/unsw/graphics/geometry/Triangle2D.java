@@ -6,7 +6,6 @@ package unsw.graphics.geometry;
 import java.util.ArrayList;
 import java.util.List;
 
-import com.jogamp.opengl.GL;
 import com.jogamp.opengl.GL3;
 
 import unsw.graphics.CoordFrame2D;
@@ -24,6 +23,11 @@ import unsw.graphics.Shader;
 public class Triangle2D {
     private List<Point2D> points;
 
+    /**
+     * The vertices of this triangle in graphics memory. Created on the first draw.
+     */
+    private GeometryBuffer buffer;
+
     public Triangle2D() {
         points = new ArrayList<Point2D>();
     }
@@ -45,19 +49,25 @@ public class Triangle2D {
     }
 
     public void draw(GL3 gl, CoordFrame2D frame) {        
-        Point2DBuffer buffer = new Point2DBuffer(points);
-
-        int[] names = new int[1];
-        gl.glGenBuffers(1, names, 0);
-        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, names[0]);
-        gl.glBufferData(GL.GL_ARRAY_BUFFER, points.size() * 2 * Float.BYTES,
-                buffer.getBuffer(), GL.GL_STATIC_DRAW);
-
-        gl.glVertexAttribPointer(Shader.POSITION, 2, GL.GL_FLOAT, false, 0, 0);
+        if (buffer == null)
+            buffer = new GeometryBuffer(this);
+        if (buffer.needsUpload(gl)) {
+            buffer.upload(gl, new Point2DBuffer(points).getBuffer(), 2, points.size());
+        }
         Shader.setModelMatrix(gl, frame.getMatrix());
-        gl.glDrawArrays(GL3.GL_TRIANGLES, 0, points.size());
+        buffer.draw(gl, GL3.GL_TRIANGLES);
+    }
 
-        gl.glDeleteBuffers(1, names, 0);
+    /**
+     * Release the graphics memory used by this triangle. It will be copied to 
+     * graphics memory again if the triangle is drawn after this.
+     * @param gl
+     */
+    public void destroy(GL3 gl) {
+        if (buffer != null) {
+            buffer.destroy(gl);
+            buffer = null;
+        }
     }
     
     public void draw(GL3 gl) {
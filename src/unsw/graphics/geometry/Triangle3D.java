@@ -6,7 +6,6 @@ package unsw.graphics.geometry;
 import java.util.ArrayList;
 import java.util.List;
 
-import com.jogamp.opengl.GL;
 import com.jogamp.opengl.GL3;
 
 import unsw.graphics.CoordFrame3D;
@@ -23,6 +22,11 @@ import unsw.graphics.Shader;
  */
 public class Triangle3D {
     private List<Point3D> points;
+
+    /**
+     * The vertices of this triangle in graphics memory. Created on the first draw.
+     */
+    private GeometryBuffer buffer;
     
     public Triangle3D(float x0, float y0, float z0, float x1, float y1, float z1, float x2, float y2, float z2) {
         List<Point3D> points = new ArrayList<Point3D>();
@@ -33,19 +37,25 @@ public class Triangle3D {
     }
 
     public void draw(GL3 gl, CoordFrame3D frame) {        
-        Point3DBuffer buffer = new Point3DBuffer(points);
-
-        int[] names = new int[1];
-        gl.glGenBuffers(1, names, 0);
-        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, names[0]);
-        gl.glBufferData(GL.GL_ARRAY_BUFFER, points.size() * 3 * Float.BYTES,
-                buffer.getBuffer(), GL.GL_STATIC_DRAW);
-
-        gl.glVertexAttribPointer(Shader.POSITION, 3, GL.GL_FLOAT, false, 0, 0);
+        if (buffer == null)
+            buffer = new GeometryBuffer(this);
+        if (buffer.needsUpload(gl)) {
+            buffer.upload(gl, new Point3DBuffer(points).getBuffer(), 3, points.size());
+        }
         Shader.setModelMatrix(gl, frame.getMatrix());
-        gl.glDrawArrays(GL3.GL_TRIANGLES, 0, points.size());
+        buffer.draw(gl, GL3.GL_TRIANGLES);
+    }
 
-        gl.glDeleteBuffers(1, names, 0);
+    /**
+     * Release the graphics memory used by this triangle. It will be copied to 
+     * graphics memory again if the triangle is drawn after this.
+     * @param gl
+     */
+    public void destroy(GL3 gl) {
+        if (buffer != null) {
+            buffer.destroy(gl);
+            buffer = null;
+        }
     }
     
     public void draw(GL3 gl) {
@@ -24,6 +24,11 @@ import unsw.graphics.Shader;
 public class TriangleFan3D {
     private List<Point3D> points;
 
+    /**
+     * The vertices of this triangle fan in graphics memory. Created on the first draw.
+     */
+    private GeometryBuffer buffer;
+
     public TriangleFan3D(List<Point3D> points) {
         this.points = new ArrayList<Point3D>(points);
     }
@@ -54,19 +59,25 @@ public class TriangleFan3D {
      * @param gl
      */
     public void draw(GL3 gl, CoordFrame3D frame) {
-        Point3DBuffer buffer = new Point3DBuffer(points);
-
-        int[] names = new int[1];
-        gl.glGenBuffers(1, names, 0);
-        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, names[0]);
-        gl.glBufferData(GL.GL_ARRAY_BUFFER, points.size() * 3 * Float.BYTES,
-                buffer.getBuffer(), GL.GL_STATIC_DRAW);
-
-        gl.glVertexAttribPointer(Shader.POSITION, 3, GL.GL_FLOAT, false, 0, 0);
+        if (buffer == null)
+            buffer = new GeometryBuffer(this);
+        if (buffer.needsUpload(gl)) {
+            buffer.upload(gl, new Point3DBuffer(points).getBuffer(), 3, points.size());
+        }
         Shader.setModelMatrix(gl, frame.getMatrix());
-        gl.glDrawArrays(GL.GL_TRIANGLE_FAN, 0, points.size());
+        buffer.draw(gl, GL.GL_TRIANGLE_FAN);
+    }
 
-        gl.glDeleteBuffers(1, names, 0);
+    /**
+     * Release the graphics memory used by this triangle fan. It will be copied to 
+     * graphics memory again if the triangle fan is drawn after this.
+     * @param gl
+     */
+    public void destroy(GL3 gl) {
+        if (buffer != null) {
+            buffer.destroy(gl);
+            buffer = null;
+        }
     }
     
     /**
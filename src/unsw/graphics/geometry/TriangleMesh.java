@@ -3,8 +3,12 @@
  */
 package unsw.graphics.geometry;
 
+import java.awt.Color;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
 import java.util.List;
 
 import org.apache.commons.lang3.ArrayUtils;
@@ -22,10 +26,14 @@ import com.jogamp.opengl.GL3;
 import com.jogamp.opengl.util.GLBuffers;
 
 import unsw.graphics.CoordFrame3D;
+import unsw.graphics.Matrix4;
 import unsw.graphics.Point2DBuffer;
 import unsw.graphics.Point3DBuffer;
 import unsw.graphics.Shader;
 import unsw.graphics.Vector3;
+import unsw.graphics.geometry.VertexFormat.NormalEncoding;
+import unsw.graphics.geometry.VertexFormat.PositionEncoding;
+import unsw.graphics.geometry.VertexFormat.TexCoordEncoding;
 
 /**
  * A triangle mesh in 3D space
@@ -35,6 +43,13 @@ import unsw.graphics.Vector3;
  *
  * The normals computed during construction of this mesh are NOT normalised.
  *
+ * How the mesh is stored in graphics memory can be chosen with
+ * init(GL3, VertexFormat). Compact formats use about half the memory.
+ *
+ * Many copies of the same mesh can be drawn with a single draw call using
+ * drawInstanced(). This requires a shader that takes per-instance transforms
+ * and colors, such as shaders/vertex_3d_instanced.glsl.
+ *
  * @author Robert Clifton-Everest
  *
  */
@@ -81,6 +96,69 @@ public class TriangleMesh {
      */
     private int indicesName;
 
+    /**
+     * The name of the vertex array object according to OpenGL. This captures
+     * which buffers are bound to which vertex attributes so they don't have to
+     * be specified again on every draw.
+     */
+    private int vertexArrayName;
+
+    /**
+     * The name of the buffer holding the per-instance transforms according to
+     * OpenGL
+     */
+    private int instanceMatricesName;
+
+    /**
+     * The name of the buffer holding the per-instance colors according to
+     * OpenGL
+     */
+    private int instanceColorsName;
+
+    /**
+     * Scratch space for converting arrays of matrices and colors into
+     * something that can be copied to graphics memory. Grown as needed.
+     */
+    private FloatBuffer instanceMatrices;
+    private FloatBuffer instanceColors;
+    private float[] matrixScratch = new float[16];
+    private float[] frameScratch = new float[16];
+
+    /**
+     * How the mesh is stored in graphics memory. Set by init().
+     */
+    private VertexFormat format = VertexFormat.DEFAULT;
+
+    /**
+     * Converts positions stored as 16-bit integers back into model
+     * coordinates, or null if positions are stored as floats.
+     */
+    private Matrix4 decodeMatrix;
+    private float[] decodeValues;
+
+    /**
+     * Instance transforms with decodeMatrix applied. Grown as needed.
+     */
+    private FloatBuffer decodedMatrices;
+
+    /**
+     * The type of the indices in graphics memory.
+     */
+    private int indexType = GL.GL_UNSIGNED_INT;
+
+    /**
+     * The bounds of the vertices. Computed when first needed.
+     */
+    private BoundingBox boundingBox;
+    private BoundingSphere boundingSphere;
+
+    /**
+     * Which instances passed the frustum test, and scratch space for the test.
+     */
+    private int[] visibleInstances = new int[0];
+    private float[] sphereX = new float[0], sphereY = new float[0],
+            sphereZ = new float[0], sphereRadius = new float[0];
+
     /**
      * Create a triangle mesh with the given lists of vertices, normals, and
      * indices
@@ -186,6 +264,24 @@ public class TriangleMesh {
         this.texCoords = new Point2DBuffer(texCoords);
     }
 
+    /**
+     * Create a triangle mesh that uses the given buffers directly.
+     *
+     * @param vertices
+     * @param normals May be null
+     * @param texCoords May be null
+     * @param indices May be null
+     */
+    TriangleMesh(FloatBuffer vertices, FloatBuffer normals, FloatBuffer texCoords,
+            IntBuffer indices) {
+        this.vertices = new Point3DBuffer(vertices);
+        if (normals != null)
+            this.normals = new Point3DBuffer(normals);
+        if (texCoords != null)
+            this.texCoords = new Point2DBuffer(texCoords);
+        this.indices = indices;
+    }
+
     /**
      * Construct a triangle with the given PLY file.
      *
@@ -205,6 +301,14 @@ public class TriangleMesh {
      * of base of the model and divided by the width and the height
      * respectively.
      *
+     * The file is memory-mapped and read directly into the buffers that are
+     * copied to graphics memory. Large ASCII files are parsed in parallel.
+     * Anything that can't be read that way is read with jply.
+     *
+     * The mesh, including its normals, is cached the first time the file is
+     * read, and read from the cache instead until the file is modified. See
+     * MeshCache for where the cache is kept.
+     *
      * @param plyFile
      * @param vertexNormals
      * @param texCoords
@@ -212,6 +316,80 @@ public class TriangleMesh {
      */
     public TriangleMesh(String plyFile, boolean vertexNormals, boolean texCoords)
             throws IOException {
+        this(plyFile, vertexNormals ? NormalWeighting.AREA : null, texCoords);
+    }
+
+    /**
+     * Construct a triangle with the given PLY file, generating vertex normals
+     * by combining the face normals around each vertex as specified by the
+     * second argument. If it is null, no normals are generated. Otherwise this
+     * is the same as TriangleMesh(String, boolean, boolean).
+     *
+     * @param plyFile
+     * @param normals
+     * @param texCoords
+     * @throws IOException
+     */
+    public TriangleMesh(String plyFile, NormalWeighting normals, boolean texCoords)
+            throws IOException {
+        this(plyFile, normals, texCoords, false);
+    }
+
+    /**
+     * Construct a triangle with the given PLY file, as in
+     * TriangleMesh(String, NormalWeighting, boolean). If the last argument is
+     * true, the mesh is also reordered as by optimize(). The reordered mesh is
+     * what is cached, so this is only slower the first time the file is read.
+     *
+     * @param plyFile
+     * @param normals
+     * @param texCoords
+     * @param optimize
+     * @throws IOException
+     */
+    public TriangleMesh(String plyFile, NormalWeighting normals, boolean texCoords,
+            boolean optimize) throws IOException {
+        MeshCache cached = MeshCache.load(plyFile, normals, texCoords, optimize);
+        if (cached != null) {
+            vertices = new Point3DBuffer(cached.vertices);
+            indices = cached.indices;
+            float[] b = cached.bounds;
+            boundingBox = new BoundingBox(b[0], b[1], b[2], b[3], b[4], b[5]);
+            if (normals != null)
+                this.normals = new Point3DBuffer(cached.normals);
+            if (texCoords)
+                this.texCoords = new Point2DBuffer(cached.texCoords);
+        } else {
+            readPly(plyFile, normals, texCoords);
+            if (optimize)
+                optimize();
+            MeshCache.store(plyFile, vertices.getBuffer(), normals,
+                    normals != null ? this.normals.getBuffer() : null,
+                    texCoords ? this.texCoords.getBuffer() : null, indices, optimize);
+        }
+    }
+
+    private void readPly(String plyFile, NormalWeighting normals, boolean texCoords)
+            throws IOException {
+        // Read the file directly if possible, as it's much faster
+        PlyLoader loader = PlyLoader.load(plyFile, texCoords);
+        if (loader != null) {
+            vertices = new Point3DBuffer(loader.vertices);
+            indices = loader.indices;
+            if (texCoords)
+                this.texCoords = new Point2DBuffer(loader.texCoords);
+        } else {
+            readWithJply(plyFile, texCoords);
+        }
+
+        //Compute the normals
+        if (normals != null) {
+            this.normals = new Point3DBuffer(vertices.capacity());
+            computeVertexNormals(normals);
+        }
+    }
+
+    private void readWithJply(String plyFile, boolean texCoords) throws IOException {
         // Setup an initial reader
         PlyReader rawReader = new PlyReaderFile(plyFile);
 
@@ -223,8 +401,6 @@ public class TriangleMesh {
         vertices = new Point3DBuffer(reader.getElementCount("vertex"));
         indices = GLBuffers
                 .newDirectIntBuffer(reader.getElementCount("face") * 3);
-        if (vertexNormals)
-            normals = new Point3DBuffer(reader.getElementCount("vertex"));
 
         if (texCoords)
             this.texCoords = new Point2DBuffer(reader.getElementCount("vertex"));
@@ -238,69 +414,27 @@ public class TriangleMesh {
             }
             elReader = reader.nextElementReader();
         }
-
-        //Compute the normals
-        if (vertexNormals)
-            computeVertexNormals();
+        reader.close();
     }
 
     /**
      * Compute face normals for the mesh assuming it is not indexed.
      */
     private void computeFaceNormals() {
-        for (int i = 0; i < vertices.capacity() / 3; i++) {
-            Vector3 n = normal(vertices.get(i*3), vertices.get(i*3 + 1),
-                    vertices.get(i*3 + 2));
-            normals.put(i*3, n.asPoint3D());
-            normals.put(i*3 + 1, n.asPoint3D());
-            normals.put(i*3 + 2, n.asPoint3D());
-        }
+        VertexNormals.computeFaceNormals(vertices.getBuffer(), normals.getBuffer());
     }
 
-
     /**
      * Compute normals for the mesh. Note that they are not normalised normals.
      * If a shader depends on the normals, it must normalise them internally.
      */
     private void computeVertexNormals() {
-        // Initialise the normals to the zero vector
-        for (int i = 0; i < normals.capacity(); i++) {
-            normals.put(i, 0, 0, 0);
-        }
-
-        // Add the face normals of all surrounding faces.
-        for (int i = 0; i < indices.capacity() / 3; i++) {
-            int index1 = indices.get(i*3);
-            int index2 = indices.get(i*3 + 1);
-            int index3 = indices.get(i*3 + 2);
-
-            Point3D p1 = vertices.get(index1);
-            Point3D p2 = vertices.get(index2);
-            Point3D p3 = vertices.get(index3);
-
-            Vector3 normal = normal(p1, p2, p3);
-
-            normals.put(index1, normals.get(index1).translate(normal));
-            normals.put(index2, normals.get(index2).translate(normal));
-            normals.put(index3, normals.get(index3).translate(normal));
-        }
+        computeVertexNormals(NormalWeighting.AREA);
     }
 
-    /**
-     * For the given 3 points that make up a triangle, compute the face normal.
-     * This face normal is proportional in length to the size of the face. This
-     * allows for the computing of a weighted average.
-     *
-     * @param p1
-     * @param p2
-     * @param p3
-     * @return
-     */
-    private Vector3 normal(Point3D p1, Point3D p2, Point3D p3) {
-        Vector3 a = p2.minus(p1);
-        Vector3 b = p3.minus(p1);
-
-        return a.cross(b);
+    private void computeVertexNormals(NormalWeighting weighting) {
+        VertexNormals.computeVertexNormals(vertices.getBuffer(), indices,
+                normals.getBuffer(), weighting);
     }
 
     private void readIndices(ElementReader elReader)
@@ -338,7 +472,118 @@ public class TriangleMesh {
         }
     }
 
+    /**
+     * Reorder the triangles and vertices of the mesh so that it is faster to
+     * draw. The triangles are ordered to make good use of the GPU's vertex
+     * cache while drawing the outward facing parts of the mesh first, to
+     * reduce overdraw, and then the vertices are ordered by when they are
+     * first used. See MeshOptimizer for details.
+     *
+     * This has no effect on meshes without indices. It must be called before
+     * init().
+     */
+    public void optimize() {
+        if (indices == null)
+            return;
+        MeshOptimizer.optimize(vertices.getBuffer(),
+                normals != null ? normals.getBuffer() : null,
+                texCoords != null ? texCoords.getBuffer() : null, indices);
+    }
+
+    /**
+     * Measure how well the current order of the triangles uses the GPU's
+     * vertex cache. Meshes without indices can't reuse vertices at all.
+     *
+     * @return
+     */
+    public VertexCacheStatistics getVertexCacheStatistics() {
+        if (indices == null)
+            return VertexCacheStatistics.compute(GLBuffers.newDirectIntBuffer(0), 0);
+        return VertexCacheStatistics.compute(indices, vertices.capacity());
+    }
+
+    /**
+     * @return The number of triangles in the mesh
+     */
+    public int getTriangleCount() {
+        return (indices != null ? indices.capacity() : vertices.capacity()) / 3;
+    }
+
+    /**
+     * Get the normal of the given vertex. Normals computed by the mesh are
+     * not normalised.
+     * 
+     * @param vertex
+     * @return
+     */
+    public Vector3 getNormal(int vertex) {
+        FloatBuffer buffer = normals.getBuffer();
+        return new Vector3(buffer.get(vertex * 3), buffer.get(vertex * 3 + 1),
+                buffer.get(vertex * 3 + 2));
+    }
+
+    FloatBuffer getVertexBuffer() {
+        return vertices.getBuffer();
+    }
+
+    FloatBuffer getNormalBuffer() {
+        return normals != null ? normals.getBuffer() : null;
+    }
+
+    FloatBuffer getTexCoordBuffer() {
+        return texCoords != null ? texCoords.getBuffer() : null;
+    }
+
+    IntBuffer getIndexBuffer() {
+        return indices;
+    }
+
+    /**
+     * Get the axis-aligned bounding box of the vertices, in model coordinates.
+     * It is computed the first time it is needed, or read from the mesh cache
+     * for meshes loaded from PLY files.
+     *
+     * @return
+     */
+    public BoundingBox getBoundingBox() {
+        if (boundingBox == null)
+            boundingBox = BoundingBox.of(vertices.getBuffer());
+        return boundingBox;
+    }
+
+    /**
+     * Get a sphere that contains all the vertices, in model coordinates. It is
+     * centered on the center of the bounding box and computed the first time
+     * it is needed.
+     *
+     * @return
+     */
+    public BoundingSphere getBoundingSphere() {
+        if (boundingSphere == null)
+            boundingSphere = BoundingSphere.of(vertices.getBuffer(), getBoundingBox());
+        return boundingSphere;
+    }
+
+    /**
+     * Copy the mesh to graphics memory, in the default format. Must be called
+     * before the mesh is drawn.
+     *
+     * @param gl
+     */
     public void init(GL3 gl) {
+        init(gl, VertexFormat.DEFAULT);
+    }
+
+    /**
+     * Copy the mesh to graphics memory, in the given format. Must be called
+     * before the mesh is drawn.
+     *
+     * @param gl
+     * @param format
+     */
+    public void init(GL3 gl, VertexFormat format) {
+        this.format = format;
+
         // Generate the names for the buffers.
         int[] names = new int[4];
         gl.glGenBuffers(4, names, 0);
@@ -347,58 +592,454 @@ public class TriangleMesh {
         normalsName = names[2];
         texCoordsName = names[3];
 
-        // Copy the data for the vertices
-        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, verticesName);
-        gl.glBufferData(GL.GL_ARRAY_BUFFER,
-                vertices.capacity() * 3 * Float.BYTES, vertices.getBuffer(),
-                GL.GL_STATIC_DRAW);
+        // The vertex array object records the attribute layout specified below
+        int[] arrayNames = new int[1];
+        gl.glGenVertexArrays(1, arrayNames, 0);
+        vertexArrayName = arrayNames[0];
+        gl.glBindVertexArray(vertexArrayName);
 
-        if (normals != null) {
-            gl.glBindBuffer(GL.GL_ARRAY_BUFFER, normalsName);
-            gl.glBufferData(GL.GL_ARRAY_BUFFER,
-                    normals.capacity() * 3 * Float.BYTES, normals.getBuffer(),
-                    GL.GL_STATIC_DRAW);
+        // Positions stored as integers are relative to the bounds of the mesh.
+        // The conversion back is folded into the model matrix, so normals have
+        // to be scaled the opposite way to come out right.
+        float[] min = { 0, 0, 0 };
+        float[] extent = { 1, 1, 1 };
+        decodeMatrix = null;
+        decodeValues = null;
+        if (format.getPositions() == PositionEncoding.UNORM16) {
+            computeBounds(min, extent);
+            decodeMatrix = Matrix4.translation(min[0], min[1], min[2])
+                    .multiply(Matrix4.scale(extent[0], extent[1], extent[2]));
+            decodeValues = decodeMatrix.getValues();
         }
 
-        if (texCoords != null) {
-            gl.glBindBuffer(GL.GL_ARRAY_BUFFER, texCoordsName);
-            gl.glBufferData(GL.GL_ARRAY_BUFFER,
-                    texCoords.capacity() * 2 * Float.BYTES, texCoords.getBuffer(),
-                    GL.GL_STATIC_DRAW);
+        int count = vertices.capacity();
+        int positionSize = format.getPositions().size;
+        int normalSize = normals != null ? format.getNormals().size : 0;
+        int texCoordSize = texCoords != null ? format.getTexCoords().size : 0;
+
+        if (format.isInterleaved()) {
+            // Copy all the attributes of each vertex next to each other
+            int stride = positionSize + normalSize + texCoordSize;
+            ByteBuffer data = GLBuffers.newDirectByteBuffer(count * stride);
+            VertexEncoder.positions(vertices.getBuffer(), format.getPositions(), min,
+                    extent, data, 0, stride);
+            if (normals != null)
+                VertexEncoder.normals(normals.getBuffer(), format.getNormals(), extent,
+                        data, positionSize, stride);
+            if (texCoords != null)
+                VertexEncoder.texCoords(texCoords.getBuffer(), format.getTexCoords(), data,
+                        positionSize + normalSize, stride);
+
+            gl.glBindBuffer(GL.GL_ARRAY_BUFFER, verticesName);
+            gl.glBufferData(GL.GL_ARRAY_BUFFER, count * stride, data, GL.GL_STATIC_DRAW);
+            positionPointer(gl, stride, 0);
+            if (normals != null)
+                normalPointer(gl, stride, positionSize);
+            if (texCoords != null)
+                texCoordPointer(gl, stride, positionSize + normalSize);
+        } else {
+            // Copy the data for the vertices
+            gl.glBindBuffer(GL.GL_ARRAY_BUFFER, verticesName);
+            if (format.getPositions() == PositionEncoding.FLOAT) {
+                gl.glBufferData(GL.GL_ARRAY_BUFFER, count * 3 * Float.BYTES,
+                        vertices.getBuffer(), GL.GL_STATIC_DRAW);
+            } else {
+                ByteBuffer data = GLBuffers.newDirectByteBuffer(count * positionSize);
+                VertexEncoder.positions(vertices.getBuffer(), format.getPositions(), min,
+                        extent, data, 0, positionSize);
+                gl.glBufferData(GL.GL_ARRAY_BUFFER, count * positionSize, data,
+                        GL.GL_STATIC_DRAW);
+            }
+            positionPointer(gl, 0, 0);
+
+            if (normals != null) {
+                gl.glBindBuffer(GL.GL_ARRAY_BUFFER, normalsName);
+                if (format.getNormals() == NormalEncoding.FLOAT && decodeMatrix == null) {
+                    gl.glBufferData(GL.GL_ARRAY_BUFFER, count * 3 * Float.BYTES,
+                            normals.getBuffer(), GL.GL_STATIC_DRAW);
+                } else {
+                    ByteBuffer data = GLBuffers.newDirectByteBuffer(count * normalSize);
+                    VertexEncoder.normals(normals.getBuffer(), format.getNormals(), extent,
+                            data, 0, normalSize);
+                    gl.glBufferData(GL.GL_ARRAY_BUFFER, count * normalSize, data,
+                            GL.GL_STATIC_DRAW);
+                }
+                normalPointer(gl, 0, 0);
+            }
+
+            if (texCoords != null) {
+                gl.glBindBuffer(GL.GL_ARRAY_BUFFER, texCoordsName);
+                if (format.getTexCoords() == TexCoordEncoding.FLOAT) {
+                    gl.glBufferData(GL.GL_ARRAY_BUFFER, count * 2 * Float.BYTES,
+                            texCoords.getBuffer(), GL.GL_STATIC_DRAW);
+                } else {
+                    ByteBuffer data = GLBuffers.newDirectByteBuffer(count * texCoordSize);
+                    VertexEncoder.texCoords(texCoords.getBuffer(), format.getTexCoords(),
+                            data, 0, texCoordSize);
+                    gl.glBufferData(GL.GL_ARRAY_BUFFER, count * texCoordSize, data,
+                            GL.GL_STATIC_DRAW);
+                }
+                texCoordPointer(gl, 0, 0);
+            }
         }
 
         if (indices != null) {
-            // Copy the data for the indices
+            // Copy the data for the indices. The element buffer binding is
+            // also part of the vertex array object.
             gl.glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, indicesName);
-            gl.glBufferData(GL.GL_ELEMENT_ARRAY_BUFFER,
-                    indices.capacity() * Integer.BYTES, indices, GL.GL_STATIC_DRAW);
+            if (format.hasShortIndices() && count <= 1 << 16) {
+                ShortBuffer shortIndices = GLBuffers.newDirectShortBuffer(indices.capacity());
+                for (int i = 0; i < indices.capacity(); i++)
+                    shortIndices.put(i, (short) indices.get(i));
+                gl.glBufferData(GL.GL_ELEMENT_ARRAY_BUFFER,
+                        indices.capacity() * Short.BYTES, shortIndices, GL.GL_STATIC_DRAW);
+                indexType = GL.GL_UNSIGNED_SHORT;
+            } else {
+                gl.glBufferData(GL.GL_ELEMENT_ARRAY_BUFFER,
+                        indices.capacity() * Integer.BYTES, indices, GL.GL_STATIC_DRAW);
+                indexType = GL.GL_UNSIGNED_INT;
+            }
+        }
+
+        // The per-instance attributes. These buffers are empty until
+        // drawInstanced() is called, but the layout can be recorded now.
+        gl.glGenBuffers(2, names, 0);
+        instanceMatricesName = names[0];
+        instanceColorsName = names[1];
+
+        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, instanceMatricesName);
+        for (int i = 0; i < 4; i++) {
+            // A mat4 attribute is given to OpenGL as four vec4 columns
+            gl.glVertexAttribPointer(Shader.INSTANCE_MATRIX + i, 4, GL.GL_FLOAT,
+                    false, 16 * Float.BYTES, 4 * i * Float.BYTES);
+            gl.glVertexAttribDivisor(Shader.INSTANCE_MATRIX + i, 1);
+            gl.glEnableVertexAttribArray(Shader.INSTANCE_MATRIX + i);
         }
+
+        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, instanceColorsName);
+        gl.glVertexAttribPointer(Shader.INSTANCE_COLOR, 4, GL.GL_FLOAT, false, 0, 0);
+        gl.glVertexAttribDivisor(Shader.INSTANCE_COLOR, 1);
+
+        // Go back to the default vertex array that the rest of the library
+        // draws with. In a core profile context this is one JOGL creates, not
+        // array 0, which can't hold vertex state.
+        gl.glBindVertexArray(gl.getContext().getDefaultVAO());
+    }
+
+    private void positionPointer(GL3 gl, int stride, int offset) {
+        if (format.getPositions() == PositionEncoding.FLOAT)
+            gl.glVertexAttribPointer(Shader.POSITION, 3, GL.GL_FLOAT, false, stride, offset);
+        else
+            gl.glVertexAttribPointer(Shader.POSITION, 3, GL.GL_UNSIGNED_SHORT, true, stride,
+                    offset);
+        gl.glEnableVertexAttribArray(Shader.POSITION);
+    }
+
+    private void normalPointer(GL3 gl, int stride, int offset) {
+        if (format.getNormals() == NormalEncoding.FLOAT)
+            gl.glVertexAttribPointer(Shader.NORMAL, 3, GL.GL_FLOAT, false, stride, offset);
+        else if (format.getNormals() == NormalEncoding.OCT16)
+            gl.glVertexAttribPointer(Shader.NORMAL, 2, GL.GL_SHORT, true, stride, offset);
+        else
+            gl.glVertexAttribPointer(Shader.NORMAL, 2, GL.GL_BYTE, true, stride, offset);
+        gl.glEnableVertexAttribArray(Shader.NORMAL);
+    }
+
+    private void texCoordPointer(GL3 gl, int stride, int offset) {
+        if (format.getTexCoords() == TexCoordEncoding.FLOAT)
+            gl.glVertexAttribPointer(Shader.TEX_COORD, 2, GL.GL_FLOAT, false, stride, offset);
+        else
+            gl.glVertexAttribPointer(Shader.TEX_COORD, 2, GL.GL_HALF_FLOAT, false, stride,
+                    offset);
+        gl.glEnableVertexAttribArray(Shader.TEX_COORD);
+    }
+
+    /**
+     * Compute the minimum of each coordinate of the vertices and the distance
+     * from the minimum to the maximum. An extent of 0 is replaced with 1 so it
+     * can be divided by.
+     */
+    private void computeBounds(float[] min, float[] extent) {
+        BoundingBox box = getBoundingBox();
+        min[0] = box.minX;
+        min[1] = box.minY;
+        min[2] = box.minZ;
+        extent[0] = box.maxX > box.minX ? box.maxX - box.minX : 1;
+        extent[1] = box.maxY > box.minY ? box.maxY - box.minY : 1;
+        extent[2] = box.maxZ > box.minZ ? box.maxZ - box.minZ : 1;
+    }
+
+    /**
+     * Tell the shader in use how the normals of this mesh are encoded.
+     */
+    private void setNormalEncoding(GL3 gl) {
+        if (normals != null)
+            Shader.setInt(gl, "octahedral_normals",
+                    format.getNormals() == NormalEncoding.FLOAT ? 0 : 1);
     }
 
     public void draw(GL3 gl, CoordFrame3D frame) {
-        gl.glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, indicesName);
+        bind(gl);
+        drawBound(gl, frame.getMatrix());
+        unbind(gl);
+    }
 
-        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, verticesName);
-        gl.glVertexAttribPointer(Shader.POSITION, 3, GL.GL_FLOAT, false, 0, 0);
-        if (normals != null) {
-            gl.glBindBuffer(GL.GL_ARRAY_BUFFER, normalsName);
-            gl.glVertexAttribPointer(Shader.NORMAL, 3, GL.GL_FLOAT, false, 0, 0);
+    /**
+     * Bind the mesh's vertex array, so drawBound() can draw it any number of
+     * times without binding it again. Nothing else may be bound or drawn
+     * until unbind() is called. If the shader is changed in between, the
+     * mesh must be bound again.
+     *
+     * @param gl
+     */
+    public void bind(GL3 gl) {
+        setNormalEncoding(gl);
+        gl.glBindVertexArray(vertexArrayName);
+    }
+
+    /**
+     * Draw the mesh, which must be bound, with the given model matrix.
+     *
+     * @param gl
+     * @param model
+     */
+    public void drawBound(GL3 gl, Matrix4 model) {
+        Shader.setModelMatrix(gl, decodeMatrix == null ? model : model.multiply(decodeMatrix));
+        if (indices != null) {
+            gl.glDrawElements(GL3.GL_TRIANGLES, indices.capacity(), indexType, 0);
+        } else {
+            gl.glDrawArrays(GL3.GL_TRIANGLES, 0, vertices.capacity());
+        }
+    }
+
+    /**
+     * Unbind the mesh after bind(), going back to the context's default
+     * vertex array.
+     *
+     * @param gl
+     */
+    public void unbind(GL3 gl) {
+        gl.glBindVertexArray(gl.getContext().getDefaultVAO());
+    }
+
+    /**
+     * Draw the mesh in the given coordinate frame, unless its bounding sphere
+     * is outside the given frustum. Nothing is sent to OpenGL if it is.
+     *
+     * @param gl
+     * @param frame
+     * @param frustum The view frustum in global coordinates
+     * @return Whether the mesh was drawn
+     */
+    public boolean draw(GL3 gl, CoordFrame3D frame, Frustum frustum) {
+        if (!frustum.intersects(getBoundingSphere(), frame.getMatrix(), matrixScratch))
+            return false;
+        draw(gl, frame);
+        return true;
+    }
+
+    /**
+     * Draw a copy of this mesh for each of the given transforms, with a single
+     * draw call. Each copy is drawn in the coordinate frame given by its
+     * transform.
+     *
+     * The shader in use must take the per-instance transform as
+     * "in mat4 instance_matrix".
+     *
+     * @param gl
+     * @param instanceTransforms
+     */
+    public void drawInstanced(GL3 gl, Matrix4[] instanceTransforms) {
+        drawInstanced(gl, CoordFrame3D.identity(), instanceTransforms, null);
+    }
+
+    /**
+     * Draw a copy of this mesh for each of the given transforms, with a single
+     * draw call. Each copy is drawn in the coordinate frame given by its
+     * transform, relative to the given frame.
+     *
+     * If colors is not null, it must have one color per instance. The shader
+     * can read it as "in vec4 instance_color". If it is null, every instance
+     * is given the color white.
+     *
+     * @param gl
+     * @param frame
+     * @param instanceTransforms
+     * @param colors
+     */
+    public void drawInstanced(GL3 gl, CoordFrame3D frame, Matrix4[] instanceTransforms,
+            Color[] colors) {
+        int count = instanceTransforms.length;
+        if (colors != null && colors.length != count)
+            throw new IllegalArgumentException("Expected " + count
+                    + " instance colors but got " + colors.length);
+
+        FloatBuffer colorData = fillInstances(instanceTransforms, colors, null, count);
+        drawInstanced(gl, frame, instanceMatrices, colorData, count);
+    }
+
+    /**
+     * Copy the given instance transforms and colors into instanceMatrices and
+     * instanceColors. If which is not null, only the instances it lists are
+     * copied.
+     *
+     * @return The buffer of colors, or null if there are none
+     */
+    private FloatBuffer fillInstances(Matrix4[] instanceTransforms, Color[] colors,
+            int[] which, int count) {
+        if (instanceMatrices == null || instanceMatrices.capacity() < count * 16)
+            instanceMatrices = GLBuffers.newDirectFloatBuffer(count * 16);
+        for (int i = 0; i < count; i++) {
+            int instance = which != null ? which[i] : i;
+            instanceTransforms[instance].getValues(matrixScratch, 0);
+            for (int j = 0; j < 16; j++)
+                instanceMatrices.put(i * 16 + j, matrixScratch[j]);
         }
-        if (texCoords != null) {
-            gl.glBindBuffer(GL.GL_ARRAY_BUFFER, texCoordsName);
-            gl.glVertexAttribPointer(Shader.TEX_COORD, 2, GL.GL_FLOAT, false, 0, 0);
+
+        if (colors == null)
+            return null;
+        if (instanceColors == null || instanceColors.capacity() < count * 4)
+            instanceColors = GLBuffers.newDirectFloatBuffer(count * 4);
+        for (int i = 0; i < count; i++) {
+            Color c = colors[which != null ? which[i] : i];
+            instanceColors.put(i * 4, c.getRed() / 255f);
+            instanceColors.put(i * 4 + 1, c.getGreen() / 255f);
+            instanceColors.put(i * 4 + 2, c.getBlue() / 255f);
+            instanceColors.put(i * 4 + 3, c.getAlpha() / 255f);
+        }
+        return instanceColors;
+    }
+
+    /**
+     * Draw a copy of this mesh for each of the given transforms, as in
+     * drawInstanced(GL3, CoordFrame3D, Matrix4[], Color[]), except that copies
+     * whose bounding spheres are outside the given frustum are left out.
+     * Nothing is sent to OpenGL if every copy is outside it.
+     *
+     * @param gl
+     * @param frame
+     * @param instanceTransforms
+     * @param colors May be null
+     * @param frustum The view frustum in global coordinates
+     * @return The number of copies drawn
+     */
+    public int drawInstanced(GL3 gl, CoordFrame3D frame, Matrix4[] instanceTransforms,
+            Color[] colors, Frustum frustum) {
+        int count = instanceTransforms.length;
+        if (colors != null && colors.length != count)
+            throw new IllegalArgumentException("Expected " + count
+                    + " instance colors but got " + colors.length);
+        if (visibleInstances.length < count) {
+            visibleInstances = new int[count];
+            sphereX = new float[count];
+            sphereY = new float[count];
+            sphereZ = new float[count];
+            sphereRadius = new float[count];
         }
+
+        // Put the bounding sphere of every copy in global coordinates
+        BoundingSphere sphere = getBoundingSphere();
+        float[] global = frameScratch;
+        frame.getMatrix().getValues(global, 0);
+        for (int i = 0; i < count; i++) {
+            instanceTransforms[i].getValues(matrixScratch, 0);
+            Matrix4.multiply(global, 0, matrixScratch, 0, matrixScratch, 0);
+            float[] m = matrixScratch;
+            sphereX[i] = m[0] * sphere.x + m[4] * sphere.y + m[8] * sphere.z + m[12];
+            sphereY[i] = m[1] * sphere.x + m[5] * sphere.y + m[9] * sphere.z + m[13];
+            sphereZ[i] = m[2] * sphere.x + m[6] * sphere.y + m[10] * sphere.z + m[14];
+            sphereRadius[i] = sphere.radius * BoundingSphere.maxScale(m, 0);
+        }
+
+        int visible = frustum.cullSpheres(sphereX, sphereY, sphereZ, sphereRadius, count,
+                visibleInstances);
+        if (visible == 0)
+            return 0;
+
+        FloatBuffer colorData = fillInstances(instanceTransforms, colors, visibleInstances,
+                visible);
+        drawInstanced(gl, frame, instanceMatrices, colorData, visible);
+        return visible;
+    }
+
+    /**
+     * Draw count copies of this mesh with a single draw call.
+     *
+     * The transforms buffer holds 16 floats per instance: the instance's
+     * transform in column-major order, as given by Matrix4.getValues(). The
+     * colors buffer, if not null, holds the r, g, b and a components of each
+     * instance's color. Both are read from index 0 regardless of their
+     * position.
+     *
+     * @param gl
+     * @param frame The coordinate frame the instances are drawn relative to
+     * @param instanceTransforms
+     * @param colors May be null, in which case every instance is white.
+     * @param count
+     */
+    public void drawInstanced(GL3 gl, CoordFrame3D frame, FloatBuffer instanceTransforms,
+            FloatBuffer colors, int count) {
+        if (count == 0)
+            return;
+
+        if (decodeValues != null)
+            instanceTransforms = decodeInstances(instanceTransforms, count);
+
         Shader.setModelMatrix(gl, frame.getMatrix());
+        setNormalEncoding(gl);
+        gl.glBindVertexArray(vertexArrayName);
+
+        // Orphan the previous contents so the driver doesn't have to wait for
+        // the last instanced draw to finish before we overwrite them
+        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, instanceMatricesName);
+        gl.glBufferData(GL.GL_ARRAY_BUFFER, count * 16 * Float.BYTES, null,
+                GL3.GL_STREAM_DRAW);
+        gl.glBufferSubData(GL.GL_ARRAY_BUFFER, 0, count * 16 * Float.BYTES,
+                instanceTransforms.duplicate().position(0));
+
+        if (colors != null) {
+            gl.glBindBuffer(GL.GL_ARRAY_BUFFER, instanceColorsName);
+            gl.glBufferData(GL.GL_ARRAY_BUFFER, count * 4 * Float.BYTES, null,
+                    GL3.GL_STREAM_DRAW);
+            gl.glBufferSubData(GL.GL_ARRAY_BUFFER, 0, count * 4 * Float.BYTES,
+                    colors.duplicate().position(0));
+            gl.glEnableVertexAttribArray(Shader.INSTANCE_COLOR);
+        } else {
+            // With the array disabled, every instance gets this constant value
+            gl.glDisableVertexAttribArray(Shader.INSTANCE_COLOR);
+            gl.glVertexAttrib4f(Shader.INSTANCE_COLOR, 1, 1, 1, 1);
+        }
+
         if (indices != null) {
-            gl.glDrawElements(GL3.GL_TRIANGLES, indices.capacity(),
-                    GL.GL_UNSIGNED_INT, 0);
+            gl.glDrawElementsInstanced(GL3.GL_TRIANGLES, indices.capacity(),
+                    indexType, 0, count);
         } else {
-            gl.glDrawArrays(GL3.GL_TRIANGLES, 0, vertices.capacity());
+            gl.glDrawArraysInstanced(GL3.GL_TRIANGLES, 0, vertices.capacity(), count);
+        }
+        gl.glBindVertexArray(gl.getContext().getDefaultVAO());
+    }
+
+    /**
+     * Apply decodeMatrix to each of the given instance transforms, so that
+     * positions stored as integers come out in model coordinates.
+     */
+    private FloatBuffer decodeInstances(FloatBuffer instanceTransforms, int count) {
+        if (decodedMatrices == null || decodedMatrices.capacity() < count * 16)
+            decodedMatrices = GLBuffers.newDirectFloatBuffer(count * 16);
+        for (int i = 0; i < count; i++) {
+            for (int j = 0; j < 16; j++)
+                matrixScratch[j] = instanceTransforms.get(i * 16 + j);
+            Matrix4.multiply(matrixScratch, 0, decodeValues, 0, matrixScratch, 0);
+            for (int j = 0; j < 16; j++)
+                decodedMatrices.put(i * 16 + j, matrixScratch[j]);
         }
+        return decodedMatrices;
     }
 
     public void destroy(GL3 gl) {
-        gl.glDeleteBuffers(4, new int[] { verticesName, indicesName, normalsName, texCoordsName }, 0);
+        gl.glDeleteVertexArrays(1, new int[] { vertexArrayName }, 0);
+        gl.glDeleteBuffers(6, new int[] { verticesName, indicesName, normalsName,
+                texCoordsName, instanceMatricesName, instanceColorsName }, 0);
     }
 
     public void draw(GL3 gl) {
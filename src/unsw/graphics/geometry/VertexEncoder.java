@@ -0,0 +1,161 @@
+/**
+ *
+ */
+package unsw.graphics.geometry;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+import unsw.graphics.geometry.VertexFormat.NormalEncoding;
+import unsw.graphics.geometry.VertexFormat.PositionEncoding;
+import unsw.graphics.geometry.VertexFormat.TexCoordEncoding;
+
+/**
+ * Packs vertex attributes into the encodings described by VertexFormat.
+ *
+ * Each method writes one attribute of every vertex into a buffer, starting
+ * at the given offset and stepping by the given stride, so the same methods
+ * work for interleaved and separate buffers.
+ *
+ * @author Robert Clifton-Everest
+ *
+ */
+class VertexEncoder {
+
+    /**
+     * Write the given positions. For UNORM16 positions, each coordinate is
+     * stored relative to the given minimum and extent of the mesh.
+     *
+     * @param positions x-y-z coordinates
+     * @param encoding
+     * @param min
+     * @param extent
+     * @param dst
+     * @param offset
+     * @param stride
+     */
+    static void positions(FloatBuffer positions, PositionEncoding encoding, float[] min,
+            float[] extent, ByteBuffer dst, int offset, int stride) {
+        int count = positions.capacity() / 3;
+        for (int i = 0; i < count; i++) {
+            int pos = offset + i * stride;
+            for (int c = 0; c < 3; c++) {
+                float f = positions.get(i * 3 + c);
+                if (encoding == PositionEncoding.FLOAT)
+                    dst.putFloat(pos + c * Float.BYTES, f);
+                else
+                    dst.putShort(pos + c * Short.BYTES,
+                            (short) Math.round((f - min[c]) / extent[c] * 65535));
+            }
+        }
+    }
+
+    /**
+     * Write the given normals. Each normal is divided by the given scale
+     * before it is encoded, to undo the effect of a model matrix that scales
+     * positions by it.
+     *
+     * @param normals x-y-z components
+     * @param encoding
+     * @param scale
+     * @param dst
+     * @param offset
+     * @param stride
+     */
+    static void normals(FloatBuffer normals, NormalEncoding encoding, float[] scale,
+            ByteBuffer dst, int offset, int stride) {
+        int count = normals.capacity() / 3;
+        for (int i = 0; i < count; i++) {
+            int pos = offset + i * stride;
+            float x = normals.get(i * 3) / scale[0];
+            float y = normals.get(i * 3 + 1) / scale[1];
+            float z = normals.get(i * 3 + 2) / scale[2];
+
+            if (encoding == NormalEncoding.FLOAT) {
+                dst.putFloat(pos, x);
+                dst.putFloat(pos + Float.BYTES, y);
+                dst.putFloat(pos + 2 * Float.BYTES, z);
+                continue;
+            }
+
+            // Project onto the octahedron |x| + |y| + |z| = 1, then fold the
+            // lower half over the upper half
+            float l1 = Math.abs(x) + Math.abs(y) + Math.abs(z);
+            float u = 0, v = 0;
+            if (l1 > 0) {
+                u = x / l1;
+                v = y / l1;
+                if (z < 0) {
+                    float foldedU = (1 - Math.abs(v)) * (u >= 0 ? 1 : -1);
+                    v = (1 - Math.abs(u)) * (v >= 0 ? 1 : -1);
+                    u = foldedU;
+                }
+            }
+
+            if (encoding == NormalEncoding.OCT16) {
+                dst.putShort(pos, (short) Math.round(u * Short.MAX_VALUE));
+                dst.putShort(pos + Short.BYTES, (short) Math.round(v * Short.MAX_VALUE));
+            } else {
+                dst.put(pos, (byte) Math.round(u * Byte.MAX_VALUE));
+                dst.put(pos + 1, (byte) Math.round(v * Byte.MAX_VALUE));
+            }
+        }
+    }
+
+    /**
+     * Write the given texture coordinates.
+     *
+     * @param texCoords s-t coordinates
+     * @param encoding
+     * @param dst
+     * @param offset
+     * @param stride
+     */
+    static void texCoords(FloatBuffer texCoords, TexCoordEncoding encoding, ByteBuffer dst,
+            int offset, int stride) {
+        int count = texCoords.capacity() / 2;
+        for (int i = 0; i < count; i++) {
+            int pos = offset + i * stride;
+            for (int c = 0; c < 2; c++) {
+                float f = texCoords.get(i * 2 + c);
+                if (encoding == TexCoordEncoding.FLOAT)
+                    dst.putFloat(pos + c * Float.BYTES, f);
+                else
+                    dst.putShort(pos + c * Short.BYTES, toHalf(f));
+            }
+        }
+    }
+
+    /**
+     * Convert a float to the bits of the nearest half-precision float.
+     * Values too large for a half become infinity.
+     *
+     * @param f
+     * @return
+     */
+    static short toHalf(float f) {
+        int bits = Float.floatToIntBits(f);
+        int sign = (bits >>> 16) & 0x8000;
+        int magnitude = bits & 0x7fffffff;
+
+        if (magnitude >= 0x7f800000) {
+            // Infinity or NaN. Keep some of the NaN payload so it stays a NaN.
+            int nan = magnitude > 0x7f800000 ? 0x200 | ((magnitude >>> 13) & 0x3ff) : 0;
+            return (short) (sign | 0x7c00 | nan);
+        }
+
+        // Add half of the lowest bit that will be kept, to round to nearest
+        int rounded = magnitude + 0x1000;
+        if (rounded >= 0x47800000)
+            return (short) (sign | 0x7c00);
+        if (rounded >= 0x38800000)
+            return (short) (sign | ((rounded - 0x38000000) >>> 13));
+        if (magnitude < 0x33000000)
+            return (short) sign;
+
+        // The result is a subnormal half
+        int exponent = magnitude >>> 23;
+        int mantissa = (magnitude & 0x7fffff) | 0x800000;
+        return (short) (sign | ((mantissa + (0x800000 >>> (exponent - 102))) >>> (126 - exponent)));
+    }
+}
@@ -0,0 +1,163 @@
+/**
+ *
+ */
+package unsw.graphics.geometry;
+
+/**
+ * How the vertices of a TriangleMesh are stored in graphics memory.
+ *
+ * By default every attribute is stored as 32-bit floats in a buffer of its
+ * own. Compact formats reduce the memory used and the bandwidth needed to
+ * fetch each vertex:
+ *   - Positions can be stored as 16-bit unsigned normalised integers relative
+ *     to the bounds of the mesh. The mesh folds the conversion back into the
+ *     model matrix when it is drawn, so shaders don't need to change.
+ *   - Normals can be stored in the octahedral encoding, as two 16-bit or two
+ *     8-bit signed normalised integers. Shaders decode these when the uniform
+ *     "octahedral_normals" is true. The shaders in the shaders/ directory that
+ *     take normals all do this.
+ *   - Texture coordinates can be stored as half-precision floats.
+ *   - Indices can be stored as 16-bit integers if there are few enough
+ *     vertices.
+ *   - All attributes can be interleaved in a single buffer.
+ *
+ * This class is immutable.
+ *
+ * @author Robert Clifton-Everest
+ *
+ */
+public class VertexFormat {
+
+    /**
+     * How positions are stored.
+     */
+    public enum PositionEncoding {
+        /**
+         * Three 32-bit floats.
+         */
+        FLOAT(12),
+
+        /**
+         * Three 16-bit unsigned normalised integers relative to the bounds of
+         * the mesh.
+         */
+        UNORM16(8);
+
+        /**
+         * The number of bytes used for each vertex, including padding to a
+         * multiple of 4 bytes.
+         */
+        final int size;
+
+        PositionEncoding(int size) {
+            this.size = size;
+        }
+    }
+
+    /**
+     * How normals are stored.
+     */
+    public enum NormalEncoding {
+        /**
+         * Three 32-bit floats.
+         */
+        FLOAT(12),
+
+        /**
+         * Octahedral encoding in two 16-bit signed normalised integers.
+         */
+        OCT16(4),
+
+        /**
+         * Octahedral encoding in two 8-bit signed normalised integers.
+         */
+        OCT8(4);
+
+        final int size;
+
+        NormalEncoding(int size) {
+            this.size = size;
+        }
+    }
+
+    /**
+     * How texture coordinates are stored.
+     */
+    public enum TexCoordEncoding {
+        /**
+         * Two 32-bit floats.
+         */
+        FLOAT(8),
+
+        /**
+         * Two 16-bit floats.
+         */
+        HALF(4);
+
+        final int size;
+
+        TexCoordEncoding(int size) {
+            this.size = size;
+        }
+    }
+
+    /**
+     * Every attribute is stored as 32-bit floats in its own buffer, with
+     * 32-bit indices.
+     */
+    public static final VertexFormat DEFAULT = new VertexFormat(false,
+            PositionEncoding.FLOAT, NormalEncoding.FLOAT, TexCoordEncoding.FLOAT, false);
+
+    /**
+     * The smallest format with no visible loss of quality for most models:
+     * interleaved 16-bit positions, 16-bit octahedral normals, half-float
+     * texture coordinates, and 16-bit indices when possible.
+     */
+    public static final VertexFormat COMPACT = new VertexFormat(true,
+            PositionEncoding.UNORM16, NormalEncoding.OCT16, TexCoordEncoding.HALF, true);
+
+    private final boolean interleaved;
+    private final PositionEncoding positions;
+    private final NormalEncoding normals;
+    private final TexCoordEncoding texCoords;
+    private final boolean shortIndices;
+
+    /**
+     * Construct a vertex format.
+     *
+     * @param interleaved Whether to store all the attributes in one buffer
+     * @param positions
+     * @param normals
+     * @param texCoords
+     * @param shortIndices Whether to use 16-bit indices when the mesh has few
+     *            enough vertices
+     */
+    public VertexFormat(boolean interleaved, PositionEncoding positions,
+            NormalEncoding normals, TexCoordEncoding texCoords, boolean shortIndices) {
+        this.interleaved = interleaved;
+        this.positions = positions;
+        this.normals = normals;
+        this.texCoords = texCoords;
+        this.shortIndices = shortIndices;
+    }
+
+    public boolean isInterleaved() {
+        return interleaved;
+    }
+
+    public PositionEncoding getPositions() {
+        return positions;
+    }
+
+    public NormalEncoding getNormals() {
+        return normals;
+    }
+
+    public TexCoordEncoding getTexCoords() {
+        return texCoords;
+    }
+
+    public boolean hasShortIndices() {
+        return shortIndices;
+    }
+}
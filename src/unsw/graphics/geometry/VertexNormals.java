@@ -0,0 +1,311 @@
+/**
+ *
+ */
+package unsw.graphics.geometry;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Computes the normals of a triangle mesh.
+ *
+ * The mesh is copied into arrays of primitives, so nothing is allocated per
+ * triangle. Large meshes are split into ranges that are processed in
+ * parallel. For vertex normals, each vertex still adds up the normals of
+ * the triangles around it in triangle order, so the results are exactly the
+ * same as on one thread, however many threads there are.
+ *
+ * @author Robert Clifton-Everest
+ *
+ */
+class VertexNormals {
+
+    /**
+     * Meshes with fewer triangles than this are processed on one thread.
+     */
+    private static final int PARALLEL_THRESHOLD = 1 << 15;
+
+    /**
+     * Compute the normal of each vertex of an indexed mesh by combining the
+     * normals of the faces around it.
+     *
+     * @param vertices The x-y-z coordinates of each vertex
+     * @param indices Each set of 3 indices forms a triangle
+     * @param normals Where to store the x-y-z components of each normal
+     * @param weighting
+     */
+    static void computeVertexNormals(FloatBuffer vertices, IntBuffer indices,
+            FloatBuffer normals, NormalWeighting weighting) {
+        float[] points = MeshBuffers.toArray(vertices);
+        int[] triangles = MeshBuffers.toArray(indices);
+        int triangleCount = triangles.length / 3;
+
+        // Both ways give the same normals, but gathering is slower on one thread
+        float[] result;
+        if (triangleCount < PARALLEL_THRESHOLD
+                || ForkJoinPool.getCommonPoolParallelism() < 2) {
+            result = new float[points.length];
+            if (weighting == NormalWeighting.ANGLE)
+                accumulateByAngle(points, triangles, 0, triangleCount, result);
+            else
+                accumulateByArea(points, triangles, 0, triangleCount, result);
+        } else {
+            result = gatherVertexNormals(points, triangles, weighting);
+        }
+
+        FloatBuffer out = normals.duplicate();
+        out.rewind();
+        out.put(result);
+    }
+
+    /**
+     * Compute the face normal of every triangle of a mesh that isn't indexed,
+     * and give it to each vertex of the triangle. The face normals are
+     * proportional in length to the area of the face.
+     *
+     * @param vertices The x-y-z coordinates of each vertex. Each set of 3
+     *            vertices forms a triangle.
+     * @param normals Where to store the x-y-z components of each normal
+     */
+    static void computeFaceNormals(FloatBuffer vertices, FloatBuffer normals) {
+        float[] points = MeshBuffers.toArray(vertices);
+        float[] result = new float[points.length];
+        int triangleCount = points.length / 9;
+
+        int ranges = triangleCount < PARALLEL_THRESHOLD ? 1
+                : ForkJoinPool.getCommonPoolParallelism();
+        forEachRange(ranges, triangleCount, (r, from, to) -> {
+            for (int t = from; t < to; t++) {
+                int p = t * 9;
+                float ax = points[p + 3] - points[p], ay = points[p + 4] - points[p + 1],
+                        az = points[p + 5] - points[p + 2];
+                float bx = points[p + 6] - points[p], by = points[p + 7] - points[p + 1],
+                        bz = points[p + 8] - points[p + 2];
+                float nx = ay * bz - az * by;
+                float ny = az * bx - ax * bz;
+                float nz = ax * by - ay * bx;
+                for (int k = 0; k < 9; k += 3) {
+                    result[p + k] = nx;
+                    result[p + k + 1] = ny;
+                    result[p + k + 2] = nz;
+                }
+            }
+        });
+
+        FloatBuffer out = normals.duplicate();
+        out.rewind();
+        out.put(result);
+    }
+
+    /**
+     * Compute vertex normals in parallel, adding up exactly the same numbers
+     * in exactly the same order as the accumulate methods do on one thread.
+     *
+     * Floating point addition isn't associative, so summing ranges of
+     * triangles separately and then adding the sums would give slightly
+     * different normals. Instead, the contribution of each corner of each
+     * triangle is computed in parallel over the triangles. Then each vertex
+     * adds up the contributions of its corners, in triangle order, in
+     * parallel over the vertices.
+     */
+    private static float[] gatherVertexNormals(float[] points, int[] triangles,
+            NormalWeighting weighting) {
+        int triangleCount = triangles.length / 3;
+        int vertexCount = points.length / 3;
+        int ranges = ForkJoinPool.getCommonPoolParallelism();
+
+        float[] contributions = new float[triangles.length * 3];
+        forEachRange(ranges, triangleCount, (r, from, to) -> {
+            if (weighting == NormalWeighting.ANGLE)
+                cornersByAngle(points, triangles, from, to, contributions);
+            else
+                cornersByArea(points, triangles, from, to, contributions);
+        });
+
+        // The corners of each vertex, in the order they appear in the
+        // triangles, are corners[start[v]] to corners[start[v + 1] - 1]
+        int[] start = new int[vertexCount + 1];
+        for (int c = 0; c < triangles.length; c++)
+            start[triangles[c] + 1]++;
+        for (int v = 0; v < vertexCount; v++)
+            start[v + 1] += start[v];
+        int[] next = Arrays.copyOf(start, vertexCount);
+        int[] corners = new int[triangles.length];
+        for (int c = 0; c < triangles.length; c++)
+            corners[next[triangles[c]]++] = c;
+
+        float[] result = new float[points.length];
+        forEachRange(ranges, vertexCount, (r, from, to) -> {
+            for (int v = from; v < to; v++) {
+                float x = 0, y = 0, z = 0;
+                for (int j = start[v]; j < start[v + 1]; j++) {
+                    int c = corners[j] * 3;
+                    x += contributions[c];
+                    y += contributions[c + 1];
+                    z += contributions[c + 2];
+                }
+                result[v * 3] = x;
+                result[v * 3 + 1] = y;
+                result[v * 3 + 2] = z;
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Add the face normal of each triangle, which is proportional in length
+     * to its area, to the normals of its vertices.
+     */
+    private static void accumulateByArea(float[] points, int[] triangles, int from, int to,
+            float[] sum) {
+        for (int t = from; t < to; t++) {
+            int i1 = triangles[t * 3] * 3;
+            int i2 = triangles[t * 3 + 1] * 3;
+            int i3 = triangles[t * 3 + 2] * 3;
+
+            float ax = points[i2] - points[i1], ay = points[i2 + 1] - points[i1 + 1],
+                    az = points[i2 + 2] - points[i1 + 2];
+            float bx = points[i3] - points[i1], by = points[i3 + 1] - points[i1 + 1],
+                    bz = points[i3 + 2] - points[i1 + 2];
+            float nx = ay * bz - az * by;
+            float ny = az * bx - ax * bz;
+            float nz = ax * by - ay * bx;
+
+            sum[i1] += nx; sum[i1 + 1] += ny; sum[i1 + 2] += nz;
+            sum[i2] += nx; sum[i2 + 1] += ny; sum[i2 + 2] += nz;
+            sum[i3] += nx; sum[i3 + 1] += ny; sum[i3 + 2] += nz;
+        }
+    }
+
+    /**
+     * Add the unit face normal of each triangle, scaled by the angle at each
+     * corner, to the normals of its vertices.
+     */
+    private static void accumulateByAngle(float[] points, int[] triangles, int from, int to,
+            float[] sum) {
+        for (int t = from; t < to; t++) {
+            int i1 = triangles[t * 3] * 3;
+            int i2 = triangles[t * 3 + 1] * 3;
+            int i3 = triangles[t * 3 + 2] * 3;
+
+            // The edges from the first vertex and from the second vertex
+            float ax = points[i2] - points[i1], ay = points[i2 + 1] - points[i1 + 1],
+                    az = points[i2 + 2] - points[i1 + 2];
+            float bx = points[i3] - points[i1], by = points[i3 + 1] - points[i1 + 1],
+                    bz = points[i3 + 2] - points[i1 + 2];
+            float cx = points[i3] - points[i2], cy = points[i3 + 1] - points[i2 + 1],
+                    cz = points[i3 + 2] - points[i2 + 2];
+
+            float nx = ay * bz - az * by;
+            float ny = az * bx - ax * bz;
+            float nz = ax * by - ay * bx;
+            float length = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+            if (length == 0)
+                continue;
+
+            // The magnitude of the cross product of any two edges is the same,
+            // so each angle only needs the dot product of its edges.
+            float angle1 = (float) Math.atan2(length, ax * bx + ay * by + az * bz);
+            float angle2 = (float) Math.atan2(length, -(ax * cx + ay * cy + az * cz));
+            float angle3 = (float) Math.PI - angle1 - angle2;
+
+            nx /= length;
+            ny /= length;
+            nz /= length;
+            sum[i1] += nx * angle1; sum[i1 + 1] += ny * angle1; sum[i1 + 2] += nz * angle1;
+            sum[i2] += nx * angle2; sum[i2 + 1] += ny * angle2; sum[i2 + 2] += nz * angle2;
+            sum[i3] += nx * angle3; sum[i3 + 1] += ny * angle3; sum[i3 + 2] += nz * angle3;
+        }
+    }
+
+    /**
+     * Store what accumulateByArea() would add to the normal of each corner
+     * of each triangle, as the x-y-z components for corner c at c * 3.
+     */
+    private static void cornersByArea(float[] points, int[] triangles, int from, int to,
+            float[] out) {
+        for (int t = from; t < to; t++) {
+            int i1 = triangles[t * 3] * 3;
+            int i2 = triangles[t * 3 + 1] * 3;
+            int i3 = triangles[t * 3 + 2] * 3;
+
+            float ax = points[i2] - points[i1], ay = points[i2 + 1] - points[i1 + 1],
+                    az = points[i2 + 2] - points[i1 + 2];
+            float bx = points[i3] - points[i1], by = points[i3 + 1] - points[i1 + 1],
+                    bz = points[i3 + 2] - points[i1 + 2];
+            float nx = ay * bz - az * by;
+            float ny = az * bx - ax * bz;
+            float nz = ax * by - ay * bx;
+
+            for (int o = t * 9; o < t * 9 + 9; o += 3) {
+                out[o] = nx; out[o + 1] = ny; out[o + 2] = nz;
+            }
+        }
+    }
+
+    /**
+     * Store what accumulateByAngle() would add to the normal of each corner
+     * of each triangle, as the x-y-z components for corner c at c * 3.
+     */
+    private static void cornersByAngle(float[] points, int[] triangles, int from, int to,
+            float[] out) {
+        for (int t = from; t < to; t++) {
+            int i1 = triangles[t * 3] * 3;
+            int i2 = triangles[t * 3 + 1] * 3;
+            int i3 = triangles[t * 3 + 2] * 3;
+
+            float ax = points[i2] - points[i1], ay = points[i2 + 1] - points[i1 + 1],
+                    az = points[i2 + 2] - points[i1 + 2];
+            float bx = points[i3] - points[i1], by = points[i3 + 1] - points[i1 + 1],
+                    bz = points[i3 + 2] - points[i1 + 2];
+            float cx = points[i3] - points[i2], cy = points[i3 + 1] - points[i2 + 1],
+                    cz = points[i3 + 2] - points[i2 + 2];
+
+            float nx = ay * bz - az * by;
+            float ny = az * bx - ax * bz;
+            float nz = ax * by - ay * bx;
+            float length = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+            int o = t * 9;
+            if (length == 0) {
+                // Adds nothing, like the triangles accumulateByAngle() skips
+                Arrays.fill(out, o, o + 9, 0);
+                continue;
+            }
+
+            float angle1 = (float) Math.atan2(length, ax * bx + ay * by + az * bz);
+            float angle2 = (float) Math.atan2(length, -(ax * cx + ay * cy + az * cz));
+            float angle3 = (float) Math.PI - angle1 - angle2;
+
+            nx /= length;
+            ny /= length;
+            nz /= length;
+            out[o] = nx * angle1; out[o + 1] = ny * angle1; out[o + 2] = nz * angle1;
+            out[o + 3] = nx * angle2; out[o + 4] = ny * angle2; out[o + 5] = nz * angle2;
+            out[o + 6] = nx * angle3; out[o + 7] = ny * angle3; out[o + 8] = nz * angle3;
+        }
+    }
+
+    /**
+     * Work done on a range of indices.
+     */
+    private interface RangeTask {
+        void run(int range, int from, int to);
+    }
+
+    /**
+     * Split [0, count) into the given number of ranges and run the given task
+     * on each, in parallel if there is more than one.
+     */
+    private static void forEachRange(int ranges, int count, RangeTask task) {
+        IntConsumer body = r -> task.run(r, (int) ((long) count * r / ranges),
+                (int) ((long) count * (r + 1) / ranges));
+        if (ranges == 1)
+            body.accept(0);
+        else
+            IntStream.range(0, ranges).parallel().forEach(body);
+    }
+}
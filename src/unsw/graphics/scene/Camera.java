@@ -3,15 +3,15 @@ package unsw.graphics.scene;
 import com.jogamp.opengl.GL3;
 
 import unsw.graphics.Matrix3;
+import unsw.graphics.Shader;
 import unsw.graphics.Vector3;
+import unsw.graphics.geometry.BoundingRectangle;
 import unsw.graphics.geometry.Point2D;
 
 /**
  * The camera is a SceneObject that can be moved, rotated and scaled like any other, as well as
  * attached to any parent in the scene tree.
  * 
- * TODO: You need to implement the setView() method.
- *
  * @author malcolmr
  * @author Robert Clifton-Everest
  */
@@ -22,21 +22,81 @@ public class Camera extends SceneObject {
      */
     private float myAspectRatio;
 
+    /**
+     * The height of the window in pixels.
+     */
+    private int myHeight;
+
     public Camera(SceneObject parent) {
         super(parent);
     }
 
     public void setView(GL3 gl) {
-        // TODO compute a view transform to account for the cameras aspect ratio
-        
-        // TODO apply further transformations to account for the camera's global position, 
-        // rotation and scale
-        
-        // TODO set the view matrix to the computed transform
+        Shader.setViewMatrix(gl, getViewMatrix());
+    }
+
+    /**
+     * Compute the view transform. This is the inverse of the transform in fromView(): it 
+     * accounts for the camera's aspect ratio and global position, rotation and scale.
+     * 
+     * @return
+     */
+    public Matrix3 getViewMatrix() {
+        Point2D position = getGlobalPosition();
+        float scale = getGlobalScale();
+        return Matrix3.scale(1 / myAspectRatio, 1)
+                .multiplyScale(1 / scale, 1 / scale)
+                .multiplyRotation(-getGlobalRotation())
+                .multiplyTranslation(-position.getX(), -position.getY());
+    }
+
+    /**
+     * Compute the view transform with the camera interpolated between its last two fixed time
+     * steps, to match objects drawn with the same alpha.
+     * 
+     * @param alpha How far between the steps, from 0 (the previous one) to 1 (the current one)
+     * @return
+     */
+    public Matrix3 getViewMatrix(float alpha) {
+        if (alpha >= 1)
+            return getViewMatrix();
+        float[] m = getInterpolatedGlobalMatrix(alpha).getValues();
+        float rotation = (float) Math.toDegrees(Math.atan2(m[1], m[0]));
+        float scale = (float) Math.sqrt(m[0] * m[0] + m[1] * m[1]);
+        return Matrix3.scale(1 / myAspectRatio, 1)
+                .multiplyScale(1 / scale, 1 / scale)
+                .multiplyRotation(-rotation)
+                .multiplyTranslation(-m[6], -m[7]);
     }
 
     public void reshape(int width, int height) {
         myAspectRatio = (1f * width) / height;            
+        myHeight = height;
+    }
+
+    /**
+     * Compute the part of the world the camera can see. The bounds contain the view, which is
+     * larger than it if the camera is rotated.
+     * 
+     * @return
+     */
+    public View getView() {
+        return getView(1);
+    }
+
+    /**
+     * Compute the part of the world the camera can see, for drawing objects between their last
+     * two fixed time steps. The bounds are those of the current step, like the bounds of the 
+     * objects they are compared with.
+     * 
+     * @param alpha How far between the steps, from 0 (the previous one) to 1 (the current one)
+     * @return
+     */
+    public View getView(float alpha) {
+        Matrix3 mat = getGlobalMatrix().multiplyScale(myAspectRatio, 1);
+        BoundingRectangle bounds = new BoundingRectangle(-1, -1, 1, 1).transform(mat);
+        float pixelSize = myHeight > 0 ? 2 * getGlobalScale() / myHeight : 0;
+        return new View(bounds, pixelSize, alpha);
     }
 
     /**
@@ -48,11 +108,17 @@ public class Camera extends SceneObject {
      * @return
      */
     public Point2D fromView(float x, float y) {
-        Matrix3 mat = Matrix3.translation(getGlobalPosition())
-                .multiply(Matrix3.rotation(getGlobalRotation()))
-                .multiply(Matrix3.scale(getGlobalScale(), getGlobalScale()))
-                .multiply(Matrix3.scale(myAspectRatio, 1));
-        return mat.multiply(new Vector3(x,y,1)).asPoint2D();
+        return getViewInverse().multiply(new Vector3(x,y,1)).asPoint2D();
+    }
+
+    /**
+     * Compute the transform from camera coordinates to world coordinates, the inverse of 
+     * getViewMatrix().
+     * 
+     * @return
+     */
+    public Matrix3 getViewInverse() {
+        return getGlobalMatrix().multiplyScale(myAspectRatio, 1);
     }
 
     public float getAspectRatio() {
@@ -0,0 +1,198 @@
+package unsw.graphics.scene;
+
+import java.util.Arrays;
+
+/**
+ * A list of changes to the structure of the scene tree, to be made later.
+ *
+ * While a scene tree is being updated, adding a child to an object or removing one is recorded
+ * here rather than done, so the update can go through the children of each object without
+ * copying the list of them. The changes are made, in the order they were recorded, when the
+ * update is over.
+ *
+ * Each thread has its own buffer, which is only active during an update. When an update is split
+ * across threads, each chunk of it records into a buffer of its own, and the buffers are
+ * appended to the caller's in the order of the chunks, so the changes are made in the same order
+ * as if the update had run on one thread.
+ *
+ * A chunk's buffer also has a boundary: the object whose children are being updated in 
+ * parallel. Its cached bounds, and those of its ancestors, are shared by every chunk, so rather
+ * than mark them dirty a chunk records here that they have changed, and they are marked after 
+ * the chunks are done.
+ *
+ * @author Robert Clifton-Everest
+ */
+class CommandBuffer {
+
+    private static final ThreadLocal<CommandBuffer> BUFFERS = new ThreadLocal<CommandBuffer>() {
+        @Override
+        protected CommandBuffer initialValue() {
+            return new CommandBuffer();
+        }
+    };
+
+    // The buffer that is recording on each thread, if any
+    private static final ThreadLocal<CommandBuffer> ACTIVE = new ThreadLocal<CommandBuffer>();
+
+    // The commands: add or remove child from parent
+    private int mySize;
+    private boolean[] myAdds = new boolean[0];
+    private SceneObject[] myParents = new SceneObject[0];
+    private SceneObject[] myChildren = new SceneObject[0];
+
+    // The object whose children are being updated in parallel, for a chunk's buffer
+    private SceneObject myBoundary;
+    private boolean amBoundsChanged;
+
+    CommandBuffer() {
+    }
+
+    /**
+     * Create a buffer for a chunk of a parallel update.
+     *
+     * @param boundary The object whose children are being updated in parallel
+     */
+    CommandBuffer(SceneObject boundary) {
+        myBoundary = boundary;
+    }
+
+    /**
+     * Get the active buffer for the current thread, or null if there isn't one.
+     *
+     * @return
+     */
+    static CommandBuffer active() {
+        return ACTIVE.get();
+    }
+
+    /**
+     * Get the buffer for the current thread and make it active, or return null if a buffer is 
+     * already active.
+     *
+     * @return
+     */
+    static CommandBuffer begin() {
+        if (ACTIVE.get() != null)
+            return null;
+        CommandBuffer buffer = BUFFERS.get();
+        ACTIVE.set(buffer);
+        return buffer;
+    }
+
+    /**
+     * Make the buffer inactive and carry out its commands, in order.
+     */
+    void end() {
+        ACTIVE.set(null);
+        apply();
+    }
+
+    /**
+     * Make the given buffer the active one for the current thread.
+     *
+     * @param buffer The buffer, or null for none
+     * @return The buffer that was active before
+     */
+    static CommandBuffer swap(CommandBuffer buffer) {
+        CommandBuffer previous = ACTIVE.get();
+        ACTIVE.set(buffer);
+        return previous;
+    }
+
+    /**
+     * Move the commands in the given buffer to the end of this one.
+     *
+     * @param other
+     */
+    void append(CommandBuffer other) {
+        for (int i = 0; i < other.mySize; i++) {
+            record(other.myAdds[i], other.myParents[i], other.myChildren[i]);
+            other.myParents[i] = other.myChildren[i] = null;
+        }
+        other.mySize = 0;
+    }
+
+    /**
+     * Record that the given child should be added to the given parent.
+     *
+     * @param parent
+     * @param child
+     */
+    void add(SceneObject parent, SceneObject child) {
+        record(true, parent, child);
+    }
+
+    /**
+     * Record that the given child should be removed from the given parent.
+     *
+     * @param parent
+     * @param child
+     */
+    void remove(SceneObject parent, SceneObject child) {
+        record(false, parent, child);
+    }
+
+    /**
+     * Get the object whose bounds this buffer records changes to instead of them being marked 
+     * dirty, or null if there isn't one.
+     *
+     * @return
+     */
+    SceneObject getBoundary() {
+        return myBoundary;
+    }
+
+    /**
+     * Record that the bounds of the boundary have changed.
+     */
+    void boundsChanged() {
+        amBoundsChanged = true;
+    }
+
+    /**
+     * Whether the bounds of the boundary have changed since this was last called.
+     *
+     * @return
+     */
+    boolean takeBoundsChanged() {
+        boolean changed = amBoundsChanged;
+        amBoundsChanged = false;
+        return changed;
+    }
+
+    /**
+     * The number of commands waiting to be carried out.
+     *
+     * @return
+     */
+    int size() {
+        return mySize;
+    }
+
+    /**
+     * Carry out the commands in order and clear the buffer.
+     */
+    void apply() {
+        for (int i = 0; i < mySize; i++) {
+            if (myAdds[i])
+                myParents[i].addChildNow(myChildren[i]);
+            else
+                myParents[i].removeChildNow(myChildren[i]);
+            myParents[i] = myChildren[i] = null;
+        }
+        mySize = 0;
+    }
+
+    private void record(boolean add, SceneObject parent, SceneObject child) {
+        if (mySize == myAdds.length) {
+            int n = Math.max(16, mySize * 2);
+            myAdds = Arrays.copyOf(myAdds, n);
+            myParents = Arrays.copyOf(myParents, n);
+            myChildren = Arrays.copyOf(myChildren, n);
+        }
+        myAdds[mySize] = add;
+        myParents[mySize] = parent;
+        myChildren[mySize] = child;
+        mySize++;
+    }
+}
@@ -0,0 +1,88 @@
+package unsw.graphics.scene;
+
+import java.util.Arrays;
+
+import com.jogamp.opengl.GL3;
+
+import unsw.graphics.CoordFrame2D;
+import unsw.graphics.Matrix3;
+import unsw.graphics.SpriteBatch;
+
+/**
+ * A snapshot of what to draw for one frame of a scene: the view and its inverse, and each object
+ * that can be seen with the coordinate frame to draw it in, in drawing order.
+ *
+ * The snapshot is taken after the update, by walking the tree the same way as drawing it with a
+ * View, and can then be drawn on another thread while the tree is updated again. The frames are
+ * immutable, so the objects can move without changing the snapshot. The inverse of the view is
+ * kept so points on the screen can be mapped into the world the frame shows without reading the
+ * camera, which the update may be moving.
+ *
+ * @author Robert Clifton-Everest
+ */
+class DrawList {
+
+    private Matrix3 myViewMatrix;
+    private Matrix3 myViewInverse;
+    private View myView;
+
+    private int mySize;
+    private SceneObject[] myObjects = new SceneObject[64];
+    private CoordFrame2D[] myFrames = new CoordFrame2D[64];
+
+    /**
+     * Take a snapshot of the given tree, replacing what was in the list.
+     *
+     * @param root
+     * @param viewMatrix
+     * @param viewInverse
+     * @param view
+     */
+    void record(SceneObject root, Matrix3 viewMatrix, Matrix3 viewInverse, View view) {
+        for (int i = 0; i < mySize; i++) {
+            myObjects[i] = null;
+            myFrames[i] = null;
+        }
+        mySize = 0;
+        myViewMatrix = viewMatrix;
+        myViewInverse = viewInverse;
+        myView = view;
+        root.collect(CoordFrame2D.identity(), view, this);
+    }
+
+    void add(SceneObject object, CoordFrame2D frame) {
+        if (mySize == myObjects.length) {
+            myObjects = Arrays.copyOf(myObjects, mySize * 2);
+            myFrames = Arrays.copyOf(myFrames, mySize * 2);
+        }
+        myObjects[mySize] = object;
+        myFrames[mySize] = frame;
+        mySize++;
+    }
+
+    Matrix3 getViewMatrix() {
+        return myViewMatrix;
+    }
+
+    Matrix3 getViewInverse() {
+        return myViewInverse;
+    }
+
+    View getView() {
+        return myView;
+    }
+
+    int size() {
+        return mySize;
+    }
+
+    void draw(GL3 gl) {
+        for (int i = 0; i < mySize; i++)
+            myObjects[i].drawSelf(gl, myFrames[i]);
+    }
+
+    void draw(SpriteBatch batch) {
+        for (int i = 0; i < mySize; i++)
+            myObjects[i].drawSelf(batch, myFrames[i]);
+    }
+}
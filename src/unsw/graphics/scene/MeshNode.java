@@ -0,0 +1,88 @@
+package unsw.graphics.scene;
+
+import java.awt.Color;
+
+import unsw.graphics.Shader;
+import unsw.graphics.Texture;
+import unsw.graphics.geometry.TriangleMesh;
+
+/**
+ * A SceneNode that draws a triangle mesh with a given shader, texture and pen color.
+ *
+ * The mesh, shader and texture are not owned by the node. Many nodes can share them, and they
+ * must be initialised and destroyed separately.
+ *
+ * @author Robert Clifton-Everest
+ */
+public class MeshNode extends SceneNode {
+
+    private TriangleMesh myMesh;
+    private Shader myShader;
+    private Texture myTexture;
+    private Color myColor;
+
+    /**
+     * Create a node that draws the given mesh with the given shader, in white and without a
+     * texture.
+     *
+     * @param parent
+     * @param mesh
+     * @param shader
+     */
+    public MeshNode(SceneNode parent, TriangleMesh mesh, Shader shader) {
+        super(parent);
+        myMesh = mesh;
+        myShader = shader;
+        myTexture = null;
+        myColor = Color.WHITE;
+    }
+
+    public TriangleMesh getMesh() {
+        return myMesh;
+    }
+
+    public void setMesh(TriangleMesh mesh) {
+        myMesh = mesh;
+    }
+
+    public Shader getShader() {
+        return myShader;
+    }
+
+    public void setShader(Shader shader) {
+        myShader = shader;
+    }
+
+    /**
+     * Get the texture bound to texture unit 0 when drawing this node, or null if it doesn't have
+     * one.
+     *
+     * @return
+     */
+    public Texture getTexture() {
+        return myTexture;
+    }
+
+    /**
+     * Set the 2D texture to bind to texture unit 0 when drawing this node. If it is null, whatever
+     * is bound already is left there.
+     *
+     * @param texture
+     */
+    public void setTexture(Texture texture) {
+        myTexture = texture;
+    }
+
+    public Color getColor() {
+        return myColor;
+    }
+
+    public void setColor(Color color) {
+        myColor = color;
+    }
+
+    @Override
+    public void submitSelf(RenderQueue queue) {
+        queue.add(myShader, myTexture, myMesh, getWorldMatrix(), myColor);
+    }
+}
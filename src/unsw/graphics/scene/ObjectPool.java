@@ -0,0 +1,77 @@
+package unsw.graphics.scene;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A pool of SceneObjects that can be reused rather than created and thrown away, for objects
+ * that are short-lived and created often, such as projectiles.
+ *
+ * Recycling an object destroys it, removing it from the scene tree, and keeps it for the next
+ * call to obtain(). Any children it has are destroyed with it, so pooled objects shouldn't have
+ * children. An object obtained from the pool keeps the state it had when it was recycled, so it
+ * should be reset by whoever obtains it.
+ *
+ * Objects can be obtained and recycled from several threads at once, as in a parallel update.
+ *
+ * @author Robert Clifton-Everest
+ */
+public abstract class ObjectPool<T extends SceneObject> {
+
+    private final List<T> myFree = new ArrayList<T>();
+
+    /**
+     * Create a new object for the pool, as a child of the given parent.
+     *
+     * @param parent
+     * @return
+     */
+    protected abstract T create(SceneObject parent);
+
+    /**
+     * Get an object from the pool, or a new one if the pool is empty, and add it to the scene
+     * tree as a child of the given parent.
+     *
+     * @param parent
+     * @return
+     */
+    public T obtain(SceneObject parent) {
+        T object;
+        synchronized (myFree) {
+            if (myFree.isEmpty())
+                object = null;
+            else
+                object = myFree.remove(myFree.size() - 1);
+        }
+        if (object == null)
+            return create(parent);
+        object.attach(parent);
+        return object;
+    }
+
+    /**
+     * Remove the given object from the scene tree and put it in the pool. Does nothing if it is
+     * not in the tree, such as when it has already been recycled.
+     *
+     * @param object
+     */
+    public void recycle(T object) {
+        if (object.getParent() == null)
+            return;
+        object.destroy();
+        synchronized (myFree) {
+            myFree.add(object);
+        }
+    }
+
+    /**
+     * The number of objects waiting in the pool.
+     *
+     * @return
+     */
+    public int getFreeCount() {
+        synchronized (myFree) {
+            return myFree.size();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package unsw.graphics.scene;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Updates a list of independent SceneObjects, and their descendants, on several threads.
+ *
+ * The list is split into a few chunks per thread, which are run in the ForkJoinPool the caller
+ * is running in, or the common pool if it isn't in one. Each chunk records the changes to the
+ * tree it makes in its own CommandBuffer. When all the chunks are done their buffers are
+ * appended, in order, to the caller's buffer, so the changes are made in the same order as if
+ * the objects had been updated one after another.
+ *
+ * The chunks share the parent of the objects and its ancestors, so nothing in a chunk may write
+ * to them. Their global transformations are computed and cached before the chunks are forked, 
+ * so reading them only reads the caches. Their bounds are marked dirty, if any chunk changed 
+ * them, after the chunks are joined. Forking and joining the chunks make everything written 
+ * before a chunk visible to it, and everything it wrote visible after.
+ *
+ * With only one thread to run on, the objects are updated on the calling thread.
+ *
+ * @author Robert Clifton-Everest
+ */
+class ParallelUpdate extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The number of chunks for each thread. More than one so a thread that finishes early can
+     * take work from one that doesn't.
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final List<SceneObject> myObjects;
+    private final int myStart, myEnd;
+    private final float myDt;
+    private final CommandBuffer myCommands;
+
+    private ParallelUpdate(SceneObject parent, List<SceneObject> objects, int start, int end,
+            float dt) {
+        myObjects = objects;
+        myStart = start;
+        myEnd = end;
+        myDt = dt;
+        myCommands = new CommandBuffer(parent);
+    }
+
+    /**
+     * Update the given children of the given parent, which must not be changed until this 
+     * returns. A CommandBuffer must be active on the calling thread.
+     *
+     * @param parent
+     * @param objects
+     * @param dt
+     */
+    static void update(SceneObject parent, List<SceneObject> objects, float dt) {
+        boolean inPool = ForkJoinTask.inForkJoinPool();
+        int threads = inPool ? ForkJoinTask.getPool().getParallelism()
+                : ForkJoinPool.getCommonPoolParallelism();
+        int n = objects.size();
+        int chunks = Math.min(n, threads * CHUNKS_PER_THREAD);
+        if (threads < 2 || chunks < 2) {
+            for (int i = 0; i < n; i++)
+                objects.get(i).updateTree(dt);
+            return;
+        }
+
+        parent.freezeGlobal();
+        final ParallelUpdate[] tasks = new ParallelUpdate[chunks];
+        for (int c = 0; c < chunks; c++)
+            tasks[c] = new ParallelUpdate(parent, objects, (int) ((long) n * c / chunks),
+                    (int) ((long) n * (c + 1) / chunks), dt);
+        if (inPool) {
+            invokeAll(tasks);
+        } else {
+            ForkJoinPool.commonPool().invoke(new RecursiveAction() {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+        }
+
+        CommandBuffer commands = CommandBuffer.active();
+        boolean boundsChanged = false;
+        for (ParallelUpdate task : tasks) {
+            commands.append(task.myCommands);
+            boundsChanged |= task.myCommands.takeBoundsChanged();
+        }
+        // This thread may itself be in a chunk, so the parent may be past its own boundary
+        if (boundsChanged)
+            parent.invalidateBounds();
+    }
+
+    @Override
+    protected void compute() {
+        // This thread may be in the middle of another chunk, waiting for this one
+        CommandBuffer previous = CommandBuffer.swap(myCommands);
+        try {
+            for (int i = myStart; i < myEnd; i++)
+                myObjects.get(i).updateTree(myDt);
+        } finally {
+            CommandBuffer.swap(previous);
+        }
+    }
+}
@@ -5,6 +5,9 @@ import java.awt.Color;
 import com.jogamp.opengl.GL3;
 
 import unsw.graphics.CoordFrame2D;
+import unsw.graphics.Shader;
+import unsw.graphics.SpriteBatch;
+import unsw.graphics.geometry.BoundingRectangle;
 import unsw.graphics.geometry.Polygon2D;
 
 /**
@@ -12,8 +15,6 @@ import unsw.graphics.geometry.Polygon2D;
  * 
  * This class extend SceneObject to draw polygonal shapes.
  *
- * TODO: The methods you need to complete are at the bottom of the class
- *
  * @author malcolmr
  * @author Robert Clifton-Everest
  * 
@@ -44,6 +45,10 @@ public class PolygonalSceneObject extends SceneObject {
         myLineColor = lineColor;
     }
 
+    public Polygon2D getPolygon() {
+        return myPolygon;
+    }
+
     /**
      * Get the fill color
      * 
@@ -84,10 +89,10 @@ public class PolygonalSceneObject extends SceneObject {
         myLineColor = lineColor;
     }
 
-    // ===========================================
-    // COMPLETE THE METHODS BELOW
-    // ===========================================
-    
+    @Override
+    public BoundingRectangle getLocalBounds() {
+        return myPolygon.getBounds();
+    }
 
     /**
      * Draw the polygon
@@ -98,9 +103,26 @@ public class PolygonalSceneObject extends SceneObject {
      */
     @Override
     public void drawSelf(GL3 gl, CoordFrame2D frame) {
+        if (myFillColor != null) {
+            Shader.setPenColor(gl, myFillColor);
+            myPolygon.draw(gl, frame);
+        }
+        if (myLineColor != null) {
+            Shader.setPenColor(gl, myLineColor);
+            myPolygon.drawOutline(gl, frame);
+        }
+    }
 
-        // TODO: Write this method
-
+    /**
+     * Add the polygon to the batch, with the same fill and outline rules as drawSelf(GL3, 
+     * CoordFrame2D).
+     */
+    @Override
+    public void drawSelf(SpriteBatch batch, CoordFrame2D frame) {
+        if (myFillColor != null)
+            batch.fill(myPolygon, frame, myFillColor);
+        if (myLineColor != null)
+            batch.outline(myPolygon, frame, myLineColor);
     }
 
 
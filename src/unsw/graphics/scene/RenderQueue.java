@@ -0,0 +1,310 @@
+package unsw.graphics.scene;
+
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL3;
+
+import unsw.graphics.Matrix4;
+import unsw.graphics.Shader;
+import unsw.graphics.Texture;
+import unsw.graphics.geometry.BoundingSphere;
+import unsw.graphics.geometry.Frustum;
+import unsw.graphics.geometry.Point3D;
+import unsw.graphics.geometry.TriangleMesh;
+
+/**
+ * A list of things to draw in a frame, sorted to reduce changes of OpenGL state.
+ *
+ * Each item is given a 64-bit key made of, from most to least significant, the shader (12 bits),
+ * the texture (12 bits), the mesh (16 bits) and the distance from the camera (24 bits). Sorting
+ * by the key draws everything that uses one shader together, and within that everything that
+ * uses one texture, and so on. Items that only differ in depth are drawn front to back, so the
+ * depth test discards as many hidden fragments as possible.
+ *
+ * The ids of the shaders, textures and meshes are given out afresh each frame, in the order
+ * they are first added, so the queue keeps nothing alive between frames. If a frame has more
+ * of one of them than fit in its bits, the extra ones share the last id. They are still drawn
+ * correctly, but may not be grouped together.
+ *
+ * Items outside the view frustum are dropped as they are added.
+ *
+ * A frame looks like:
+ *
+ * <pre>
+ * queue.begin(view, proj);
+ * root.submit(queue);
+ * queue.draw(gl);
+ * </pre>
+ *
+ * @author Robert Clifton-Everest
+ */
+public class RenderQueue {
+
+    private static final int SHADER_BITS = 12, TEXTURE_BITS = 12, MESH_BITS = 16, DEPTH_BITS = 24;
+
+    // Small ids for each shader, texture and mesh, in the order they were first seen this frame
+    private final Map<Shader, Integer> shaderIds = new IdentityHashMap<Shader, Integer>();
+    private final Map<Texture, Integer> textureIds = new IdentityHashMap<Texture, Integer>();
+    private final Map<TriangleMesh, Integer> meshIds = new IdentityHashMap<TriangleMesh, Integer>();
+
+    private Matrix4 view = Matrix4.identity();
+    private Matrix4 proj = Matrix4.identity();
+    private Frustum frustum;
+    private final float[] viewValues = new float[16];
+    private final float[] worldValues = new float[16];
+
+    // The items, in the order they were added
+    private int size;
+    private Shader[] shaders = new Shader[16];
+    private Texture[] textures = new Texture[16];
+    private TriangleMesh[] meshes = new TriangleMesh[16];
+    private Matrix4[] worlds = new Matrix4[16];
+    private Color[] colors = new Color[16];
+
+    // The sort keys, and the index of the item each belongs to
+    private long[] keys = new long[16];
+    private int[] order = new int[16];
+    private long[] keysScratch = new long[16];
+    private int[] orderScratch = new int[16];
+
+    private int culled;
+    private int shaderChanges, textureChanges, meshChanges;
+
+    /**
+     * Start a new frame, removing all items from the queue.
+     *
+     * @param view The view matrix
+     * @param proj The projection matrix
+     */
+    public void begin(Matrix4 view, Matrix4 proj) {
+        this.view = view;
+        this.proj = proj;
+        frustum = new Frustum(proj.multiply(view));
+        view.getValues(viewValues, 0);
+
+        // Don't keep anything alive until the next frame
+        shaderIds.clear();
+        textureIds.clear();
+        meshIds.clear();
+        for (int i = 0; i < size; i++) {
+            shaders[i] = null;
+            textures[i] = null;
+            meshes[i] = null;
+            worlds[i] = null;
+            colors[i] = null;
+        }
+        size = 0;
+        culled = 0;
+    }
+
+    /**
+     * Add an item to the queue, unless it is outside the view frustum.
+     *
+     * @param shader
+     * @param texture The 2D texture to bind to texture unit 0, or null to leave it as it is
+     * @param mesh
+     * @param world The matrix that transforms from the mesh's coordinates to world coordinates
+     * @param color The pen color
+     * @return Whether the item was added
+     */
+    public boolean add(Shader shader, Texture texture, TriangleMesh mesh, Matrix4 world,
+            Color color) {
+        BoundingSphere sphere = mesh.getBoundingSphere();
+        if (!frustum.intersects(sphere, world, worldValues)) {
+            culled++;
+            return false;
+        }
+
+        // The depth of the center of the sphere in view coordinates
+        Point3D c = sphere.getCenter();
+        float[] m = worldValues;
+        float x = m[0] * c.getX() + m[4] * c.getY() + m[8] * c.getZ() + m[12];
+        float y = m[1] * c.getX() + m[5] * c.getY() + m[9] * c.getZ() + m[13];
+        float z = m[2] * c.getX() + m[6] * c.getY() + m[10] * c.getZ() + m[14];
+        float[] v = viewValues;
+        float depth = Math.max(0, -(v[2] * x + v[6] * y + v[10] * z + v[14]));
+
+        if (size == keys.length)
+            grow();
+        shaders[size] = shader;
+        textures[size] = texture;
+        meshes[size] = mesh;
+        worlds[size] = world;
+        colors[size] = color;
+
+        // A non-negative float orders the same way as its bits
+        long key = id(shaderIds, shader, SHADER_BITS);
+        key = key << TEXTURE_BITS | (texture == null ? 0 : id(textureIds, texture, TEXTURE_BITS));
+        key = key << MESH_BITS | id(meshIds, mesh, MESH_BITS);
+        key = key << DEPTH_BITS | Float.floatToIntBits(depth) >>> (31 - DEPTH_BITS);
+        keys[size] = key;
+        order[size] = size;
+        size++;
+        return true;
+    }
+
+    /**
+     * Draw everything in the queue.
+     *
+     * Each shader is given the view and projection matrices when it is first used, and "tex" is
+     * set to texture unit 0. Any other uniforms, such as lighting, should be set on the shaders
+     * beforehand.
+     *
+     * @param gl
+     */
+    public void draw(GL3 gl) {
+        sort();
+
+        shaderChanges = textureChanges = meshChanges = 0;
+        Shader shader = null;
+        Texture texture = null;
+        TriangleMesh mesh = null;
+        Color color = null;
+        for (int i = 0; i < size; i++) {
+            int item = order[i];
+            if (shaders[item] != shader) {
+                shader = shaders[item];
+                shader.use(gl);
+                Shader.setViewMatrix(gl, view);
+                Shader.setProjMatrix(gl, proj);
+                Shader.setInt(gl, "tex", 0);
+                shaderChanges++;
+                // Uniforms belong to the shader, so the color must be set again, and the mesh
+                // bound again to set how its normals are encoded
+                color = null;
+                mesh = null;
+            }
+            if (textures[item] != null && textures[item] != texture) {
+                texture = textures[item];
+                gl.glActiveTexture(GL.GL_TEXTURE0);
+                gl.glBindTexture(GL.GL_TEXTURE_2D, texture.getId());
+                textureChanges++;
+            }
+            if (meshes[item] != mesh) {
+                mesh = meshes[item];
+                mesh.bind(gl);
+                meshChanges++;
+            }
+            if (!colors[item].equals(color)) {
+                color = colors[item];
+                Shader.setPenColor(gl, color);
+            }
+            mesh.drawBound(gl, worlds[item]);
+        }
+        if (mesh != null)
+            mesh.unbind(gl);
+    }
+
+    /**
+     * The number of items in the queue.
+     *
+     * @return
+     */
+    public int getItemCount() {
+        return size;
+    }
+
+    /**
+     * The number of items that were not added because they were outside the view frustum.
+     *
+     * @return
+     */
+    public int getCulledCount() {
+        return culled;
+    }
+
+    /**
+     * The number of times the shader was changed in the last call to draw().
+     *
+     * @return
+     */
+    public int getShaderChanges() {
+        return shaderChanges;
+    }
+
+    /**
+     * The number of times the texture was changed in the last call to draw().
+     *
+     * @return
+     */
+    public int getTextureChanges() {
+        return textureChanges;
+    }
+
+    /**
+     * The number of times a mesh was bound in the last call to draw().
+     *
+     * @return
+     */
+    public int getMeshChanges() {
+        return meshChanges;
+    }
+
+    private static <T> int id(Map<T, Integer> ids, T object, int bits) {
+        Integer id = ids.get(object);
+        if (id == null) {
+            id = Math.min(ids.size() + 1, (1 << bits) - 1);
+            ids.put(object, id);
+        }
+        return id;
+    }
+
+    private void grow() {
+        int n = keys.length * 2;
+        shaders = Arrays.copyOf(shaders, n);
+        textures = Arrays.copyOf(textures, n);
+        meshes = Arrays.copyOf(meshes, n);
+        worlds = Arrays.copyOf(worlds, n);
+        colors = Arrays.copyOf(colors, n);
+        keys = Arrays.copyOf(keys, n);
+        order = Arrays.copyOf(order, n);
+        keysScratch = new long[n];
+        orderScratch = new int[n];
+    }
+
+    /**
+     * Sort the keys, and the order along with them, with a least significant digit radix sort.
+     * Digits that are the same in every key, such as the shader when there is only one, are
+     * skipped.
+     */
+    void sort() {
+        long[] k = keys, kOut = keysScratch;
+        int[] o = order, oOut = orderScratch;
+        int[] counts = new int[256];
+        for (int shift = 0; shift < 64; shift += 8) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < size; i++)
+                counts[(int) (k[i] >>> shift) & 0xff]++;
+            if (size == 0 || counts[(int) (k[0] >>> shift) & 0xff] == size)
+                continue;
+
+            int total = 0;
+            for (int d = 0; d < 256; d++) {
+                int c = counts[d];
+                counts[d] = total;
+                total += c;
+            }
+            for (int i = 0; i < size; i++) {
+                int d = (int) (k[i] >>> shift) & 0xff;
+                int to = counts[d]++;
+                kOut[to] = k[i];
+                oOut[to] = o[i];
+            }
+
+            long[] kt = k;
+            k = kOut;
+            kOut = kt;
+            int[] ot = o;
+            o = oOut;
+            oOut = ot;
+        }
+        keys = k;
+        keysScratch = kOut;
+        order = o;
+        orderScratch = oOut;
+    }
+}
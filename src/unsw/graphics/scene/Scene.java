@@ -1,15 +1,33 @@
 package unsw.graphics.scene;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 import com.jogamp.opengl.GL3;
 
 import unsw.graphics.CoordFrame2D;
+import unsw.graphics.Matrix3;
+import unsw.graphics.Shader;
+import unsw.graphics.SpriteBatch;
+import unsw.graphics.Vector3;
+import unsw.graphics.geometry.Point2D;
 
 
 /**
  * A Scene consists of a scene tree and a camera attached to the tree.
  * 
- * Every object in the scene tree is updated on each display call.
- * Then the scene tree is rendered.
+ * Every object in the scene tree is updated on each display call. Objects created, destroyed
+ * or moved during the update are added to and removed from the tree at the end of it (see 
+ * SceneObject.update()). Then the scene tree is rendered.
+ * 
+ * By default the tree is updated once per display call, with the time since the last one. With
+ * a tick rate set, it is updated in fixed time steps instead: the time since the last display 
+ * call is added to an accumulator, and the tree is updated once for each whole step in it, up to
+ * a maximum number of steps per display call. The objects are then drawn between where they 
+ * were at the start of the last step and where they are now, in proportion to the time left 
+ * over, so motion is smooth whatever the rate of the display.
+ * 
+ * The scene can also be pipelined, so the tree is updated on a thread of its own while the last
+ * frame is drawn (see setPipelined()).
  *
  * You shouldn't need to modify this class.
  *
@@ -24,52 +42,293 @@ public class Scene {
     private SceneObject root;
     private long myTime;
 
+    // The length of a fixed time step in seconds, or 0 to update once per display call
+    private float myTickLength;
+    private int myMaxTicks = 5;
+    private float myAccumulator;
+    private float myAlpha = 1;
+    
+    private SpriteBatch myBatch;
+
+    private View myView;
+
+    private ScenePipeline myPipeline;
+
+    // When pipelined, a size from reshape() that the update thread hasn't given the camera yet,
+    // as the width in the high bits and the height in the low ones, or -1 if there isn't one
+    private final AtomicLong myPendingSize = new AtomicLong(-1);
+
+    // When pipelined, the inverse of the view of the frame last drawn
+    private volatile Matrix3 myDrawnViewInverse;
+
     /**
      * Construct a new scene with a camera attached to the root object.
      *
      */
     public Scene() {
         root = new SceneObject();
-        myTime = System.currentTimeMillis();
+        myTime = System.nanoTime();
         myCamera = new Camera(root);
     }
 
+    /**
+     * Tell the camera that the screen has been reshaped. When the scene is pipelined the camera
+     * belongs to the update thread, so it is told before the next update starts.
+     * 
+     * @param width
+     * @param height
+     */
     public void reshape(int width, int height) {
-        
+        if (myPipeline != null) {
+            myPendingSize.set((long) width << 32 | height);
+            return;
+        }
+
         // tell the camera that the screen has reshaped
         myCamera.reshape(width, height);
     }
 
+    /**
+     * Give the camera the size from the last call to reshape() made while pipelined, if it
+     * hasn't had it.
+     */
+    private void applyPendingSize() {
+        long size = myPendingSize.getAndSet(-1);
+        if (size != -1)
+            myCamera.reshape((int) (size >>> 32), (int) size);
+    }
+
+    /**
+     * Transform a point from camera coordinates to world coordinates, for things like mouse
+     * interaction. When the scene is pipelined this uses the camera as it was in the frame last
+     * drawn, which is the one on the screen, rather than reading the camera while the update
+     * thread moves it.
+     * 
+     * @param x
+     * @param y
+     * @return
+     */
+    public Point2D fromView(float x, float y) {
+        Matrix3 inverse = myPipeline != null ? myDrawnViewInverse : null;
+        if (inverse == null)
+            return myCamera.fromView(x, y);
+        return inverse.multiply(new Vector3(x, y, 1)).asPoint2D();
+    }
+
     public void draw(GL3 gl) {
+        if (myPipeline != null) {
+            // draw the frame the update thread recorded, while it updates the next one
+            DrawList list = myPipeline.next();
+            myView = list.getView();
+            myDrawnViewInverse = list.getViewInverse();
+            Shader.setViewMatrix(gl, list.getViewMatrix());
+            if (myBatch != null) {
+                myBatch.begin(gl, list.getViewMatrix());
+                list.draw(myBatch);
+                myBatch.end();
+            } else {
+                list.draw(gl);
+            }
+            return;
+        }
 
-        // set the view matrix based on the camera position
-        myCamera.setView(gl); 
-        
         // update the objects
         update();
 
-        // draw the scene tree
-        root.draw(gl, CoordFrame2D.identity());        
+        // set the view matrix based on the camera position, after the camera has moved so the
+        // culling matches what is drawn
+        Matrix3 viewMatrix = myCamera.getViewMatrix(myAlpha);
+        Shader.setViewMatrix(gl, viewMatrix);
+
+        // draw the scene tree, skipping what the camera can't see
+        myView = myCamera.getView(myAlpha);
+        if (myBatch != null) {
+            myBatch.begin(gl, viewMatrix);
+            root.draw(myBatch, CoordFrame2D.identity(), myView);
+            myBatch.end();
+        } else {
+            root.draw(gl, CoordFrame2D.identity(), myView);
+        }
     }
 
     private void update() {
         
         // compute the time since the last frame
-        long time = System.currentTimeMillis();
-        float dt = (time - myTime) / 1000f;
+        long time = System.nanoTime();
+        float dt = (time - myTime) / 1e9f;
         myTime = time;
         
-        root.update(dt);      
+        update(dt);
+    }
+
+    /**
+     * Update the scene, and record what to draw for the new frame in the given list. Called on
+     * the update thread when pipelined.
+     * 
+     * @param list
+     */
+    void updateAndRecord(DrawList list) {
+        applyPendingSize();
+        update();
+        list.record(root, myCamera.getViewMatrix(myAlpha), myCamera.getViewInverse(),
+                myCamera.getView(myAlpha));
+    }
+
+    /**
+     * Advance the scene by the given time. This is called by draw() with the time since the 
+     * last call, but can be called directly to run the scene on a different clock.
+     * 
+     * @param elapsed The time to advance by, in seconds
+     */
+    public void update(float elapsed) {
+        if (myTickLength == 0) {
+            // Changes to the tree made during the update are applied when this returns
+            root.update(elapsed);
+            myAlpha = 1;
+            return;
+        }
+
+        myAccumulator += elapsed;
+        int ticks = 0;
+        while (myAccumulator >= myTickLength) {
+            if (ticks == myMaxTicks) {
+                // Too far behind to catch up, so let the scene run slow
+                myAccumulator %= myTickLength;
+                break;
+            }
+            root.savePrevious();
+            root.update(myTickLength);
+            myAccumulator -= myTickLength;
+            ticks++;
+        }
+        myAlpha = myAccumulator / myTickLength;
+    }
+
+    /**
+     * Set whether the scene is pipelined. When it is, the tree is updated on a thread of its 
+     * own, one frame ahead of the drawing: while draw() draws frame N, the tree is updated to 
+     * frame N+1, and what can be seen in it recorded. On a machine with more than one processor
+     * a frame then takes as long as the longer of the update and the drawing, rather than the
+     * two together, at the cost of a frame of latency.
+     * 
+     * While the scene is pipelined, the tree and the camera must only be changed by the updates
+     * of objects in it, and drawSelf() must only use state that updates don't change, such as 
+     * the shape and colour of a PolygonalSceneObject, as objects are drawn while the next 
+     * frame is being updated. Objects like EntityLayer, whose drawing reads state changed by 
+     * the update, can't be used in a pipelined scene. For the same reason the camera must not
+     * be used from outside the updates: use reshape() and fromView() on the scene instead of
+     * the camera's own methods.
+     * 
+     * Off by default.
+     * 
+     * @param pipelined
+     */
+    public void setPipelined(boolean pipelined) {
+        if (pipelined == (myPipeline != null))
+            return;
+        if (pipelined) {
+            myPipeline = new ScenePipeline(this);
+            myPipeline.start();
+        } else {
+            myPipeline.stop();
+            myPipeline = null;
+            myDrawnViewInverse = null;
+            applyPendingSize();
+        }
+    }
+
+    public boolean isPipelined() {
+        return myPipeline != null;
+    }
+
+    /**
+     * Set the number of fixed time steps per second, or 0 to update once per display call 
+     * (the default).
+     * 
+     * @param ticksPerSecond
+     */
+    public void setTickRate(float ticksPerSecond) {
+        if (ticksPerSecond < 0)
+            throw new IllegalArgumentException("Tick rate must not be negative");
+        myTickLength = ticksPerSecond == 0 ? 0 : 1 / ticksPerSecond;
+        myAccumulator = 0;
+        myAlpha = 1;
+    }
+
+    public float getTickRate() {
+        return myTickLength == 0 ? 0 : 1 / myTickLength;
+    }
+
+    /**
+     * Set the most fixed time steps to take in one display call. If the display falls further
+     * behind than this, the time is dropped and the scene runs slower than real time rather 
+     * than taking longer and longer to catch up. 5 by default.
+     * 
+     * @param maxTicks
+     */
+    public void setMaxTicksPerFrame(int maxTicks) {
+        if (maxTicks < 1)
+            throw new IllegalArgumentException("Must allow at least one tick per frame");
+        myMaxTicks = maxTicks;
+    }
+
+    public int getMaxTicksPerFrame() {
+        return myMaxTicks;
+    }
+
+    /**
+     * How far the scene is between its last two fixed time steps, from 0 (the previous one) to
+     * 1 (the current one). Always 1 without a tick rate.
+     * 
+     * @return
+     */
+    public float getAlpha() {
+        return myAlpha;
     }
 
     public SceneObject getRoot() {
         return root;
     }
    
+    /**
+     * Set whether the children of the root are updated in parallel. Off by default. See 
+     * SceneObject.setParallel() for what this requires of them.
+     * 
+     * @param parallel
+     */
+    public void setParallelUpdate(boolean parallel) {
+        root.setParallel(parallel);
+    }
+
+    /**
+     * Get the view the scene was last drawn in, with the counts of objects visited, culled and 
+     * drawn. Null if it hasn't been drawn.
+     * 
+     * @return
+     */
+    public View getView() {
+        return myView;
+    }
+
     public Camera getCamera() {
         return myCamera;
     }
 
+    /**
+     * Draw the scene tree through the given batch, so the whole scene is drawn in a few draw 
+     * calls rather than one or more per object. The batch must already be initialised. Passing
+     * null goes back to drawing each object individually.
+     * 
+     * @param batch
+     */
+    public void setBatch(SpriteBatch batch) {
+        myBatch = batch;
+    }
+
+    public SpriteBatch getBatch() {
+        return myBatch;
+    }
+
     public void setCamera(Camera camera) {
         myCamera.destroy();
         this.myCamera = camera;
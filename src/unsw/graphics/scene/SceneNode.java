@@ -0,0 +1,355 @@
+package unsw.graphics.scene;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import unsw.graphics.Matrix4;
+import unsw.graphics.geometry.Point3D;
+
+/**
+ * A SceneNode is an object in a 3D scene.
+ *
+ * SceneNodes form a scene tree, like SceneObjects do in 2D.
+ *
+ * Each SceneNode is offset from its parent by a translation, a rotation and a scale. The node is
+ * scaled, then rotated about the z axis, then the x axis, then the y axis, then translated.
+ *
+ * The local and world matrices of each node are cached. Changing the transform of a node marks
+ * its local matrix and the world matrices of it and its descendants as dirty, and they are
+ * recomputed the next time they are needed. A subtree that doesn't move costs nothing to
+ * transform from one frame to the next.
+ *
+ * Nodes are drawn by submitting them to a RenderQueue, which sorts them to reduce changes of
+ * OpenGL state. See MeshNode.
+ *
+ * @author Robert Clifton-Everest
+ */
+public class SceneNode {
+
+    // the links in the scene tree
+    private SceneNode myParent;
+    private List<SceneNode> myChildren;
+
+    // the local transformation
+    private Point3D myTranslation;
+    private float myRotationX, myRotationY, myRotationZ;
+    private float myScaleX, myScaleY, myScaleZ;
+
+    // Is this part of the tree showing?
+    private boolean amShowing;
+
+    // The cached matrices. Null when dirty.
+    private Matrix4 myLocalMatrix;
+    private Matrix4 myWorldMatrix;
+
+    /**
+     * Special constructor for creating the root node. Do not use otherwise.
+     */
+    public SceneNode() {
+        myParent = null;
+        myChildren = new ArrayList<SceneNode>();
+
+        myTranslation = new Point3D(0, 0, 0);
+        myScaleX = myScaleY = myScaleZ = 1;
+
+        amShowing = true;
+    }
+
+    /**
+     * Public constructor for creating SceneNodes, connected to a parent.
+     *
+     * New nodes are created at the same location, orientation and scale as the parent.
+     *
+     * @param parent
+     */
+    public SceneNode(SceneNode parent) {
+        this();
+        myParent = parent;
+        parent.myChildren.add(this);
+    }
+
+    /**
+     * Remove a node and all its children from the scene tree.
+     */
+    public void destroy() {
+        List<SceneNode> childrenList = new ArrayList<SceneNode>(myChildren);
+        for (SceneNode child : childrenList) {
+            child.destroy();
+        }
+        if (myParent != null)
+            myParent.myChildren.remove(this);
+    }
+
+    /**
+     * Get the parent of this node
+     *
+     * @return
+     */
+    public SceneNode getParent() {
+        return myParent;
+    }
+
+    /**
+     * Get the children of this node
+     *
+     * @return
+     */
+    public List<SceneNode> getChildren() {
+        return myChildren;
+    }
+
+    /**
+     * Move this node to a new parent. Its local transform is kept, so it will move in the world
+     * unless the new parent has the same world transform as the old one.
+     *
+     * @param parent
+     */
+    public void setParent(SceneNode parent) {
+        if (myParent != null)
+            myParent.myChildren.remove(this);
+        myParent = parent;
+        myParent.myChildren.add(this);
+        invalidateWorld();
+    }
+
+    /**
+     * Get the local position of the node
+     *
+     * @return
+     */
+    public Point3D getPosition() {
+        return myTranslation;
+    }
+
+    /**
+     * Set the local position of the node
+     *
+     * @param x
+     * @param y
+     * @param z
+     */
+    public void setPosition(float x, float y, float z) {
+        setPosition(new Point3D(x, y, z));
+    }
+
+    /**
+     * Set the local position of the node
+     *
+     * @param p
+     */
+    public void setPosition(Point3D p) {
+        myTranslation = p;
+        invalidateLocal();
+    }
+
+    /**
+     * Move the node by the specified offset in its parent's coordinates
+     *
+     * @param dx
+     * @param dy
+     * @param dz
+     */
+    public void translate(float dx, float dy, float dz) {
+        setPosition(myTranslation.translate(dx, dy, dz));
+    }
+
+    public float getRotationX() {
+        return myRotationX;
+    }
+
+    public float getRotationY() {
+        return myRotationY;
+    }
+
+    public float getRotationZ() {
+        return myRotationZ;
+    }
+
+    /**
+     * Set the local rotation about each axis (in degrees)
+     *
+     * @param x
+     * @param y
+     * @param z
+     */
+    public void setRotation(float x, float y, float z) {
+        myRotationX = MathUtil.normaliseAngle(x);
+        myRotationY = MathUtil.normaliseAngle(y);
+        myRotationZ = MathUtil.normaliseAngle(z);
+        invalidateLocal();
+    }
+
+    /**
+     * Add the given angles (in degrees) to the local rotation about each axis
+     *
+     * @param dx
+     * @param dy
+     * @param dz
+     */
+    public void rotate(float dx, float dy, float dz) {
+        setRotation(myRotationX + dx, myRotationY + dy, myRotationZ + dz);
+    }
+
+    public float getScaleX() {
+        return myScaleX;
+    }
+
+    public float getScaleY() {
+        return myScaleY;
+    }
+
+    public float getScaleZ() {
+        return myScaleZ;
+    }
+
+    /**
+     * Set the local scale, the same along each axis
+     *
+     * @param scale
+     */
+    public void setScale(float scale) {
+        setScale(scale, scale, scale);
+    }
+
+    /**
+     * Set the local scale along each axis
+     *
+     * @param x
+     * @param y
+     * @param z
+     */
+    public void setScale(float x, float y, float z) {
+        myScaleX = x;
+        myScaleY = y;
+        myScaleZ = z;
+        invalidateLocal();
+    }
+
+    /**
+     * Test if the node is visible
+     *
+     * @return
+     */
+    public boolean isShowing() {
+        return amShowing;
+    }
+
+    /**
+     * Set the showing flag to make the node visible (true) or invisible (false). This flag also
+     * applies to all descendants of this node.
+     *
+     * @param showing
+     */
+    public void show(boolean showing) {
+        amShowing = showing;
+    }
+
+    /**
+     * Get the matrix that transforms from this node's coordinate frame to its parent's.
+     *
+     * @return
+     */
+    public Matrix4 getLocalMatrix() {
+        if (myLocalMatrix == null) {
+            myLocalMatrix = Matrix4.translation(myTranslation)
+                    .multiplyRotationY(myRotationY)
+                    .multiplyRotationX(myRotationX)
+                    .multiplyRotationZ(myRotationZ)
+                    .multiplyScale(myScaleX, myScaleY, myScaleZ);
+        }
+        return myLocalMatrix;
+    }
+
+    /**
+     * Get the matrix that transforms from this node's coordinate frame to world coordinates.
+     *
+     * @return
+     */
+    public Matrix4 getWorldMatrix() {
+        if (myWorldMatrix == null) {
+            myWorldMatrix = myParent == null ? getLocalMatrix()
+                    : myParent.getWorldMatrix().multiply(getLocalMatrix());
+        }
+        return myWorldMatrix;
+    }
+
+    /**
+     * Compute the node's position in world coordinates
+     *
+     * @return
+     */
+    public Point3D getGlobalPosition() {
+        float[] m = getWorldMatrix().getValues();
+        return new Point3D(m[12], m[13], m[14]);
+    }
+
+    private void invalidateLocal() {
+        myLocalMatrix = null;
+        invalidateWorld();
+    }
+
+    /**
+     * Mark the world matrices of this node and its descendants as dirty. A node whose world
+     * matrix is dirty always has dirty descendants, so there is no need to go further.
+     */
+    private void invalidateWorld() {
+        if (myWorldMatrix == null)
+            return;
+        myWorldMatrix = null;
+        for (SceneNode child : myChildren)
+            child.invalidateWorld();
+    }
+
+    /**
+     * Update the node and all its children. This method is called once per frame.
+     *
+     * @param dt The amount of time since the last update (in seconds)
+     */
+    public void update(float dt) {
+        updateSelf(dt);
+
+        // Make a copy of all the children to avoid concurrent modification issues if new nodes
+        // are added to the scene during the update.
+        List<SceneNode> children = new ArrayList<SceneNode>(myChildren);
+        for (SceneNode node : children) {
+            node.update(dt);
+        }
+    }
+
+    /**
+     * Update the node itself. Does nothing in the default case. Subclasses can override this for
+     * animation or interactivity.
+     *
+     * @param dt
+     */
+    public void updateSelf(float dt) {
+        // Do nothing by default
+    }
+
+    /**
+     * Submit the node and all of its descendants to the given render queue.
+     *
+     * @param queue
+     */
+    public void submit(RenderQueue queue) {
+        if (!amShowing)
+            return;
+
+        submitSelf(queue);
+        for (SceneNode child : myChildren) {
+            child.submit(queue);
+        }
+    }
+
+    /**
+     * Submit the node (but not any descendants) to the given render queue.
+     *
+     * This does nothing in the base SceneNode class. Override this in subclasses that draw
+     * something.
+     *
+     * @param queue
+     */
+    public void submitSelf(RenderQueue queue) {
+        // Do nothing by default
+    }
+}
@@ -6,6 +6,9 @@ import java.util.List;
 import com.jogamp.opengl.GL3;
 
 import unsw.graphics.CoordFrame2D;
+import unsw.graphics.Matrix3;
+import unsw.graphics.SpriteBatch;
+import unsw.graphics.geometry.BoundingRectangle;
 import unsw.graphics.geometry.Point2D;
 
 /**
@@ -14,17 +17,53 @@ import unsw.graphics.geometry.Point2D;
  * SceneObjects form a scene tree.
  * 
  * Each SceneObject is offset from its parent by a translation, a rotation and a scale factor. 
- *
- * TODO: The methods you need to complete are at the bottom of the class
+ * 
+ * The global matrix of each object, and the global position, rotation and scale taken from it, 
+ * are cached. Moving an object marks the cache of it and all its descendants as dirty, so a 
+ * query only walks up the tree as far as the nearest ancestor that has moved since it was last
+ * asked.
+ * 
+ * The global bounds of each subtree are cached in the same way, but moving an object marks the
+ * bounds of it and all its ancestors as dirty, as theirs contain its own. Drawing with a View
+ * uses them to skip the subtrees that can't be seen.
+ * 
+ * When the scene is updated in fixed time steps, each object keeps its local transformation from
+ * the start of the last step, and drawing with a View can interpolate between that and the 
+ * current one.
  *
  * @author malcolmr
  * @author Robert Clifton-Everest
  */
 public class SceneObject {
     
+    /**
+     * Whether a class overrides drawSelf(GL3, CoordFrame2D). Computed once per class.
+     */
+    private static final ClassValue<Boolean> DRAWS_ITSELF = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            try {
+                return type.getMethod("drawSelf", GL3.class, CoordFrame2D.class)
+                        .getDeclaringClass() != SceneObject.class;
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        }
+    };
+    
     // the links in the scene tree
     private SceneObject myParent;
     private List<SceneObject> myChildren;
+    
+    // The index of this object in its parent's list of children. Removing a child leaves a null 
+    // hole in the list, so it doesn't have to be searched for and the other children don't have 
+    // to be shifted down. The holes are closed all at once the next time the list is needed.
+    private int myIndex;
+    private int myHoles;
+
+    // Whether this object is waiting to be added to its parent's list of children. Its parent
+    // can't invalidate it until then, so its global transformation isn't cached.
+    private boolean amQueued;
 
     // the local transformation
     private Point2D myTranslation;
@@ -34,6 +73,47 @@ public class SceneObject {
     // Is this part of the tree showing?
     private boolean amShowing;
 
+    // The local transformation at the start of the last fixed time step, if it has been saved
+    // since the object was created or moved to a new parent
+    private Point2D myPreviousTranslation;
+    private float myPreviousRotation;
+    private float myPreviousScale;
+
+    // Can the children of this object be updated in parallel?
+    private boolean amParallel;
+    
+    // The cached global transformation. Null when dirty.
+    private Matrix3 myGlobalMatrix;
+    private CoordFrame2D myGlobalFrame;
+    private volatile Decomposition myDecomposition;
+
+    // The cached global bounds of this object and of its subtree
+    private BoundingRectangle mySelfBounds;
+    private BoundingRectangle myBounds;
+    private boolean amBoundsValid;
+
+    // The entry for this object in a spatial index, told when the object moves
+    SpatialIndex.Entry mySpatialEntry;
+
+    /**
+     * The global position, rotation and scale taken from a global matrix. It is immutable and
+     * published through a single volatile field, so a thread that sees it sees all three.
+     */
+    private static final class Decomposition {
+        final Point2D position;
+        final float rotation;
+        final float scale;
+
+        // The position is the origin of the global frame. The rotation is the angle of its
+        // i-axis, and as scaling is uniform the scale is the length of that axis.
+        Decomposition(Matrix3 global) {
+            float[] m = global.getValues();
+            rotation = MathUtil.normaliseAngle((float) Math.toDegrees(Math.atan2(m[1], m[0])));
+            scale = (float) Math.sqrt(m[0] * m[0] + m[1] * m[1]);
+            position = new Point2D(m[6], m[7]);
+        }
+    }
+
     /**
      * Special constructor for creating the root node. Do not use otherwise.
      */
@@ -59,7 +139,7 @@ public class SceneObject {
         myParent = parent;
         myChildren = new ArrayList<SceneObject>();
 
-        parent.myChildren.add(this);
+        parent.addChild(this);
 
         myRotation = 0;
         myScale = 1;
@@ -70,15 +150,89 @@ public class SceneObject {
     }
 
     /**
-     * Remove an object and all its children from the scene tree.
+     * Remove an object and all its children from the scene tree. This takes constant time, 
+     * apart from destroying the children.
      */
     public void destroy() {
-	    List<SceneObject> childrenList = new ArrayList<SceneObject>(myChildren);
+	    List<SceneObject> childrenList = new ArrayList<SceneObject>(children());
         for (SceneObject child : childrenList) {
             child.destroy();
         }
         if(myParent != null)
-                myParent.myChildren.remove(this);
+                myParent.removeChild(this);
+        myParent = null;
+    }
+
+    /**
+     * Add a detached object to the scene tree as a child of the given parent. Its local 
+     * position, rotation and scale are kept. This is for reusing objects that have been 
+     * destroyed.
+     * 
+     * @param parent
+     */
+    void attach(SceneObject parent) {
+        myPreviousTranslation = null;
+        myParent = parent;
+        parent.addChild(this);
+        invalidate();
+    }
+
+    /**
+     * Add a child to the list of children, or record that it should be added if the tree is 
+     * being updated.
+     */
+    private void addChild(SceneObject child) {
+        CommandBuffer commands = CommandBuffer.active();
+        if (commands != null) {
+            child.amQueued = true;
+            commands.add(this, child);
+        } else {
+            addChildNow(child);
+        }
+    }
+
+    /**
+     * Remove a child from the list of children, or record that it should be removed if the 
+     * tree is being updated.
+     */
+    private void removeChild(SceneObject child) {
+        CommandBuffer commands = CommandBuffer.active();
+        if (commands != null)
+            commands.remove(this, child);
+        else
+            removeChildNow(child);
+    }
+
+    void addChildNow(SceneObject child) {
+        invalidateBounds();
+        child.amQueued = false;
+        child.myIndex = myChildren.size();
+        myChildren.add(child);
+    }
+
+    void removeChildNow(SceneObject child) {
+        invalidateBounds();
+        myChildren.set(child.myIndex, null);
+        myHoles++;
+    }
+
+    /**
+     * Get the list of children with any holes left by removed children closed up.
+     */
+    private List<SceneObject> children() {
+        if (myHoles > 0) {
+            int n = 0;
+            for (int i = 0; i < myChildren.size(); i++) {
+                SceneObject child = myChildren.get(i);
+                if (child != null) {
+                    child.myIndex = n;
+                    myChildren.set(n++, child);
+                }
+            }
+            myChildren.subList(n, myChildren.size()).clear();
+            myHoles = 0;
+        }
+        return myChildren;
     }
 
     /**
@@ -96,7 +250,7 @@ public class SceneObject {
      * @return
      */
     public List<SceneObject> getChildren() {
-        return myChildren;
+        return children();
     }
 
     /**
@@ -115,6 +269,7 @@ public class SceneObject {
      */
     public void setRotation(float rotation) {
         myRotation = MathUtil.normaliseAngle(rotation);
+        invalidate();
     }
 
     /**
@@ -125,6 +280,7 @@ public class SceneObject {
     public void rotate(float angle) {
         myRotation += angle;
         myRotation = MathUtil.normaliseAngle(myRotation);
+        invalidate();
     }
 
     /**
@@ -143,6 +299,7 @@ public class SceneObject {
      */
     public void setScale(float scale) {
         myScale = scale;
+        invalidate();
     }
 
     /**
@@ -152,6 +309,7 @@ public class SceneObject {
      */
     public void scale(float factor) {
         myScale *= factor;
+        invalidate();
     }
 
     /**
@@ -181,6 +339,7 @@ public class SceneObject {
      */
     public void setPosition(Point2D p) {
         myTranslation = p;
+        invalidate();
     }
 
     /**
@@ -191,6 +350,7 @@ public class SceneObject {
      */
     public void translate(float dx, float dy) {
         myTranslation = myTranslation.translate(dx, dy);
+        invalidate();
     }
 
     /**
@@ -212,22 +372,128 @@ public class SceneObject {
         amShowing = showing;
     }
 
+    /**
+     * Set whether the children of this object are independent of each other, so they can be 
+     * updated in parallel. They are split across the threads of the ForkJoinPool the update is
+     * running in, or the common pool.
+     * 
+     * Independent subtrees must not read or write each other's state, or any other state that
+     * isn't safe to share between threads, in their updates. They can create, destroy and 
+     * reparent objects, and use an ObjectPool or SpatialIndex. They can read the global
+     * transformation of this object and its ancestors, which are computed before the subtrees
+     * are split up, but must not move them or ask for their global bounds. Changes to the tree are made in 
+     * the same order as in a sequential update, so the tree is the same after the update 
+     * whichever threads ran it. The order in which the subtrees' updateSelf() methods are called
+     * is not fixed.
+     * 
+     * @param parallel
+     */
+    public void setParallel(boolean parallel) {
+        amParallel = parallel;
+    }
+
+    public boolean isParallel() {
+        return amParallel;
+    }
+
     /**
      * Update the object and all it's children. This method is called once per frame. 
      * 
+     * Objects can be created, destroyed and moved to new parents during the update, but the
+     * changes to the lists of children are put off until the outermost call to update() 
+     * returns. So:
+     * <ul>
+     * <li>an object created during the update is first updated in the next frame, whichever 
+     * object it was created under. It is drawn in this frame.</li>
+     * <li>an object destroyed during the update, that hasn't been updated yet, is still updated
+     * in this frame.</li>
+     * <li>an object moved to a new parent during the update is updated under its old parent
+     * in this frame, and under the new one from the next frame.</li>
+     * </ul>
+     * getParent() and the global transformations reflect the changes straight away; 
+     * getChildren() doesn't until the update is over.
+     * 
      * @param dt The amount of time since the last update (in seconds)
      */
     public void update(float dt) {
+        CommandBuffer commands = CommandBuffer.begin();
+        if (commands == null) {
+            updateTree(dt);
+            return;
+        }
+        try {
+            updateTree(dt);
+        } finally {
+            commands.end();
+        }
+    }
+
+    void updateTree(float dt) {
         updateSelf(dt);
-        
-        // Make a copy of all the children to avoid concurrently modification issues if new objects
-        // are added to the scene during the update.
-        List<SceneObject> children = new ArrayList<SceneObject>(myChildren);
-        for (SceneObject so : children) {
-            so.update(dt);
+
+        // The list can't change while the tree is being updated, so there is no need to copy it
+        List<SceneObject> children = children();
+        if (amParallel) {
+            ParallelUpdate.update(this, children, dt);
+            return;
+        }
+        for (int i = 0; i < children.size(); i++) {
+            children.get(i).updateTree(dt);
         }
     }
 
+    /**
+     * Save the local transformation of this object and all its descendants, to interpolate 
+     * from while drawing. Called at the start of each fixed time step.
+     */
+    void savePrevious() {
+        myPreviousTranslation = myTranslation;
+        myPreviousRotation = myRotation;
+        myPreviousScale = myScale;
+        for (SceneObject child : children()) {
+            child.savePrevious();
+        }
+    }
+
+    /**
+     * Compute the local matrix of the object part of the way from the transformation saved by 
+     * savePrevious() to the current one. Objects with nothing saved use the current one.
+     * 
+     * @param alpha How far to go, from 0 (the saved transformation) to 1 (the current one)
+     * @return
+     */
+    private Matrix3 interpolatedLocalMatrix(float alpha) {
+        if (myPreviousTranslation == null || alpha >= 1)
+            return Matrix3.translation(myTranslation)
+                    .multiplyRotation(myRotation)
+                    .multiplyScale(myScale, myScale);
+        float x = myPreviousTranslation.getX()
+                + (myTranslation.getX() - myPreviousTranslation.getX()) * alpha;
+        float y = myPreviousTranslation.getY()
+                + (myTranslation.getY() - myPreviousTranslation.getY()) * alpha;
+        // Turn the short way round
+        float rotation = myPreviousRotation 
+                + MathUtil.normaliseAngle(myRotation - myPreviousRotation) * alpha;
+        float scale = myPreviousScale + (myScale - myPreviousScale) * alpha;
+        return Matrix3.translation(x, y).multiplyRotation(rotation).multiplyScale(scale, scale);
+    }
+
+    /**
+     * Compute the global matrix of the object part of the way from the transformations saved 
+     * by savePrevious() to the current ones. This is what is drawn with a View with the same
+     * alpha.
+     * 
+     * @param alpha How far to go, from 0 (the saved transformations) to 1 (the current ones)
+     * @return
+     */
+    public Matrix3 getInterpolatedGlobalMatrix(float alpha) {
+        if (alpha >= 1)
+            return getGlobalMatrix();
+        Matrix3 local = interpolatedLocalMatrix(alpha);
+        return myParent == null ? local 
+                : myParent.getInterpolatedGlobalMatrix(alpha).multiply(local);
+    }
+
     /** 
      * Update the object itself. Does nothing in the default case. Subclasses can override this
      * for animation or interactivity.
@@ -249,16 +515,273 @@ public class SceneObject {
         // Do nothing by default
     }
 
-    
-    // ===========================================
-    // COMPLETE THE METHODS BELOW
-    // ===========================================
+    /**
+     * Add the object (but not any descendants) to the given batch.
+     * 
+     * Subclasses that draw something should override this as well as drawSelf(GL3, CoordFrame2D)
+     * so they can be batched. If they don't, the batch is flushed and drawSelf(GL3, CoordFrame2D)
+     * is called instead, which keeps the drawing order correct but splits the batch.
+     * 
+     * @param batch
+     * @param frame
+     */
+    public void drawSelf(SpriteBatch batch, CoordFrame2D frame) {
+        if (DRAWS_ITSELF.get(getClass())) {
+            batch.flush();
+            drawSelf(batch.getGL(), frame);
+        }
+    }
+
+    /**
+     * Get the bounds of what drawSelf() draws, in this object's coordinate frame, or null if it
+     * draws nothing.
+     * 
+     * Subclasses that override drawSelf() should override this too, so they can be culled. If
+     * they don't, their bounds are taken to be everything.
+     * 
+     * @return
+     */
+    public BoundingRectangle getLocalBounds() {
+        return DRAWS_ITSELF.get(getClass()) ? BoundingRectangle.EVERYTHING : null;
+    }
+
+    /**
+     * Get the bounds of this object and all its descendants in world coordinates, or null if 
+     * none of them draw anything.
+     * 
+     * @return
+     */
+    public BoundingRectangle getGlobalBounds() {
+        if (amBoundsValid)
+            return myBounds;
+
+        BoundingRectangle local = getLocalBounds();
+        mySelfBounds = local == null ? null : local.transform(getGlobalMatrix());
+
+        // Take the union of the children without making a rectangle for each one
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+        BoundingRectangle only = null;
+        int count = 0;
+        for (SceneObject child : children()) {
+            BoundingRectangle bounds = child.getGlobalBounds();
+            if (bounds == null)
+                continue;
+            only = bounds;
+            count++;
+            minX = Math.min(minX, bounds.getMinX());
+            minY = Math.min(minY, bounds.getMinY());
+            maxX = Math.max(maxX, bounds.getMaxX());
+            maxY = Math.max(maxY, bounds.getMaxY());
+        }
+        BoundingRectangle children = count == 0 ? null 
+                : count == 1 ? only : new BoundingRectangle(minX, minY, maxX, maxY);
+        myBounds = mySelfBounds == null ? children : mySelfBounds.union(children);
+
+        // An object whose matrix isn't cached won't be told when it moves
+        amBoundsValid = myGlobalMatrix != null;
+        return myBounds;
+    }
+
+    /**
+     * Mark the cached bounds of this object and its ancestors as dirty. An object with dirty 
+     * bounds only has ancestors with dirty bounds, so there is no need to go further.
+     * 
+     * In a chunk of a parallel update, the object whose children are being updated in 
+     * parallel and its ancestors are shared with the other chunks. The chunk only records in
+     * its CommandBuffer that their bounds have changed, and they are marked once the chunks 
+     * are done. Nor does it go past an object waiting to be added to its parent, as adding it 
+     * marks the parent's bounds.
+     */
+    void invalidateBounds() {
+        if (!amBoundsValid)
+            return;
+        CommandBuffer commands = CommandBuffer.active();
+        SceneObject boundary = commands == null ? null : commands.getBoundary();
+        for (SceneObject o = this; o != null; o = o.myParent) {
+            if (o == boundary) {
+                commands.boundsChanged();
+                return;
+            }
+            if (!o.amBoundsValid)
+                return;
+            o.amBoundsValid = false;
+            if (o.amQueued)
+                return;
+        }
+    }
+
+    /**
+     * Add the object and all of its descendants to the given batch.
+     * 
+     * @param batch
+     * @param frame
+     */
+    public void draw(SpriteBatch batch, CoordFrame2D frame) {
+        if (!amShowing) {
+            return;
+        }
+
+        CoordFrame2D myFrame = frameIn(frame);
+        drawSelf(batch, myFrame);
+        for (SceneObject child : children()) {
+            child.draw(batch, myFrame);
+        }
+    }
+
+    /**
+     * Add the object and the descendants that can be seen in the given view to the given batch.
+     * The frame should be the global frame of the parent, as it is when drawing the root in 
+     * the identity frame. If the view has an alpha less than 1, the objects are drawn with 
+     * interpolated transformations. Culling uses the current ones.
+     * 
+     * @param batch
+     * @param frame
+     * @param view
+     */
+    public void draw(SpriteBatch batch, CoordFrame2D frame, View view) {
+        if (!amShowing) {
+            return;
+        }
+
+        view.visited();
+        if (!view.isVisible(getGlobalBounds())) {
+            view.culled();
+            return;
+        }
+        CoordFrame2D myFrame = frameIn(frame, view.getAlpha());
+        if (view.isVisible(mySelfBounds)) {
+            view.drawn();
+            drawSelf(batch, myFrame);
+        }
+        for (SceneObject child : children()) {
+            child.draw(batch, myFrame, view);
+        }
+    }
+
+    /**
+     * The coordinate frame of this object, given the coordinate frame of its parent, 
+     * interpolated between the saved and current transformations.
+     * 
+     * @param parentFrame
+     * @param alpha
+     * @return
+     */
+    private CoordFrame2D frameIn(CoordFrame2D parentFrame, float alpha) {
+        if (alpha >= 1)
+            return frameIn(parentFrame);
+        return new CoordFrame2D(parentFrame.getMatrix().multiply(interpolatedLocalMatrix(alpha)));
+    }
+
+    /**
+     * The coordinate frame of this object, given the coordinate frame of its parent.
+     * 
+     * When the parent's frame is its cached global frame, or this is the root and the frame is 
+     * the identity, this is the cached global frame of this object. Otherwise it is computed.
+     * 
+     * @param parentFrame
+     * @return
+     */
+    private CoordFrame2D frameIn(CoordFrame2D parentFrame) {
+        if (myParent == null ? isIdentity(parentFrame.getMatrix())
+                : parentFrame == myParent.myGlobalFrame) {
+            if (myGlobalFrame == null) {
+                Matrix3 global = getGlobalMatrix();
+                if (myGlobalMatrix == null)
+                    return new CoordFrame2D(global);
+                myGlobalFrame = new CoordFrame2D(global);
+            }
+            return myGlobalFrame;
+        }
+        return parentFrame.translate(myTranslation).rotate(myRotation).scale(myScale, myScale);
+    }
+
+    private static boolean isIdentity(Matrix3 matrix) {
+        float[] m = matrix.getValues();
+        return m[0] == 1 && m[1] == 0 && m[2] == 0 
+                && m[3] == 0 && m[4] == 1 && m[5] == 0 
+                && m[6] == 0 && m[7] == 0 && m[8] == 1;
+    }
+
+    /**
+     * Get the matrix that transforms from this object's coordinate frame to world coordinates.
+     * 
+     * @return
+     */
+    public Matrix3 getGlobalMatrix() {
+        if (myGlobalMatrix == null) {
+            Matrix3 local = Matrix3.translation(myTranslation)
+                    .multiplyRotation(myRotation)
+                    .multiplyScale(myScale, myScale);
+            if (myParent == null)
+                return myGlobalMatrix = local;
+            Matrix3 global = myParent.getGlobalMatrix().multiply(local);
+            // Only cache it if the parent can invalidate it
+            if (amQueued || myParent.myGlobalMatrix == null)
+                return global;
+            myGlobalMatrix = global;
+        }
+        return myGlobalMatrix;
+    }
+
+    /**
+     * Whether the global matrix is cached. If it isn't, the object won't be invalidated when it 
+     * moves.
+     * 
+     * @return
+     */
+    boolean hasGlobalMatrix() {
+        return myGlobalMatrix != null;
+    }
+
+    /**
+     * Get the global position, rotation and scale, computing them from the global matrix if 
+     * they aren't cached already.
+     */
+    private Decomposition decompose() {
+        Decomposition decomposition = myDecomposition;
+        if (decomposition != null)
+            return decomposition;
+        Matrix3 global = getGlobalMatrix();
+        decomposition = new Decomposition(global);
+        // Only cache it if the matrix is cached, or it won't be invalidated
+        if (myGlobalMatrix == global)
+            myDecomposition = decomposition;
+        return decomposition;
+    }
+
+    /**
+     * Compute and cache the global transformation of this object and its ancestors, so its
+     * children can be updated in parallel without any of them writing to those caches.
+     */
+    void freezeGlobal() {
+        for (SceneObject o = this; o != null; o = o.myParent)
+            o.decompose();
+    }
+
+    /**
+     * Mark the cached global transformation of this object and all its descendants as dirty. An
+     * object that is already dirty only has dirty descendants, so there is no need to go further.
+     */
+    private void invalidate() {
+        if (myGlobalMatrix == null)
+            return;
+        myGlobalMatrix = null;
+        myGlobalFrame = null;
+        myDecomposition = null;
+        invalidateBounds();
+        if (mySpatialEntry != null)
+            mySpatialEntry.moved();
+        for (SceneObject child : myChildren) {
+            if (child != null)
+                child.invalidate();
+        }
+    }
+
     
     /**
      * Draw the object and all of its descendants recursively.
      * 
-     * TODO: Complete this method
-     * 
      * @param gl
      */
     public void draw(GL3 gl, CoordFrame2D frame) {
@@ -268,11 +791,69 @@ public class SceneObject {
             return;
         }
 
-        // TODO: Compute the coordinate frame for this object
-        // draw the object (Call drawSelf() to draw the object itself) 
-        // and all its children recursively
-       
-        
+        CoordFrame2D myFrame = frameIn(frame);
+        drawSelf(gl, myFrame);
+        for (SceneObject child : children()) {
+            child.draw(gl, myFrame);
+        }
+    }
+
+    /**
+     * Draw the object and the descendants that can be seen in the given view. The frame should
+     * be the global frame of the parent, as it is when drawing the root in the identity frame.
+     * If the view has an alpha less than 1, the objects are drawn with interpolated 
+     * transformations. Culling uses the current ones.
+     * 
+     * @param gl
+     * @param frame
+     * @param view
+     */
+    public void draw(GL3 gl, CoordFrame2D frame, View view) {
+        if (!amShowing) {
+            return;
+        }
+
+        view.visited();
+        if (!view.isVisible(getGlobalBounds())) {
+            view.culled();
+            return;
+        }
+        CoordFrame2D myFrame = frameIn(frame, view.getAlpha());
+        if (view.isVisible(mySelfBounds)) {
+            view.drawn();
+            drawSelf(gl, myFrame);
+        }
+        for (SceneObject child : children()) {
+            child.draw(gl, myFrame, view);
+        }
+    }
+
+    /**
+     * Add the object and the descendants that can be seen in the given view to the given list,
+     * with the frames they would be drawn in by draw(GL3, CoordFrame2D, View).
+     * 
+     * @param frame
+     * @param view
+     * @param list
+     */
+    void collect(CoordFrame2D frame, View view, DrawList list) {
+        if (!amShowing) {
+            return;
+        }
+
+        view.visited();
+        if (!view.isVisible(getGlobalBounds())) {
+            view.culled();
+            return;
+        }
+        CoordFrame2D myFrame = frameIn(frame, view.getAlpha());
+        if (view.isVisible(mySelfBounds)) {
+            view.drawn();
+            list.add(this, myFrame);
+        }
+        for (SceneObject child : children()) {
+            child.collect(myFrame, view, list);
+        }
     }
 
     /**
@@ -281,8 +862,7 @@ public class SceneObject {
      * @return a point in world coordinats
      */
     public Point2D getGlobalPosition() {
-        // TODO: Complete this
-        return null;
+        return decompose().position;
     }
 
     /**
@@ -292,8 +872,7 @@ public class SceneObject {
      * normalized to the range (-180, 180) degrees. 
      */
     public float getGlobalRotation() {
-        // TODO: Complete this
-        return 0;
+        return decompose().rotation;
     }
 
     /**
@@ -302,8 +881,7 @@ public class SceneObject {
      * @return the global scale of the object 
      */
     public float getGlobalScale() {
-        // TODO: Complete this
-        return 1;
+        return decompose().scale;
     }
 
     /**
@@ -312,14 +890,36 @@ public class SceneObject {
      * @param parent
      */
     public void setParent(SceneObject parent) {
-        // TODO: add code so that the object does not change its global position, rotation or scale
-        // when it is reparented. You may need to add code before and/or after 
-        // the fragment of code that has been provided - depending on your approach
+        // The saved transformation was relative to the old parent
+        myPreviousTranslation = null;
+
+        // A destroyed object's cached global transform is from when it had a parent
+        if (myParent == null)
+            invalidate();
+
+        // Keep the global position, rotation and scale the same by expressing them in the new
+        // parent's coordinate frame
+        Point2D position = getGlobalPosition();
+        float rotation = getGlobalRotation();
+        float scale = getGlobalScale();
         
-        myParent.myChildren.remove(this);
+        // A destroyed object has no parent to leave
+        if (myParent != null)
+            myParent.removeChild(this);
         myParent = parent;
-        myParent.myChildren.add(this);
+        myParent.addChild(this);
+        
+        Point2D parentPosition = parent.getGlobalPosition();
+        float parentRotation = parent.getGlobalRotation();
+        float parentScale = parent.getGlobalScale();
         
+        Matrix3 toParent = Matrix3.scale(1 / parentScale, 1 / parentScale)
+                .multiplyRotation(-parentRotation)
+                .multiplyTranslation(-parentPosition.getX(), -parentPosition.getY());
+        myTranslation = toParent.multiply(position.asHomogenous()).asPoint2D();
+        myRotation = MathUtil.normaliseAngle(rotation - parentRotation);
+        myScale = scale / parentScale;
+        invalidate();
     }
     
 
@@ -0,0 +1,111 @@
+package unsw.graphics.scene;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs the updates of a scene on a thread of their own, one frame ahead of the drawing.
+ *
+ * There are two DrawLists. While the GL thread draws frame N from one, the update thread updates
+ * the tree to frame N+1 and records it in the other. When the GL thread is ready for the next
+ * frame it waits for frame N+1, gives back the list it has finished with, and wakes the update
+ * thread to start on frame N+2. So a frame takes as long as the longer of the update and the
+ * drawing, rather than both.
+ *
+ * The lists are handed over through two atomic references, with no locks. A thread with nothing
+ * to do parks until the other one unparks it.
+ *
+ * @author Robert Clifton-Everest
+ */
+class ScenePipeline implements Runnable {
+
+    private final Scene myScene;
+
+    // A finished list waiting to be drawn, and a drawn list waiting to be filled
+    private final AtomicReference<DrawList> myReady;
+    private final AtomicReference<DrawList> myFree;
+
+    // The list being drawn by the GL thread
+    private DrawList myDrawing;
+
+    private final Thread myThread;
+    private volatile Thread myGLThread;
+    private volatile boolean amRunning;
+    private volatile Throwable myError;
+
+    ScenePipeline(Scene scene) {
+        myScene = scene;
+        myReady = new AtomicReference<DrawList>();
+        myFree = new AtomicReference<DrawList>(new DrawList());
+        myDrawing = new DrawList();
+        myThread = new Thread(this, "Scene update");
+        myThread.setDaemon(true);
+    }
+
+    void start() {
+        amRunning = true;
+        myThread.start();
+    }
+
+    /**
+     * Stop the update thread, after it finishes the update it is working on.
+     */
+    void stop() {
+        amRunning = false;
+        LockSupport.unpark(myThread);
+        boolean interrupted = false;
+        while (myThread.isAlive()) {
+            try {
+                myThread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Wait for the next frame, and start the update of the one after it. Called on the GL
+     * thread.
+     *
+     * @return The list for the next frame, to be drawn before this is called again
+     */
+    DrawList next() {
+        myGLThread = Thread.currentThread();
+        DrawList next;
+        while ((next = myReady.getAndSet(null)) == null) {
+            checkError();
+            LockSupport.park(this);
+        }
+        myFree.set(myDrawing);
+        LockSupport.unpark(myThread);
+        myDrawing = next;
+        return next;
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (amRunning) {
+                DrawList list = myFree.getAndSet(null);
+                if (list == null) {
+                    LockSupport.park(this);
+                    continue;
+                }
+                myScene.updateAndRecord(list);
+                myReady.set(list);
+                LockSupport.unpark(myGLThread);
+            }
+        } catch (Throwable e) {
+            myError = e;
+            LockSupport.unpark(myGLThread);
+        }
+    }
+
+    private void checkError() {
+        Throwable e = myError;
+        if (e != null)
+            throw new RuntimeException("Scene update failed", e);
+    }
+}
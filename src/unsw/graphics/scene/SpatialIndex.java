@@ -0,0 +1,504 @@
+package unsw.graphics.scene;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An index of SceneObjects by where they are in the world, for finding the objects near a point,
+ * in a rectangle or along a ray without looking at every object.
+ *
+ * Each object is given a bounding circle, centred on its origin, with a radius in its own
+ * coordinate frame. The index keeps the global circles in a uniform grid of square cells, each
+ * object in every cell its circle overlaps. The cells are hashed into a table of buckets, so the
+ * world doesn't need to have fixed bounds.
+ *
+ * Moving an object tells the index, through the same dirty flags that cache the global
+ * transformations, and only the objects that have moved are put back in the grid at the start
+ * of the next query. The cell size should be around the size of the objects. Much smaller and
+ * objects cover many cells. Much larger and each cell holds many objects.
+ *
+ * An object can only be in one index. Destroying an object doesn't remove it from the index.
+ * Objects in the index can be moved by a parallel update, but the index must not be queried or
+ * changed while one is running.
+ *
+ * @author Robert Clifton-Everest
+ */
+public class SpatialIndex<T extends SceneObject> {
+
+    private static final int INITIAL_BUCKETS = 64;
+
+    /**
+     * An object in the index, with its global bounding circle and the cells it is in.
+     */
+    static final class Entry {
+        final SpatialIndex<?> index;
+        final SceneObject object;
+        final float localRadius;
+
+        float x, y, radius;
+        int minI, minJ, maxI, maxJ;
+
+        // The position of this entry in the list of entries
+        int slot;
+        // The last query that looked at this entry, so it is only looked at once per query
+        int stamp;
+        boolean amMoved;
+
+        Entry(SpatialIndex<?> index, SceneObject object, float localRadius) {
+            this.index = index;
+            this.object = object;
+            this.localRadius = localRadius;
+            minI = minJ = 0;
+            maxI = maxJ = -1;
+        }
+
+        /**
+         * Called when the global transformation of the object becomes dirty.
+         */
+        void moved() {
+            index.moved(this);
+        }
+    }
+
+    private static final class Bucket {
+        Entry[] entries = new Entry[4];
+        int size;
+
+        void add(Entry e) {
+            if (size == entries.length)
+                entries = Arrays.copyOf(entries, size * 2);
+            entries[size++] = e;
+        }
+
+        void remove(Entry e) {
+            for (int k = 0; k < size; k++) {
+                if (entries[k] == e) {
+                    entries[k] = entries[--size];
+                    entries[size] = null;
+                    return;
+                }
+            }
+        }
+    }
+
+    private final float myCellSize;
+
+    private Bucket[] myBuckets;
+    private final List<Entry> myEntries;
+    private final List<Entry> myMoved;
+    private int myStamp;
+
+    // The range of cells that have ever held an object. Rays and nearest neighbour searches stop
+    // when they leave it.
+    private int myMinI, myMinJ, myMaxI, myMaxJ;
+
+    private final float[] myMatrix = new float[9];
+
+    /**
+     * Create an empty index.
+     *
+     * @param cellSize The width and height of the cells of the grid, in world coordinates
+     */
+    public SpatialIndex(float cellSize) {
+        if (!(cellSize > 0))
+            throw new IllegalArgumentException("Cell size must be positive");
+        myCellSize = cellSize;
+        myBuckets = new Bucket[INITIAL_BUCKETS];
+        myEntries = new ArrayList<Entry>();
+        myMoved = new ArrayList<Entry>();
+        myMinI = myMinJ = Integer.MAX_VALUE;
+        myMaxI = myMaxJ = Integer.MIN_VALUE;
+    }
+
+    /**
+     * Add an object to the index.
+     *
+     * @param object
+     * @param radius The radius of the bounding circle, in the object's coordinate frame
+     */
+    public void add(T object, float radius) {
+        if (object.mySpatialEntry != null)
+            throw new IllegalArgumentException("Object is already in an index");
+        Entry e = new Entry(this, object, radius);
+        e.slot = myEntries.size();
+        myEntries.add(e);
+        object.mySpatialEntry = e;
+        if (myEntries.size() > myBuckets.length * 2)
+            rehash(myBuckets.length * 4);
+        moved(e);
+    }
+
+    /**
+     * Remove an object from the index. Does nothing if it isn't in it.
+     *
+     * @param object
+     */
+    public void remove(T object) {
+        Entry e = object.mySpatialEntry;
+        if (e == null || e.index != this)
+            return;
+        unplace(e);
+        Entry last = myEntries.remove(myEntries.size() - 1);
+        if (last != e) {
+            last.slot = e.slot;
+            myEntries.set(e.slot, last);
+        }
+        if (e.amMoved)
+            myMoved.remove(e);
+        object.mySpatialEntry = null;
+    }
+
+    public boolean contains(T object) {
+        return object.mySpatialEntry != null && object.mySpatialEntry.index == this;
+    }
+
+    /**
+     * The number of objects in the index.
+     *
+     * @return
+     */
+    public int size() {
+        return myEntries.size();
+    }
+
+    /**
+     * Find the objects whose bounding circles overlap the given rectangle, in world coordinates.
+     *
+     * @param minX
+     * @param minY
+     * @param maxX
+     * @param maxY
+     * @param result The list to add the objects to
+     * @return result
+     */
+    public List<T> queryRange(float minX, float minY, float maxX, float maxY, List<T> result) {
+        refresh();
+        int stamp = ++myStamp;
+        int minI = cell(minX), minJ = cell(minY), maxI = cell(maxX), maxJ = cell(maxY);
+        if ((long) (maxI - minI + 1) * (maxJ - minJ + 1) > myEntries.size()) {
+            // Fewer objects than cells, so look at each object
+            for (Entry e : myEntries)
+                if (overlapsRange(e, minX, minY, maxX, maxY))
+                    result.add(object(e));
+            return result;
+        }
+        for (int i = minI; i <= maxI; i++) {
+            for (int j = minJ; j <= maxJ; j++) {
+                Bucket bucket = myBuckets[hash(i, j)];
+                if (bucket == null)
+                    continue;
+                for (int k = 0; k < bucket.size; k++) {
+                    Entry e = bucket.entries[k];
+                    if (e.stamp == stamp)
+                        continue;
+                    e.stamp = stamp;
+                    if (overlapsRange(e, minX, minY, maxX, maxY))
+                        result.add(object(e));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Find the objects whose bounding circles overlap the given circle, in world coordinates.
+     *
+     * @param x
+     * @param y
+     * @param radius
+     * @param result The list to add the objects to
+     * @return result
+     */
+    public List<T> queryRadius(float x, float y, float radius, List<T> result) {
+        refresh();
+        int stamp = ++myStamp;
+        int minI = cell(x - radius), minJ = cell(y - radius);
+        int maxI = cell(x + radius), maxJ = cell(y + radius);
+        if ((long) (maxI - minI + 1) * (maxJ - minJ + 1) > myEntries.size()) {
+            for (Entry e : myEntries)
+                if (overlapsCircle(e, x, y, radius))
+                    result.add(object(e));
+            return result;
+        }
+        for (int i = minI; i <= maxI; i++) {
+            for (int j = minJ; j <= maxJ; j++) {
+                Bucket bucket = myBuckets[hash(i, j)];
+                if (bucket == null)
+                    continue;
+                for (int k = 0; k < bucket.size; k++) {
+                    Entry e = bucket.entries[k];
+                    if (e.stamp == stamp)
+                        continue;
+                    e.stamp = stamp;
+                    if (overlapsCircle(e, x, y, radius))
+                        result.add(object(e));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Find the first object whose bounding circle is hit by the given ray, in world coordinates.
+     * The grid is walked cell by cell from the origin, so only the cells the ray passes through
+     * are looked at. An object the origin is inside is hit at distance 0.
+     *
+     * @param x The origin of the ray
+     * @param y
+     * @param dx The direction of the ray. Need not be normalised.
+     * @param dy
+     * @param maxDistance How far along the ray to look
+     * @return The object, or null if the ray doesn't hit anything
+     */
+    public T raycast(float x, float y, float dx, float dy, float maxDistance) {
+        refresh();
+        float length = (float) Math.sqrt(dx * dx + dy * dy);
+        if (length == 0 || myEntries.isEmpty())
+            return null;
+        dx /= length;
+        dy /= length;
+
+        int stamp = ++myStamp;
+        int i = cell(x), j = cell(y);
+        int stepI = dx > 0 ? 1 : -1, stepJ = dy > 0 ? 1 : -1;
+        // The distance along the ray to the next vertical and horizontal cell boundaries, and
+        // between boundaries
+        float nextI = dx == 0 ? Float.POSITIVE_INFINITY
+                : ((i + (dx > 0 ? 1 : 0)) * myCellSize - x) / dx;
+        float nextJ = dy == 0 ? Float.POSITIVE_INFINITY
+                : ((j + (dy > 0 ? 1 : 0)) * myCellSize - y) / dy;
+        float deltaI = dx == 0 ? Float.POSITIVE_INFINITY : myCellSize / Math.abs(dx);
+        float deltaJ = dy == 0 ? Float.POSITIVE_INFINITY : myCellSize / Math.abs(dy);
+
+        Entry best = null;
+        float bestT = maxDistance;
+        float t = 0;
+        while (t <= bestT) {
+            Bucket bucket = myBuckets[hash(i, j)];
+            if (bucket != null) {
+                for (int k = 0; k < bucket.size; k++) {
+                    Entry e = bucket.entries[k];
+                    if (e.stamp == stamp)
+                        continue;
+                    e.stamp = stamp;
+                    float hit = intersectRay(e, x, y, dx, dy);
+                    if (hit <= bestT) {
+                        best = e;
+                        bestT = hit;
+                    }
+                }
+            }
+
+            // Step into the next cell, unless the ray has left the occupied cells for good
+            if (nextI < nextJ) {
+                t = nextI;
+                nextI += deltaI;
+                i += stepI;
+                if (stepI > 0 ? i > myMaxI : i < myMinI)
+                    break;
+            } else {
+                t = nextJ;
+                nextJ += deltaJ;
+                j += stepJ;
+                if (stepJ > 0 ? j > myMaxJ : j < myMinJ)
+                    break;
+            }
+        }
+        return best == null ? null : object(best);
+    }
+
+    /**
+     * Find the object whose bounding circle is closest to the given point, in world
+     * coordinates. The search looks at rings of cells around the point, moving outwards until
+     * no unseen object can be closer than the best one found. Only the cells that have held
+     * objects are looked at, so a point far from all of them costs no more than one near them.
+     *
+     * @param x
+     * @param y
+     * @param maxDistance How far from the point to look
+     * @return The object, or null if there are none within maxDistance
+     */
+    public T nearest(float x, float y, float maxDistance) {
+        refresh();
+        if (myEntries.isEmpty())
+            return null;
+        int stamp = ++myStamp;
+        int ci = cell(x), cj = cell(y);
+
+        // Start at the first ring that reaches the occupied cells, as the ones inside it are empty
+        int start = Math.max(Math.max(myMinI - ci, ci - myMaxI),
+                Math.max(myMinJ - cj, cj - myMaxJ));
+
+        Entry best = null;
+        float bestDistance = maxDistance;
+        for (int ring = Math.max(0, start);; ring++) {
+            int minI = ci - ring, maxI = ci + ring, minJ = cj - ring, maxJ = cj + ring;
+            // Only the part of the ring over the occupied cells, the rest is empty
+            for (int i = Math.max(minI, myMinI); i <= Math.min(maxI, myMaxI); i++) {
+                // Only the edges of the ring, the inside has been looked at already
+                boolean edge = i == minI || i == maxI;
+                int step = edge ? 1 : maxJ - minJ;
+                int last = edge ? Math.min(maxJ, myMaxJ) : maxJ;
+                for (int j = edge ? Math.max(minJ, myMinJ) : minJ; j <= last; j += step) {
+                    if (j < myMinJ || j > myMaxJ)
+                        continue;
+                    Bucket bucket = myBuckets[hash(i, j)];
+                    if (bucket == null)
+                        continue;
+                    for (int k = 0; k < bucket.size; k++) {
+                        Entry e = bucket.entries[k];
+                        if (e.stamp == stamp)
+                            continue;
+                        e.stamp = stamp;
+                        float d = distance(e, x, y);
+                        if (d <= bestDistance) {
+                            best = e;
+                            bestDistance = d;
+                        }
+                    }
+                }
+            }
+            // Anything not seen yet is at least this far away
+            float reached = ring * myCellSize;
+            if (reached >= bestDistance)
+                break;
+            if (minI <= myMinI && maxI >= myMaxI && minJ <= myMinJ && maxJ >= myMaxJ)
+                break;
+        }
+        return best == null ? null : object(best);
+    }
+
+    /**
+     * Mark an entry as needing to be put back in the grid.
+     */
+    private void moved(Entry e) {
+        synchronized (myMoved) {
+            if (!e.amMoved) {
+                e.amMoved = true;
+                myMoved.add(e);
+            }
+        }
+    }
+
+    /**
+     * Put the objects that have moved back in the grid.
+     */
+    private void refresh() {
+        int n = 0;
+        for (int k = 0; k < myMoved.size(); k++) {
+            Entry e = myMoved.get(k);
+            place(e);
+            if (e.object.hasGlobalMatrix()) {
+                e.amMoved = false;
+            } else {
+                // The object's transformation isn't cached, so it won't say when it moves
+                myMoved.set(n++, e);
+            }
+        }
+        myMoved.subList(n, myMoved.size()).clear();
+    }
+
+    /**
+     * Compute the global bounding circle of an entry and move it to the cells it covers.
+     */
+    private void place(Entry e) {
+        e.object.getGlobalMatrix().getValues(myMatrix, 0);
+        e.x = myMatrix[6];
+        e.y = myMatrix[7];
+        e.radius = e.localRadius
+                * (float) Math.sqrt(myMatrix[0] * myMatrix[0] + myMatrix[1] * myMatrix[1]);
+
+        int minI = cell(e.x - e.radius), minJ = cell(e.y - e.radius);
+        int maxI = cell(e.x + e.radius), maxJ = cell(e.y + e.radius);
+        if (minI == e.minI && minJ == e.minJ && maxI == e.maxI && maxJ == e.maxJ)
+            return;
+
+        unplace(e);
+        e.minI = minI;
+        e.minJ = minJ;
+        e.maxI = maxI;
+        e.maxJ = maxJ;
+        for (int i = minI; i <= maxI; i++) {
+            for (int j = minJ; j <= maxJ; j++) {
+                int h = hash(i, j);
+                if (myBuckets[h] == null)
+                    myBuckets[h] = new Bucket();
+                myBuckets[h].add(e);
+            }
+        }
+        myMinI = Math.min(myMinI, minI);
+        myMinJ = Math.min(myMinJ, minJ);
+        myMaxI = Math.max(myMaxI, maxI);
+        myMaxJ = Math.max(myMaxJ, maxJ);
+    }
+
+    /**
+     * Take an entry out of all the cells it is in.
+     */
+    private void unplace(Entry e) {
+        for (int i = e.minI; i <= e.maxI; i++)
+            for (int j = e.minJ; j <= e.maxJ; j++)
+                myBuckets[hash(i, j)].remove(e);
+        e.minI = e.minJ = 0;
+        e.maxI = e.maxJ = -1;
+    }
+
+    private void rehash(int buckets) {
+        refresh();
+        for (Entry e : myEntries)
+            unplace(e);
+        myBuckets = new Bucket[buckets];
+        for (Entry e : myEntries)
+            place(e);
+    }
+
+    private int cell(float coordinate) {
+        return (int) Math.floor(coordinate / myCellSize);
+    }
+
+    private int hash(int i, int j) {
+        return (i * 73856093 ^ j * 19349663) & (myBuckets.length - 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T object(Entry e) {
+        return (T) e.object;
+    }
+
+    private static boolean overlapsRange(Entry e, float minX, float minY, float maxX,
+            float maxY) {
+        float dx = Math.max(minX, Math.min(e.x, maxX)) - e.x;
+        float dy = Math.max(minY, Math.min(e.y, maxY)) - e.y;
+        return dx * dx + dy * dy <= e.radius * e.radius;
+    }
+
+    private static boolean overlapsCircle(Entry e, float x, float y, float radius) {
+        float dx = e.x - x, dy = e.y - y, r = e.radius + radius;
+        return dx * dx + dy * dy <= r * r;
+    }
+
+    /**
+     * The distance from the point to the bounding circle of an entry, 0 if it is inside.
+     */
+    private static float distance(Entry e, float x, float y) {
+        float dx = e.x - x, dy = e.y - y;
+        return Math.max(0, (float) Math.sqrt(dx * dx + dy * dy) - e.radius);
+    }
+
+    /**
+     * The distance along a ray with a normalised direction to where it enters the bounding
+     * circle of an entry, 0 if it starts inside it, or infinity if it misses.
+     */
+    private static float intersectRay(Entry e, float x, float y, float dx, float dy) {
+        float ox = x - e.x, oy = y - e.y;
+        float c = ox * ox + oy * oy - e.radius * e.radius;
+        if (c <= 0)
+            return 0;
+        float b = ox * dx + oy * dy;
+        float discriminant = b * b - c;
+        if (b > 0 || discriminant < 0)
+            return Float.POSITIVE_INFINITY;
+        return -b - (float) Math.sqrt(discriminant);
+    }
+}
@@ -0,0 +1,114 @@
+package unsw.graphics.scene;
+
+import unsw.graphics.geometry.BoundingRectangle;
+
+/**
+ * The part of the world a camera can see, used to skip the parts of the scene tree that can't
+ * be seen when drawing it.
+ *
+ * A subtree is skipped if its global bounds are outside the view, or are smaller than a pixel.
+ * The view also counts how many objects were visited, culled and drawn, so the cost of drawing
+ * can be compared with what is on screen.
+ *
+ * When the scene is updated in fixed time steps, the view also says how far the drawing is 
+ * between the last two steps, so the objects can be drawn where they would be at that time.
+ *
+ * @author Robert Clifton-Everest
+ */
+public class View {
+
+    private final BoundingRectangle myBounds;
+    private final float myPixelSize;
+    private final float myAlpha;
+
+    private int myVisitedCount;
+    private int myCulledCount;
+    private int myDrawnCount;
+
+    /**
+     * Create a view.
+     *
+     * @param bounds The part of the world that can be seen, in world coordinates
+     * @param pixelSize The size of a pixel in world coordinates
+     */
+    public View(BoundingRectangle bounds, float pixelSize) {
+        this(bounds, pixelSize, 1);
+    }
+
+    /**
+     * Create a view that draws objects between their last two fixed time steps.
+     *
+     * @param bounds The part of the world that can be seen, in world coordinates
+     * @param pixelSize The size of a pixel in world coordinates
+     * @param alpha How far between the steps, from 0 (the previous one) to 1 (the current one)
+     */
+    public View(BoundingRectangle bounds, float pixelSize, float alpha) {
+        myBounds = bounds;
+        myPixelSize = pixelSize;
+        myAlpha = alpha;
+    }
+
+    public BoundingRectangle getBounds() {
+        return myBounds;
+    }
+
+    public float getPixelSize() {
+        return myPixelSize;
+    }
+
+    public float getAlpha() {
+        return myAlpha;
+    }
+
+    /**
+     * Test if anything with the given bounds, in world coordinates, can be seen. Null bounds
+     * can't be seen.
+     *
+     * @param bounds
+     * @return
+     */
+    public boolean isVisible(BoundingRectangle bounds) {
+        return bounds != null && bounds.intersects(myBounds)
+                && Math.max(bounds.getWidth(), bounds.getHeight()) >= myPixelSize;
+    }
+
+    /**
+     * The number of showing objects reached while drawing.
+     *
+     * @return
+     */
+    public int getVisitedCount() {
+        return myVisitedCount;
+    }
+
+    /**
+     * The number of objects skipped, along with their descendants, because they couldn't be
+     * seen.
+     *
+     * @return
+     */
+    public int getCulledCount() {
+        return myCulledCount;
+    }
+
+    /**
+     * The number of objects that drew themselves.
+     *
+     * @return
+     */
+    public int getDrawnCount() {
+        return myDrawnCount;
+    }
+
+    void visited() {
+        myVisitedCount++;
+    }
+
+    void culled() {
+        myCulledCount++;
+    }
+
+    void drawn() {
+        myDrawnCount++;
+    }
+}
@@ -0,0 +1,111 @@
+package unsw.graphics.scene.tests;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import unsw.graphics.scene.SceneObject;
+import unsw.graphics.scene.SpatialIndex;
+
+/**
+ * Compares finding the pairs of overlapping ships in a stress scene by testing every pair with
+ * finding them using a SpatialIndex.
+ *
+ * The ships are the size of a merchant, spread over a square sea, and move every frame.
+ *
+ * @author Robert Clifton-Everest
+ */
+public class CollisionBenchmark {
+
+    private static final int[] COUNTS = { 1000, 10000 };
+
+    // Roughly the radius of a merchant ship
+    private static final float RADIUS = 1.6f;
+
+    // Ships per square unit of sea
+    private static final float DENSITY = 0.01f;
+
+    private static final int FRAMES = 20;
+
+    public static void main(String[] args) {
+        // Warm up
+        run(COUNTS[0], false);
+
+        System.out.printf("%8s %12s %12s %8s%n", "ships", "all pairs", "index", "pairs");
+        for (int count : COUNTS)
+            run(count, true);
+        System.out.println("(ms per frame, including moving the ships)");
+    }
+
+    private static void run(int count, boolean print) {
+        Random random = new Random(42);
+        float size = (float) Math.sqrt(count / DENSITY);
+
+        SceneObject root = new SceneObject();
+        List<SceneObject> ships = new ArrayList<SceneObject>();
+        float[] headings = new float[count];
+        SpatialIndex<SceneObject> index = new SpatialIndex<SceneObject>(4 * RADIUS);
+        for (int i = 0; i < count; i++) {
+            SceneObject ship = new SceneObject(root);
+            ship.setPosition(random.nextFloat() * size, random.nextFloat() * size);
+            ships.add(ship);
+            index.add(ship, RADIUS);
+            headings[i] = random.nextFloat() * 360;
+        }
+
+        long start = System.nanoTime();
+        int pairs = 0;
+        for (int frame = 0; frame < FRAMES; frame++) {
+            move(ships, headings);
+            pairs = allPairs(ships);
+        }
+        double allPairs = (System.nanoTime() - start) / 1e6 / FRAMES;
+
+        start = System.nanoTime();
+        int indexPairs = 0;
+        List<SceneObject> found = new ArrayList<SceneObject>();
+        for (int frame = 0; frame < FRAMES; frame++) {
+            move(ships, headings);
+            indexPairs = 0;
+            for (SceneObject ship : ships) {
+                found.clear();
+                float x = ship.getGlobalPosition().getX(), y = ship.getGlobalPosition().getY();
+                indexPairs += index.queryRadius(x, y, RADIUS, found).size() - 1;
+            }
+            indexPairs /= 2;
+        }
+        double indexed = (System.nanoTime() - start) / 1e6 / FRAMES;
+
+        if (print)
+            System.out.printf("%8d %12.2f %12.2f %8d%n", count, allPairs, indexed, indexPairs);
+        if (pairs < 0)
+            System.out.println();
+    }
+
+    private static void move(List<SceneObject> ships, float[] headings) {
+        for (int i = 0; i < ships.size(); i++) {
+            double angle = Math.toRadians(headings[i]);
+            ships.get(i).translate((float) Math.cos(angle) * 0.1f,
+                    (float) Math.sin(angle) * 0.1f);
+        }
+    }
+
+    private static int allPairs(List<SceneObject> ships) {
+        int n = ships.size();
+        float[] x = new float[n], y = new float[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = ships.get(i).getGlobalPosition().getX();
+            y[i] = ships.get(i).getGlobalPosition().getY();
+        }
+        float d = 2 * RADIUS;
+        int pairs = 0;
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                float dx = x[i] - x[j], dy = y[i] - y[j];
+                if (dx * dx + dy * dy <= d * d)
+                    pairs++;
+            }
+        }
+        return pairs;
+    }
+}
@@ -0,0 +1,143 @@
+package unsw.graphics.scene.tests;
+
+import com.jogamp.opengl.GL3;
+
+import unsw.graphics.CoordFrame2D;
+import unsw.graphics.geometry.BoundingRectangle;
+import unsw.graphics.scene.SceneObject;
+import unsw.graphics.scene.View;
+
+/**
+ * Measures drawing maps of different sizes through a fixed view, with and without culling.
+ *
+ * Each map is a square sea of ships, each with a sail, spread evenly so the view always holds
+ * about the same number. Drawing an object here only counts it, so the times are the cost of
+ * walking the tree, not of drawing.
+ *
+ * The ships are either all children of the root, or grouped into regions of the map. Culling a
+ * flat tree still looks at the bounds of every ship, so it only saves the drawing. Culling the
+ * regions skips whole subtrees, so the cost follows the number of objects in view rather than
+ * the size of the map.
+ *
+ * The last column moves one in a hundred ships, all over the map, before each frame. The bounds
+ * of every region a ship moved in, and of the root, are computed again, so that cost follows the
+ * number of objects that move.
+ *
+ * @author Robert Clifton-Everest
+ */
+public class CullingBenchmark {
+
+    private static final int[] SHIPS = { 1000, 10000, 100000 };
+
+    // Ships per square unit of sea
+    private static final float DENSITY = 0.01f;
+
+    // The view of the camera in the sailing game, at a scale of 10
+    private static final BoundingRectangle VIEW = new BoundingRectangle(-13, -10, 13, 10);
+
+    // The width and height of a region
+    private static final float REGION = 50;
+
+    private static final int FRAMES = 100;
+
+    // Stops the JIT from optimising the drawing away
+    private static int draws;
+
+    private static class Shape extends SceneObject {
+        private final BoundingRectangle myBounds;
+
+        Shape(SceneObject parent, float size) {
+            super(parent);
+            myBounds = new BoundingRectangle(-size, -size, size, size);
+        }
+
+        @Override
+        public BoundingRectangle getLocalBounds() {
+            return myBounds;
+        }
+
+        @Override
+        public void drawSelf(GL3 gl, CoordFrame2D frame) {
+            draws++;
+        }
+    }
+
+    public static void main(String[] args) {
+        // Warm up
+        run(SHIPS[0], false);
+
+        System.out.printf("%8s %8s %8s %8s %8s %8s %8s%n", "ships", "visited", "drawn", "all",
+                "flat", "regions", "moving");
+        for (int ships : SHIPS)
+            run(ships, true);
+        System.out.println("(ms per frame)");
+    }
+
+    private static void run(int count, boolean print) {
+        SceneObject flat = new SceneObject();
+        Shape[] flatShips = makeShips(flat, count, false);
+        SceneObject grouped = new SceneObject();
+        Shape[] groupedShips = makeShips(grouped, count, true);
+
+        long start = System.nanoTime();
+        for (int frame = 0; frame < FRAMES; frame++)
+            flat.draw((GL3) null, CoordFrame2D.identity());
+        double all = (System.nanoTime() - start) / 1e6 / FRAMES;
+
+        start = System.nanoTime();
+        for (int frame = 0; frame < FRAMES; frame++)
+            flat.draw((GL3) null, CoordFrame2D.identity(), new View(VIEW, 0.01f));
+        double culledFlat = (System.nanoTime() - start) / 1e6 / FRAMES;
+
+        View view = null;
+        start = System.nanoTime();
+        for (int frame = 0; frame < FRAMES; frame++) {
+            view = new View(VIEW, 0.01f);
+            grouped.draw((GL3) null, CoordFrame2D.identity(), view);
+        }
+        double culledRegions = (System.nanoTime() - start) / 1e6 / FRAMES;
+
+        start = System.nanoTime();
+        for (int frame = 0; frame < FRAMES; frame++) {
+            move(groupedShips, frame);
+            grouped.draw((GL3) null, CoordFrame2D.identity(), new View(VIEW, 0.01f));
+        }
+        double moving = (System.nanoTime() - start) / 1e6 / FRAMES;
+
+        if (print)
+            System.out.printf("%8d %8d %8d %8.3f %8.3f %8.3f %8.3f%n", count,
+                    view.getVisitedCount(), view.getDrawnCount(), all, culledFlat,
+                    culledRegions, moving);
+    }
+
+    /**
+     * Spread ships evenly over a square sea centred on the origin, either as children of the
+     * root or of the region they are in.
+     */
+    private static Shape[] makeShips(SceneObject root, int count, boolean regions) {
+        Shape[] ships = new Shape[count];
+        float size = (float) Math.sqrt(count / DENSITY);
+        int side = (int) Math.ceil(Math.sqrt(count));
+        int regionsPerSide = (int) Math.ceil(size / REGION);
+        SceneObject[] groups = new SceneObject[regionsPerSide * regionsPerSide];
+        for (int i = 0; i < count; i++) {
+            float x = (i % side) * size / side, y = (i / side) * size / side;
+            SceneObject parent = root;
+            if (regions) {
+                int region = (int) (x / REGION) + (int) (y / REGION) * regionsPerSide;
+                if (groups[region] == null)
+                    groups[region] = new SceneObject(root);
+                parent = groups[region];
+            }
+            ships[i] = new Shape(parent, 1.5f);
+            ships[i].setPosition(x - size / 2, y - size / 2);
+            new Shape(ships[i], 0.5f);
+        }
+        return ships;
+    }
+
+    private static void move(Shape[] ships, int frame) {
+        for (int i = frame % 100; i < ships.length; i += 100)
+            ships[i].rotate(1);
+    }
+}
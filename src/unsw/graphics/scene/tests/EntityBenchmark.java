@@ -0,0 +1,105 @@
+package unsw.graphics.scene.tests;
+
+import java.util.concurrent.ForkJoinPool;
+
+import unsw.graphics.ecs.EntityLayer;
+import unsw.graphics.ecs.EntityStore;
+import unsw.graphics.ecs.LifetimeSystem;
+import unsw.graphics.ecs.MovementSystem;
+import unsw.graphics.scene.SceneObject;
+
+/**
+ * Compares updating 100,000 moving objects as a tree of SceneObjects with updating them as
+ * entities, on one thread and on all of them.
+ *
+ * Each object moves at a constant velocity, turns, and counts down a lifetime that never runs
+ * out, like a cannonball.
+ *
+ * @author Robert Clifton-Everest
+ */
+public class EntityBenchmark {
+
+    private static final int COUNT = 100000;
+
+    private static final int FRAMES = 200;
+
+    private static final float DT = 1 / 60f;
+
+    /**
+     * A SceneObject that moves like a cannonball.
+     */
+    private static class Mover extends SceneObject {
+        private final float myVelocityX, myVelocityY;
+        private float myLifetime = Float.POSITIVE_INFINITY;
+
+        Mover(SceneObject parent, float vx, float vy) {
+            super(parent);
+            myVelocityX = vx;
+            myVelocityY = vy;
+        }
+
+        @Override
+        public void updateSelf(float dt) {
+            myLifetime -= dt;
+            translate(myVelocityX * dt, myVelocityY * dt);
+            rotate(90 * dt);
+        }
+    }
+
+    public static void main(String[] args) {
+        SceneObject tree = new SceneObject();
+        for (int i = 0; i < COUNT; i++)
+            new Mover(tree, velocityX(i), velocityY(i));
+
+        EntityLayer sequential = layer(false);
+        EntityLayer parallel = layer(true);
+
+        // Warm up
+        time(tree);
+        time(sequential);
+        time(parallel);
+
+        System.out.printf("%,d objects, ms per update%n", COUNT);
+        System.out.printf("%-24s %8.2f%n", "SceneObject tree", time(tree));
+        System.out.printf("%-24s %8.2f%n", "Entities, 1 thread", time(sequential));
+        System.out.printf("%-24s %8.2f%n",
+                "Entities, parallel (" + ForkJoinPool.getCommonPoolParallelism() + ")",
+                time(parallel));
+    }
+
+    private static EntityLayer layer(boolean parallel) {
+        EntityLayer layer = new EntityLayer(new SceneObject());
+        MovementSystem movement = new MovementSystem();
+        LifetimeSystem lifetime = new LifetimeSystem();
+        movement.setParallel(parallel);
+        lifetime.setParallel(parallel);
+        layer.addSystem(movement);
+        layer.addSystem(lifetime);
+
+        EntityStore store = layer.getStore();
+        for (int i = 0; i < COUNT; i++) {
+            int id = store.create(EntityStore.TRANSFORM | EntityStore.VELOCITY
+                    | EntityStore.LIFETIME);
+            store.setVelocity(id, velocityX(i), velocityY(i), 90);
+        }
+        return layer;
+    }
+
+    private static float velocityX(int i) {
+        return (float) Math.cos(i);
+    }
+
+    private static float velocityY(int i) {
+        return (float) Math.sin(i);
+    }
+
+    /**
+     * The mean time to update the given object, in milliseconds.
+     */
+    private static double time(SceneObject object) {
+        long start = System.nanoTime();
+        for (int i = 0; i < FRAMES; i++)
+            object.update(DT);
+        return (System.nanoTime() - start) / 1e6 / FRAMES;
+    }
+}
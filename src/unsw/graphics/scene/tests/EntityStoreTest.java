@@ -0,0 +1,169 @@
+package unsw.graphics.scene.tests;
+
+import java.awt.Color;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+import unsw.graphics.ecs.EntityStore;
+import unsw.graphics.ecs.ParallelSystem;
+import unsw.graphics.geometry.Polygon2D;
+
+/**
+ * Tests for EntityStore.
+ *
+ * @author Robert Clifton-Everest
+ */
+public class EntityStoreTest extends TestCase {
+
+    private static final int ALL = EntityStore.TRANSFORM | EntityStore.VELOCITY
+            | EntityStore.LIFETIME | EntityStore.POLYGON | EntityStore.ATTACHMENT;
+
+    private EntityStore store;
+
+    @Override
+    protected void setUp() {
+        store = new EntityStore();
+    }
+
+    /**
+     * Check that every index and id agree with each other.
+     */
+    private void assertConsistent() {
+        for (int i = 0; i < store.size(); i++)
+            assertEquals(i, store.indexOf(store.getId(i)));
+    }
+
+    @Test
+    public void testDestroyMovesLast() {
+        int[] ids = new int[5];
+        for (int k = 0; k < ids.length; k++) {
+            ids[k] = store.create(EntityStore.TRANSFORM);
+            store.setTransform(ids[k], k, 0, 0, 1);
+        }
+
+        // The last entity fills the gap in the middle
+        store.destroy(ids[1]);
+        assertEquals(4, store.size());
+        assertFalse(store.isAlive(ids[1]));
+        assertEquals(-1, store.indexOf(ids[1]));
+        assertEquals(1, store.indexOf(ids[4]));
+        assertEquals(ids[4], store.getId(1));
+        assertEquals(4, store.getX()[1], 0);
+        assertConsistent();
+
+        // Destroying it again does nothing
+        store.destroy(ids[1]);
+        assertEquals(4, store.size());
+
+        // Destroying the last entity doesn't move anything
+        store.destroy(ids[3]);
+        assertEquals(3, store.size());
+        assertEquals(0, store.indexOf(ids[0]));
+        assertEquals(1, store.indexOf(ids[4]));
+        assertEquals(2, store.indexOf(ids[2]));
+        assertConsistent();
+    }
+
+    @Test
+    public void testDestroyAttached() {
+        int parent = store.create(EntityStore.TRANSFORM);
+        int other = store.create(EntityStore.TRANSFORM);
+        int child1 = store.create(EntityStore.TRANSFORM | EntityStore.ATTACHMENT);
+        int unrelated = store.create(EntityStore.TRANSFORM);
+        int child2 = store.create(EntityStore.TRANSFORM | EntityStore.ATTACHMENT);
+        int moved = store.create(EntityStore.TRANSFORM | EntityStore.ATTACHMENT);
+        store.setAttachment(child1, parent, 1, 0, 0, 1);
+        store.setAttachment(child2, parent, 2, 0, 0, 1);
+
+        // Moving an attachment to another parent takes it off the first one
+        store.setAttachment(moved, parent, 3, 0, 0, 1);
+        store.setAttachment(moved, other, 3, 0, 0, 1);
+
+        store.destroy(parent);
+        assertFalse(store.isAlive(parent));
+        assertFalse(store.isAlive(child1));
+        assertFalse(store.isAlive(child2));
+        assertTrue(store.isAlive(other));
+        assertTrue(store.isAlive(unrelated));
+        assertTrue(store.isAlive(moved));
+        assertEquals(3, store.size());
+        assertEquals(other, store.getParents()[store.indexOf(moved)]);
+        assertConsistent();
+
+        store.destroy(other);
+        assertFalse(store.isAlive(moved));
+        assertEquals(1, store.size());
+        assertEquals(0, store.indexOf(unrelated));
+    }
+
+    @Test
+    public void testReusedIdHasDefaults() {
+        int parent = store.create(EntityStore.TRANSFORM);
+        int id = store.create(ALL);
+        store.setTransform(id, 1, 2, 3, 4);
+        store.setVelocity(id, 5, 6, 7);
+        store.setLifetime(id, 8);
+        store.setPolygon(id, new Polygon2D(0, 0, 1, 0, 0, 1), Color.RED, Color.BLUE);
+        store.setAttachment(id, parent, 9, 10, 11, 12);
+        store.destroy(id);
+
+        int reused = store.create(EntityStore.TRANSFORM);
+        assertEquals(id, reused);
+        int i = store.indexOf(reused);
+        assertEquals(EntityStore.TRANSFORM, store.getComponents()[i]);
+        assertEquals(0, store.getX()[i], 0);
+        assertEquals(0, store.getY()[i], 0);
+        assertEquals(0, store.getRotation()[i], 0);
+        assertEquals(1, store.getScale()[i], 0);
+        assertEquals(0, store.getVelocityX()[i], 0);
+        assertEquals(0, store.getVelocityY()[i], 0);
+        assertEquals(0, store.getTurnRate()[i], 0);
+        assertEquals(Float.POSITIVE_INFINITY, store.getLifetime()[i], 0);
+        assertNull(store.getPolygons()[i]);
+        assertNull(store.getFillColors()[i]);
+        assertNull(store.getLineColors()[i]);
+        assertEquals(-1, store.getParents()[i]);
+        assertEquals(0, store.getLocalX()[i], 0);
+        assertEquals(1, store.getLocalScale()[i], 0);
+
+        // The old entity's attachment no longer counts against the parent
+        store.destroy(parent);
+        assertTrue(store.isAlive(reused));
+    }
+
+    /**
+     * Destroys every entity whose id is a multiple of three, later.
+     */
+    private static class Culler extends ParallelSystem {
+        @Override
+        protected void update(EntityStore store, int start, int end, float dt) {
+            for (int i = start; i < end; i++) {
+                if (store.getId(i) % 3 == 0)
+                    store.destroyLater(store.getId(i));
+            }
+        }
+    }
+
+    @Test
+    public void testDestroyLaterFromParallelSystem() {
+        // Enough entities to be split into several chunks
+        int count = 3 * ParallelSystem.CHUNK_SIZE + 100;
+        for (int k = 0; k < count; k++)
+            store.create(EntityStore.TRANSFORM);
+
+        new Culler().update(store, 1);
+        assertEquals(count, store.size());
+
+        store.flush();
+        int expected = count - (count + 2) / 3;
+        assertEquals(expected, store.size());
+        for (int id = 0; id < count; id++)
+            assertEquals(id % 3 != 0, store.isAlive(id));
+        assertConsistent();
+
+        // Nothing is left queued
+        store.flush();
+        assertEquals(expected, store.size());
+    }
+}
@@ -0,0 +1,94 @@
+package unsw.graphics.scene.tests;
+
+import unsw.graphics.Matrix3;
+import unsw.graphics.scene.SceneObject;
+
+/**
+ * Measures the cost of querying the global position of the deepest object in chains of
+ * SceneObjects of different depths.
+ *
+ * "walk" composes the local transforms all the way to the root on every query, which is what
+ * getGlobalPosition() used to do. "static" queries an object that never moves. "leaf moves"
+ * moves the queried object before each query, and "root moves" moves the root, which dirties
+ * the whole chain. Only the last of these should grow with the depth.
+ *
+ * @author Robert Clifton-Everest
+ */
+public class GlobalTransformBenchmark {
+
+    private static final int[] DEPTHS = { 1, 10, 100, 1000 };
+
+    private static final int QUERIES = 200000;
+
+    // Stops the JIT from optimising the queries away
+    private static float sink;
+
+    public static void main(String[] args) {
+        // Run everything once to warm up
+        for (int depth : DEPTHS)
+            run(depth, false);
+
+        System.out.printf("%6s %12s %12s %12s %12s%n", "depth", "walk", "static",
+                "leaf moves", "root moves");
+        for (int depth : DEPTHS)
+            run(depth, true);
+        System.out.println("(ns per query)");
+        if (sink == 42)
+            System.out.println();
+    }
+
+    private static void run(int depth, boolean print) {
+        SceneObject root = new SceneObject();
+        SceneObject leaf = root;
+        for (int i = 0; i < depth; i++) {
+            leaf = new SceneObject(leaf);
+            leaf.translate(1, 0);
+            leaf.rotate(1);
+        }
+
+        // Fewer queries for the slow cases, so they finish in reasonable time
+        int slow = QUERIES / depth + 1000;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < slow; i++)
+            sink += walk(leaf);
+        double walk = (System.nanoTime() - start) / (double) slow;
+
+        start = System.nanoTime();
+        for (int i = 0; i < QUERIES; i++)
+            sink += leaf.getGlobalPosition().getX();
+        double fixed = (System.nanoTime() - start) / (double) QUERIES;
+
+        start = System.nanoTime();
+        for (int i = 0; i < QUERIES; i++) {
+            leaf.rotate(1);
+            sink += leaf.getGlobalPosition().getX();
+        }
+        double leafMoves = (System.nanoTime() - start) / (double) QUERIES;
+
+        start = System.nanoTime();
+        for (int i = 0; i < slow; i++) {
+            root.rotate(1);
+            sink += leaf.getGlobalPosition().getX();
+        }
+        double rootMoves = (System.nanoTime() - start) / (double) slow;
+
+        if (print)
+            System.out.printf("%6d %12.1f %12.1f %12.1f %12.1f%n", depth, walk, fixed,
+                    leafMoves, rootMoves);
+    }
+
+    /**
+     * The x coordinate of the global position of the given object, computed from scratch.
+     */
+    private static float walk(SceneObject object) {
+        Matrix3 global = Matrix3.identity();
+        for (SceneObject o = object; o != null; o = o.getParent()) {
+            global = Matrix3.translation(o.getPosition())
+                    .multiplyRotation(o.getRotation())
+                    .multiplyScale(o.getScale(), o.getScale())
+                    .multiply(global);
+        }
+        return global.getValues()[6];
+    }
+}
@@ -0,0 +1,74 @@
+package unsw.graphics.scene.tests;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+import unsw.graphics.Vector3;
+import unsw.graphics.geometry.Point3D;
+import unsw.graphics.geometry.TriangleMesh;
+
+/**
+ * Tests that the vertex normals of a mesh large enough to be computed in parallel are exactly
+ * the ones computed one triangle after another.
+ *
+ * @author Robert Clifton-Everest
+ *
+ */
+public class MeshNormalsTest extends TestCase {
+
+    // A bumpy grid of 2 * 129 * 129 triangles, more than are computed on one thread
+    private static final int SIZE = 130;
+
+    @Test
+    public void testParallelNormalsMatchSequential() {
+        Random random = new Random(42);
+        List<Point3D> vertices = new ArrayList<Point3D>();
+        for (int i = 0; i < SIZE; i++) {
+            for (int j = 0; j < SIZE; j++)
+                vertices.add(new Point3D(i + random.nextFloat() * 0.5f, random.nextFloat(),
+                        j + random.nextFloat() * 0.5f));
+        }
+        List<Integer> indices = new ArrayList<Integer>();
+        for (int i = 0; i < SIZE - 1; i++) {
+            for (int j = 0; j < SIZE - 1; j++) {
+                int v = i * SIZE + j;
+                indices.add(v); indices.add(v + 1); indices.add(v + SIZE);
+                indices.add(v + 1); indices.add(v + SIZE + 1); indices.add(v + SIZE);
+            }
+        }
+
+        TriangleMesh mesh = new TriangleMesh(vertices, indices, true);
+
+        // Add up the face normals in triangle order
+        float[] expected = new float[vertices.size() * 3];
+        for (int t = 0; t < indices.size(); t += 3) {
+            Point3D p1 = vertices.get(indices.get(t));
+            Point3D p2 = vertices.get(indices.get(t + 1));
+            Point3D p3 = vertices.get(indices.get(t + 2));
+            float ax = p2.getX() - p1.getX(), ay = p2.getY() - p1.getY(),
+                    az = p2.getZ() - p1.getZ();
+            float bx = p3.getX() - p1.getX(), by = p3.getY() - p1.getY(),
+                    bz = p3.getZ() - p1.getZ();
+            float nx = ay * bz - az * by;
+            float ny = az * bx - ax * bz;
+            float nz = ax * by - ay * bx;
+            for (int k = 0; k < 3; k++) {
+                int i = indices.get(t + k) * 3;
+                expected[i] += nx;
+                expected[i + 1] += ny;
+                expected[i + 2] += nz;
+            }
+        }
+
+        for (int v = 0; v < vertices.size(); v++) {
+            Vector3 n = mesh.getNormal(v);
+            assertEquals(expected[v * 3], n.getX(), 0);
+            assertEquals(expected[v * 3 + 1], n.getY(), 0);
+            assertEquals(expected[v * 3 + 2], n.getZ(), 0);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package unsw.graphics.scene.tests;
+
+import java.util.concurrent.ForkJoinPool;
+
+import unsw.graphics.scene.SceneObject;
+
+/**
+ * Measures how the update of a scene of independent ships scales with the number of threads.
+ *
+ * The root has 10,000 ships, each with two cannons and a sail, and is updated in parallel in
+ * ForkJoinPools with 1 thread up to one per processor. A ship steers towards a point that moves
+ * around a circle, and its cannons turn to follow it, which is about the work a pirate does in
+ * the sailing game. The speedup can't be more than the number of processors.
+ *
+ * @author Robert Clifton-Everest
+ */
+public class ParallelUpdateBenchmark {
+
+    private static final int SHIPS = 10000;
+
+    private static final int FRAMES = 100;
+
+    private static final float DT = 1 / 60f;
+
+    private static class Ship extends SceneObject {
+        private float myTime;
+
+        Ship(SceneObject parent, int i) {
+            super(parent);
+            setPosition(i % 100, i / 100);
+            setRotation(i);
+            new Cannon(this, 0.5f);
+            new Cannon(this, -0.5f);
+            new SceneObject(this);
+        }
+
+        @Override
+        public void updateSelf(float dt) {
+            myTime += dt;
+            float targetX = 50 + 40 * (float) Math.cos(myTime);
+            float targetY = 50 + 40 * (float) Math.sin(myTime);
+            float dx = targetX - getGlobalPosition().getX();
+            float dy = targetY - getGlobalPosition().getY();
+            float heading = (float) Math.toDegrees(Math.atan2(dy, dx));
+            float turn = heading - getGlobalRotation();
+            rotate(Math.max(-90 * dt, Math.min(90 * dt, turn)));
+            double angle = Math.toRadians(getRotation());
+            translate((float) Math.cos(angle) * dt, (float) Math.sin(angle) * dt);
+        }
+    }
+
+    private static class Cannon extends SceneObject {
+        Cannon(SceneObject parent, float y) {
+            super(parent);
+            setPosition(0, y);
+        }
+
+        @Override
+        public void updateSelf(float dt) {
+            float rotation = getGlobalRotation();
+            rotate((float) Math.sin(Math.toRadians(rotation)) * dt);
+        }
+    }
+
+    public static void main(String[] args) {
+        final SceneObject root = new SceneObject();
+        root.setParallel(true);
+        for (int i = 0; i < SHIPS; i++)
+            new Ship(root, i);
+
+        int processors = Runtime.getRuntime().availableProcessors();
+        System.out.printf("%,d ships, %d processors%n", SHIPS, processors);
+        System.out.printf("%8s %12s %8s%n", "threads", "ms/update", "speedup");
+
+        // Warm up
+        time(root, 1);
+        time(root, Math.max(2, processors));
+
+        double base = 0;
+        for (int threads = 1; threads <= Math.max(2, processors); threads *= 2) {
+            double ms = time(root, threads);
+            if (threads == 1)
+                base = ms;
+            System.out.printf("%8d %12.2f %8.2f%n", threads, ms, base / ms);
+        }
+    }
+
+    /**
+     * The mean time to update the tree in a pool with the given number of threads, in
+     * milliseconds.
+     */
+    private static double time(final SceneObject root, int threads) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            long start = System.nanoTime();
+            pool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < FRAMES; i++)
+                        root.update(DT);
+                }
+            }).join();
+            return (System.nanoTime() - start) / 1e6 / FRAMES;
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
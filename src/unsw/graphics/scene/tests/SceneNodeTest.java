@@ -0,0 +1,79 @@
+package unsw.graphics.scene.tests;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+import unsw.graphics.Matrix4;
+import unsw.graphics.geometry.Point3D;
+import unsw.graphics.scene.SceneNode;
+
+/**
+ * Tests for the transforms of SceneNodes, and that their cached world matrices are recomputed
+ * when an ancestor moves.
+ *
+ * @author Robert Clifton-Everest
+ *
+ */
+public class SceneNodeTest extends TestCase {
+
+    private static final float EPSILON = 0.001f;
+
+    @Test
+    public void testGlobal() {
+        SceneNode root = new SceneNode();
+        SceneNode parent = new SceneNode(root);
+        SceneNode child = new SceneNode(parent);
+
+        parent.setPosition(0, 2, 0);
+        parent.setRotation(0, 90, 0);
+        parent.setScale(2);
+        child.setPosition(1, 0, 0);
+
+        Point3D p = child.getGlobalPosition();
+        assertEquals(0, p.getX(), EPSILON);
+        assertEquals(2, p.getY(), EPSILON);
+        assertEquals(-2, p.getZ(), EPSILON);
+    }
+
+    @Test
+    public void testCached() {
+        SceneNode root = new SceneNode();
+        SceneNode child = new SceneNode(root);
+        child.setPosition(1, 0, 0);
+
+        Matrix4 world = child.getWorldMatrix();
+        assertSame(world, child.getWorldMatrix());
+
+        // Moving an ancestor moves the child
+        root.translate(0, 0, 3);
+        assertNotSame(world, child.getWorldMatrix());
+        Point3D p = child.getGlobalPosition();
+        assertEquals(1, p.getX(), EPSILON);
+        assertEquals(0, p.getY(), EPSILON);
+        assertEquals(3, p.getZ(), EPSILON);
+
+        // Including when the ancestor moves twice before the child is looked at again
+        root.translate(0, 0, 1);
+        root.translate(0, 1, 0);
+        p = child.getGlobalPosition();
+        assertEquals(1, p.getY(), EPSILON);
+        assertEquals(4, p.getZ(), EPSILON);
+    }
+
+    @Test
+    public void testSetParent() {
+        SceneNode root = new SceneNode();
+        SceneNode a = new SceneNode(root);
+        SceneNode b = new SceneNode(root);
+        SceneNode child = new SceneNode(a);
+        a.setPosition(1, 0, 0);
+        b.setPosition(0, 0, 5);
+        child.getWorldMatrix();
+
+        // The local transform is kept
+        child.setParent(b);
+        Point3D p = child.getGlobalPosition();
+        assertEquals(0, p.getX(), EPSILON);
+        assertEquals(5, p.getZ(), EPSILON);
+    }
+}
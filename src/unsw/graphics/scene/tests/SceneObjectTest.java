@@ -1,11 +1,20 @@
 package unsw.graphics.scene.tests;
 
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
 import org.junit.Test;
 
+import com.jogamp.opengl.GL3;
+
 import junit.framework.TestCase;
+import unsw.graphics.CoordFrame2D;
+import unsw.graphics.geometry.BoundingRectangle;
 import unsw.graphics.geometry.Point2D;
+import unsw.graphics.scene.ObjectPool;
 import unsw.graphics.scene.Scene;
 import unsw.graphics.scene.SceneObject;
+import unsw.graphics.scene.View;
 
 /**
  * COMMENT: Comment SceneObjectTest 
@@ -316,4 +325,401 @@ public class SceneObjectTest extends TestCase {
         
     }
     
+    /**
+     * Global coordinates are cached, so check they change when an ancestor moves after they
+     * have been asked for.
+     */
+    @Test
+    public void testGlobalAfterAncestorMoves() {
+        Scene scene = new Scene();
+        SceneObject obj1 = new SceneObject(scene.getRoot());
+        SceneObject obj2 = new SceneObject(obj1);
+        SceneObject obj3 = new SceneObject(obj2);
+        obj3.translate(1, 0);
+
+        Point2D p = obj3.getGlobalPosition();
+        assertEquals(1, p.getX(), EPSILON);
+        assertEquals(0, p.getY(), EPSILON);
+
+        obj1.rotate(90);
+        obj2.scale(2);
+
+        p = obj3.getGlobalPosition();
+        assertEquals(0, p.getX(), EPSILON);
+        assertEquals(2, p.getY(), EPSILON);
+        assertEquals(90, obj3.getGlobalRotation(), EPSILON);
+        assertEquals(2, obj3.getGlobalScale(), EPSILON);
+
+        obj1.translate(0, -2);
+        p = obj3.getGlobalPosition();
+        assertEquals(0, p.getX(), EPSILON);
+        assertEquals(0, p.getY(), EPSILON);
+    }
+    
+    /**
+     * Destroying children keeps the others in order, including when more are added before the
+     * list of children is looked at again.
+     */
+    @Test
+    public void testDestroyKeepsOrder() {
+        Scene scene = new Scene();
+        SceneObject parent = new SceneObject(scene.getRoot());
+        SceneObject[] children = new SceneObject[5];
+        for (int i = 0; i < children.length; i++)
+            children[i] = new SceneObject(parent);
+
+        children[1].destroy();
+        children[3].destroy();
+        SceneObject added = new SceneObject(parent);
+        children[0].destroy();
+
+        assertEquals(3, parent.getChildren().size());
+        assertSame(children[2], parent.getChildren().get(0));
+        assertSame(children[4], parent.getChildren().get(1));
+        assertSame(added, parent.getChildren().get(2));
+        assertNull(children[1].getParent());
+
+        // Still in order after more removals from the compacted list
+        children[4].destroy();
+        assertEquals(2, parent.getChildren().size());
+        assertSame(added, parent.getChildren().get(1));
+    }
+
+    /**
+     * A destroyed object can be given a new parent. It has no global transform apart from its
+     * local one, so that is where it ends up.
+     */
+    @Test
+    public void testSetParentAfterDestroy() {
+        Scene scene = new Scene();
+        SceneObject group = new SceneObject(scene.getRoot());
+        group.translate(10, 10);
+        SceneObject obj = new SceneObject(group);
+        obj.translate(1, 2);
+        obj.getGlobalPosition();
+        obj.destroy();
+        assertNull(obj.getParent());
+
+        SceneObject parent = new SceneObject(scene.getRoot());
+        parent.translate(5, 0);
+        obj.setParent(parent);
+        assertSame(parent, obj.getParent());
+        assertEquals(1, parent.getChildren().size());
+        assertTrue(group.getChildren().isEmpty());
+        assertSame(obj, parent.getChildren().get(0));
+
+        Point2D p = obj.getGlobalPosition();
+        assertEquals(1, p.getX(), EPSILON);
+        assertEquals(2, p.getY(), EPSILON);
+        p = obj.getPosition();
+        assertEquals(-4, p.getX(), EPSILON);
+        assertEquals(2, p.getY(), EPSILON);
+    }
+
+    @Test
+    public void testPool() {
+        Scene scene = new Scene();
+        ObjectPool<SceneObject> pool = new ObjectPool<SceneObject>() {
+            @Override
+            protected SceneObject create(SceneObject parent) {
+                return new SceneObject(parent);
+            }
+        };
+
+        SceneObject obj = pool.obtain(scene.getRoot());
+        obj.translate(1, 2);
+        pool.recycle(obj);
+        pool.recycle(obj);
+        assertEquals(1, pool.getFreeCount());
+        assertFalse(scene.getRoot().getChildren().contains(obj));
+
+        SceneObject other = new SceneObject(scene.getRoot());
+        other.translate(5, 0);
+        assertSame(obj, pool.obtain(other));
+        assertSame(other, obj.getParent());
+        assertEquals(0, pool.getFreeCount());
+
+        // The local transform is kept, in the new parent's frame
+        Point2D p = obj.getGlobalPosition();
+        assertEquals(6, p.getX(), EPSILON);
+        assertEquals(2, p.getY(), EPSILON);
+    }
+
+    /**
+     * Counts its updates. On its first update it creates a child, destroys its victim and 
+     * moves away.
+     */
+    private static class Spawner extends SceneObject {
+        int updates;
+        Spawner spawned;
+        SceneObject victim;
+
+        Spawner(SceneObject parent) {
+            super(parent);
+        }
+
+        @Override
+        public void updateSelf(float dt) {
+            if (updates++ == 0) {
+                spawned = new Spawner(this);
+                spawned.updates = 1;
+                spawned.translate(1, 0);
+                spawned.getGlobalPosition();
+                if (victim != null)
+                    victim.destroy();
+                translate(0, 1);
+            }
+        }
+    }
+
+    @Test
+    public void testChangesDuringUpdate() {
+        Scene scene = new Scene();
+        SceneObject root = scene.getRoot();
+        int count = root.getChildren().size();
+        Spawner spawner = new Spawner(root);
+        Spawner victim = new Spawner(root);
+        victim.updates = 1;
+        spawner.victim = victim;
+
+        root.update(1);
+        Spawner spawned = spawner.spawned;
+        // The new object is added at the end of the update, and not updated until the next one.
+        // The destroyed one is still updated, as it came later.
+        assertEquals(1, spawned.updates);
+        assertEquals(2, victim.updates);
+        assertEquals(1, spawner.getChildren().size());
+        assertEquals(count + 1, root.getChildren().size());
+        assertNull(victim.getParent());
+
+        // Moving the parent after the child's position was asked for still moves the child
+        Point2D p = spawned.getGlobalPosition();
+        assertEquals(1, p.getX(), EPSILON);
+        assertEquals(1, p.getY(), EPSILON);
+
+        root.update(1);
+        assertEquals(2, spawned.updates);
+    }
+
+    /**
+     * A 2x2 square that counts how many times it is drawn.
+     */
+    private static class Square extends SceneObject {
+        int draws;
+
+        Square(SceneObject parent, float x, float y) {
+            super(parent);
+            setPosition(x, y);
+        }
+
+        @Override
+        public BoundingRectangle getLocalBounds() {
+            return new BoundingRectangle(-1, -1, 1, 1);
+        }
+
+        @Override
+        public void drawSelf(GL3 gl, CoordFrame2D frame) {
+            draws++;
+        }
+    }
+
+    @Test
+    public void testCulling() {
+        SceneObject root = new SceneObject();
+        SceneObject group = new SceneObject(root);
+        Square near = new Square(group, 0, 0);
+        Square far = new Square(group, 10, 0);
+        Square farther = new Square(root, 100, 0);
+        Square tiny = new Square(root, 0, 0);
+        tiny.setScale(0.001f);
+
+        BoundingRectangle bounds = group.getGlobalBounds();
+        assertEquals(-1, bounds.getMinX(), EPSILON);
+        assertEquals(11, bounds.getMaxX(), EPSILON);
+        assertNull(new SceneObject(root).getGlobalBounds());
+
+        // The far squares are outside the view and the tiny one is smaller than a pixel
+        View view = new View(new BoundingRectangle(-5, -5, 5, 5), 0.01f);
+        root.draw((GL3) null, CoordFrame2D.identity(), view);
+        assertEquals(1, near.draws);
+        assertEquals(0, far.draws + farther.draws + tiny.draws);
+        assertEquals(7, view.getVisitedCount());
+        assertEquals(4, view.getCulledCount());
+        assertEquals(1, view.getDrawnCount());
+
+        // Moving a square changes the bounds of its ancestors
+        far.translate(-7, 0);
+        view = new View(new BoundingRectangle(-5, -5, 5, 5), 0.01f);
+        root.draw((GL3) null, CoordFrame2D.identity(), view);
+        assertEquals(1, far.draws);
+        assertEquals(2, view.getDrawnCount());
+    }
+
+    /**
+     * Puts a new object next to itself, and one under itself, on every update.
+     */
+    private static class Breeder extends SceneObject {
+        final int id;
+        int updates;
+
+        Breeder(SceneObject parent, int id) {
+            super(parent);
+            this.id = id;
+        }
+
+        @Override
+        public void updateSelf(float dt) {
+            updates++;
+            new Breeder(getParent(), id + 1000);
+            new SceneObject(this);
+        }
+    }
+
+    @Test
+    public void testParallelUpdate() {
+        final SceneObject root = new SceneObject();
+        root.setParallel(true);
+        for (int i = 0; i < 100; i++)
+            new Breeder(root, i);
+
+        updateInPool(root);
+
+        // Every object was updated once, and the new ones were added in the same order as a
+        // sequential update would have added them
+        List<SceneObject> children = root.getChildren();
+        assertEquals(200, children.size());
+        for (int i = 0; i < 200; i++) {
+            Breeder breeder = (Breeder) children.get(i);
+            assertEquals(i < 100 ? i : i + 900, breeder.id);
+            assertEquals(i < 100 ? 1 : 0, breeder.updates);
+            assertEquals(i < 100 ? 1 : 0, breeder.getChildren().size());
+        }
+    }
+
+    /**
+     * Update the tree in a pool with several threads, even if there is only one processor.
+     */
+    private static void updateInPool(final SceneObject root) {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            pool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    root.update(1);
+                }
+            }).join();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Moves up by 10 in each update, and can leave its parent for its grandparent.
+     */
+    private static class Climber extends Square {
+        boolean leave;
+
+        Climber(SceneObject parent, float x) {
+            super(parent, x, 0);
+        }
+
+        @Override
+        public void updateSelf(float dt) {
+            translate(0, 10);
+            if (leave)
+                setParent(getParent().getParent());
+        }
+    }
+
+    /**
+     * The bounds of the objects the chunks of a parallel update share are marked dirty after 
+     * the chunks are done.
+     */
+    @Test
+    public void testParallelUpdateBounds() {
+        SceneObject root = new SceneObject();
+        SceneObject group = new SceneObject(root);
+        group.setParallel(true);
+        Climber[] climbers = new Climber[50];
+        for (int i = 0; i < climbers.length; i++)
+            climbers[i] = new Climber(group, i);
+        climbers[49].leave = true;
+
+        // Cache every object's bounds, so the update has to mark them dirty
+        assertEquals(1, root.getGlobalBounds().getMaxY(), EPSILON);
+
+        updateInPool(root);
+
+        assertSame(root, climbers[49].getParent());
+        BoundingRectangle bounds = group.getGlobalBounds();
+        assertEquals(-1, bounds.getMinX(), EPSILON);
+        assertEquals(49, bounds.getMaxX(), EPSILON);
+        assertEquals(11, bounds.getMaxY(), EPSILON);
+        bounds = root.getGlobalBounds();
+        assertEquals(50, bounds.getMaxX(), EPSILON);
+        assertEquals(9, bounds.getMinY(), EPSILON);
+        assertEquals(11, bounds.getMaxY(), EPSILON);
+    }
+
+    /**
+     * Moves right at one unit per second and counts its updates.
+     */
+    private static class Mover extends SceneObject {
+        int updates;
+
+        Mover(SceneObject parent) {
+            super(parent);
+        }
+
+        @Override
+        public void updateSelf(float dt) {
+            updates++;
+            translate(dt, 0);
+        }
+    }
+
+    @Test
+    public void testFixedTimestep() {
+        Scene scene = new Scene();
+        scene.setTickRate(10);
+        Mover mover = new Mover(scene.getRoot());
+
+        // Two whole steps, and half of one left over to interpolate
+        scene.update(0.25f);
+        assertEquals(2, mover.updates);
+        assertEquals(0.2f, mover.getGlobalPosition().getX(), EPSILON);
+        assertEquals(0.5f, scene.getAlpha(), EPSILON);
+        float[] m = mover.getInterpolatedGlobalMatrix(scene.getAlpha()).getValues();
+        assertEquals(0.15f, m[6], EPSILON);
+
+        // Not enough for another step
+        scene.update(0.04f);
+        assertEquals(2, mover.updates);
+        assertEquals(0.9f, scene.getAlpha(), EPSILON);
+
+        // Too far behind, so only the maximum number of steps is taken
+        scene.setMaxTicksPerFrame(3);
+        scene.update(10);
+        assertEquals(5, mover.updates);
+        assertTrue(scene.getAlpha() < 1);
+    }
+
+    @Test
+    public void testReshapeWhilePipelined() {
+        Scene scene = new Scene();
+        scene.reshape(100, 100);
+        scene.getCamera().translate(3, 4);
+
+        // The camera is reshaped by the update thread, or when the pipeline stops at the latest
+        scene.setPipelined(true);
+        scene.reshape(200, 100);
+        scene.setPipelined(false);
+        assertEquals(2, scene.getCamera().getAspectRatio(), EPSILON);
+
+        // Nothing has been drawn, so the camera itself is used
+        Point2D p = scene.fromView(1, 1);
+        assertEquals(5, p.getX(), EPSILON);
+        assertEquals(5, p.getY(), EPSILON);
+    }
+    
 }
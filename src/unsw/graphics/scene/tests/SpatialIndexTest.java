@@ -0,0 +1,128 @@
+package unsw.graphics.scene.tests;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+import unsw.graphics.scene.Scene;
+import unsw.graphics.scene.SceneObject;
+import unsw.graphics.scene.SpatialIndex;
+
+/**
+ * Tests for SpatialIndex.
+ *
+ * @author Robert Clifton-Everest
+ */
+public class SpatialIndexTest extends TestCase {
+
+    private Scene scene;
+    private SpatialIndex<SceneObject> index;
+    private SceneObject a, b, c;
+
+    @Override
+    protected void setUp() {
+        scene = new Scene();
+        index = new SpatialIndex<SceneObject>(2);
+        a = object(scene.getRoot(), 0, 0, 1);
+        b = object(scene.getRoot(), 5, 0, 1);
+        c = object(scene.getRoot(), -10, 10, 2);
+    }
+
+    private SceneObject object(SceneObject parent, float x, float y, float radius) {
+        SceneObject obj = new SceneObject(parent);
+        obj.setPosition(x, y);
+        index.add(obj, radius);
+        return obj;
+    }
+
+    @Test
+    public void testRange() {
+        List<SceneObject> found = index.queryRange(0.5f, -1, 4.5f, 1,
+                new ArrayList<SceneObject>());
+        assertEquals(2, found.size());
+        assertTrue(found.contains(a));
+        assertTrue(found.contains(b));
+
+        found = index.queryRange(-100, -100, 100, 100, new ArrayList<SceneObject>());
+        assertEquals(3, found.size());
+
+        found = index.queryRange(1.5f, -1, 3.5f, 1, new ArrayList<SceneObject>());
+        assertTrue(found.isEmpty());
+    }
+
+    @Test
+    public void testRadius() {
+        List<SceneObject> found = index.queryRadius(-10, 7, 1.5f, new ArrayList<SceneObject>());
+        assertEquals(1, found.size());
+        assertSame(c, found.get(0));
+
+        found = index.queryRadius(-10, 7, 0.5f, new ArrayList<SceneObject>());
+        assertTrue(found.isEmpty());
+    }
+
+    @Test
+    public void testMoves() {
+        // Moving a parent moves its children's circles, and scaling it scales them
+        SceneObject child = object(b, 0, 3, 1);
+        b.translate(20, 0);
+        b.setScale(2);
+        List<SceneObject> found = index.queryRadius(25, 6, 0.5f, new ArrayList<SceneObject>());
+        assertEquals(1, found.size());
+        assertSame(child, found.get(0));
+        assertTrue(index.queryRadius(5, 0, 0.5f, new ArrayList<SceneObject>()).isEmpty());
+
+        index.remove(child);
+        assertEquals(3, index.size());
+        assertTrue(index.queryRadius(25, 6, 0.5f, new ArrayList<SceneObject>()).isEmpty());
+    }
+
+    @Test
+    public void testRaycast() {
+        assertSame(a, index.raycast(-5, 0, 1, 0, 100));
+        assertSame(b, index.raycast(10, 0, -1, 0, 100));
+        assertNull(index.raycast(10, 0, -1, 0, 3));
+        assertSame(c, index.raycast(0, 2, -1, 1, 100));
+        // Starting inside an object hits it
+        assertSame(a, index.raycast(0.5f, 0, 1, 0, 100));
+        assertNull(index.raycast(0, 5, 1, 0, 100));
+    }
+
+    @Test
+    public void testNearest() {
+        assertSame(a, index.nearest(1, 1, 100));
+        assertSame(b, index.nearest(4, 4, 100));
+        assertSame(c, index.nearest(-100, 100, 1000));
+        assertNull(index.nearest(-100, 100, 10));
+    }
+
+    @Test
+    public void testNearestFarAway() {
+        // Hundreds of thousands of cells from every object, with no limit on the distance
+        assertSame(b, index.nearest(1e6f, -1e6f, Float.POSITIVE_INFINITY));
+        assertSame(c, index.nearest(-1e6f, 1e6f, Float.POSITIVE_INFINITY));
+        assertSame(b, index.nearest(1e6f, 0, Float.POSITIVE_INFINITY));
+        assertNull(index.nearest(1e6f, 0, 1000));
+    }
+
+    @Test
+    public void testManyObjects() {
+        // Enough objects to grow the table, compared with a scan over all of them
+        List<SceneObject> objects = new ArrayList<SceneObject>();
+        for (int i = 0; i < 1000; i++)
+            objects.add(object(scene.getRoot(), (i * 37) % 101, (i * 53) % 97, 0.5f));
+        for (int i = 0; i < 1000; i += 2)
+            objects.get(i).translate(3, -2);
+
+        List<SceneObject> found = index.queryRadius(40, 40, 10, new ArrayList<SceneObject>());
+        int expected = 0;
+        for (SceneObject obj : objects) {
+            float dx = obj.getGlobalPosition().getX() - 40;
+            float dy = obj.getGlobalPosition().getY() - 40;
+            if (Math.sqrt(dx * dx + dy * dy) <= 10.5f)
+                expected++;
+        }
+        assertEquals(expected, found.size());
+    }
+}
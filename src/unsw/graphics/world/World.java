@@ -1,13 +1,19 @@
 package unsw.graphics.world;
 
+import java.awt.Color;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.List;
 
 import com.jogamp.opengl.GL3;
 
 import unsw.graphics.Application3D;
+import unsw.graphics.CoordFrame3D;
 import unsw.graphics.Matrix4;
 import unsw.graphics.Shader;
+import unsw.graphics.geometry.Frustum;
+import unsw.graphics.geometry.Point3D;
+import unsw.graphics.geometry.TriangleMesh;
 
 
 
@@ -18,21 +24,39 @@ import unsw.graphics.Shader;
  */
 public class World extends Application3D {
 
+    /**
+     * The tree model is about 9.4 units tall with its base at y = -5.03. This
+     * scales it to just under 1 unit tall with its base on the ground.
+     */
+    private static final float TREE_SCALE = 0.1f;
+    private static final float TREE_BASE = -5.0259f;
+
     private Terrain terrain;
 
-    public World(Terrain terrain) {
+    private TriangleMesh treeMesh;
+
+    /**
+     * Draws every tree in the terrain with a single instanced draw call.
+     */
+    private Shader treeShader;
+
+    private Matrix4[] treeTransforms;
+
+    private Matrix4 projMatrix = Matrix4.identity();
+
+    public World(Terrain terrain) throws IOException {
     	super("Assignment 2", 800, 600);
         this.terrain = terrain;
-   
+        treeMesh = new TriangleMesh("res/models/tree.ply");
     }
    
     /**
      * Load a level file and display it.
      * 
      * @param args - The first argument is a level file in JSON format
-     * @throws FileNotFoundException
+     * @throws IOException
      */
-    public static void main(String[] args) throws FileNotFoundException {
+    public static void main(String[] args) throws IOException {
         Terrain terrain = LevelIO.load(new File(args[0]));
         World world = new World(terrain);
         world.start();
@@ -41,24 +65,58 @@ public class World extends Application3D {
 	@Override
 	public void display(GL3 gl) {
 		super.display(gl);
+		drawTrees(gl, Matrix4.identity());
 	}
 
 	@Override
 	public void destroy(GL3 gl) {
 		super.destroy(gl);
-		
+		treeMesh.destroy(gl);
+		treeShader.destroy(gl);
 	}
 
 	@Override
 	public void init(GL3 gl) {
 		super.init(gl);
 		
+		treeMesh.init(gl);
+		treeShader = new Shader(gl, "shaders/vertex_3d_instanced.glsl",
+		        "shaders/fragment_3d_instanced.glsl");
 		
+		// The trees don't move, so their transforms only need computing once
+		List<Tree> trees = terrain.trees();
+		treeTransforms = new Matrix4[trees.size()];
+		for (int i = 0; i < trees.size(); i++) {
+		    Point3D p = trees.get(i).getPosition();
+		    treeTransforms[i] = CoordFrame3D.identity()
+		            .translate(p.getX(), p.getY(), p.getZ())
+		            .scale(TREE_SCALE, TREE_SCALE, TREE_SCALE)
+		            .translate(0, -TREE_BASE, 0).getMatrix();
+		}
+	}
+
+	/**
+	 * Draw all the trees on the terrain with the given view matrix, leaving
+	 * out those outside the view frustum. The default shader is in use again
+	 * afterwards.
+	 * 
+	 * @param gl
+	 * @param view
+	 */
+	private void drawTrees(GL3 gl, Matrix4 view) {
+	    treeShader.use(gl);
+	    Shader.setProjMatrix(gl, projMatrix);
+	    Shader.setViewMatrix(gl, view);
+	    Shader.setPenColor(gl, new Color(0.1f, 0.5f, 0.1f));
+	    treeMesh.drawInstanced(gl, CoordFrame3D.identity(), treeTransforms, null,
+	            new Frustum(projMatrix.multiply(view)));
+	    getDefaultShader().use(gl);
 	}
 
 	@Override
 	public void reshape(GL3 gl, int width, int height) {
         super.reshape(gl, width, height);
-        Shader.setProjMatrix(gl, Matrix4.perspective(60, width/(float)height, 1, 100));
+        projMatrix = Matrix4.perspective(60, width/(float)height, 1, 100);
+        Shader.setProjMatrix(gl, projMatrix);
 	}
 }